@@ -0,0 +1,177 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap;
+
+import com.wattzap.controller.MessageBus;
+import com.wattzap.controller.MessageCallback;
+import com.wattzap.controller.Messages;
+import com.wattzap.controller.TrainingController;
+import com.wattzap.model.PauseMsgEnum;
+import com.wattzap.model.Readers;
+import com.wattzap.model.SelectableDataSource;
+import com.wattzap.model.SensorTypeEnum;
+import com.wattzap.model.SourceDataEnum;
+import com.wattzap.model.TelemetryProvider;
+import com.wattzap.model.UserPreferences;
+import com.wattzap.model.ant.AntSubsystem;
+import com.wattzap.model.dto.Telemetry;
+import java.io.IOException;
+import org.apache.log4j.FileAppender;
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.apache.log4j.PatternLayout;
+
+/**
+ * Entry point without user interface: no Swing windows, no video. Sensors,
+ * handlers, route and training controller are created as in Main, training is
+ * started at once and recorded in the journal. It is saved when application
+ * is finished (if autosave is enabled).
+ * Arguments are same as for Main (key=value configuration), argument without
+ * '=' is a training file to be loaded.
+ * Status of the training is periodically reported on the console (and log).
+ */
+public class Headless implements PopupMessageIntf, MessageCallback {
+	private static final Logger logger = LogManager.getLogger("Headless");
+
+    // how often status is reported [ms of training time]
+    private static final long STATUS_INTERVAL = 10000;
+    // values reported in the status
+    private static final SourceDataEnum[] SHOWN = {
+        SourceDataEnum.DISTANCE, SourceDataEnum.SPEED,
+        SourceDataEnum.POWER, SourceDataEnum.CADENCE,
+        SourceDataEnum.HEART_RATE
+    };
+
+    private long lastStatus = -STATUS_INTERVAL;
+    private PauseMsgEnum lastPause = null;
+
+    public static void main(String[] args) {
+        // no window can be created
+        System.setProperty("java.awt.headless", "true");
+        UserPreferences.startStore();
+
+        String training = null;
+        for (String arg : args) {
+            int i = arg.indexOf('=');
+            if (i > 0) {
+                String key = arg.substring(0, i);
+                String val = arg.substring(i + 1);
+                UserPreferences.setDBValue(key, val);
+            } else {
+                training = arg;
+            }
+        }
+
+        // console appender is configured in log4j.properties, status is
+        // reported with INFO level
+		String PATTERN = "%r [%t] %p %c %x %m%n";
+        Level level = Level.INFO;
+		try {
+			FileAppender fileAppender = new FileAppender(new PatternLayout(PATTERN),
+                    UserPreferences.getWD() + "/logfile.txt");
+			fileAppender.setThreshold(level);
+			fileAppender.activateOptions();
+			Logger.getRootLogger().addAppender(fileAppender);
+		} catch (IOException e) {
+			logger.error("Cannot create log file, " + e.getLocalizedMessage());
+		}
+
+		logger.info("Database Version " + UserPreferences.INSTANCE.getDBVersion());
+        new Headless().run(training);
+    }
+
+    private void run(String training) {
+        TelemetryProvider.INSTANCE.initialize();
+
+        // build all sensors and their subsystems
+        new AntSubsystem(this).initialize();
+        SensorTypeEnum.buildSensors();
+        SelectableDataSource.buildHandlers();
+
+        // keeps all the telemetry data and journal, saves training on exit
+        final TrainingController trainingController = new TrainingController(null);
+        MessageBus.INSTANCE.register(Messages.TELEMETRY, this);
+
+        if ((training == null) && UserPreferences.INSTANCE.getLoadLastTrainig()) {
+            training = UserPreferences.INSTANCE.getDefaultFilename();
+        }
+        if (training != null) {
+            String msg = Readers.loadTraining(training);
+            if (msg != null) {
+                logger.error("Cannot load " + training + ", " + msg);
+            } else {
+                logger.info("Training " + training + " loaded");
+            }
+        }
+
+        // application is finished with ^C (or kill)
+        Runtime.getRuntime().addShutdownHook(new Thread("Shutdown") {
+            @Override
+            public void run() {
+                MessageBus.INSTANCE.send(Messages.EXIT_APP, null);
+                UserPreferences.INSTANCE.shutDown();
+            }
+        });
+
+        // continue last training if possible
+        if (UserPreferences.INSTANCE.autostart()) {
+            trainingController.loadJournal(null);
+        }
+        MessageBus.INSTANCE.send(Messages.START, null);
+    }
+
+    @Override
+    public void showWarning(String src, String msg) {
+        logger.warn(src + ":: " + msg);
+    }
+
+    @Override
+    public void callback(Messages m, Object o) {
+        switch (m) {
+            case TELEMETRY:
+                Telemetry t = (Telemetry) o;
+                if ((t.getPause() != lastPause) ||
+                        (t.getTime() >= lastStatus + STATUS_INTERVAL)) {
+                    lastPause = t.getPause();
+                    lastStatus = t.getTime();
+                    status(t);
+                }
+                break;
+        }
+    }
+
+    private void status(Telemetry t) {
+        StringBuilder buf = new StringBuilder();
+        buf.append(SourceDataEnum.TIME.format(t.getTime(), true));
+        for (SourceDataEnum val : SHOWN) {
+            String str = val.format(t.getDouble(val), true);
+            if (t.isAvailable(val) && (str != null)) {
+                buf.append(' ');
+                buf.append(val.getName());
+                buf.append('=');
+                buf.append(str);
+            }
+        }
+        String pause = PauseMsgEnum.msg(t);
+        if (pause != null) {
+            buf.append(" [");
+            buf.append(pause);
+            buf.append(']');
+        }
+        logger.info(buf.toString());
+    }
+}
@@ -76,6 +76,8 @@ import javax.swing.border.Border;
 public class Main implements Runnable {
 	private static Logger logger = LogManager.getLogger("Main");
 	private final static UserPreferences userPrefs = UserPreferences.INSTANCE;
+	// when application was started [ns]
+	private static long startTime;
 
     private static final int style = Font.BOLD;
     private static final Font pauseFont = new Font("Arial", style, 30);
@@ -86,6 +88,11 @@ public class Main implements Runnable {
             BorderFactory.createEmptyBorder(5, 5, 5, 5));
 
     public static void main(String[] args) {
+        // database is started in background, window is built with the
+        // preferences from last run
+        startTime = System.nanoTime();
+        UserPreferences.startStore();
+
         // set configuration args (user, lang). Whole "list" available in
         // UserPreferences
         for (String arg : args) {
@@ -339,6 +346,8 @@ public class Main implements Runnable {
         }
 
         frame.setVisible(true);
+        logger.info("Main window shown " + (System.nanoTime() - startTime) / 1000000L
+                + "ms after start");
     }
 
 	private static Level setLogLevel() {
@@ -0,0 +1,177 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap;
+
+import com.wattzap.controller.MessageCallback;
+import com.wattzap.controller.Messages;
+import com.wattzap.controller.Session;
+import com.wattzap.model.PauseMsgEnum;
+import com.wattzap.model.ReplaySource;
+import com.wattzap.model.SourceDataEnum;
+import com.wattzap.model.UserPreferences;
+import com.wattzap.model.VirtualClock;
+import com.wattzap.model.dto.Telemetry;
+import com.wattzap.model.dto.TelemetryJournal;
+import com.wattzap.utils.ActivityReader;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Replays recorded training (journal, or imported tcx/fit/gpx file) through
+ * the whole telemetry pipeline: recorded power, cadence, heart rate and speed
+ * are fed to the handlers selected in the configuration, route (if given) is
+ * loaded as well. Virtual clock is used, so the loop runs as fast as possible.
+ * Each telemetry is written as a single line to the output, so it can be
+ * compared with previous (golden) run.
+ * Usage: Replay input [output [route]] [key=value...]
+ */
+public class Replay implements MessageCallback {
+	private static final Logger logger = LogManager.getLogger("Replay");
+
+    private final PrintWriter out;
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    private Replay(PrintWriter out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        UserPreferences.startStore();
+
+        List<String> files = new ArrayList<>();
+        for (String arg : args) {
+            int i = arg.indexOf('=');
+            if (i > 0) {
+                UserPreferences.setDBValue(arg.substring(0, i), arg.substring(i + 1));
+            } else {
+                files.add(arg);
+            }
+        }
+        if (files.isEmpty()) {
+            System.err.println("Usage: Replay input [output [route]] [key=value...]");
+            return;
+        }
+
+        List<Telemetry> data = readData(files.get(0));
+        if ((data == null) || data.isEmpty()) {
+            logger.error("No data in " + files.get(0));
+            UserPreferences.INSTANCE.shutDown();
+            return;
+        }
+
+        PrintWriter out;
+        if (files.size() > 1) {
+            out = new PrintWriter(new OutputStreamWriter(
+                    new FileOutputStream(files.get(1)), "UTF-8"));
+        } else {
+            out = new PrintWriter(new OutputStreamWriter(System.out, "UTF-8"));
+        }
+
+        // provider waits 5s before first tick, first sample is available then
+        VirtualClock clock = new VirtualClock(data.get(0).getTime() - 5000);
+        // replayed ride is never recovered, journal is removed at the end
+        File journal = File.createTempFile("replay", TelemetryJournal.EXTENSION);
+        journal.deleteOnExit();
+        Session session = new Session("replay", clock, journal.getPath());
+        for (SourceDataEnum val : ReplaySource.REPLAYED) {
+            session.setSource(val, ReplaySource.NAME);
+        }
+        ReplaySource source = new ReplaySource(data);
+        session.addHandler(source).addSelectableHandlers().initialize();
+        if (files.size() > 2) {
+            String msg = session.load(files.get(2));
+            if (msg != null) {
+                logger.error("Cannot load route " + files.get(2) + ", " + msg);
+            }
+        }
+
+        Replay replay = new Replay(out);
+        session.getBus().register(Messages.TELEMETRY, replay);
+        long start = System.nanoTime();
+        session.start();
+        replay.finished.await();
+        long elapsed = System.nanoTime() - start;
+        session.getBus().unregister(Messages.TELEMETRY, replay);
+        out.flush();
+        if (files.size() > 1) {
+            out.close();
+        }
+
+        long ticks = session.getProvider().getScheduler().getTicks();
+        logger.info("Replayed " + source.getReplayed() + " samples, "
+                + ticks + " ticks in " + (elapsed / 1000000L) + "ms, "
+                + (long) (ticks * 1.0e9 / Math.max(elapsed, 1)) + " ticks/s");
+        session.close(false);
+        if (!journal.delete()) {
+            logger.warn("Cannot delete " + journal);
+        }
+        UserPreferences.INSTANCE.shutDown();
+    }
+
+    // journal, old journal (serialized telemetries) or any file handled by
+    // ActivityReader
+    static List<Telemetry> readData(String fileName) {
+        if (fileName.endsWith(TelemetryJournal.EXTENSION)) {
+            List<Telemetry> data = new ArrayList<>();
+            try {
+                TelemetryJournal.read(fileName, data);
+            } catch (IOException e) {
+                logger.error(fileName + ":: " + e.getLocalizedMessage());
+            }
+            return data;
+        }
+        if (!fileName.endsWith(".ser")) {
+            return ActivityReader.readTelemetry(fileName);
+        }
+        List<Telemetry> data = new ArrayList<>();
+        try (ObjectInputStream in = new ObjectInputStream(
+                new FileInputStream(fileName))) {
+            for (;;) {
+                data.add((Telemetry) in.readObject());
+            }
+        } catch (EOFException e) {
+            // end of the journal
+        } catch (IOException | ClassNotFoundException e) {
+            logger.error(fileName + ":: " + e.getLocalizedMessage());
+        }
+        return data;
+    }
+
+    @Override
+    public void callback(Messages m, Object o) {
+        switch (m) {
+            case TELEMETRY:
+                Telemetry t = (Telemetry) o;
+                out.println(t.getSequence() + " " + t);
+                if (t.getPause() == PauseMsgEnum.STOPPED) {
+                    finished.countDown();
+                }
+                break;
+        }
+    }
+}
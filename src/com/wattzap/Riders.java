@@ -0,0 +1,231 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap;
+
+import com.wattzap.controller.MessageCallback;
+import com.wattzap.controller.Messages;
+import com.wattzap.controller.Session;
+import com.wattzap.model.LiveAnalysis;
+import com.wattzap.model.PauseMsgEnum;
+import com.wattzap.model.ReplaySource;
+import com.wattzap.model.RiderProfile;
+import com.wattzap.model.SourceDataEnum;
+import com.wattzap.model.UserPreferences;
+import com.wattzap.model.VirtualClock;
+import com.wattzap.model.dto.Telemetry;
+import com.wattzap.model.dto.TelemetryJournal;
+import com.wattzap.model.dto.WorkoutData;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Replays recorded rides of several riders at once, each in its own session:
+ * own bus, provider thread, rider profile and journal. Routes and trainer
+ * profiles are shared. Riders are given by rider.name=input[,route], their
+ * properties (weight, wheelsize, ftp, ..) by rider.name.property=value, other
+ * values are set in the database (as in Replay). Summary of each rider is
+ * printed when all rides are finished.
+ * Usage: Riders rider.name=input[,route]... [rider.name.key=value...] [key=value...]
+ */
+public class Riders {
+	private static final Logger logger = LogManager.getLogger("Riders");
+
+    /**
+     * Single rider, replayed by virtual clock of its session. Journal is
+     * temporary, it is removed when rider is closed.
+     */
+    public static class Rider implements MessageCallback {
+        private final Session session;
+        private final ReplaySource source;
+        private final File journal;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile Telemetry last = null;
+        private volatile LiveAnalysis analysis = null;
+
+        public Rider(String name, List<Telemetry> data) throws IOException {
+            // provider waits 5s before first tick
+            VirtualClock clock = new VirtualClock(data.get(0).getTime() - 5000);
+            journal = File.createTempFile("rider-" + name, TelemetryJournal.EXTENSION);
+            journal.deleteOnExit();
+            session = new Session(name, clock, journal.getPath());
+            for (SourceDataEnum val : ReplaySource.REPLAYED) {
+                session.setSource(val, ReplaySource.NAME);
+            }
+            source = new ReplaySource(data);
+            session.addHandler(source).addSelectableHandlers();
+        }
+
+        public Session getSession() {
+            return session;
+        }
+        public RiderProfile getProfile() {
+            return session.getProfile();
+        }
+
+        // route is optional, null is returned if loaded
+        public String initialize(String route) {
+            session.initialize();
+            session.getBus().register(Messages.TELEMETRY, this);
+            session.getBus().register(Messages.ANALYSIS, this);
+            if (route != null) {
+                return session.load(route);
+            }
+            return null;
+        }
+
+        public void start() {
+            session.start();
+        }
+
+        public void await() throws InterruptedException {
+            finished.await();
+        }
+
+        public void close() {
+            session.getBus().unregister(Messages.TELEMETRY, this);
+            session.getBus().unregister(Messages.ANALYSIS, this);
+            session.close(false);
+            if (!journal.delete()) {
+                logger.warn("Cannot delete " + journal);
+            }
+        }
+
+        // number of samples replayed
+        public int getReplayed() {
+            return source.getReplayed();
+        }
+        public Telemetry getLast() {
+            return last;
+        }
+        // metrics of recorded telemetries, null if nothing recorded
+        public LiveAnalysis getAnalysis() {
+            return analysis;
+        }
+
+        @Override
+        public void callback(Messages m, Object o) {
+            switch (m) {
+                case TELEMETRY:
+                    last = (Telemetry) o;
+                    if (last.getPause() == PauseMsgEnum.STOPPED) {
+                        finished.countDown();
+                    }
+                    break;
+                case ANALYSIS:
+                    analysis = (LiveAnalysis) o;
+                    break;
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        System.setProperty("java.awt.headless", "true");
+        UserPreferences.startStore();
+
+        Map<String, String> inputs = new LinkedHashMap<>();
+        List<String[]> props = new ArrayList<>();
+        for (String arg : args) {
+            int i = arg.indexOf('=');
+            if (i <= 0) {
+                System.err.println("Usage: Riders rider.name=input[,route]... "
+                        + "[rider.name.key=value...] [key=value...]");
+                UserPreferences.INSTANCE.shutDown();
+                return;
+            }
+            String key = arg.substring(0, i);
+            String value = arg.substring(i + 1);
+            if (!key.startsWith("rider.")) {
+                UserPreferences.setDBValue(key, value);
+                continue;
+            }
+            key = key.substring(6);
+            int j = key.indexOf('.');
+            if (j < 0) {
+                inputs.put(key, value);
+            } else {
+                props.add(new String[] {
+                    key.substring(0, j), key.substring(j + 1), value});
+            }
+        }
+
+        Map<String, Rider> riders = new LinkedHashMap<>();
+        Map<String, String> routes = new LinkedHashMap<>();
+        for (Map.Entry<String, String> input : inputs.entrySet()) {
+            String[] files = input.getValue().split(",");
+            List<Telemetry> data = Replay.readData(files[0]);
+            if ((data == null) || data.isEmpty()) {
+                logger.error(input.getKey() + ":: no data in " + files[0]);
+                continue;
+            }
+            riders.put(input.getKey(), new Rider(input.getKey(), data));
+            routes.put(input.getKey(), (files.length > 1) ? files[1] : null);
+        }
+        for (String[] prop : props) {
+            Rider rider = riders.get(prop[0]);
+            if (rider == null) {
+                logger.error("Unknown rider " + prop[0]);
+                continue;
+            }
+            try {
+                rider.getProfile().setValue(prop[1], prop[2]);
+            } catch (IllegalArgumentException ex) {
+                logger.error(prop[0] + ":: " + ex.getLocalizedMessage());
+            }
+        }
+
+        for (Map.Entry<String, Rider> rider : riders.entrySet()) {
+            String msg = rider.getValue().initialize(routes.get(rider.getKey()));
+            if (msg != null) {
+                logger.error(rider.getKey() + ":: cannot load route "
+                        + routes.get(rider.getKey()) + ", " + msg);
+            }
+        }
+        long start = System.nanoTime();
+        for (Rider rider : riders.values()) {
+            rider.start();
+        }
+        for (Rider rider : riders.values()) {
+            rider.await();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        for (Map.Entry<String, Rider> entry : riders.entrySet()) {
+            Rider rider = entry.getValue();
+            Telemetry last = rider.getLast();
+            StringBuilder buf = new StringBuilder(entry.getKey());
+            buf.append(": ").append(rider.getReplayed()).append(" samples, ");
+            buf.append(String.format("distance %.3f", last.getDistance()));
+            if (rider.getAnalysis() != null) {
+                WorkoutData data = rider.getAnalysis().getWorkoutData();
+                buf.append(", ").append(data.getTime() / 1000L).append("s");
+                buf.append(", ").append(data.getAvePower()).append("W");
+                buf.append(", ").append(data.getWeight()).append("kg");
+            }
+            System.out.println(buf);
+            rider.close();
+        }
+        logger.info(riders.size() + " riders replayed in "
+                + (elapsed / 1000000L) + "ms");
+        UserPreferences.INSTANCE.shutDown();
+    }
+}
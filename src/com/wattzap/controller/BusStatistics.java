@@ -0,0 +1,269 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wattzap.controller;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Latency of callbacks on the message bus, per message and subscriber class.
+ * For asynchronous subscribers two rows are kept: time spent by the sender to
+ * put the message into the lane (subscriber name with "(queue)" suffix, it
+ * shows when the lane is full) and time of the callback on the lane's thread.
+ * Callbacks which take more than the budget are reported in the log.
+ *
+ * Statistics are collected only when enabled. They are available through
+ * JMX (com.wattzap:type=MessageBus,name=[bus name]) and might be periodically
+ * appended to the CSV file.
+ */
+public class BusStatistics implements BusStatisticsMBean {
+	private static final Logger logger = LogManager.getLogger("BusStatistics");
+
+    private final String name;
+    private volatile boolean enabled = false;
+    private volatile long budget = 0; // [ns]
+
+    // statistics indexed by Messages.ordinal(), for direct and queued calls
+    private final List<ConcurrentHashMap<Class<?>, CallbackStatistics>> delivered;
+    private final List<ConcurrentHashMap<Class<?>, CallbackStatistics>> queued;
+
+    private ObjectName objectName = null;
+    private Timer timer = null;
+    private String dumpFile = null;
+    private int dumpInterval = 0;
+
+    BusStatistics(String name) {
+        this.name = name;
+        delivered = new ArrayList<>();
+        queued = new ArrayList<>();
+        for (int i = 0; i < Messages.values().length; i++) {
+            delivered.add(new ConcurrentHashMap<Class<?>, CallbackStatistics>());
+            queued.add(new ConcurrentHashMap<Class<?>, CallbackStatistics>());
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        if (enabled) {
+            register();
+        }
+    }
+
+    @Override
+    public long getBudget() {
+        return budget / 1000;
+    }
+    @Override
+    public void setBudget(long budget) {
+        this.budget = budget * 1000;
+    }
+
+    /**
+     * Records duration of the callback.
+     * @param m message delivered
+     * @param callback called subscriber (lane for asynchronous subscribers)
+     * @param async true if callback was called on lane's thread
+     * @param duration [ns]
+     */
+    void record(Messages m, MessageCallback callback, boolean async, long duration) {
+        List<ConcurrentHashMap<Class<?>, CallbackStatistics>> table = delivered;
+        if (callback instanceof MessageLane) {
+            callback = ((MessageLane) callback).getCallback();
+            if (!async) {
+                table = queued;
+            }
+        }
+        ConcurrentHashMap<Class<?>, CallbackStatistics> row = table.get(m.ordinal());
+        Class<?> clazz = callback.getClass();
+        CallbackStatistics stats = row.get(clazz);
+        if (stats == null) {
+            String subscriber = clazz.getName();
+            if (table == queued) {
+                subscriber += "(queue)";
+            }
+            stats = new CallbackStatistics(m, subscriber);
+            CallbackStatistics prev = row.putIfAbsent(clazz, stats);
+            if (prev != null) {
+                stats = prev;
+            }
+        }
+        if (stats.record(duration, budget)) {
+            logger.warn(name + ":: " + stats.getSubscriber() + " handled " + m
+                    + " in " + (duration / 1000) + "us, budget "
+                    + getBudget() + "us, exceeded " + stats.getOverBudget()
+                    + " times");
+        }
+    }
+
+    private List<CallbackStatistics> all() {
+        List<CallbackStatistics> list = new ArrayList<>();
+        for (int i = 0; i < delivered.size(); i++) {
+            list.addAll(delivered.get(i).values());
+            list.addAll(queued.get(i).values());
+        }
+        return list;
+    }
+
+    @Override
+    public long getCallbacks() {
+        long count = 0;
+        for (CallbackStatistics stats : all()) {
+            count += stats.getCount();
+        }
+        return count;
+    }
+
+    @Override
+    public long getOverBudget() {
+        long count = 0;
+        for (CallbackStatistics stats : all()) {
+            count += stats.getOverBudget();
+        }
+        return count;
+    }
+
+    @Override
+    public String[] getStatistics() {
+        List<CallbackStatistics> list = all();
+        String[] rows = new String[list.size() + 1];
+        rows[0] = CallbackStatistics.header();
+        for (int i = 0; i < list.size(); i++) {
+            rows[i + 1] = list.get(i).toString();
+        }
+        return rows;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < delivered.size(); i++) {
+            delivered.get(i).clear();
+            queued.get(i).clear();
+        }
+    }
+
+    // register MBean (only once, when statistics are enabled first time)
+    private synchronized void register() {
+        if (objectName != null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            objectName = new ObjectName("com.wattzap:type=MessageBus,name="
+                    + ObjectName.quote(name));
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(this, objectName);
+            }
+        } catch (Exception e) {
+            logger.error(name + ":: cannot register MBean, " + e.getLocalizedMessage());
+        }
+    }
+
+    /**
+     * Statistics are appended to the file every interval seconds (when
+     * enabled). Each row starts with the time of the dump.
+     * @param fileName file to write, null disables the dump
+     * @param interval [s], 0 disables the dump
+     */
+    public synchronized void setDump(String fileName, int interval) {
+        if ((interval == dumpInterval) && ((fileName == null) ?
+                (dumpFile == null) : fileName.equals(dumpFile))) {
+            return;
+        }
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+        dumpFile = fileName;
+        dumpInterval = interval;
+        if ((fileName == null) || (interval <= 0)) {
+            return;
+        }
+        timer = new Timer("BusStatistics-" + name, true);
+        timer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                if (enabled) {
+                    dump();
+                }
+            }
+        }, interval * 1000L, interval * 1000L);
+    }
+
+    // final dump is written (if enabled), MBean is unregistered
+    public synchronized void close() {
+        if (enabled) {
+            dump();
+        }
+        setDump(null, 0);
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (Exception e) {
+                logger.error(name + ":: cannot unregister MBean, " + e.getLocalizedMessage());
+            }
+            objectName = null;
+        }
+    }
+
+    // append current statistics to the dump file
+    public void dump() {
+        String fileName;
+        synchronized(this) {
+            fileName = dumpFile;
+        }
+        if (fileName == null) {
+            return;
+        }
+        File file = new File(fileName);
+        boolean header = !file.exists() || (file.length() == 0);
+        String time = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new Date());
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(
+                new FileOutputStream(file, true), "UTF-8"))) {
+            if (header) {
+                out.println("time," + CallbackStatistics.header());
+            }
+            for (CallbackStatistics stats : all()) {
+                out.println(time + "," + stats);
+            }
+        } catch (IOException e) {
+            logger.error(fileName + ":: " + e.getLocalizedMessage());
+        }
+    }
+}
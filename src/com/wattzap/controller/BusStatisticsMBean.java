@@ -0,0 +1,35 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wattzap.controller;
+
+/**
+ * JMX view of the message bus statistics. Statistics are rows in CSV format,
+ * same as in the periodic dump (first row is the header).
+ */
+public interface BusStatisticsMBean {
+    boolean isEnabled();
+    void setEnabled(boolean enabled);
+
+    // callback budget [us], 0 means no budget
+    long getBudget();
+    void setBudget(long budget);
+
+    long getCallbacks();
+    long getOverBudget();
+    String[] getStatistics();
+
+    void reset();
+}
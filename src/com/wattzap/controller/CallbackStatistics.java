@@ -0,0 +1,135 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wattzap.controller;
+
+/**
+ * Latency statistics of single subscriber for single message. Durations are
+ * kept in log-linear histogram (like HdrHistogram): each power of two is split
+ * into 8 buckets, so percentiles are accurate to ~12% of the value, and whole
+ * range of long values fits in ~500 counters.
+ */
+class CallbackStatistics {
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final Messages message;
+    private final String subscriber;
+
+    // all synchronized
+    private final long[] counts = new long[BUCKETS];
+    private long count = 0;
+    private long sum = 0; // [ns]
+    private long max = 0; // [ns]
+    private long overBudget = 0;
+
+    CallbackStatistics(Messages message, String subscriber) {
+        this.message = message;
+        this.subscriber = subscriber;
+    }
+
+    Messages getMessage() {
+        return message;
+    }
+    String getSubscriber() {
+        return subscriber;
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) Math.max(value, 0);
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        return (magnitude - SUB_BITS + 1) * SUB_BUCKETS
+                + (int) ((value >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1));
+    }
+
+    // lowest value counted in the bucket
+    static long lowest(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int magnitude = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = SUB_BUCKETS + (bucket % SUB_BUCKETS);
+        return sub << (magnitude - SUB_BITS);
+    }
+
+    /**
+     * Records single callback duration.
+     * @return true if it is first over-budget callback, or their number is
+     * a power of two: just to avoid flooding the log.
+     */
+    synchronized boolean record(long duration, long budget) {
+        counts[bucket(duration)]++;
+        count++;
+        sum += duration;
+        if (max < duration) {
+            max = duration;
+        }
+        if ((budget > 0) && (duration > budget)) {
+            overBudget++;
+            return (overBudget & (overBudget - 1)) == 0;
+        }
+        return false;
+    }
+
+    synchronized long getCount() {
+        return count;
+    }
+    synchronized long getOverBudget() {
+        return overBudget;
+    }
+    synchronized long getMean() {
+        return (count == 0) ? 0 : sum / count;
+    }
+    synchronized long getMax() {
+        return max;
+    }
+
+    // upper bound of the percentile [ns], never more than max
+    synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        long limit = (long) Math.ceil(count * percentile / 100.0);
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts[i];
+            if ((total >= limit) && (total > 0)) {
+                if (i + 1 == BUCKETS) {
+                    return max;
+                }
+                return Math.min(lowest(i + 1) - 1, max);
+            }
+        }
+        return max;
+    }
+
+    static String header() {
+        return "message,subscriber,count,mean_us,p50_us,p90_us,p99_us,max_us,over_budget";
+    }
+
+    @Override
+    public synchronized String toString() {
+        return message + "," + subscriber + "," + count
+                + "," + (getMean() / 1000)
+                + "," + (getPercentile(50.0) / 1000)
+                + "," + (getPercentile(90.0) / 1000)
+                + "," + (getPercentile(99.0) / 1000)
+                + "," + (max / 1000)
+                + "," + overBudget;
+    }
+}
@@ -15,10 +15,13 @@
  */
 package com.wattzap.controller;
 
-import com.wattzap.model.dto.Telemetry;
+import com.wattzap.model.dto.Histogram;
+import com.wattzap.model.dto.WorkoutSet;
 
 /**
- * Used by distribution graphs to determine graph key
+ * Used by distribution graphs to determine graph key. Graph is built from the
+ * histogram of the value, key is determined for each value (bin) of it, not
+ * for each telemetry point.
  * 
  * @author David George (c) Copyright 17 January 2014
  * @date 17 April 2014
@@ -29,18 +32,18 @@ public abstract class DistributionAccessor {
 
 	/**
 	 * 
-	 * @param t
-	 * @return value or -1 if it should be ignored
+	 * @param set
+	 * @return histogram of the value shown by the graph
 	 */
-	public abstract int getKey(Telemetry t);
+	public abstract Histogram getHistogram(WorkoutSet set);
 	
 	/**
 	 * Typical case
 	 * 
 	 * @param v
-	 * @return
+	 * @return key of the value or -1 if it should be ignored
 	 */
-	protected int getKey(int v) {
+	public int getKey(int v) {
 		if (!keepZeroes && v < scale) {
 			return -1;
 		}
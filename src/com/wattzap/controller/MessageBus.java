@@ -15,10 +15,8 @@
  */
 package com.wattzap.controller;
 
-import java.util.ArrayList;
-import java.util.EnumMap;
-import java.util.HashSet;
-import java.util.List;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Map;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
@@ -38,15 +36,67 @@ import org.apache.log4j.Logger;
  *
  * @author David George
  * @date 12 November 2013
+ *
+ * INSTANCE is the bus of the application, each Session has its own one.
  */
-public enum MessageBus {
-	INSTANCE;
+public class MessageBus {
+	public static final MessageBus INSTANCE = new MessageBus("application");
 	private static final Logger logger = LogManager.getLogger("MessageBus");
-    private final Map<Messages, HashSet<MessageCallback>> objects;
 
-	MessageBus() {
-		objects = new EnumMap<Messages, HashSet<MessageCallback>>(
-				Messages.class);
+    // dispatch table: listeners indexed by Messages.ordinal(). Rows are never
+    // modified, they are replaced (under bus lock) on register/unregister,
+    // so send() doesn't need any lock and doesn't allocate anything.
+    private volatile MessageCallback[][] objects;
+    // asynchronous subscribers, each one has own delivery lane
+    private final Map<MessageCallback, MessageLane> lanes;
+    // callback latencies, collected only when enabled
+    private final BusStatistics statistics;
+
+	public MessageBus() {
+		this("bus");
+	}
+
+	public MessageBus(String name) {
+		statistics = new BusStatistics(name);
+		MessageCallback[] none = new MessageCallback[0];
+		MessageCallback[][] table = new MessageCallback[Messages.values().length][];
+		for (int i = 0; i < table.length; i++) {
+			table[i] = none;
+		}
+		objects = table;
+        lanes = new HashMap<MessageCallback, MessageLane>();
+	}
+
+	public BusStatistics getStatistics() {
+		return statistics;
+	}
+
+	private static int indexOf(MessageCallback[] listeners, MessageCallback o) {
+		for (int i = 0; i < listeners.length; i++) {
+			if (listeners[i].equals(o)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	// replace row in the table, must be called with bus lock held
+	private void setListeners(Messages m, MessageCallback[] listeners) {
+		MessageCallback[][] table = objects.clone();
+		table[m.ordinal()] = listeners;
+		objects = table;
+	}
+
+	private void remove(Messages m, MessageCallback o) {
+		MessageCallback[] listeners = objects[m.ordinal()];
+		int i = indexOf(listeners, o);
+		if (i < 0) {
+			return;
+		}
+		MessageCallback[] updated = new MessageCallback[listeners.length - 1];
+		System.arraycopy(listeners, 0, updated, 0, i);
+		System.arraycopy(listeners, i + 1, updated, i, updated.length - i);
+		setListeners(m, updated);
 	}
 
 	/**
@@ -59,51 +109,96 @@ public enum MessageBus {
 	 *            interface.
 	 */
 	public synchronized void register(Messages m, MessageCallback o) {
-		HashSet<MessageCallback> listeners;
-		if (objects.containsKey(m)) {
-			listeners = objects.get(m);
-		} else {
-			listeners = new HashSet<MessageCallback>();
-			objects.put(m, listeners);
+		MessageCallback[] listeners = objects[m.ordinal()];
+		if (indexOf(listeners, o) >= 0) {
+			return;
 		}
-		listeners.add(o);
+		MessageCallback[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+		updated[listeners.length] = o;
+		setListeners(m, updated);
+	}
+
+	/**
+	 * Register a callback to receive specific messages on its own thread.
+	 * Sender doesn't wait for the callback, high-frequency messages (like
+	 * TELEMETRY) are coalesced if callback is not fast enough, other messages
+	 * are delivered in order. All messages registered this way by the same
+	 * callback are delivered by the same thread.
+	 *
+	 * @param m
+	 *            - Message type to register (from Messages enum)
+	 * @param o
+	 *            - Callback implementation
+	 */
+	public synchronized void registerAsync(Messages m, MessageCallback o) {
+		MessageLane lane = lanes.get(o);
+		if (lane == null) {
+			lane = new MessageLane(o, statistics);
+			lanes.put(o, lane);
+		}
+		lane.getRegistered().add(m);
+		register(m, lane);
 	}
 
 
 	public synchronized void unregister(MessageCallback o) {
-        for (HashSet<MessageCallback> listeners : objects.values()) {
-            listeners.remove(o);
+        MessageLane lane = lanes.remove(o);
+        for (Messages m : Messages.values()) {
+            remove(m, o);
+            if (lane != null) {
+                remove(m, lane);
+            }
+        }
+        if (lane != null) {
+            lane.close();
         }
     }
     public synchronized void unregister(Messages m, MessageCallback o) {
-		if (objects.containsKey(m)) {
-    		HashSet<MessageCallback> listeners = objects.get(m);
-        	listeners.remove(o);
+        remove(m, o);
+        MessageLane lane = lanes.get(o);
+        if ((lane != null) && (lane.getRegistered().remove(m))) {
+            remove(m, lane);
+            if (lane.getRegistered().isEmpty()) {
+                lanes.remove(o);
+                lane.close();
+            }
         }
     }
 
     public synchronized boolean isRegisterd(Messages m, MessageCallback o) {
-		if (!objects.containsKey(m)) {
-            return false;
-		}
-		HashSet<MessageCallback> listeners = objects.get(m);
-		return listeners.contains(o);
+        MessageLane lane = lanes.get(o);
+        if ((lane != null) && (lane.getRegistered().contains(m))) {
+            return true;
+        }
+		return indexOf(objects[m.ordinal()], o) >= 0;
     }
 
 	public void send(Messages m, Object o) {
-        List<MessageCallback> listeners;
-        synchronized(this) {
-            if (!objects.containsKey(m)) {
-                return;
-            }
-    		listeners = new ArrayList<>(objects.get(m));
+        // snapshot of the listeners, it is not modified by (un)registration
+        // done in callbacks
+        MessageCallback[] listeners = objects[m.ordinal()];
+        if (statistics.isEnabled()) {
+            sendTimed(listeners, m, o);
+            return;
         }
-        for (MessageCallback callback : listeners) {
+        for (int i = 0; i < listeners.length; i++) {
             try {
-                callback.callback(m, o);
+                listeners[i].callback(m, o);
             } catch (Exception e) {
                 logger.fatal("Exception " + e, e);
             }
         }
 	}
+
+    private void sendTimed(MessageCallback[] listeners, Messages m, Object o) {
+        for (int i = 0; i < listeners.length; i++) {
+            long start = System.nanoTime();
+            try {
+                listeners[i].callback(m, o);
+            } catch (Exception e) {
+                logger.fatal("Exception " + e, e);
+            }
+            statistics.record(m, listeners[i], false, System.nanoTime() - start);
+        }
+    }
 }
@@ -0,0 +1,173 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.controller;
+
+import com.wattzap.model.dto.Telemetry;
+import java.util.EnumSet;
+import java.util.Set;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Delivery lane for asynchronous subscriber. Messages are put into bounded
+ * queue by the sender and delivered by lane's own thread, so slow subscriber
+ * doesn't stall the sender.
+ * Coalesced message (see Messages.isCoalesced()) which is still waiting at
+ * the end of the queue is replaced by the newest one, otherwise messages are
+ * delivered in the order they were sent (newer telemetry never overtakes
+ * earlier control message). When queue is full sender waits.
+ * Telemetry snapshots are recycled by the provider, lane keeps detached copy
+ * (subscriber might get it many ticks later).
+ * Lane is closed when subscriber throws an Error, further messages are
+ * dropped.
+ */
+class MessageLane implements MessageCallback, Runnable {
+	private static final Logger logger = LogManager.getLogger("MessageBus");
+    private static final int CAPACITY = 64;
+
+    private final MessageCallback callback;
+    private final BusStatistics statistics;
+    // messages lane is registered for, synchronized on bus
+    private final Set<Messages> registered = EnumSet.noneOf(Messages.class);
+
+    // queue: ring buffer with absolute positions
+    private final Messages[] messages = new Messages[CAPACITY];
+    private final Object[] objects = new Object[CAPACITY];
+    private long head = 0;
+    private long tail = 0;
+    // position of the last queued coalesced message (-1 if none is waiting)
+    private final long[] pending = new long[Messages.values().length];
+
+    private final Thread thread;
+    private boolean closed = false;
+
+    MessageLane(MessageCallback callback, BusStatistics statistics) {
+        this.callback = callback;
+        this.statistics = statistics;
+        for (int i = 0; i < pending.length; i++) {
+            pending[i] = -1;
+        }
+        thread = new Thread(this);
+        thread.setName("MessageBus-" + callback.getClass().getSimpleName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    MessageCallback getCallback() {
+        return callback;
+    }
+
+    Set<Messages> getRegistered() {
+        return registered;
+    }
+
+    void close() {
+        synchronized(this) {
+            closed = true;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void callback(Messages m, Object o) {
+        synchronized(this) {
+            if (closed) {
+                return;
+            }
+            if ((o instanceof Telemetry) && ((Telemetry) o).isFrozen()) {
+                o = ((Telemetry) o).detach();
+            }
+            if (m.isCoalesced() && (pending[m.ordinal()] == tail - 1)) {
+                // replace waiting message with the newest one, nothing was
+                // queued after it
+                objects[(int) (pending[m.ordinal()] % CAPACITY)] = o;
+                return;
+            }
+            while (tail - head >= CAPACITY) {
+                if (Thread.currentThread() == thread) {
+                    // lane sends to itself, cannot wait
+                    logger.error(callback.getClass().getSimpleName()
+                            + ":: lane full, " + m + " dropped");
+                    return;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    logger.warn(callback.getClass().getSimpleName()
+                            + ":: interrupted on full lane, " + m + " dropped");
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                if (closed) {
+                    return;
+                }
+            }
+            if (m.isCoalesced()) {
+                pending[m.ordinal()] = tail;
+            }
+            messages[(int) (tail % CAPACITY)] = m;
+            objects[(int) (tail % CAPACITY)] = o;
+            tail++;
+            notifyAll();
+        }
+    }
+
+    @Override
+    public void run() {
+        for (;;) {
+            Messages m;
+            Object o;
+            synchronized(this) {
+                while ((!closed) && (head == tail)) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                if (closed) {
+                    return;
+                }
+                int i = (int) (head % CAPACITY);
+                m = messages[i];
+                o = objects[i];
+                messages[i] = null;
+                objects[i] = null;
+                if (pending[m.ordinal()] == head) {
+                    pending[m.ordinal()] = -1;
+                }
+                head++;
+                notifyAll();
+            }
+            boolean timed = statistics.isEnabled();
+            long start = timed ? System.nanoTime() : 0;
+            try {
+                callback.callback(m, o);
+            } catch (Exception e) {
+                logger.fatal("Exception " + e, e);
+            } catch (Error e) {
+                // lane is not usable anymore, senders must not wait for it
+                logger.fatal(callback.getClass().getSimpleName()
+                        + ":: lane stopped, " + e, e);
+                close();
+                return;
+            }
+            if (timed) {
+                statistics.record(m, this, true, System.nanoTime() - start);
+            }
+        }
+    }
+}
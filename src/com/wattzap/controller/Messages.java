@@ -42,7 +42,7 @@ public enum Messages {
 
     // complete data created by TelemetryProvider
     // data: Telemetry
-    TELEMETRY,
+    TELEMETRY(true),
 
     // start/stop training. These deal with subsystems/sensors, control
     // TelemetryProvider.
@@ -54,6 +54,10 @@ public enum Messages {
     // data: WorkoutData with all computed parameters
     WORKOUT_DATA,
 
+    // metrics of the ride were updated with recorded telemetry
+    // data: LiveAnalysis
+    ANALYSIS(true),
+
     // position within the video
     // data: (double) position
     STARTPOS,
@@ -74,7 +78,7 @@ public enum Messages {
 
     // Opponents data to be shown in opponents panel, on the map..
     // data: OpponentData[]
-    OPPONENTS,
+    OPPONENTS(true),
 
     // Application is going to be closed, modules shall handle their
     // own jobs.
@@ -87,4 +91,19 @@ public enum Messages {
     // request to "resend" training data
     // data: handler to get the TD notification
     TD_REQ;
+
+    // only the newest message is delivered to asynchronous subscribers, if
+    // previous one was not handled yet. Others are delivered in order.
+    private final boolean coalesced;
+
+    private Messages() {
+        this(false);
+    }
+    private Messages(boolean coalesced) {
+        this.coalesced = coalesced;
+    }
+
+    public boolean isCoalesced() {
+        return coalesced;
+    }
 }
@@ -0,0 +1,189 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.controller;
+
+import com.wattzap.model.Clock;
+import com.wattzap.model.Readers;
+import com.wattzap.model.RiderProfile;
+import com.wattzap.model.SelectableDataSource;
+import com.wattzap.model.SourceDataEnum;
+import com.wattzap.model.SourceDataHandler;
+import com.wattzap.model.SourceDataHandlerIntf;
+import com.wattzap.model.SubsystemIntf;
+import com.wattzap.model.TelemetryProvider;
+import com.wattzap.model.UserPreferences;
+import com.wattzap.model.dto.TelemetryJournal;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Single rider session: own message bus, telemetry provider (with its own
+ * thread), handlers, route readers and journal. Application runs on the
+ * default pipeline (MessageBus.INSTANCE and TelemetryProvider.INSTANCE),
+ * sessions are used for other riders on the same machine.
+ * Each session has own rider profile (weight, wheel size, FTP, trainer) and
+ * training state (running, pause), they are never written to the preferences.
+ * Subsystems (ANT+ stick), other configuration changes and application exit
+ * are shared: these messages are forwarded from application bus. Sensors of
+ * the rider must have uniq names, they are selected by setSource().
+ */
+public class Session implements MessageCallback {
+	private static final Logger logger = LogManager.getLogger("Session");
+
+    private final String name;
+    private final MessageBus bus;
+    private final RiderProfile profile;
+    private final TelemetryProvider provider;
+    private final Readers readers;
+    private final TrainingController controller;
+    private final List<SourceDataHandler> handlers = new ArrayList<>();
+    private boolean initialized = false;
+
+    public Session(String name) {
+        this(name, Clock.SYSTEM);
+    }
+
+    public Session(String name, Clock clock) {
+        this(name, clock,
+                UserPreferences.getWD() + "/journal-" + name + TelemetryJournal.EXTENSION);
+    }
+
+    // journal is kept when session is closed without save, ride can be
+    // recovered later
+    public Session(String name, Clock clock, String journalName) {
+        this.name = name;
+        bus = new MessageBus(name);
+        profile = new RiderProfile(bus);
+        provider = new TelemetryProvider("TelemetryProvider-" + name, bus, profile);
+        provider.setClock(clock);
+        readers = new Readers(provider);
+        controller = new TrainingController(null, provider, journalName);
+    }
+
+    public String getName() {
+        return name;
+    }
+    public MessageBus getBus() {
+        return bus;
+    }
+    // rider properties of the session, copied from the preferences
+    public RiderProfile getProfile() {
+        return profile;
+    }
+    public TelemetryProvider getProvider() {
+        return provider;
+    }
+    public TrainingController getController() {
+        return controller;
+    }
+
+    // handler selected for the data (instead of one from the preferences)
+    public Session setSource(SourceDataEnum data, String handlerName) {
+        assert !initialized : "Session already initialized";
+        provider.setSource(data, handlerName);
+        return this;
+    }
+
+    // handler is created for the session, it is initialized with session
+    public Session addHandler(SourceDataHandler handler) {
+        assert !initialized : "Session already initialized";
+        handler.setProvider(provider);
+        handlers.add(handler);
+        return this;
+    }
+
+    // all selectable handlers (speed/power profiles, checkers, etc)
+    public Session addSelectableHandlers() {
+        for (SourceDataHandlerIntf handler : SelectableDataSource.createHandlers()) {
+            addHandler((SourceDataHandler) handler);
+        }
+        return this;
+    }
+
+    public Session initialize() {
+        initialized = true;
+        provider.initialize();
+
+        // shared subsystems and configuration
+        MessageBus.INSTANCE.register(Messages.SUBSYSTEM, this);
+        MessageBus.INSTANCE.register(Messages.SUBSYSTEM_REMOVED, this);
+        MessageBus.INSTANCE.register(Messages.CONFIG_CHANGED, this);
+        MessageBus.INSTANCE.register(Messages.EXIT_APP, this);
+        for (SubsystemIntf subsystem : TelemetryProvider.INSTANCE.getSubsystems()) {
+            bus.send(Messages.SUBSYSTEM, subsystem);
+        }
+
+        readers.initialize();
+        for (SourceDataHandler handler : handlers) {
+            handler.initialize();
+        }
+        logger.info(name + ":: session with " + handlers.size() + " handlers");
+        return this;
+    }
+
+    // load route for the rider, null is returned if succeeded
+    public String load(String fileName) {
+        return readers.load(fileName);
+    }
+
+    public void start() {
+        bus.send(Messages.START, null);
+    }
+
+    public void stop() {
+        bus.send(Messages.STOP, null);
+    }
+
+    /**
+     * Stops the session, and releases all handlers. If requested training is
+     * saved and journal is cleared.
+     */
+    public void close(boolean save) {
+        MessageBus.INSTANCE.unregister(Messages.SUBSYSTEM, this);
+        MessageBus.INSTANCE.unregister(Messages.SUBSYSTEM_REMOVED, this);
+        MessageBus.INSTANCE.unregister(Messages.CONFIG_CHANGED, this);
+        MessageBus.INSTANCE.unregister(Messages.EXIT_APP, this);
+
+        if (provider.isRunning()) {
+            stop();
+        }
+        bus.send(Messages.CLOSE, null);
+        if (save) {
+            controller.saveWorkout(null);
+            controller.clearJournal(null);
+        }
+        controller.closeJournal();
+        for (int i = handlers.size() - 1; i >= 0; i--) {
+            handlers.get(i).release();
+        }
+        readers.release();
+        bus.getStatistics().close();
+        logger.info(name + ":: session closed");
+    }
+
+    @Override
+    public void callback(Messages m, Object o) {
+        // rider properties are changed in the profile of the session only
+        if ((m == Messages.CONFIG_CHANGED) &&
+                RiderProfile.isScoped((UserPreferences) o)) {
+            return;
+        }
+        // forward messages from application bus
+        bus.send(m, o);
+    }
+}
@@ -16,16 +16,21 @@
 package com.wattzap.controller;
 
 import com.wattzap.PopupMessage;
+import com.wattzap.model.LiveAnalysis;
 import com.wattzap.model.PauseMsgEnum;
 import com.wattzap.model.RouteReader;
 import com.wattzap.model.SourceDataEnum;
 import com.wattzap.model.TelemetryProvider;
+import com.wattzap.model.TelemetryScheduler;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
 
 import com.wattzap.model.UserPreferences;
 import com.wattzap.model.dto.Telemetry;
+import com.wattzap.model.dto.JournalWriter;
+import com.wattzap.model.dto.TelemetryJournal;
+import com.wattzap.model.dto.TelemetryStore;
 import com.wattzap.model.dto.WorkoutData;
 import com.wattzap.utils.TcxWriter;
 import com.wattzap.view.Workouts;
@@ -33,11 +38,10 @@ import com.wattzap.view.training.TrainingAnalysis;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
@@ -67,15 +71,28 @@ public class TrainingController implements ActionListener, MessageCallback {
     public final static String clear = "C";
     public final static String pause = "P";
 
-    // telemetries, starts from starting time (not from 0 as in telemetries)
-    private final List<Telemetry> data = new ArrayList<>();
+    // telemetries, starts from starting time (not from 0 as in telemetries).
+    // Telemetries recovered from the journal are in front of the recorded
+    // ones, they are decoded from the encoded blocks when accessed.
+    private final TelemetryStore data = new TelemetryStore();
+    // time of last telemetry
+    private long lastTime = 0;
+    // metrics of the data, updated with each telemetry
+    private final LiveAnalysis live;
+    // minimal time between recorded telemetries [ms]
+    private volatile long recordInterval = 1000;
 
     private final PopupMessage popup;
+    // application or session pipeline the data comes from
+    private final TelemetryProvider provider;
+    private final MessageBus bus;
+    private final String journalName;
 
     // journal file with "stored" data. Used by "recover" action in case of
-    // fatal-exit condition.
-    private ObjectOutputStream oos = null;
-    private boolean oosCreate = true;
+    // fatal-exit condition. It is written by own thread.
+    private static final int JOURNAL_QUEUE = 256;
+    private JournalWriter journal = null;
+    private boolean journalCreate = true;
 
     // Name of last training file. Stored in DB when saved.
     private String lastName = null;
@@ -87,16 +104,30 @@ public class TrainingController implements ActionListener, MessageCallback {
 	private Workouts workouts = null;
 
     public TrainingController(PopupMessage popup) {
+        this(popup, TelemetryProvider.INSTANCE,
+                UserPreferences.getWD() + "/journal" + TelemetryJournal.EXTENSION);
+        migrateJournal(UserPreferences.getWD() + "/journal.ser");
+    }
+
+    public TrainingController(PopupMessage popup, TelemetryProvider provider,
+            String journalName) {
 		this.popup = popup;
+        this.provider = provider;
+        this.bus = provider.getBus();
+        this.journalName = journalName;
+        live = new LiveAnalysis(provider.getProfile());
 
         // store all telemetries
-		MessageBus.INSTANCE.register(Messages.TELEMETRY, this);
+		bus.register(Messages.TELEMETRY, this);
         // handle requests for telemetry data
-        MessageBus.INSTANCE.register(Messages.TD_REQ, this);
+        bus.register(Messages.TD_REQ, this);
         // to get name for the file, this name is stored in the database
-		MessageBus.INSTANCE.register(Messages.GPXLOAD, this);
+		bus.register(Messages.GPXLOAD, this);
         // clean up.. App is finishing..
-        MessageBus.INSTANCE.register(Messages.EXIT_APP, this);
+        bus.register(Messages.EXIT_APP, this);
+        // recording rate and journal writer settings
+        bus.register(Messages.CONFIG_CHANGED, this);
+        configChanged(UserPreferences.INSTANCE);
 	}
 
     @Override
@@ -105,19 +136,18 @@ public class TrainingController implements ActionListener, MessageCallback {
 
         // replace with java 7 (?) switch/case?
         if (start.equals(command)) {
-            MessageBus.INSTANCE.send(Messages.START, null);
+            bus.send(Messages.START, null);
 
         } else if (stop.equals(command)) {
-            MessageBus.INSTANCE.send(Messages.STOP, null);
+            bus.send(Messages.STOP, null);
 
         } else if (save.equals(command)) {
             saveWorkout(popup);
 
 		} else if (analyze.equals(command)) {
-			List<Telemetry> data = getData();
-			WorkoutData wData = TrainingAnalysis.analyze(data);
+			WorkoutData wData = live.getWorkoutData();
 			if (wData != null) {
-				wData.setFtp(UserPreferences.INSTANCE.getMaxPower());
+				wData.setFtp(provider.getProfile().getMaxPower());
                 if (analysis == null) {
                     analysis = new TrainingAnalysis();
                 }
@@ -132,7 +162,7 @@ public class TrainingController implements ActionListener, MessageCallback {
 			loadJournal(popup);
 
         } else if (pause.equals(command)) {
-            UserPreferences.MANUAL_PAUSE.setPaused(!UserPreferences.INSTANCE.isPaused());
+            provider.getProfile().setPaused(!provider.getProfile().isPaused());
 
         } else if (view.equals(command)) {
 			if (workouts == null) {
@@ -143,14 +173,14 @@ public class TrainingController implements ActionListener, MessageCallback {
 		}
 	}
 
+	// read-only snapshot of the data, it is not copied
 	public List<Telemetry> getData() {
-        synchronized(data) {
-    		return new ArrayList<Telemetry>(data);
-        }
+		return data.snapshot();
 	}
 
     /*
-	 * Save every one point for every second
+	 * Save telemetries with recording rate (not more often than telemetry
+     * rate)
      *
 	 * Collection contains telemetries with "wall" time, pauses are not
      * counted..
@@ -164,7 +194,7 @@ public class TrainingController implements ActionListener, MessageCallback {
 
         // current time is start time in case of first update
         if (startTime == 0) {
-            startTime = System.currentTimeMillis();
+            startTime = provider.getClock().currentTimeMillis();
         }
 
         // in data (and journal as well) time starts from startTime (when
@@ -174,46 +204,136 @@ public class TrainingController implements ActionListener, MessageCallback {
         long time = t.getTime() + startTime;
 
         // don't add telemetry too often..
-        Telemetry tt;
+        Telemetry stored;
         synchronized(data) {
-            if (!data.isEmpty()) {
-                Telemetry tn = data.get(data.size() - 1);
-                if (time < tn.getTime() + 1000) {
-                    return;
-                }
+            if ((!data.isEmpty()) && (time < lastTime + recordInterval)) {
+                return;
             }
-            tt = new Telemetry(t);
-            tt.setTime(time);
-            data.add(tt);
+            stored = data.get(data.add(t, time));
+            lastTime = time;
+            live.add(stored);
         }
-        storeTelemetry(tt);
+        bus.send(Messages.ANALYSIS, live);
+        // stored row is a new object, not modified later: it is written to
+        // the journal by another thread
+        storeTelemetry(stored);
     }
 
-    private static String getJournalName() {
-        return UserPreferences.getWD() + "/journal.ser";
+    private String getJournalName() {
+        return journalName;
+    }
+
+    /**
+     * Converts journal written by previous versions (serialized telemetries)
+     * into the new journal, so unfinished ride can be recovered after the
+     * upgrade. Old file is deleted when converted, it is kept (and user is
+     * told about it) if it cannot be read. Existing new journal is never
+     * overwritten.
+     */
+    private void migrateJournal(String oldName) {
+        File oldFile = new File(oldName);
+        if ((!oldFile.isFile()) || new File(getJournalName()).exists()) {
+            return;
+        }
+        List<Telemetry> old = new ArrayList<>();
+        try (ObjectInputStream in = new ObjectInputStream(
+                new FileInputStream(oldFile))) {
+            Telemetry t;
+            while ((t = (Telemetry) in.readObject()) != null) {
+                old.add(t);
+            }
+        } catch (EOFException e) {
+            // end of the journal (or torn tail), all good records were read
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            if (old.isEmpty()) {
+                logger.error(e + ":: Cannot convert " + oldName + ", "
+                        + e.getLocalizedMessage());
+                if (popup != null) {
+                    popup.showWarning("Journal", "Cannot convert journal of "
+                            + "previous version, it is left in " + oldName);
+                }
+                return;
+            }
+            // broken tail, records read so far are converted
+            logger.warn(oldName + " broken after " + old.size() + " records");
+        }
+        if (old.isEmpty()) {
+            oldFile.delete();
+            return;
+        }
+        try (TelemetryJournal file = TelemetryJournal.create(getJournalName())) {
+            file.append(old);
+        } catch (IOException e) {
+            logger.error(e + ":: Cannot write " + getJournalName() + ", "
+                    + e.getLocalizedMessage());
+            new File(getJournalName()).delete();
+            return;
+        }
+        if (!oldFile.delete()) {
+            logger.error("Cannot delete " + oldName);
+        }
+        logger.info("Converted " + old.size() + " records of " + oldName
+                + " into " + getJournalName());
     }
 
     // store telemetry with "wall-clock" time
     private void storeTelemetry(Telemetry t) {
-        if (oosCreate && (oos == null)) {
-            oosCreate = false;
+        if (journalCreate && (journal == null)) {
+            journalCreate = false;
             try {
-                FileOutputStream fout = new FileOutputStream(
-                        getJournalName(), false);
-                oos = new ObjectOutputStream(fout);
-            } catch (Exception e) {
+                startJournal(TelemetryJournal.create(getJournalName()));
+            } catch (IOException e) {
                 logger.error(e + ":: Can't create journal file "
                         + e.getLocalizedMessage());
             }
         }
-        if (oos != null) {
-            try {
-                oos.writeObject(t);
-            } catch (Exception e) {
-                // TODO Auto-generated catch block
-                logger.error(e + "Can't write telemetry data to journal "
-                        + e.getLocalizedMessage());
+        if (journal != null) {
+            journal.offer(t);
+        }
+    }
+
+    private void startJournal(TelemetryJournal file) {
+        journal = new JournalWriter(file, JOURNAL_QUEUE);
+        configChanged(UserPreferences.INSTANCE);
+    }
+
+    private void configChanged(UserPreferences pref) {
+        if ((pref == UserPreferences.INSTANCE) ||
+                (pref == UserPreferences.RECORD_RATE) ||
+                (pref == UserPreferences.TELEMETRY_RATE)) {
+            int rate = Math.min(UserPreferences.RECORD_RATE.getInt(),
+                    UserPreferences.TELEMETRY_RATE.getInt());
+            recordInterval = 1000 / TelemetryScheduler.checkRate(rate);
+        }
+        if (journal == null) {
+            return;
+        }
+        if ((pref == UserPreferences.INSTANCE) ||
+                (pref == UserPreferences.JOURNAL_GROUP)) {
+            journal.setGroupSize(UserPreferences.JOURNAL_GROUP.getInt());
+        }
+        if ((pref == UserPreferences.INSTANCE) ||
+                (pref == UserPreferences.JOURNAL_DELAY)) {
+            journal.setDelay(UserPreferences.JOURNAL_DELAY.getInt());
+        }
+        if ((pref == UserPreferences.INSTANCE) ||
+                (pref == UserPreferences.JOURNAL_FSYNC)) {
+            journal.setSync(UserPreferences.JOURNAL_FSYNC.getBool());
+        }
+    }
+
+    /**
+     * All records are written to the journal and it is closed. Journal is
+     * opened again by loadJournal() or when new data arrives.
+     */
+    public void closeJournal() {
+        synchronized(data) {
+            if (journal != null) {
+                journal.close();
+                logger.info(journal.toString());
+                journal = null;
             }
+            journalCreate = true;
         }
     }
 
@@ -239,14 +359,14 @@ public class TrainingController implements ActionListener, MessageCallback {
         TcxWriter writer = new TcxWriter();
         String fileName = writer.save(data, withGpsData);
         logger.debug("Save workout to " + fileName);
-        WorkoutData workoutData = TrainingAnalysis.analyze(data);
+        WorkoutData workoutData = live.getWorkoutData();
         workoutData.setTcxFile(fileName);
-        workoutData.setFtp(UserPreferences.INSTANCE.getMaxPower());
+        workoutData.setFtp(provider.getProfile().getMaxPower());
         workoutData.setDescription(lastName);
         UserPreferences.INSTANCE.addWorkout(workoutData);
         // send notification with changed workout. It refreshes list of
         // workouts.
-        MessageBus.INSTANCE.send(Messages.WORKOUT_DATA, workoutData);
+        bus.send(Messages.WORKOUT_DATA, workoutData);
 
         if (popup != null) {
             popup.showMessage("Workout Saved", "Saved workout to " + fileName);
@@ -258,21 +378,14 @@ public class TrainingController implements ActionListener, MessageCallback {
         synchronized(data) {
             noData = data.isEmpty();
             if (!noData) {
-                // close oos if exists
-                if (oos != null) {
-                    try {
-                        oos.close();
-                    } catch (IOException e) {
-                        logger.error("Can't close journal file "
-                                + e.getLocalizedMessage());
-                    }
-                    oos = null;
-                }
+                // close journal if exists
+                closeJournal();
                 File journal = new File(getJournalName());
                 if (!journal.delete()) {
                     logger.error("Cannot delte journal file");
                 }
                 data.clear();
+                live.clear();
                 startTime = 0;
             }
         }
@@ -282,14 +395,15 @@ public class TrainingController implements ActionListener, MessageCallback {
             }
         } else {
             // start "brand new" session
-            TelemetryProvider.INSTANCE.setDistanceTime(0.0, 0);
+            provider.setDistanceTime(0.0, 0);
             // and updata "new" data in all interfaces
-            MessageBus.INSTANCE.send(Messages.TD, getData());
+            bus.send(Messages.TD, getData());
+            bus.send(Messages.ANALYSIS, live);
         }
     }
 
     public void loadJournal(PopupMessage popup) {
-        if ((oos != null) || (startTime != 0)) {
+        if ((journal != null) || (startTime != 0)) {
             if (popup != null) {
                 popup.showMessage("Info", "Logging already started");
             }
@@ -299,33 +413,31 @@ public class TrainingController implements ActionListener, MessageCallback {
         int entries = 0;
         synchronized(data) {
             data.clear();
+            live.clear();
+            List<Telemetry> recovered = Collections.<Telemetry>emptyList();
             Telemetry t = null;
 
-            ObjectInputStream objectInputStream = null;
+            // journal is read and validated, torn tail is cut off and new
+            // records are appended to the same file
             try {
-                FileInputStream streamIn = new FileInputStream(
-                        getJournalName());
-                objectInputStream = new ObjectInputStream(streamIn);
-
-                while ((t = (Telemetry) objectInputStream.readObject()) != null) {
-                    data.add(t);
-                    if (startTime == 0) {
-                        startTime = t.getTime();
-                    }
+                TelemetryJournal file = TelemetryJournal.open(getJournalName());
+                recovered = file.getRecovered();
+                data.setPrefix(recovered);
+                journalCreate = false;
+                if (file.getTornBytes() != 0) {
+                    logger.warn("Journal tail of " + file.getTornBytes()
+                            + " bytes discarded");
                 }
-            } catch (EOFException ex) {
-                // nothing.. just normal response..
-            } catch (Exception e) {
+                startJournal(file);
+            } catch (IOException e) {
+                // journal is created (overwritten) with first record
                 logger.error(e + ":: cannot read " + e.getLocalizedMessage());
-            } finally {
-                logger.debug("read " + data.size() + " records");
-                if (objectInputStream != null) {
-                    try {
-                        objectInputStream.close();
-                    } catch (IOException e) {
-                        logger.error(e + ":: Cannot close " + e.getLocalizedMessage());
-                    }
-                }
+            }
+            logger.debug("read " + recovered.size() + " records");
+            if (!recovered.isEmpty()) {
+                t = recovered.get(recovered.size() - 1);
+                startTime = recovered.get(0).getTime();
+                lastTime = t.getTime();
             }
 
             if (t == null) {
@@ -335,16 +447,12 @@ public class TrainingController implements ActionListener, MessageCallback {
             } else {
                 logger.debug("Start time " + SourceDataEnum.TIME.format((double) startTime, true));
                 // restore previous location and time (for training)
-                TelemetryProvider.INSTANCE.setDistanceTime(
+                provider.setDistanceTime(
                         t.getDistance(), t.getTime() - startTime);
-                entries = data.size();
-            }
-
-            // rebuild journal file from the scratch.. sometimes it is broken,
-            // thus cannot append to the existing file
-            if (data != null) {
-                for (Telemetry tt : data) {
-                    storeTelemetry(tt);
+                entries = recovered.size();
+                // single pass, metrics are updated by new data later
+                for (Telemetry r : recovered) {
+                    live.add(r);
                 }
             }
         }
@@ -356,7 +464,8 @@ public class TrainingController implements ActionListener, MessageCallback {
                 popup.showWarning("Info", "Cannot recover any data");
             }
         }
-        MessageBus.INSTANCE.send(Messages.TD, getData());
+        bus.send(Messages.TD, getData());
+        bus.send(Messages.ANALYSIS, live);
 	}
 
     @Override
@@ -391,15 +500,21 @@ public class TrainingController implements ActionListener, MessageCallback {
             UserPreferences.EVAL_TIME.setEvalTime(minutes);
             */
 
-            MessageBus.INSTANCE.send(Messages.STOP, null);
+            bus.send(Messages.STOP, null);
             // close training file
-            MessageBus.INSTANCE.send(Messages.CLOSE, null);
+            bus.send(Messages.CLOSE, null);
 
             // save current training and clear journal.
             if (UserPreferences.AUTO_SAVE.autosave()) {
                 saveWorkout(null);
                 clearJournal(null);
             }
+            // flush all waiting records
+            closeJournal();
+            break;
+
+        case CONFIG_CHANGED:
+            configChanged((UserPreferences) o);
             break;
         }
     }
@@ -0,0 +1,50 @@
+/*
+ * This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wattzap.model;
+
+/**
+ * Time source of the telemetry pipeline. System clock is used by default,
+ * replay uses VirtualClock, which runs as fast as possible.
+ */
+public class Clock {
+    public static final Clock SYSTEM = new Clock();
+
+    // wall-clock time [ms]
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    // monotonic time [ns]
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    public void sleep(long millis) throws InterruptedException {
+        Thread.sleep(millis);
+    }
+
+    /**
+     * Waits until given nanoTime. Monitor must be locked by the caller, wait
+     * can be finished earlier by notify() on the monitor.
+     */
+    public void waitUntil(Object monitor, long deadline) throws InterruptedException {
+        long wait = deadline - nanoTime();
+        if (wait > 0) {
+            monitor.wait(wait / 1000000L, (int) (wait % 1000000L));
+        }
+    }
+}
@@ -22,7 +22,11 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import javax.crypto.Cipher;
@@ -34,7 +38,9 @@ import javax.xml.bind.DatatypeConverter;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
+import com.wattzap.model.dto.PowerCurve;
 import com.wattzap.model.dto.WorkoutData;
+import com.wattzap.model.dto.WorkoutFilter;
 
 /**
  * (c) 2013 David George / Wattzap.com
@@ -49,10 +55,23 @@ public class DataStore {
 	Connection conn = null;
 	private static Cipher cipher = null; // in javax.crypto
 	SecretKey secretKey = null;
+	// prepared statements, by SQL
+	private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+	private static final String INSERT_PROP = "INSERT INTO props (v, username, k) values(  ?, ?, ?)";
+	private static final String UPDATE_PROP = "UPDATE props SET v=? WHERE username=? and k=?";
+	private static final String DELETE_PROP = "DELETE FROM props WHERE username=? and k=?";
 
 	private Logger logger = LogManager.getLogger("DataStore");
 
 	public DataStore(String wd, String key) {
+		// startup phases [ns]: cipher, driver, connection (and database
+		// creation), migration
+		long start = System.nanoTime();
+		long cipherTime = 0;
+		long driverTime = 0;
+		long connectTime = 0;
+
 		SecretKeyFactory keyGenerator;
 		try {
 			keyGenerator = SecretKeyFactory.getInstance("DES");
@@ -66,11 +85,13 @@ public class DataStore {
 			logger.error(e.getLocalizedMessage());
 		}
 
+		cipherTime = System.nanoTime();
 		try {
 			Class.forName(driver).newInstance();
 		} catch (Exception e) {
 			logger.error(e.getLocalizedMessage());
 		}
+		driverTime = System.nanoTime();
 
 		Statement s1 = null;
 		Statement s2 = null;
@@ -91,12 +112,14 @@ public class DataStore {
 				s1.execute("create table props(username varchar(64), k varchar(128), v varchar(128), primary key (username, k))");
 			}
 
+			connectTime = System.nanoTime();
 			String dbVersion = getProp("", "dbVersion");
 			if (dbVersion == null) {
 				s2 = conn.createStatement();
 				s2.execute(WorkoutData.dbTable12());
 
 				insertProp("", "dbVersion", "1.3");
+				dbVersion = "1.3";
 			} else if (dbVersion.equals("1.2")){
 				s2 = conn.createStatement();
 
@@ -104,6 +127,33 @@ public class DataStore {
 				//System.out.println("adding column");
 				s2.execute("ALTER TABLE workouts ADD COLUMN source INTEGER  DEFAULT 1");
 				insertProp("", "dbVersion", "1.3");
+				dbVersion = "1.3";
+			}
+			// history is queried by date
+			if (dbVersion.equals("1.3")) {
+				if (s2 == null) {
+					s2 = conn.createStatement();
+				}
+				s2.execute(WorkoutData.dateIndex());
+				insertProp("", "dbVersion", "1.4");
+				dbVersion = "1.4";
+			}
+			// power-duration curves
+			if (dbVersion.equals("1.4")) {
+				if (s2 == null) {
+					s2 = conn.createStatement();
+				}
+				s2.execute(WorkoutData.curveColumn());
+				insertProp("", "dbVersion", "1.5");
+				dbVersion = "1.5";
+			}
+			// imported files are recognized by content
+			if (dbVersion.equals("1.5")) {
+				if (s2 == null) {
+					s2 = conn.createStatement();
+				}
+				s2.execute(WorkoutData.hashColumn());
+				insertProp("", "dbVersion", "1.6");
 			}
 
 		} catch (SQLException sqle) {
@@ -125,6 +175,47 @@ public class DataStore {
 				logger.error(sqle.getLocalizedMessage());
 			}
 		}
+		long end = System.nanoTime();
+		if (connectTime == 0) {
+			connectTime = end;
+		}
+		logger.info("Data Store started in " + (end - start) / 1000000L
+				+ "ms: cipher " + (cipherTime - start) / 1000000L
+				+ "ms, driver " + (driverTime - cipherTime) / 1000000L
+				+ "ms, connect " + (connectTime - driverTime) / 1000000L
+				+ "ms, migration " + (end - connectTime) / 1000000L + "ms");
+	}
+
+	/**
+	 * Statement is prepared once and kept until the store is closed, so
+	 * Derby doesn't look for the plan each time. Statements are shared, all
+	 * the methods using them are synchronized.
+	 */
+	private PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement s = statements.get(sql);
+		if (s == null) {
+			s = conn.prepareStatement(sql);
+			statements.put(sql, s);
+		}
+		return s;
+	}
+
+	private void close(ResultSet rs) {
+		try {
+			if (rs != null) {
+				rs.close();
+			}
+		} catch (SQLException e) {
+			logger.error(e.getLocalizedMessage());
+		}
+	}
+
+	private void rollback() {
+		try {
+			conn.rollback();
+		} catch (SQLException e) {
+			logger.error(e.getLocalizedMessage());
+		}
 	}
 
 	/*
@@ -136,223 +227,331 @@ public class DataStore {
 	 * "bike_score double)");
 	 */
 	public void saveWorkOut(String user, WorkoutData data) {
-		PreparedStatement psInsert = null;
-		try {
-
-			psInsert = conn.prepareStatement(WorkoutData.insert());
-
-			psInsert.setString(1, user);
-			psInsert.setString(2, data.getTcxFile());
-			// Power
-			psInsert.setInt(3, data.getFiveSecondPwr());
-			psInsert.setInt(4, data.getOneMinutePwr());
-			psInsert.setInt(5, data.getFiveMinutePwr());
-			psInsert.setInt(6, data.getTwentyMinutePwr());
-
-			psInsert.setInt(7, data.getQuadraticPower());
-			psInsert.setInt(8, data.getTotalPower());
-			psInsert.setInt(9, data.getMaxPower());
-			psInsert.setInt(10, data.getAvePower());
-			psInsert.setInt(11, data.getFtp());
-
-			psInsert.setInt(12, data.getMaxHR());
-			psInsert.setInt(13, data.getAveHR());
-			psInsert.setInt(14, data.getMinHR());
-			psInsert.setInt(15, data.getFtHR());
-
-			psInsert.setInt(16, data.getMaxCadence());
-			psInsert.setInt(17, data.getAveCadence());
-
-			psInsert.setDouble(18, data.getDistance());
-			psInsert.setDouble(19, data.getWeight());
+		saveWorkouts(user, Collections.singletonList(data));
+	}
 
-			psInsert.setTime(20, new java.sql.Time(data.getTime()));
-			psInsert.setDate(21, new java.sql.Date(data.getDate()));
+	/**
+	 * Inserts all the workouts in a single transaction (and single batch).
+	 * If any of them cannot be inserted (eg. it already exists) none is
+	 * stored.
+	 *
+	 * @return false if transaction failed
+	 */
+	public synchronized boolean saveWorkouts(String user, List<WorkoutData> list) {
+		if (list.isEmpty()) {
+			return true;
+		}
+		boolean autoCommit = true;
+		try {
+			autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
 
-			psInsert.setString(22, data.getDescription());
-			psInsert.setInt(23, data.getSource()); // Wattzap
-			int i = psInsert.executeUpdate();
+			PreparedStatement psInsert = prepare(WorkoutData.insert());
+			for (WorkoutData data : list) {
+				setWorkout(psInsert, user, data);
+				psInsert.addBatch();
+			}
+			psInsert.executeBatch();
 
 			conn.commit();
+			return true;
 		} catch (SQLException e) {
-			logger.error(e.getLocalizedMessage());
+			logger.error("Cannot save " + list.size() + " workouts, "
+					+ e.getLocalizedMessage());
+			rollback();
+			return false;
 		} finally {
 			try {
-				if (psInsert != null) {
-					psInsert.close();
-				}
+				conn.setAutoCommit(autoCommit);
 			} catch (SQLException e) {
 				logger.error(e.getLocalizedMessage());
 			}
 		}
 	}
 
-	public WorkoutData getWorkout(String user, String name) {
-		PreparedStatement s = null;
-		ResultSet rs = null;
+	private static void setWorkout(PreparedStatement psInsert, String user,
+			WorkoutData data) throws SQLException {
+		psInsert.setString(1, user);
+		psInsert.setString(2, data.getTcxFile());
+		// Power
+		psInsert.setInt(3, data.getFiveSecondPwr());
+		psInsert.setInt(4, data.getOneMinutePwr());
+		psInsert.setInt(5, data.getFiveMinutePwr());
+		psInsert.setInt(6, data.getTwentyMinutePwr());
+
+		psInsert.setInt(7, data.getQuadraticPower());
+		psInsert.setInt(8, data.getTotalPower());
+		psInsert.setInt(9, data.getMaxPower());
+		psInsert.setInt(10, data.getAvePower());
+		psInsert.setInt(11, data.getFtp());
+
+		psInsert.setInt(12, data.getMaxHR());
+		psInsert.setInt(13, data.getAveHR());
+		psInsert.setInt(14, data.getMinHR());
+		psInsert.setInt(15, data.getFtHR());
+
+		psInsert.setInt(16, data.getMaxCadence());
+		psInsert.setInt(17, data.getAveCadence());
+
+		psInsert.setDouble(18, data.getDistance());
+		psInsert.setDouble(19, data.getWeight());
+
+		psInsert.setTime(20, new java.sql.Time(data.getTime()));
+		psInsert.setDate(21, new java.sql.Date(data.getDate()));
+
+		psInsert.setString(22, data.getDescription());
+		psInsert.setInt(23, data.getSource()); // Wattzap
+		PowerCurve curve = data.getPowerCurve();
+		psInsert.setString(24, (curve == null) ? null : curve.encode());
+		psInsert.setString(25, data.getHash());
+	}
 
-		WorkoutData data = null;
+	// username, filename, fivesecp, oneminp, fiveminp, twentyminp, qp ,
+	// totalp,
+	// maxp, avep, ftp, maxhr, avehr, minhr, fthr, maxcad, avecad,
+	// distance, weight, ridetime,
+	// ridedate, primary key (username, filename))";
+	private static WorkoutData readWorkout(ResultSet rs) throws SQLException {
+		WorkoutData data = new WorkoutData();
+		data.setTcxFile(rs.getString(2));
+		data.setFiveSecondPwr(rs.getInt(3));
+		data.setOneMinutePwr(rs.getInt(4));
+		data.setFiveMinutePwr(rs.getInt(5));
+		data.setTwentyMinutePwr(rs.getInt(6));
+		data.setQuadraticPower(rs.getInt(7));
+		data.setTotalPower(rs.getInt(8));
+		data.setMaxPower(rs.getInt(9));
+		data.setAvePower(rs.getInt(10));
+		data.setFtp(rs.getInt(11));
+
+		data.setMaxHR(rs.getInt(12));
+		data.setAveHR(rs.getInt(13));
+		data.setMinHR(rs.getInt(14));
+		data.setFtHR(rs.getInt(15));
+
+		data.setMaxCadence(rs.getInt(16));
+		data.setAveCadence(rs.getInt(17));
+
+		data.setDistance(rs.getDouble(18));
+		data.setWeight(rs.getDouble(19));
+		data.setTime(rs.getTime(20).getTime());
+		data.setDate(rs.getDate(21).getTime());
+
+		data.setDescription(rs.getString(22));
+		data.setSource(rs.getInt(23));
+		data.setPowerCurve(PowerCurve.decode(rs.getString(24)));
+		data.setHash(rs.getString(25));
+		return data;
+	}
 
+	public synchronized WorkoutData getWorkout(String user, String name) {
+		ResultSet rs = null;
+		WorkoutData data = null;
 		try {
-			s = conn.prepareStatement(WorkoutData.selectWorkout());
+			PreparedStatement s = prepare(WorkoutData.selectWorkout());
 			s.setString(1, user);
 			s.setString(2, name);
 			rs = s.executeQuery();
 
 			while (rs.next()) {
-				data = new WorkoutData();
-				data.setTcxFile(rs.getString(2));
-				data.setFiveSecondPwr(rs.getInt(3));
-				data.setOneMinutePwr(rs.getInt(4));
-				data.setFiveMinutePwr(rs.getInt(5));
-				data.setTwentyMinutePwr(rs.getInt(6));
-				data.setQuadraticPower(rs.getInt(7));
-				data.setTotalPower(rs.getInt(8));
-				data.setMaxPower(rs.getInt(9));
-				data.setAvePower(rs.getInt(10));
-				data.setFtp(rs.getInt(11));
-
-				data.setMaxHR(rs.getInt(12));
-				data.setAveHR(rs.getInt(13));
-				data.setMinHR(rs.getInt(14));
-				data.setFtHR(rs.getInt(15));
-
-				data.setMaxCadence(rs.getInt(16));
-				data.setAveCadence(rs.getInt(17));
-
-				data.setDistance(rs.getDouble(18));
-				data.setWeight(rs.getDouble(19));
-				data.setTime(rs.getTime(20).getTime());
-				data.setDate(rs.getDate(21).getTime());
-
-				data.setDescription(rs.getString(22));
-				data.setSource(rs.getInt(23));
+				data = readWorkout(rs);
 			}
 		} catch (SQLException e) {
 			logger.error(e.getLocalizedMessage());
 		} finally {
-			try {
-				if (s != null) {
-					s.close();
-				}
-				if (rs != null) {
-					rs.close();
-				}
-			} catch (SQLException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+			close(rs);
 		}
-
 		return data;
 	}
 
-	public WorkoutData deleteWorkout(String user, String name) {
-		PreparedStatement s = null;
-		ResultSet rs = null;
-
-		WorkoutData data = null;
-
+	public synchronized WorkoutData deleteWorkout(String user, String name) {
 		try {
-			s = conn.prepareStatement(WorkoutData.delete());
+			PreparedStatement s = prepare(WorkoutData.delete());
 			s.setString(1, user);
 			s.setString(2, name);
 			s.executeUpdate();
 		} catch (SQLException e) {
 			logger.error(e.getLocalizedMessage());
-		} finally {
-			try {
-				if (s != null) {
-					s.close();
-				}
-				if (rs != null) {
-					rs.close();
-				}
-			} catch (SQLException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
 		}
-
-		return data;
+		return null;
 	}
 
-	public List<WorkoutData> listWorkouts(String user) {
-		PreparedStatement s = null;
+	public synchronized List<WorkoutData> listWorkouts(String user) {
 		ResultSet rs = null;
-
 		List<WorkoutData> workouts = null;
-
 		try {
-			s = conn.prepareStatement(WorkoutData.select());
+			PreparedStatement s = prepare(WorkoutData.select());
 			s.setString(1, user);
-			// s.setString(2, k);
 			rs = s.executeQuery();
 
-			// username, filename, fivesecp, oneminp, fiveminp, twentyminp, qp ,
-			// totalp,
-			// maxp, avep, ftp, maxhr, avehr, minhr, fthr, maxcad, avecad,
-			// distance, weight, ridetime,
-			// ridedate, primary key (username, filename))";
-
 			workouts = new ArrayList<WorkoutData>();
 			while (rs.next()) {
-				WorkoutData data = new WorkoutData();
-				data.setTcxFile(rs.getString(2));
-				data.setFiveSecondPwr(rs.getInt(3));
-				data.setOneMinutePwr(rs.getInt(4));
-				data.setFiveMinutePwr(rs.getInt(5));
-				data.setTwentyMinutePwr(rs.getInt(6));
-				data.setQuadraticPower(rs.getInt(7));
-				data.setTotalPower(rs.getInt(8));
-				data.setMaxPower(rs.getInt(9));
-				data.setAvePower(rs.getInt(10));
-				data.setFtp(rs.getInt(11));
-
-				data.setMaxHR(rs.getInt(12));
-				data.setAveHR(rs.getInt(13));
-				data.setMinHR(rs.getInt(14));
-				data.setFtHR(rs.getInt(15));
-
-				data.setMaxCadence(rs.getInt(16));
-				data.setAveCadence(rs.getInt(17));
-
-				data.setDistance(rs.getDouble(18));
-				data.setWeight(rs.getDouble(19));
-				data.setTime(rs.getTime(20).getTime());
-				data.setDate(rs.getDate(21).getTime());
-
-				data.setDescription(rs.getString(22));
-				data.setSource(rs.getInt(23));
-
-				workouts.add(data);
+				workouts.add(readWorkout(rs));
 			}
 		} catch (SQLException e) {
 			logger.error(e.getLocalizedMessage());
 		} finally {
-			try {
-				if (s != null) {
-					s.close();
-				}
-				if (rs != null) {
-					rs.close();
-				}
-			} catch (SQLException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+			close(rs);
+		}
+		return workouts;
+	}
+
+	// conditions of the filter, all are joined with AND
+	private static String where(WorkoutFilter filter) {
+		StringBuilder where = new StringBuilder(" WHERE username = ?");
+		if (filter.getFromDate() != 0) {
+			where.append(" AND ridedate >= ?");
+		}
+		if (filter.getToDate() != 0) {
+			where.append(" AND ridedate <= ?");
+		}
+		if (filter.getSource() != 0) {
+			where.append(" AND source = ?");
+		}
+		if (filter.getMinPower() > 0) {
+			where.append(" AND qp >= ?");
+		}
+		if (filter.getRoute() != null) {
+			where.append(" AND UPPER(description) LIKE ?");
+		}
+		return where.toString();
+	}
+
+	private static int bind(PreparedStatement s, String user,
+			WorkoutFilter filter) throws SQLException {
+		int i = 1;
+		s.setString(i++, user);
+		if (filter.getFromDate() != 0) {
+			s.setDate(i++, new java.sql.Date(filter.getFromDate()));
+		}
+		if (filter.getToDate() != 0) {
+			s.setDate(i++, new java.sql.Date(filter.getToDate()));
+		}
+		if (filter.getSource() != 0) {
+			s.setInt(i++, filter.getSource());
+		}
+		if (filter.getMinPower() > 0) {
+			s.setInt(i++, filter.getMinPower());
+		}
+		if (filter.getRoute() != null) {
+			s.setString(i++, "%" + filter.getRoute().toUpperCase() + "%");
+		}
+		return i;
+	}
+
+	// number of workouts matching the filter
+	public synchronized int countWorkouts(String user, WorkoutFilter filter) {
+		ResultSet rs = null;
+		int count = 0;
+		try {
+			PreparedStatement s = prepare("SELECT COUNT(*) FROM workouts" + where(filter));
+			bind(s, user, filter);
+			rs = s.executeQuery();
+			if (rs.next()) {
+				count = rs.getInt(1);
 			}
+		} catch (SQLException e) {
+			logger.error(e.getLocalizedMessage());
+		} finally {
+			close(rs);
 		}
+		return count;
+	}
 
+	/**
+	 * Page of workouts matching the filter, ordered by date. Index on
+	 * (username, ridedate, filename) gives the order without sorting, rows
+	 * before offset are skipped by the database.
+	 */
+	public synchronized List<WorkoutData> listWorkouts(String user,
+			WorkoutFilter filter, int offset, int limit) {
+		ResultSet rs = null;
+		List<WorkoutData> workouts = new ArrayList<WorkoutData>();
+		try {
+			PreparedStatement s = prepare("SELECT * FROM workouts" + where(filter)
+					+ " ORDER BY ridedate, filename OFFSET ? ROWS FETCH NEXT ? ROWS ONLY");
+			int i = bind(s, user, filter);
+			s.setInt(i++, offset);
+			s.setInt(i++, limit);
+			rs = s.executeQuery();
+
+			while (rs.next()) {
+				workouts.add(readWorkout(rs));
+			}
+		} catch (SQLException e) {
+			logger.error(e.getLocalizedMessage());
+		} finally {
+			close(rs);
+		}
 		return workouts;
 	}
 
-    public List<String> getProperties(String user) {
-        List<String> list = new ArrayList<>();
-		PreparedStatement s = null;
+	// curve computed later, for workouts stored before curves were kept
+	public synchronized boolean updatePowerCurve(String user, String name,
+			PowerCurve curve) {
+		try {
+			PreparedStatement s = prepare(WorkoutData.updateCurve());
+			s.setString(1, curve.encode());
+			s.setString(2, user);
+			s.setString(3, name);
+			return s.executeUpdate() == 1;
+		} catch (SQLException e) {
+			logger.error(e.getLocalizedMessage());
+			return false;
+		}
+	}
+
+	/**
+	 * Content hashes of all workouts, by file name. Hash is null if workout
+	 * was not imported (or imported before hashes were kept).
+	 */
+	public synchronized Map<String, String> getWorkoutHashes(String user) {
 		ResultSet rs = null;
+		Map<String, String> hashes = new HashMap<String, String>();
+		try {
+			PreparedStatement s = prepare("SELECT filename, hash FROM workouts WHERE username = ?");
+			s.setString(1, user);
+			rs = s.executeQuery();
+			while (rs.next()) {
+				hashes.put(rs.getString(1), rs.getString(2));
+			}
+		} catch (SQLException e) {
+			logger.error(e.getLocalizedMessage());
+		} finally {
+			close(rs);
+		}
+		return hashes;
+	}
+
+	/**
+	 * Power curves of all workouts matching the filter, by file name. Only
+	 * these columns are read, curve is null if it was not computed yet.
+	 */
+	public synchronized Map<String, PowerCurve> getPowerCurves(String user,
+			WorkoutFilter filter) {
+		ResultSet rs = null;
+		Map<String, PowerCurve> curves = new LinkedHashMap<String, PowerCurve>();
+		try {
+			PreparedStatement s = prepare("SELECT filename, mmp FROM workouts"
+					+ where(filter));
+			bind(s, user, filter);
+			rs = s.executeQuery();
+			while (rs.next()) {
+				curves.put(rs.getString(1), PowerCurve.decode(rs.getString(2)));
+			}
+		} catch (SQLException e) {
+			logger.error(e.getLocalizedMessage());
+		} finally {
+			close(rs);
+		}
+		return curves;
+	}
 
+    public synchronized List<String> getProperties(String user) {
+        List<String> list = new ArrayList<>();
+		ResultSet rs = null;
 		try {
-			s = conn.prepareStatement("SELECT k FROM props WHERE username = ?");
+			PreparedStatement s = prepare("SELECT k FROM props WHERE username = ?");
 			s.setString(1, user);
 			rs = s.executeQuery();
 
@@ -363,22 +562,31 @@ public class DataStore {
 		} catch (SQLException e) {
 			logger.error(e.getLocalizedMessage());
 		} finally {
-			try {
-				if (s != null) {
-					s.close();
-				}
-				if (rs != null) {
-					rs.close();
-				}
-			} catch (SQLException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+			close(rs);
 		}
-
         return list;
     }
 
+	// all properties of the user, with (not decrypted) values
+	public synchronized Map<String, String> getProps(String user) {
+		Map<String, String> props = new HashMap<>();
+		ResultSet rs = null;
+		try {
+			PreparedStatement s = prepare("SELECT k, v FROM props WHERE username = ?");
+			s.setString(1, user);
+			rs = s.executeQuery();
+
+			while (rs.next()) {
+				props.put(rs.getString(1), rs.getString(2));
+			}
+		} catch (SQLException e) {
+			logger.error(e.getLocalizedMessage());
+		} finally {
+			close(rs);
+		}
+		return props;
+	}
+
 	/**
 	 * Encrypts values before writing to database using DES. If there is an
 	 * exception nothing is written.
@@ -388,53 +596,62 @@ public class DataStore {
 	 * @param v
 	 */
 	public void insertPropCrypt(String user, String k, String v) {
-		byte[] clearTextBytes;
+		v = encrypt(v);
+		if (v != null) {
+			insertProp(user, k, v);
+		}
+	}
+
+	/**
+	 * Encrypts the value with DES, cipher is shared so it is synchronized.
+	 *
+	 * @return encrypted value (as hex string), or null on exception
+	 */
+	public synchronized String encrypt(String v) {
 		try {
-			clearTextBytes = v.getBytes("UTF8");
+			byte[] clearTextBytes = v.getBytes("UTF8");
 			cipher.init(Cipher.ENCRYPT_MODE, secretKey);
 			byte[] cipherBytes = cipher.doFinal(clearTextBytes);
-			v = toHexString(cipherBytes);
-			insertProp(user, k, v);
+			return toHexString(cipherBytes);
 		} catch (Exception e) {
 			logger.error(e.getLocalizedMessage());
 		}
-
+		return null;
 	}
 
-	public void insertProp(String user, String k, String v) {
-		PreparedStatement psInsert = null;
+	/**
+	 * Updates the property, it is inserted only if doesn't exist yet. Derby
+	 * 10.10 has no MERGE, but existing properties are updated with single
+	 * statement.
+	 */
+	public synchronized void insertProp(String user, String k, String v) {
 		try {
-			int count = this.getRows(user, k);
-			if (count == 0) {
-				psInsert = conn
-						.prepareStatement("INSERT INTO props (v, username, k) values(  ?, ?, ?)");
-
-			} else {
-				psInsert = conn
-						.prepareStatement("UPDATE props SET v=? WHERE username=? and k=?");
-
+			if (updateProp(user, k, v) == 0) {
+				PreparedStatement psInsert = prepare(INSERT_PROP);
+				psInsert.setString(1, v);
+				psInsert.setString(2, user);
+				psInsert.setString(3, k);
+				psInsert.executeUpdate();
 			}
-			psInsert.setString(1, v);
-			psInsert.setString(2, user);
-			psInsert.setString(3, k);
-			int i = psInsert.executeUpdate();
-
 			conn.commit();
 		} catch (SQLException e) {
 			logger.error(e.getLocalizedMessage());
-		} finally {
-			try {
-				if (psInsert != null) {
-					psInsert.close();
-				}
-			} catch (SQLException e) {
-				logger.error(e.getLocalizedMessage());
-			}
 		}
 	}
 
+	private int updateProp(String user, String k, String v) throws SQLException {
+		PreparedStatement psUpdate = prepare(UPDATE_PROP);
+		psUpdate.setString(1, v);
+		psUpdate.setString(2, user);
+		psUpdate.setString(3, k);
+		return psUpdate.executeUpdate();
+	}
+
 	public String getPropCrypt(String user, String k) {
-		String v = getProp(user, k);
+		return decrypt(getProp(user, k));
+	}
+
+	private synchronized String decrypt(String v) {
 		try {
 			byte[] cipherBytes = toByteArray(v);
 			cipher.init(Cipher.DECRYPT_MODE, secretKey);
@@ -447,10 +664,9 @@ public class DataStore {
 		return v;
 	}
 
-    public void deleteProp(String user, String k) {
-		PreparedStatement psDelete = null;
+    public synchronized void deleteProp(String user, String k) {
 		try {
-			psDelete = conn.prepareStatement("DELETE FROM props WHERE username=? and k=?");
+			PreparedStatement psDelete = prepare(DELETE_PROP);
 			psDelete.setString(1, user);
 			psDelete.setString(2, k);
 			int i = psDelete.executeUpdate();
@@ -459,24 +675,87 @@ public class DataStore {
             logger.debug("Erased " + user + "." + k + ", result " + i);
 		} catch (SQLException e) {
 			logger.error(e.getLocalizedMessage());
+		}
+    }
+
+	/**
+	 * Stores many properties in a single transaction, null value deletes the
+	 * property. Existing properties are updated in one batch, properties not
+	 * updated (not existing yet) are inserted in the next one.
+	 *
+	 * @return false if transaction failed (and was rolled back)
+	 */
+	public synchronized boolean storeProps(String[] users, String[] keys, String[] values) {
+		boolean autoCommit = true;
+		try {
+			autoCommit = conn.getAutoCommit();
+			conn.setAutoCommit(false);
+
+			PreparedStatement psUpdate = prepare(UPDATE_PROP);
+			PreparedStatement psDelete = prepare(DELETE_PROP);
+			int updates = 0;
+			int deletes = 0;
+			for (int i = 0; i < keys.length; i++) {
+				if (values[i] == null) {
+					psDelete.setString(1, users[i]);
+					psDelete.setString(2, keys[i]);
+					psDelete.addBatch();
+					deletes++;
+				} else {
+					psUpdate.setString(1, values[i]);
+					psUpdate.setString(2, users[i]);
+					psUpdate.setString(3, keys[i]);
+					psUpdate.addBatch();
+					updates++;
+				}
+			}
+			int[] updated = new int[0];
+			if (updates != 0) {
+				updated = psUpdate.executeBatch();
+			}
+			if (deletes != 0) {
+				psDelete.executeBatch();
+			}
+
+			int inserts = 0;
+			int u = 0;
+			PreparedStatement psInsert = prepare(INSERT_PROP);
+			for (int i = 0; i < keys.length; i++) {
+				if ((values[i] != null) && (updated[u++] == 0)) {
+					psInsert.setString(1, values[i]);
+					psInsert.setString(2, users[i]);
+					psInsert.setString(3, keys[i]);
+					psInsert.addBatch();
+					inserts++;
+				}
+			}
+			if (inserts != 0) {
+				psInsert.executeBatch();
+			}
+
+			conn.commit();
+			logger.debug("Stored " + keys.length + " properties, " + inserts
+					+ " inserted, " + deletes + " deleted");
+			return true;
+		} catch (SQLException e) {
+			logger.error("Cannot store " + keys.length + " properties, "
+					+ e.getLocalizedMessage());
+			rollback();
+			return false;
 		} finally {
 			try {
-				if (psDelete != null) {
-					psDelete.close();
-				}
+				conn.setAutoCommit(autoCommit);
 			} catch (SQLException e) {
 				logger.error(e.getLocalizedMessage());
 			}
 		}
-    }
+	}
 
-    public String getProp(String user, String k) {
-		PreparedStatement s = null;
+    public synchronized String getProp(String user, String k) {
 		ResultSet rs = null;
 		String value = null;
-
 		try {
-			s = conn.prepareStatement("SELECT v FROM props WHERE username = ? and k = ?");
+			PreparedStatement s = prepare("SELECT v FROM props WHERE username = ? and k = ?");
 			s.setString(1, user);
 			s.setString(2, k);
 			rs = s.executeQuery();
@@ -487,60 +766,41 @@ public class DataStore {
 		} catch (SQLException e) {
 			logger.error(e.getLocalizedMessage());
 		} finally {
-			try {
-				if (s != null) {
-					s.close();
-				}
-				if (rs != null) {
-					rs.close();
-				}
-			} catch (SQLException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+			close(rs);
 		}
-
 		return value;
 	}
 
-	public int getRows(String user, String k) {
-		PreparedStatement s = null;
+	public synchronized int getRows(String user, String k) {
 		ResultSet rs = null;
 		int count = -1;
-
 		try {
-			s = conn.prepareStatement(" SELECT COUNT(*) FROM props WHERE username = ? and k = ?");
-			// s =
-			// conn.prepareStatement(" SELECT v FROM props WHERE username = ? and k = ?");
+			PreparedStatement s = prepare(" SELECT COUNT(*) FROM props WHERE username = ? and k = ?");
 			s.setString(1, user);
 			s.setString(2, k);
 			rs = s.executeQuery();
 
 			if (rs.next()) {
 				count = rs.getInt(1);
-				// String v = rs.getString(1);
-				// count = 1;
 			}
 		} catch (SQLException e) {
 			logger.error(e.getLocalizedMessage());
 		} finally {
-			try {
-				if (s != null) {
-					s.close();
-				}
-				if (rs != null) {
-					rs.close();
-				}
-			} catch (SQLException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
-			}
+			close(rs);
 		}
-
 		return count;
 	}
 
-	public void close() {
+	public synchronized void close() {
+		// statements must be closed before the connection
+		for (PreparedStatement s : statements.values()) {
+			try {
+				s.close();
+			} catch (SQLException sqle) {
+				logger.error(sqle.getLocalizedMessage());
+			}
+		}
+		statements.clear();
 		try {
 			if (conn != null) {
 				conn.close();
@@ -110,6 +110,16 @@ public class IMFReader extends RouteReader {
         return ret;
 	}
 
+    @Override
+    protected void copyPoints() {
+        if (points != null) {
+            points = new AxisPointsList<>(points);
+        }
+        if (targets != null) {
+            targets = new AxisPointsList<>(targets);
+        }
+    }
+
     @Override
 	public void close() {
         points = null;
@@ -205,10 +215,10 @@ public class IMFReader extends RouteReader {
     @Override
     public void configChanged(UserPreferences pref) {
         if ((pref == UserPreferences.INSTANCE) || (pref == UserPreferences.TURBO_TRAINER)) {
-            power = pref.getTurboTrainerProfile();
+            power = getProfile().getTurboTrainerProfile();
         }
         // it can be updated every configChanged without checking the property..
-        totalWeight = pref.getTotalWeight();
+        totalWeight = getProfile().getTotalWeight();
 
         if ((pref == UserPreferences.INSTANCE) ||
             (pref == UserPreferences.METRIC) ||
@@ -0,0 +1,173 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model;
+
+import com.wattzap.model.dto.PowerCurve;
+import com.wattzap.model.dto.Telemetry;
+import com.wattzap.model.dto.WorkoutData;
+import com.wattzap.utils.MeanMaxPower;
+
+/**
+ * Workout metrics updated with each recorded telemetry: running sums and
+ * maximums, normalized power (from 30s rolling average) and power curve.
+ * Each sample costs constant time, so metrics can be shown while riding and
+ * the analysis of the whole ride is available at once.
+ * All methods are synchronized, metrics are read by other threads.
+ */
+public class LiveAnalysis {
+    private int count;
+    private long firstTime;
+    private long lastTime;
+    private double distance;
+
+    private int maxPwr;
+    private double qPwr; // sum of squares
+    private double tPower; // [W*ms]
+    private int maxHR;
+    private int minHR;
+    private long aveHR; // [bpm*ms]
+    private int maxCad;
+    private long aveCad; // [rpm*ms]
+
+    private MeanMaxPower mmp;
+
+    // FTP and weight of the rider
+    private final RiderProfile profile;
+
+    public LiveAnalysis() {
+        this(RiderProfile.GLOBAL);
+    }
+
+    public LiveAnalysis(RiderProfile profile) {
+        this.profile = profile;
+        clear();
+    }
+
+    public synchronized void clear() {
+        count = 0;
+        firstTime = 0;
+        lastTime = 0;
+        distance = 0.0;
+        maxPwr = 0;
+        qPwr = 0.0;
+        tPower = 0.0;
+        maxHR = 0;
+        minHR = 220;
+        aveHR = 0;
+        maxCad = 0;
+        aveCad = 0;
+        mmp = new MeanMaxPower(PowerCurve.DURATIONS);
+    }
+
+    public synchronized void add(Telemetry t) {
+        int power = t.getPower();
+        if (count == 0) {
+            firstTime = t.getTime();
+        } else {
+            long dt = t.getTime() - lastTime;
+            tPower += power * dt;
+            if (t.getHeartRate() > 0) {
+                aveHR += t.getHeartRate() * dt;
+            }
+            aveCad += t.getCadence() * dt;
+        }
+        count++;
+        lastTime = t.getTime();
+        distance = t.getDistance();
+
+        if (maxPwr < power) {
+            maxPwr = power;
+        }
+        qPwr += power * power;
+        if (t.getHeartRate() > maxHR) {
+            maxHR = t.getHeartRate();
+        }
+        if (t.getCadence() > maxCad) {
+            maxCad = t.getCadence();
+        }
+        if (t.getHeartRate() != -1 && t.getHeartRate() < minHR) {
+            minHR = t.getHeartRate();
+        }
+        mmp.add(t.getTime(), power);
+    }
+
+    public synchronized int getCount() {
+        return count;
+    }
+
+    // [ms]
+    public synchronized long getTime() {
+        return lastTime - firstTime;
+    }
+
+    public synchronized int getNormalizedPower() {
+        return mmp.getNormalizedPower();
+    }
+
+    // NP / FTP
+    public synchronized double getIntensity() {
+        int ftp = profile.getMaxPower();
+        if (ftp <= 0) {
+            return 0.0;
+        }
+        return (double) getNormalizedPower() / ftp;
+    }
+
+    // IF^2 * hours * 100
+    public synchronized int getStress() {
+        double iff = getIntensity();
+        return (int) (iff * iff * getTime() / 36000);
+    }
+
+    /**
+     * @return metrics of the whole ride, as stored with the workout. Null if
+     *         nothing was recorded.
+     */
+    public synchronized WorkoutData getWorkoutData() {
+        if (count == 0) {
+            return null;
+        }
+        WorkoutData workoutData = new WorkoutData();
+        long len = getTime();
+        workoutData.setTime(len);
+        workoutData.setDate(firstTime);
+        workoutData.setDistance(distance);
+
+        // stored with the workout, multi-ride curves are built from it
+        PowerCurve curve = new PowerCurve(mmp.getCurve(PowerCurve.DURATIONS));
+        workoutData.setPowerCurve(curve);
+        workoutData.setFiveSecondPwr(curve.getPowerFor(5));
+        workoutData.setOneMinutePwr(curve.getPowerFor(60));
+        workoutData.setFiveMinutePwr(curve.getPowerFor(300));
+        workoutData.setTwentyMinutePwr(curve.getPowerFor(1200));
+
+        workoutData.setFtHR(0);
+        workoutData.setQuadraticPower((int) Math.sqrt(qPwr / count));
+        workoutData.setWeight(profile.getWeight());
+
+        workoutData.setMaxHR(maxHR);
+        workoutData.setMinHR(minHR);
+        workoutData.setMaxCadence(maxCad);
+        if (len > 0) {
+            workoutData.setAveCadence((int) (aveCad / len));
+            workoutData.setAveHR((int) (aveHR / len));
+            workoutData.setAvePower((int) (tPower / len));
+        }
+        workoutData.setMaxPower(maxPwr);
+        workoutData.setTotalPower((int) (tPower / (3600000)));
+        return workoutData;
+    }
+}
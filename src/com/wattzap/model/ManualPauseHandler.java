@@ -37,7 +37,7 @@ public class ManualPauseHandler extends TelemetryHandler {
     public void configChanged(UserPreferences pref) {
         if (pref == UserPreferences.MANUAL_PAUSE) {
             speedLost = false;
-            setPause(pref.isPaused() ?
+            setPause(getProfile().isPaused() ?
                     PauseMsgEnum.PAUSED :
                     PauseMsgEnum.RUNNING);
         }
@@ -69,8 +69,8 @@ public class ManualPauseHandler extends TelemetryHandler {
                 break;
             default:
                 // speed is back, if paused unpause immediatelly
-                if ((speedLost) && (UserPreferences.MANUAL_PAUSE.isPaused())) {
-                    UserPreferences.MANUAL_PAUSE.setPaused(false);
+                if ((speedLost) && (getProfile().isPaused())) {
+                    getProfile().setPaused(false);
                 }
                 break;
         }
@@ -16,7 +16,6 @@
  */
 package com.wattzap.model;
 
-import com.wattzap.controller.MessageBus;
 import com.wattzap.controller.Messages;
 import com.wattzap.model.dto.Opponent;
 import com.wattzap.model.dto.OpponentData;
@@ -78,7 +77,10 @@ public class Opponents extends TelemetryHandler {
 
     @Override
     public SourceDataHandlerIntf initialize() {
-        handler = this;
+        // static interface is available for application opponents only
+        if (getProvider() == TelemetryProvider.INSTANCE) {
+            handler = this;
+        }
         telemetry = new Telemetry(PauseMsgEnum.RUNNING);
         telemetry.setSpeed(0.0);
         return super.initialize();
@@ -86,7 +88,9 @@ public class Opponents extends TelemetryHandler {
 
     @Override
     public void release() {
-        handler = null;
+        if (handler == this) {
+            handler = null;
+        }
         super.release();
     }
 
@@ -104,6 +108,7 @@ public class Opponents extends TelemetryHandler {
         Opponent opponent = new Opponent(reader);
         if (opponent.getDistance(telemetry.getTime()) >= 0.0) {
             opponents.add(opponent);
+            opponentsChanged();
             sendOpponents();
             return opponent.getId();
         }
@@ -122,6 +127,7 @@ public class Opponents extends TelemetryHandler {
             if (o.getId() == id) {
                 if (opponents.remove(o)) {
                     o.setReader(null);
+                    opponentsChanged();
                     sendOpponents();
                     return true;
                 } else {
@@ -139,9 +145,15 @@ public class Opponents extends TelemetryHandler {
             opponent.setReader(null);
         }
         opponents.clear();
+        opponentsChanged();
         return true;
     }
 
+    // OPPONENT_DIST is provided only for single opponent
+    private void opponentsChanged() {
+        getBus().send(Messages.HANDLER, this);
+    }
+
     @Override
     public boolean provides(SourceDataEnum data) {
         return
@@ -172,7 +184,8 @@ public class Opponents extends TelemetryHandler {
 
     @Override
     public void storeTelemetryData(Telemetry t) {
-        telemetry = t;
+        // snapshot is recycled, data is used when opponent is added
+        telemetry.set(t);
         sendOpponents();
     }
 
@@ -184,7 +197,7 @@ public class Opponents extends TelemetryHandler {
         if ((!telemetry.isAvailable(SourceDataEnum.SPEED)) && (data != null)) {
             logger.warn("Ridden route without speed, cannot display/check opponents");
             data = null;
-            MessageBus.INSTANCE.send(Messages.OPPONENTS, data);
+            getBus().send(Messages.OPPONENTS, data);
             return;
         }
 
@@ -242,6 +255,6 @@ public class Opponents extends TelemetryHandler {
         if (_opponents.size() == 1) {
             setValue(SourceDataEnum.OPPONENT_DIST, data[0].getDistance());
         }
-        MessageBus.INSTANCE.send(Messages.OPPONENTS, data);
+        getBus().send(Messages.OPPONENTS, data);
     }
 }
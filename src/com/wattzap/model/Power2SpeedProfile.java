@@ -40,7 +40,7 @@ public class Power2SpeedProfile extends TelemetryHandler {
     public void configChanged(UserPreferences prefs) {
         if ((prefs == UserPreferences.INSTANCE) ||
                 (prefs == UserPreferences.TURBO_TRAINER)) {
-            power = prefs.getTurboTrainerProfile();
+            power = getProfile().getTurboTrainerProfile();
         }
     }
 
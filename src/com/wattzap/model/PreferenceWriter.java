@@ -0,0 +1,346 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Write-behind cache of the properties. Property set (or deleted) is kept in
+ * memory and returned by get() at once, writer thread stores it in the
+ * database later. Writes of the same property are coalesced, only the last
+ * value is stored. All waiting properties are stored in a single transaction
+ * when the first of them waits longer than the delay, or when there are too
+ * many of them. flush() and close() store everything before return.
+ * Database might be still booted when properties are set, writer waits for
+ * it. When write fails, properties without newer value are put back and
+ * written again later, delay between retries is doubled after each failure.
+ * flush() returns after failed write, properties which cannot be written
+ * when writer is closed are lost (and logged).
+ * When database cannot be booted waiting properties are dropped and writer
+ * is closed, later properties are written directly (and fail as any other
+ * database access).
+ */
+class PreferenceWriter implements Runnable {
+	private static final Logger logger = LogManager.getLogger("PreferenceWriter");
+
+    // number of waiting properties which triggers the write
+    private static final int BATCH = 64;
+    // delay after failed write, doubled with each failure [ns]
+    private static final long MIN_RETRY = 100000000L;
+    private static final long MAX_RETRY = 60000000000L;
+
+    /** Property waiting for the write, null value deletes it */
+    static class Entry {
+        final String user;
+        final String key;
+        final String value;
+        final boolean crypt;
+
+        Entry(String user, String key, String value, boolean crypt) {
+            this.user = user;
+            this.key = key;
+            this.value = value;
+            this.crypt = crypt;
+        }
+    }
+
+    private final Future<DataStore> store;
+    private final Thread thread;
+    private final long delay; // [ns]
+
+    // all synchronized. Properties being written are still returned by get(),
+    // database might not have them yet.
+    private Map<String, Entry> pending = new LinkedHashMap<>();
+    private Map<String, Entry> writing = new LinkedHashMap<>();
+    private long firstQueued = 0; // [ns]
+    private long retryDelay = 0; // [ns], 0 if last write succeeded
+    private long retryAt = 0; // [ns]
+    private boolean flushRequested = false;
+    private boolean closed = false;
+    private long queued = 0;
+    private long coalesced = 0;
+    private long written = 0;
+    private long failed = 0;
+    private long commits = 0;
+    private long failures = 0; // failed commits
+
+    PreferenceWriter(DataStore ds, int delay) {
+        this(done(ds), delay);
+    }
+    PreferenceWriter(Future<DataStore> store, int delay) {
+        this.store = store;
+        this.delay = delay * 1000000L;
+        thread = new Thread(this, "PreferenceWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static Future<DataStore> done(DataStore ds) {
+        FutureTask<DataStore> task = new FutureTask<>(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }, ds);
+        task.run();
+        return task;
+    }
+
+    private DataStore getStore() {
+        try {
+            return store.get();
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Data store not available", e);
+        }
+    }
+
+    private static String id(String user, String key) {
+        return user + '\n' + key;
+    }
+
+    /**
+     * Sets the property, null value deletes it. Crypted value is encrypted
+     * when written.
+     */
+    public synchronized void put(String user, String key, String value, boolean crypt) {
+        if (closed) {
+            // no thread anymore, write directly
+            logger.warn("Writer closed, " + user + "." + key + " stored at once");
+            DataStore ds = getStore();
+            ds.storeProps(new String[] {user}, new String[] {key},
+                    new String[] {((value != null) && crypt) ? ds.encrypt(value) : value});
+            return;
+        }
+        queued++;
+        if (pending.put(id(user, key), new Entry(user, key, value, crypt)) != null) {
+            coalesced++;
+            return;
+        }
+        if (pending.size() == 1) {
+            firstQueued = System.nanoTime();
+            notifyAll();
+        } else if (pending.size() >= BATCH) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return property waiting for the write, or null if database must be
+     * asked for the value
+     */
+    public synchronized Entry get(String user, String key) {
+        String id = id(user, key);
+        Entry entry = pending.get(id);
+        if (entry == null) {
+            entry = writing.get(id);
+        }
+        return entry;
+    }
+
+    @Override
+    public void run() {
+        for (;;) {
+            int size;
+            synchronized(this) {
+                for (;;) {
+                    if ((!pending.isEmpty()) && (flushRequested || closed
+                            || ((retryDelay == 0) && (pending.size() >= BATCH)))) {
+                        break;
+                    }
+                    if (closed) {
+                        notifyAll();
+                        return;
+                    }
+                    long timeout = 0;
+                    if (!pending.isEmpty()) {
+                        if (retryDelay != 0) {
+                            timeout = retryAt - System.nanoTime();
+                        } else {
+                            timeout = firstQueued + delay - System.nanoTime();
+                        }
+                        if (timeout <= 0) {
+                            break;
+                        }
+                    }
+                    try {
+                        if (timeout == 0) {
+                            wait();
+                        } else {
+                            wait(timeout / 1000000L, (int) (timeout % 1000000L));
+                        }
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                Map<String, Entry> tmp = writing;
+                writing = pending;
+                pending = tmp;
+                size = writing.size();
+            }
+
+            DataStore ds;
+            try {
+                ds = getStore();
+            } catch (IllegalStateException e) {
+                // database didn't boot, nothing can be stored anymore
+                synchronized(this) {
+                    int lost = writing.size() + pending.size();
+                    logger.error("Cannot store " + lost + " properties, "
+                            + e.getMessage(), e);
+                    failed += lost;
+                    writing.clear();
+                    pending.clear();
+                    closed = true;
+                    notifyAll();
+                }
+                return;
+            }
+            String[] users = new String[size];
+            String[] keys = new String[size];
+            String[] values = new String[size];
+            int i = 0;
+            for (Entry entry : writing.values()) {
+                users[i] = entry.user;
+                keys[i] = entry.key;
+                if ((entry.value != null) && entry.crypt) {
+                    values[i] = ds.encrypt(entry.value);
+                } else {
+                    values[i] = entry.value;
+                }
+                i++;
+            }
+            boolean ok = ds.storeProps(users, keys, values);
+
+            synchronized(this) {
+                if (ok) {
+                    written += size;
+                    retryDelay = 0;
+                } else {
+                    failed += size;
+                    failures++;
+                    retry();
+                }
+                commits++;
+                writing.clear();
+                if (pending.isEmpty()) {
+                    flushRequested = false;
+                }
+                notifyAll();
+            }
+        }
+    }
+
+    // failed properties are written again, unless newer value was set
+    private void retry() {
+        if (closed) {
+            logger.error("Cannot store " + writing.size()
+                    + " properties, writer closed");
+            return;
+        }
+        Map<String, Entry> retry = new LinkedHashMap<>(writing);
+        retry.keySet().removeAll(pending.keySet());
+        retry.putAll(pending);
+        pending = retry;
+        if (retryDelay == 0) {
+            retryDelay = Math.max(delay, MIN_RETRY);
+        } else {
+            retryDelay = Math.min(retryDelay * 2, MAX_RETRY);
+        }
+        retryAt = System.nanoTime() + retryDelay;
+        // flush() waits for the next failure or success
+        flushRequested = false;
+        logger.warn("Cannot store " + writing.size() + " properties, retry in "
+                + (retryDelay / 1000000L) + "ms");
+    }
+
+    private boolean done() {
+        return pending.isEmpty() && writing.isEmpty();
+    }
+
+    /**
+     * Waits until all properties are stored in the database, or write
+     * fails (properties are written again later).
+     */
+    public synchronized void flush() {
+        if (done()) {
+            return;
+        }
+        long before = failures;
+        flushRequested = true;
+        notifyAll();
+        while ((!done()) && (failures == before) && thread.isAlive()) {
+            try {
+                wait(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stores all the properties and stops the thread. Properties set later
+     * are written directly.
+     */
+    public void close() {
+        synchronized(this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.debug(this);
+    }
+
+    // number of properties not stored yet
+    public synchronized int getWaiting() {
+        return pending.size() + writing.size();
+    }
+    public synchronized long getQueued() {
+        return queued;
+    }
+    // number of writes replaced by the later value
+    public synchronized long getCoalesced() {
+        return coalesced;
+    }
+    public synchronized long getWritten() {
+        return written;
+    }
+    public synchronized long getFailed() {
+        return failed;
+    }
+    public synchronized long getCommits() {
+        return commits;
+    }
+
+    @Override
+    public String toString() {
+        return "PreferenceWriter:: delay=" + (delay / 1000000L) + "ms"
+                + ", queued=" + getQueued()
+                + ", coalesced=" + getCoalesced()
+                + ", written=" + getWritten()
+                + ", failed=" + getFailed()
+                + ", commits=" + getCommits();
+    }
+}
@@ -43,7 +43,7 @@ public class Readers implements SourceDataHandlerIntf, MessageCallback {
 
     private static Readers getObject() {
         if (object == null) {
-            object = new Readers();
+            object = new Readers(TelemetryProvider.INSTANCE);
             object.initialize();
         }
         return object;
@@ -116,17 +116,27 @@ public class Readers implements SourceDataHandlerIntf, MessageCallback {
 
 
 
+    // each session has own readers, messages are sent on its bus
+    private final TelemetryProvider provider;
+    private final MessageBus bus;
+
     private List<RouteReader> readers = null;
 
     private RouteReader currentTraining = null;
     private RouteReader dummyTraining = null;
 
-    private RouteReader getCurrentTraining() {
+    public Readers(TelemetryProvider provider) {
+        this.provider = provider;
+        this.bus = provider.getBus();
+    }
+
+    public RouteReader getCurrentTraining() {
         if (currentTraining != null) {
             return currentTraining;
         }
         if (dummyTraining == null) {
             dummyTraining = new DummyTraining();
+            dummyTraining.setProvider(provider);
         }
         return dummyTraining;
     }
@@ -154,6 +164,7 @@ public class Readers implements SourceDataHandlerIntf, MessageCallback {
 		for (Class c : classes) {
             try {
     			RouteReader p = (RouteReader) c.newInstance();
+                p.setProvider(provider);
                 readers.add(p);
             } catch (Exception ex) {
                 // InstantiationException, IllegalAccessException
@@ -175,7 +186,7 @@ public class Readers implements SourceDataHandlerIntf, MessageCallback {
         String lastMessage = "Cannot start";
 
         if (currentTraining != null) {
-            MessageBus.INSTANCE.send(Messages.CLOSE, currentTraining);
+            bus.send(Messages.CLOSE, currentTraining);
         }
         // current trainig = null;
 
@@ -183,7 +194,16 @@ public class Readers implements SourceDataHandlerIntf, MessageCallback {
         RouteReader training = getReader(ext);
         if (training != null) {
             try {
-                lastMessage = training.load(fileName);
+                if ((provider != TelemetryProvider.INSTANCE) && training.isShared()) {
+                    // sessions share the route, each has own reader
+                    training = RouteCache.get(training.getClass(), fileName);
+                    training.setProvider(provider);
+                    lastMessage = null;
+                } else {
+                    lastMessage = training.load(fileName);
+                }
+            } catch (IllegalArgumentException ex) {
+                lastMessage = ex.getLocalizedMessage();
             } catch (Exception ex) {
                 lastMessage = ex.getLocalizedMessage();
                 logger.error(lastMessage, ex);
@@ -200,6 +220,8 @@ public class Readers implements SourceDataHandlerIntf, MessageCallback {
             if (currentTraining != null) {
                 currentTraining.activate();
             }
+            // provided data depends on the training
+            bus.send(Messages.HANDLER, this);
         }
         return lastMessage;
     }
@@ -245,22 +267,22 @@ public class Readers implements SourceDataHandlerIntf, MessageCallback {
 
     @Override
     public SourceDataHandlerIntf initialize() {
-		MessageBus.INSTANCE.register(Messages.TELEMETRY, this);
-		MessageBus.INSTANCE.register(Messages.CONFIG_CHANGED, this);
-		MessageBus.INSTANCE.register(Messages.CLOSE, this);
+		bus.register(Messages.TELEMETRY, this);
+		bus.register(Messages.CONFIG_CHANGED, this);
+		bus.register(Messages.CLOSE, this);
 
         // notify about new telemetryProvider
-        MessageBus.INSTANCE.send(Messages.HANDLER, this);
+        bus.send(Messages.HANDLER, this);
         return this;
     }
 
     @Override
     public void release() {
-        MessageBus.INSTANCE.send(Messages.HANDLER_REMOVED, this);
+        bus.send(Messages.HANDLER_REMOVED, this);
 
-		MessageBus.INSTANCE.unregister(Messages.CLOSE, this);
-        MessageBus.INSTANCE.unregister(Messages.TELEMETRY, this);
-		MessageBus.INSTANCE.unregister(Messages.CONFIG_CHANGED, this);
+		bus.unregister(Messages.CLOSE, this);
+        bus.unregister(Messages.TELEMETRY, this);
+		bus.unregister(Messages.CONFIG_CHANGED, this);
     }
 
     @Override
@@ -268,17 +290,23 @@ public class Readers implements SourceDataHandlerIntf, MessageCallback {
         switch (m) {
             case TELEMETRY:
                 synchronized(this) {
-                    getTraining().storeTelemetryData((Telemetry) o);
+                    getCurrentTraining().storeTelemetryData((Telemetry) o);
                 }
                 break;
             case CONFIG_CHANGED:
-                getTraining().configChanged((UserPreferences) o);
+                long routing = SourceDataHandler.getRouting(this);
+                getCurrentTraining().configChanged((UserPreferences) o);
+                // provided values might depend on the configuration
+                if (routing != SourceDataHandler.getRouting(this)) {
+                    bus.send(Messages.HANDLER, this);
+                }
                 break;
             case CLOSE:
                 // close might be sent from menu, or from this class..
                 if (currentTraining != null) {
                     currentTraining.close();
                     currentTraining = null;
+                    bus.send(Messages.HANDLER, this);
                 }
                 break;
         }
@@ -0,0 +1,113 @@
+/*
+ * This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wattzap.model;
+
+import com.wattzap.controller.Messages;
+import com.wattzap.model.dto.Telemetry;
+import java.util.List;
+
+/**
+ * Source of recorded sensor data (power, cadence, heart rate and wheel speed),
+ * driven by virtual clock. Each sample is "received" when clock reaches its
+ * time, when all samples are replayed training is stopped.
+ * Recorded times must be absolute [ms], clock epoch must be set to the time
+ * of the first sample (or earlier).
+ */
+public class ReplaySource extends SourceDataHandler implements VirtualClock.Listener {
+    public static final String NAME = "replay";
+    public static final SourceDataEnum[] REPLAYED = {
+        SourceDataEnum.POWER, SourceDataEnum.CADENCE,
+        SourceDataEnum.HEART_RATE, SourceDataEnum.WHEEL_SPEED
+    };
+
+    private final List<Telemetry> data;
+    private final long[] modifications = new long[SourceDataEnum.values().length];
+    private int next = 0;
+    private boolean finished = false;
+
+    public ReplaySource(List<Telemetry> data) {
+        this.data = data;
+        setPrettyName(NAME);
+    }
+
+    @Override
+    public SourceDataHandlerIntf initialize() {
+        ((VirtualClock) getProvider().getClock()).setListener(this);
+        getBus().send(Messages.HANDLER, this);
+        return this;
+    }
+
+    @Override
+    public void release() {
+        ((VirtualClock) getProvider().getClock()).setListener(null);
+        getBus().send(Messages.HANDLER, this);
+        getBus().send(Messages.HANDLER_REMOVED, this);
+    }
+
+    @Override
+    public boolean provides(SourceDataEnum val) {
+        for (SourceDataEnum replayed : REPLAYED) {
+            if (replayed == val) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public long getModificationTime(SourceDataEnum val) {
+        synchronized(this) {
+            return modifications[val.ordinal()];
+        }
+    }
+
+    // number of samples already replayed
+    public int getReplayed() {
+        return next;
+    }
+
+    @Override
+    public void timeChanged(long time) {
+        while ((next < data.size()) && (data.get(next).getTime() <= time)) {
+            Telemetry t = data.get(next++);
+            setLastMessageTime(time);
+            for (SourceDataEnum val : REPLAYED) {
+                double value;
+                if (t.isAvailable(val)) {
+                    value = t.getDouble(val);
+                } else if ((val == SourceDataEnum.WHEEL_SPEED) &&
+                        t.isAvailable(SourceDataEnum.SPEED)) {
+                    // most of recorded files have speed only
+                    value = t.getSpeed();
+                } else {
+                    continue;
+                }
+                setValue(val, value);
+                synchronized(this) {
+                    modifications[val.ordinal()] = time;
+                }
+                getProvider().valueChanged(this, val);
+            }
+        }
+        // sensor values are valid for 5s, then training is finished
+        if ((!finished) && (next == data.size()) &&
+                ((data.isEmpty()) || (time > data.get(next - 1).getTime() + 5000))) {
+            finished = true;
+            getBus().send(Messages.STOP, null);
+        }
+    }
+}
@@ -49,19 +49,19 @@ public class ResistanceProfile extends TelemetryHandler {
         if ((prefs == UserPreferences.INSTANCE) ||
             (prefs == UserPreferences.TURBO_TRAINER))
         {
-            power = prefs.getTurboTrainerProfile();
+            power = getProfile().getTurboTrainerProfile();
         }
 
         if ((prefs == UserPreferences.INSTANCE) ||
             (prefs == UserPreferences.RESISTANCE) ||
             (prefs == UserPreferences.TURBO_TRAINER))
         {
-            if (prefs.getResistance() == 0) {
+            if (getProfile().getResistance() == 0) {
                 autoResistance = true;
                 resistance = 1;
             } else {
                 autoResistance = false;
-                resistance = prefs.getResistance();
+                resistance = getProfile().getResistance();
             }
         }
 
@@ -69,7 +69,7 @@ public class ResistanceProfile extends TelemetryHandler {
         if ((prefs == UserPreferences.INSTANCE) ||
             (prefs == UserPreferences.RESISTANCE_COMP))
         {
-            speedCond = AutoResistanceCompEnum.get(prefs.getResistanceComp());
+            speedCond = AutoResistanceCompEnum.get(getProfile().getResistanceComp());
             roll.clear();
         }
     }
@@ -0,0 +1,242 @@
+/*
+ * This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wattzap.model;
+
+import com.wattzap.controller.MessageBus;
+import com.wattzap.controller.Messages;
+import com.wattzap.model.power.Power;
+import com.wattzap.model.power.PowerProfiles;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+/**
+ * Rider properties (weight, wheel size, FTP, trainer..) and training state
+ * (running, pairing, manual pause) of single telemetry pipeline. Handlers
+ * read them from the profile of their provider, never from UserPreferences.
+ *
+ * GLOBAL is the profile of the application rider, it reads and writes
+ * UserPreferences (changes are sent on the application bus). Each session
+ * has own profile: rider properties are copied from the preferences when
+ * session is created (and can be changed later for the session only),
+ * training state is cleared. Changes are sent as CONFIG_CHANGED on the bus
+ * of the session, changes of these properties in the preferences are not
+ * forwarded to sessions. Other properties are shared by all riders, they
+ * are read from the preferences.
+ */
+public class RiderProfile {
+    private static final EnumSet<UserPreferences> RIDER = EnumSet.of(
+            UserPreferences.WEIGHT,
+            UserPreferences.BIKE_WEIGHT,
+            UserPreferences.WHEEL_SIZE,
+            UserPreferences.MAX_POWER,
+            UserPreferences.HR_MAX,
+            UserPreferences.TURBO_TRAINER,
+            UserPreferences.RESISTANCE,
+            UserPreferences.RESISTANCE_COMP,
+            UserPreferences.ROBOT_POWER,
+            UserPreferences.ROBOT_SPEED);
+    private static final EnumSet<UserPreferences> STATE = EnumSet.of(
+            UserPreferences.RUNNING,
+            UserPreferences.PAIRING,
+            UserPreferences.MANUAL_PAUSE);
+
+    public static final RiderProfile GLOBAL = new RiderProfile();
+
+    // null for global profile
+    private final MessageBus bus;
+    private final Map<UserPreferences, Object> values;
+
+    private RiderProfile() {
+        bus = null;
+        values = null;
+    }
+
+    public RiderProfile(MessageBus bus) {
+        this.bus = bus;
+        values = new EnumMap<>(UserPreferences.class);
+        for (UserPreferences pref : RIDER) {
+            values.put(pref, pref.getValue());
+        }
+        for (UserPreferences pref : STATE) {
+            values.put(pref, Boolean.FALSE);
+        }
+    }
+
+    // property has own value in each session
+    public static boolean isScoped(UserPreferences pref) {
+        return RIDER.contains(pref) || STATE.contains(pref);
+    }
+
+    private synchronized Object get(UserPreferences pref) {
+        return values.get(pref);
+    }
+
+    private void set(UserPreferences pref, Object value) {
+        if (!isScoped(pref)) {
+            throw new IllegalArgumentException(pref + " is not a rider property");
+        }
+        synchronized(this) {
+            Object old = values.get(pref);
+            if (old.equals(value)) {
+                return;
+            }
+            if (old.getClass() != value.getClass()) {
+                throw new IllegalArgumentException(pref + " is not "
+                        + value.getClass().getSimpleName());
+            }
+            values.put(pref, value);
+        }
+        bus.send(Messages.CONFIG_CHANGED, pref);
+    }
+
+    public int getInt(UserPreferences pref) {
+        if ((values == null) || (!isScoped(pref))) {
+            return pref.getInt();
+        }
+        return (Integer) get(pref);
+    }
+    public void setInt(UserPreferences pref, int val) {
+        if (values == null) {
+            pref.setInt(val);
+        } else {
+            set(pref, val);
+        }
+    }
+
+    public double getDouble(UserPreferences pref) {
+        if ((values == null) || (!isScoped(pref))) {
+            return pref.getDouble();
+        }
+        return (Double) get(pref);
+    }
+    public void setDouble(UserPreferences pref, double val) {
+        if (values == null) {
+            pref.setDouble(val);
+        } else {
+            set(pref, val);
+        }
+    }
+
+    public boolean getBool(UserPreferences pref) {
+        if ((values == null) || (!isScoped(pref))) {
+            return pref.getBool();
+        }
+        return (Boolean) get(pref);
+    }
+    public void setBool(UserPreferences pref, boolean val) {
+        if (values == null) {
+            pref.setBool(val);
+        } else {
+            set(pref, val);
+        }
+    }
+
+    public String getString(UserPreferences pref) {
+        if ((values == null) || (!isScoped(pref))) {
+            return pref.getString();
+        }
+        return (String) get(pref);
+    }
+    public void setString(UserPreferences pref, String val) {
+        if (values == null) {
+            pref.setString(val);
+        } else {
+            set(pref, val);
+        }
+    }
+
+    /**
+     * Sets rider property by its name (as stored in the database), value is
+     * parsed according to the type of the property.
+     * @throws IllegalArgumentException if property is not a rider one, or
+     * value is wrong
+     */
+    public void setValue(String name, String value) {
+        for (UserPreferences pref : RIDER) {
+            if (!pref.getName().equals(name)) {
+                continue;
+            }
+            Object current = pref.getValue();
+            if (current instanceof Integer) {
+                setInt(pref, Integer.parseInt(value));
+            } else if (current instanceof Double) {
+                setDouble(pref, Double.parseDouble(value));
+            } else if (current instanceof Boolean) {
+                setBool(pref, Boolean.parseBoolean(value));
+            } else {
+                setString(pref, value);
+            }
+            return;
+        }
+        throw new IllegalArgumentException(name + " is not a rider property");
+    }
+
+    public double getWeight() {
+        return getDouble(UserPreferences.WEIGHT);
+    }
+    public double getTotalWeight() {
+        return getWeight() + getDouble(UserPreferences.BIKE_WEIGHT);
+    }
+    public int getWheelsize() {
+        return getInt(UserPreferences.WHEEL_SIZE);
+    }
+    public int getMaxHR() {
+        return getInt(UserPreferences.HR_MAX);
+    }
+    public int getMaxPower() {
+        return getInt(UserPreferences.MAX_POWER);
+    }
+    public int getRobotPower() {
+        return getInt(UserPreferences.ROBOT_POWER);
+    }
+    public double getRobotSpeed() {
+        return getDouble(UserPreferences.ROBOT_SPEED);
+    }
+    public int getResistance() {
+        return getInt(UserPreferences.RESISTANCE);
+    }
+    public String getResistanceComp() {
+        return getString(UserPreferences.RESISTANCE_COMP);
+    }
+    // profiles are shared by all riders
+    public Power getTurboTrainerProfile() {
+        if (values == null) {
+            return UserPreferences.INSTANCE.getTurboTrainerProfile();
+        }
+        return PowerProfiles.INSTANCE.getProfile(getString(UserPreferences.TURBO_TRAINER));
+    }
+
+    public boolean isStarted() {
+        return getBool(UserPreferences.RUNNING);
+    }
+    public void setStarted(boolean started) {
+        setBool(UserPreferences.RUNNING, started);
+    }
+    public boolean isPaused() {
+        return getBool(UserPreferences.MANUAL_PAUSE);
+    }
+    public void setPaused(boolean paused) {
+        setBool(UserPreferences.MANUAL_PAUSE, paused);
+    }
+    public boolean isPairingEnabled() {
+        return getBool(UserPreferences.PAIRING);
+    }
+    public void setPairing(boolean enabled) {
+        setBool(UserPreferences.PAIRING, enabled);
+    }
+}
@@ -20,7 +20,6 @@ import com.wattzap.model.dto.AxisPointVideo;
 import com.wattzap.model.dto.AxisPointInterest;
 import com.wattzap.model.dto.AxisPointAlt;
 import com.gpxcreator.gpxpanel.GPXFile;
-import com.wattzap.controller.MessageBus;
 import com.wattzap.controller.Messages;
 import com.wattzap.model.dto.AxisPointSlope;
 import com.wattzap.model.dto.AxisPointsList;
@@ -73,6 +72,22 @@ public class RlvReader extends RouteReader {
 
 
 
+    @Override
+    protected void copyPoints() {
+        if (altPoints != null) {
+            altPoints = new AxisPointsList<>(altPoints);
+        }
+        if (videoPoints != null) {
+            videoPoints = new AxisPointsList<>(videoPoints);
+        }
+        if (iPoints != null) {
+            iPoints = new AxisPointsList<>(iPoints);
+        }
+        if (slopePoints != null) {
+            slopePoints = new AxisPointsList<>(slopePoints);
+        }
+    }
+
     @Override
     public void close() {
         super.close();
@@ -411,7 +426,7 @@ public class RlvReader extends RouteReader {
         if (sendingMessages) {
             AxisPointInterest iPoint = iPoints.get(dist);
             if ((iPoint != null) && (iPoints.isChanged()) && (iPoint.isUsable())) {
-                MessageBus.INSTANCE.send(Messages.ROUTE_MSG, iPoint.getMessage());
+                getBus().send(Messages.ROUTE_MSG, iPoint.getMessage());
             }
         }
     }
@@ -419,10 +434,10 @@ public class RlvReader extends RouteReader {
     @Override
     public void configChanged(UserPreferences pref) {
         if ((pref == UserPreferences.INSTANCE) || (pref == UserPreferences.TURBO_TRAINER)) {
-            power = pref.getTurboTrainerProfile();
+            power = getProfile().getTurboTrainerProfile();
         }
         // it can be updated every configChanged without checking the property..
-        totalWeight = pref.getTotalWeight();
+        totalWeight = getProfile().getTotalWeight();
 
         if ((pref == UserPreferences.INSTANCE) ||
             (pref == UserPreferences.METRIC) ||
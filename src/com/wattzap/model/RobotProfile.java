@@ -38,12 +38,12 @@ public class RobotProfile extends TelemetryHandler {
         if ((pref == UserPreferences.INSTANCE) ||
             (pref == UserPreferences.ROBOT_POWER))
         {
-            power = pref.getRobotPower();
+            power = getProfile().getRobotPower();
         }
         if ((pref == UserPreferences.INSTANCE) ||
             (pref == UserPreferences.ROBOT_SPEED))
         {
-            wheelSpeed = pref.ROBOT_SPEED.getDouble();
+            wheelSpeed = getProfile().getRobotSpeed();
         }
     }
 
@@ -0,0 +1,116 @@
+/*
+ * This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wattzap.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Routes loaded for the sessions. Route file is read once, each session gets
+ * a copy of the reader: points are shared (read only), position in the route
+ * and rider settings are kept by the copy. Entry is reloaded when the file
+ * was modified, least recently used routes are dropped.
+ */
+public class RouteCache {
+	private static final Logger logger = LogManager.getLogger("RouteCache");
+
+    private static final int ROUTES = 8;
+
+    private static class Entry {
+        private final Class<?> type;
+        private final long modified;
+        private final long length;
+        private final RouteReader reader;
+
+        private Entry(Class<?> type, File file, RouteReader reader) {
+            this.type = type;
+            this.modified = file.lastModified();
+            this.length = file.length();
+            this.reader = reader;
+        }
+
+        private boolean isValid(Class<?> type, File file) {
+            return (this.type == type) &&
+                    (modified == file.lastModified()) &&
+                    (length == file.length());
+        }
+    }
+
+    // in access order, least recently used is removed
+    private static class Routes extends LinkedHashMap<String, Entry> {
+        private static final long serialVersionUID = 1L;
+
+        private Routes() {
+            super(16, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > ROUTES;
+        }
+    }
+
+    private static final Routes routes = new Routes();
+
+    private RouteCache() {
+    }
+
+    /**
+     * Returns reader of the route, not bound to any provider yet.
+     * @param type reader handling the file
+     * @param fileName route file
+     * @throws IllegalArgumentException if route cannot be read
+     */
+    public static RouteReader get(Class<? extends RouteReader> type, String fileName) {
+        File file = new File(fileName);
+        String key;
+        try {
+            key = file.getCanonicalPath();
+        } catch (IOException ex) {
+            key = file.getAbsolutePath();
+        }
+
+        Entry entry;
+        synchronized (routes) {
+            entry = routes.get(key);
+        }
+        if ((entry == null) || (!entry.isValid(type, file))) {
+            // route is read without lock, same route might be read by two
+            // sessions at once.. the last one is kept.
+            RouteReader reader;
+            try {
+                reader = type.newInstance();
+            } catch (InstantiationException | IllegalAccessException ex) {
+                throw new IllegalStateException(ex);
+            }
+            String report = reader.load(fileName);
+            if (report != null) {
+                throw new IllegalArgumentException(report);
+            }
+            entry = new Entry(type, file, reader);
+            synchronized (routes) {
+                routes.put(key, entry);
+            }
+            logger.debug("Loaded " + key);
+        }
+        return entry.reader.copy();
+    }
+}
@@ -18,7 +18,6 @@ package com.wattzap.model;
 import org.jfree.data.xy.XYSeries;
 
 import com.gpxcreator.gpxpanel.GPXFile;
-import com.wattzap.controller.MessageBus;
 import com.wattzap.controller.Messages;
 import com.wattzap.model.dto.AxisPointInterest;
 import com.wattzap.model.dto.Telemetry;
@@ -38,7 +37,9 @@ import java.io.File;
  *
  * @author Jarek
  */
-public abstract class RouteReader extends SourceDataHandler {
+public abstract class RouteReader extends SourceDataHandler
+    implements Cloneable
+{
     private File currentFile = null;
     private XYSeries series = null;
     protected GPXFile gpxFile = null;
@@ -101,6 +102,33 @@ public abstract class RouteReader extends SourceDataHandler {
 
     public abstract String load(File file);
 
+    // loaded route can be shared by sessions (see RouteCache). Route cannot
+    // be shared if it depends on the rider settings.
+    public boolean isShared() {
+        return true;
+    }
+
+    /**
+     * Reader of the same (loaded) route. Points are shared and never modified,
+     * copy has own position in the route, values and settings.
+     */
+    public RouteReader copy() {
+        RouteReader copy;
+        try {
+            copy = (RouteReader) super.clone();
+        } catch (CloneNotSupportedException ex) {
+            throw new IllegalStateException(ex);
+        }
+        copy.values = new double[values.length];
+        copy.series = null;
+        copy.copyPoints();
+        return copy;
+    }
+
+    // replace lists of points with own ones (positions are kept by the lists)
+    protected void copyPoints() {
+    }
+
     public final void activate() {
         // store current configuration
         configChanged(UserPreferences.INSTANCE);
@@ -108,13 +136,13 @@ public abstract class RouteReader extends SourceDataHandler {
         if (gpxFile == null) {
             gpxFile = createGpx();
         }
-        MessageBus.INSTANCE.send(Messages.GPXLOAD, this);
+        getBus().send(Messages.GPXLOAD, this);
     }
 
     protected void rebuildProfile() {
         if (series != null) {
             series = createProfile();
-            MessageBus.INSTANCE.send(Messages.PROFILE, series);
+            getBus().send(Messages.PROFILE, series);
         }
     }
     // used mostly when FTP/FTHR changed in TRN mode, to "update" profile
@@ -62,27 +62,35 @@ public class SelectableDataSource {
 
 
     public static void buildHandlers() {
+        for (SourceDataHandlerIntf handler : createHandlers()) {
+            handler.initialize();
+        }
+    }
+
+    // all selectable handlers, not initialized yet
+    public static List<SourceDataHandlerIntf> createHandlers() {
 		String packageName = SelectableDataSource.class.getPackage().getName();
-        buildHandlers(packageName);
+        return createHandlers(packageName);
     }
 
-    private static void buildHandlers(String packageName) {
+    private static List<SourceDataHandlerIntf> createHandlers(String packageName) {
+        List<SourceDataHandlerIntf> created = new ArrayList<>();
         List<Class> classes;
         try {
             classes = ReflexiveClassLoader.getClassNamesFromPackage(
                     packageName, SelectableDataSourceAnnotation.class);
         } catch (IOException ioe) {
             assert false : "Cannot read package " + packageName;
-            return;
+            return created;
         } catch (URISyntaxException ue) {
             assert false : "Wrong URI " + packageName;
-            return;
+            return created;
         } catch (ClassNotFoundException nfe) {
             assert false : "Class not found " + packageName;
-            return;
+            return created;
         } catch (InstantiationException | IllegalAccessException ie) {
             assert false : "Cannot create class from " + packageName;
-            return;
+            return created;
         }
 
         for (Class clazz : classes) {
@@ -93,9 +101,10 @@ public class SelectableDataSource {
                 assert false : "Cannot create " + clazz.getCanonicalName();
             }
             if (handler != null) {
-                handler.initialize();
+                created.add(handler);
             }
         }
+        return created;
     }
 
     // each profile has own handlers, this is providing "current" source data
@@ -16,7 +16,6 @@
  */
 package com.wattzap.model;
 
-import com.wattzap.controller.MessageBus;
 import com.wattzap.controller.MessageCallback;
 import com.wattzap.controller.Messages;
 
@@ -48,11 +47,12 @@ public abstract class Sensor extends SourceDataHandler
 
     @Override
     protected void setValue(SourceDataEnum data, double value) {
-        long current = System.currentTimeMillis();
+        long current = getProvider().getClock().currentTimeMillis();
         super.setValue(data, value);
         synchronized(this) {
             modifications[data.ordinal()] = current;
         }
+        getProvider().valueChanged(this, data);
     }
     @Override
     public long getModificationTime(SourceDataEnum data) {
@@ -63,21 +63,21 @@ public abstract class Sensor extends SourceDataHandler
 
     @Override
     protected long setLastMessageTime() {
-        return setLastMessageTime(System.currentTimeMillis());
+        return setLastMessageTime(getProvider().getClock().currentTimeMillis());
     }
 
     @Override
     public SourceDataHandlerIntf initialize() {
         // message registration
-        MessageBus.INSTANCE.register(Messages.CONFIG_CHANGED, this);
-        MessageBus.INSTANCE.register(Messages.SUBSYSTEM, this);
-        MessageBus.INSTANCE.register(Messages.SUBSYSTEM_REMOVED, this);
+        getBus().register(Messages.CONFIG_CHANGED, this);
+        getBus().register(Messages.SUBSYSTEM, this);
+        getBus().register(Messages.SUBSYSTEM_REMOVED, this);
 
         // initialize configuration of the sensor
         configChanged(UserPreferences.INSTANCE);
 
         // notify TelemetryProvider about new handler
-        MessageBus.INSTANCE.send(Messages.HANDLER, this);
+        getBus().send(Messages.HANDLER, this);
 
         // will receive SUBSYSTEM notification in a second
         setSensorId(UserPreferences.INSTANCE.getSensorId(getPrettyName()));
@@ -87,16 +87,16 @@ public abstract class Sensor extends SourceDataHandler
 
     @Override
     public void release() {
-        MessageBus.INSTANCE.unregister(Messages.CONFIG_CHANGED, this);
-        MessageBus.INSTANCE.unregister(Messages.SUBSYSTEM, this);
-        MessageBus.INSTANCE.unregister(Messages.SUBSYSTEM_REMOVED, this);
+        getBus().unregister(Messages.CONFIG_CHANGED, this);
+        getBus().unregister(Messages.SUBSYSTEM, this);
+        getBus().unregister(Messages.SUBSYSTEM_REMOVED, this);
 
         // sensor not ready anymore
         setLastMessageTime(0);
 
         // request handler removal
-        MessageBus.INSTANCE.send(Messages.HANDLER, this);
-        MessageBus.INSTANCE.send(Messages.HANDLER_REMOVED, this);
+        getBus().send(Messages.HANDLER, this);
+        getBus().send(Messages.HANDLER_REMOVED, this);
     }
 
     @Override
@@ -126,7 +126,12 @@ public abstract class Sensor extends SourceDataHandler
                 if ((property == UserPreferences.SENSORS) && (getPrettyName().equals(property.getString()))) {
                     setSensorId(property.getSensorId(getPrettyName()));
                 }
+                long routing = getRouting(this);
                 configChanged(property);
+                // provided values might depend on the configuration
+                if (routing != getRouting(this)) {
+                    getBus().send(Messages.HANDLER, this);
+                }
                 break;
             case SUBSYSTEM:
                 if (((SubsystemIntf) o).getType() == getSubsystemType()) {
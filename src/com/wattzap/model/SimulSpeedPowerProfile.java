@@ -39,7 +39,7 @@ public class SimulSpeedPowerProfile extends TelemetryHandler {
         if ((prefs == UserPreferences.INSTANCE) ||
             (prefs == UserPreferences.MAX_POWER))
         {
-            ftp = prefs.getMaxPower();
+            ftp = getProfile().getMaxPower();
         }
     }
 
@@ -16,18 +16,22 @@
  */
 package com.wattzap.model;
 
+import com.wattzap.controller.MessageBus;
+
 /**
- *
+ * Handler belongs to single TelemetryProvider (application one, or provider
+ * of a session) and communicates on its bus only.
  * @author Jarek
  */
 public abstract class SourceDataHandler
     implements SourceDataHandlerIntf
 {
-    protected final double[] values = new double[SourceDataEnum.values().length];
+    protected double[] values = new double[SourceDataEnum.values().length];
 
     // has no valid information, cannot provide anything
     private long lastMessageTime = 0;
     private String prettyName;
+    private TelemetryProvider provider = TelemetryProvider.INSTANCE;
 
     public SourceDataHandler() {
         // initialize all values to not modified
@@ -38,6 +42,22 @@ public abstract class SourceDataHandler
         prettyName = getClass().getSimpleName();
     }
 
+    // provider must be set before initialize()
+    public SourceDataHandler setProvider(TelemetryProvider provider) {
+        this.provider = provider;
+        return this;
+    }
+    public TelemetryProvider getProvider() {
+        return provider;
+    }
+    protected MessageBus getBus() {
+        return provider.getBus();
+    }
+    // rider properties must be read from the profile of the provider
+    protected RiderProfile getProfile() {
+        return provider.getProfile();
+    }
+
     @Override
     public String getPrettyName() {
         return prettyName;
@@ -65,6 +85,25 @@ public abstract class SourceDataHandler
         setValue(SourceDataEnum.PAUSE, pause.val());
     }
 
+    /**
+     * Values provided (low bits) and checked (high bits) by the handler.
+     * Routing of the provider is built from them: if they change on
+     * CONFIG_CHANGED, handler must report it (by HANDLER message) after
+     * its configuration is updated.
+     */
+    static long getRouting(SourceDataHandlerIntf handler) {
+        long routing = 0;
+        for (SourceDataEnum data : SourceDataEnum.values()) {
+            if (handler.provides(data)) {
+                routing |= 1L << data.ordinal();
+            }
+            if (handler.checks(data)) {
+                routing |= 1L << (32 + data.ordinal());
+            }
+        }
+        return routing;
+    }
+
     /**
      * Which values are checked by the handler (without touching the value).
      *
@@ -37,7 +37,7 @@ public class Speed2PowerProfile extends TelemetryHandler {
         if ((prefs == UserPreferences.INSTANCE) ||
             (prefs == UserPreferences.TURBO_TRAINER))
         {
-            power = prefs.getTurboTrainerProfile();
+            power = getProfile().getTurboTrainerProfile();
         }
     }
 
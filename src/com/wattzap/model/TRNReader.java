@@ -17,7 +17,6 @@
 package com.wattzap.model;
 
 import au.com.bytecode.opencsv.CSVReader;
-import com.wattzap.controller.MessageBus;
 import com.wattzap.controller.Messages;
 import com.wattzap.model.dto.AxisPointsList;
 import com.wattzap.model.dto.Telemetry;
@@ -52,8 +51,17 @@ public class TRNReader extends RouteReader {
         return "trn";
     }
 
+    // items depend on FTP/FTHR of the rider
+    @Override
+    public boolean isShared() {
+        return false;
+    }
+
     @Override
     public String load(File file) {
+        // items are parsed with FTP/FTHR of the rider
+        int maxHr = getProfile().getMaxHR();
+        int ftp = getProfile().getMaxPower();
         AxisPointsList<TrainingItem> training = new AxisPointsList<>();
         this.training = null;
         routeLen = 0.0;
@@ -128,21 +136,21 @@ public class TRNReader extends RouteReader {
                                     break;
                                 }
                                 providesHr = true;
-                                ok = item.setHr(f);
+                                ok = item.setHr(f, maxHr);
                                 break;
                             case "rpe":
                                 if (item == null) {
                                     break;
                                 }
                                 providesPower = true;
-                                ok = item.setRpe(f);
+                                ok = item.setRpe(f, ftp);
                                 break;
                             case "power":
                                 if (item == null) {
                                     break;
                                 }
                                 providesPower = true;
-                                ok = item.setPower(f);
+                                ok = item.setPower(f, ftp);
                                 break;
                             case "cadence":
                             case "cad":
@@ -320,7 +328,7 @@ public class TRNReader extends RouteReader {
         TrainingItem item = training.get(t.getDistance());
         // if point was passed.. show message
         if (training.isChanged() && (item.getDescription() != null)) {
-            MessageBus.INSTANCE.send(Messages.ROUTE_MSG, item.getDescription());
+            getBus().send(Messages.ROUTE_MSG, item.getDescription());
         }
 
         // distance equals the time [s], route time in [ms]
@@ -360,13 +368,17 @@ public class TRNReader extends RouteReader {
     public void configChanged(UserPreferences pref) {
         boolean reload = false;
         if ((pref == UserPreferences.HR_MAX) || (pref == UserPreferences.INSTANCE)) {
-            TrainingItem.setMaxHr(pref.getMaxHR());
+            if (getProfile() == RiderProfile.GLOBAL) {
+                TrainingItem.setMaxHr(getProfile().getMaxHR());
+            }
             if (providesHr) {
                 reload = true;
             }
         }
         if ((pref == UserPreferences.MAX_POWER) || (pref == UserPreferences.INSTANCE)) {
-            TrainingItem.setFtp(pref.getMaxPower());
+            if (getProfile() == RiderProfile.GLOBAL) {
+                TrainingItem.setFtp(getProfile().getMaxPower());
+            }
             if (providesPower) {
                 reload = true;
             }
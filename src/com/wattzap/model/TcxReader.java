@@ -111,6 +111,13 @@ public class TcxReader extends RouteReader {
         return ret;
 	}
 
+    @Override
+    protected void copyPoints() {
+        if (points != null) {
+            points = new AxisPointsList<>(points);
+        }
+    }
+
     @Override
 	public void close() {
         points = null;
@@ -192,10 +199,10 @@ public class TcxReader extends RouteReader {
     @Override
     public void configChanged(UserPreferences pref) {
         if ((pref == UserPreferences.INSTANCE) || (pref == UserPreferences.TURBO_TRAINER)) {
-            power = pref.getTurboTrainerProfile();
+            power = getProfile().getTurboTrainerProfile();
         }
         // it can be updated every configChanged without checking the property..
-        totalWeight = pref.getTotalWeight();
+        totalWeight = getProfile().getTotalWeight();
 
         if ((pref == UserPreferences.INSTANCE) ||
             (pref == UserPreferences.METRIC) ||
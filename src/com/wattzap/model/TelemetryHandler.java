@@ -16,7 +16,6 @@
  */
 package com.wattzap.model;
 
-import com.wattzap.controller.MessageBus;
 import com.wattzap.controller.MessageCallback;
 import com.wattzap.controller.Messages;
 import com.wattzap.model.dto.Telemetry;
@@ -36,28 +35,28 @@ public abstract class TelemetryHandler
         setLastMessageTime(-1);
 
         // register messages
-        MessageBus.INSTANCE.register(Messages.TELEMETRY, this);
-		MessageBus.INSTANCE.register(Messages.CONFIG_CHANGED, this);
+        getBus().register(Messages.TELEMETRY, this);
+		getBus().register(Messages.CONFIG_CHANGED, this);
 
         // initialize all config properties
         configChanged(UserPreferences.INSTANCE);
 
         // notify about new telemetryProvider
-        MessageBus.INSTANCE.send(Messages.HANDLER, this);
+        getBus().send(Messages.HANDLER, this);
         return this;
     }
 
     @Override
     public void release() {
-        MessageBus.INSTANCE.unregister(Messages.TELEMETRY, this);
-		MessageBus.INSTANCE.unregister(Messages.CONFIG_CHANGED, this);
+        getBus().unregister(Messages.TELEMETRY, this);
+		getBus().unregister(Messages.CONFIG_CHANGED, this);
 
         // not ready anymore
         setLastMessageTime(0);
 
         // request handler removal
-        MessageBus.INSTANCE.send(Messages.HANDLER, this);
-        MessageBus.INSTANCE.send(Messages.HANDLER_REMOVED, this);
+        getBus().send(Messages.HANDLER, this);
+        getBus().send(Messages.HANDLER_REMOVED, this);
     }
 
     public abstract void storeTelemetryData(Telemetry t);
@@ -73,7 +72,12 @@ public abstract class TelemetryHandler
                 }
                 break;
             case CONFIG_CHANGED:
+                long routing = getRouting(this);
                 configChanged((UserPreferences) o);
+                // provided values might depend on the configuration
+                if (routing != getRouting(this)) {
+                    getBus().send(Messages.HANDLER, this);
+                }
                 break;
         }
     }
@@ -16,10 +16,12 @@
  */
 package com.wattzap.model;
 
+import com.wattzap.controller.BusStatistics;
 import com.wattzap.controller.MessageBus;
 import com.wattzap.controller.MessageCallback;
 import com.wattzap.controller.Messages;
 import com.wattzap.model.dto.Telemetry;
+import com.wattzap.model.dto.TelemetryPool;
 import com.wattzap.model.dto.TelemetryValidityEnum;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -31,11 +33,19 @@ import org.apache.log4j.Logger;
 /**
  * Checks all (added) dataHandlers and computes periodically telemetry on settings
  * basis (speed, cadence, heart rate, power, trainer load).
+ * INSTANCE works on the application bus, each Session has its own provider
+ * (with own rider profile).
  * @author Jarek
  */
-public enum TelemetryProvider implements MessageCallback
+public class TelemetryProvider implements MessageCallback
 {
-    INSTANCE;
+    public static final TelemetryProvider INSTANCE =
+            new TelemetryProvider("TelemetryProvider", MessageBus.INSTANCE);
+
+    private final String name;
+    private final MessageBus bus;
+    private final RiderProfile profile;
+    private Clock clock = Clock.SYSTEM;
 
     private final Logger logger = LogManager.getLogger("Telemetry");
 
@@ -45,29 +55,76 @@ public enum TelemetryProvider implements MessageCallback
     // list of handlers for source data (read from subsystems, or computed on telemetry..)
     private final List<SourceDataHandlerIntf> handlers = new ArrayList<>();
     private final Map<SourceDataEnum, SourceDataHandlerIntf> selectedHandlers = new HashMap<>();
+    // names of selected handlers, used instead of ones from preferences
+    private final Map<SourceDataEnum, String> sources = new HashMap<>();
 
     /* current "location" and training time, filled in telemetry to be reported */
     private Telemetry t = null;
+    // immutable copies of t are sent to receivers
+    private final TelemetryPool snapshots = new TelemetryPool(16);
     private double distance = 0.0; // [km]
     private long runtime = 0; // [ms]
     private long sessTime = 0; // [ms]
+    // part of the tick time not added to runtime yet
+    private long remainder = 0; // [ns]
+
+    // ticks are generated on exact intervals
+    private final TelemetryScheduler scheduler = new TelemetryScheduler(
+            UserPreferences.TELEMETRY_RATE.getInt(),
+            UserPreferences.TELEMETRY_CATCH_UP.getBool());
 
     private Thread runner = null;
 
+    // Routing of the data: which handlers provide and check each value. It is
+    // built by telemetry thread when any handler was added, removed or
+    // configuration changed, so tick doesn't ask all handlers for all values.
+    private static final class Route {
+        private final SourceDataEnum prop;
+        // selected handler is missing, training is paused
+        private boolean wrongSelected = false;
+        // handlers providing the value, and whether they provide pause
+        private SourceDataHandlerIntf[] providers;
+        private boolean[] pauses;
+        // handlers checking the value
+        private SourceDataHandlerIntf[] checkers;
+
+        private Route(SourceDataEnum prop) {
+            this.prop = prop;
+        }
+    }
+    private volatile boolean routingChanged = true;
+    private Route[] routing = new Route[0];
+    private SourceDataHandlerIntf[] pauseSources = new SourceDataHandlerIntf[0];
+    // number of handlers for each value, used to report changes
+    private final int[] lastHandlersNum = new int[SourceDataEnum.values().length];
+    // selected handlers which request tick when value is changed (event mode)
+    private volatile SourceDataHandlerIntf[] eventSources =
+            new SourceDataHandlerIntf[SourceDataEnum.values().length];
+
+    public TelemetryProvider(String name, MessageBus bus) {
+        this(name, bus, RiderProfile.GLOBAL);
+    }
+
+    public TelemetryProvider(String name, MessageBus bus, RiderProfile profile) {
+        this.name = name;
+        this.bus = bus;
+        this.profile = profile;
+    }
+
     @Override
     public String toString() {
-        return "TelemetryProvider:: ss=" + subsystems + ", handlers=" + handlers;
+        return name + ":: ss=" + subsystems + ", handlers=" + handlers;
     }
 
     public TelemetryProvider initialize() {
-        MessageBus.INSTANCE.register(Messages.SUBSYSTEM, this);
-        MessageBus.INSTANCE.register(Messages.SUBSYSTEM_REMOVED, this);
-        MessageBus.INSTANCE.register(Messages.HANDLER, this);
-        MessageBus.INSTANCE.register(Messages.HANDLER_REMOVED, this);
-        MessageBus.INSTANCE.register(Messages.CONFIG_CHANGED, this);
-        MessageBus.INSTANCE.register(Messages.STARTPOS, this);
-        MessageBus.INSTANCE.register(Messages.START, this);
-        MessageBus.INSTANCE.register(Messages.STOP, this);
+        bus.register(Messages.SUBSYSTEM, this);
+        bus.register(Messages.SUBSYSTEM_REMOVED, this);
+        bus.register(Messages.HANDLER, this);
+        bus.register(Messages.HANDLER_REMOVED, this);
+        bus.register(Messages.CONFIG_CHANGED, this);
+        bus.register(Messages.STARTPOS, this);
+        bus.register(Messages.START, this);
+        bus.register(Messages.STOP, this);
 
         // set selected handlers
         configChanged(UserPreferences.INSTANCE);
@@ -83,11 +140,53 @@ public enum TelemetryProvider implements MessageCallback
         return handlers;
     }
 
+    // bus all the handlers and receivers of the telemetry are connected to
+    public MessageBus getBus() {
+        return bus;
+    }
+    // rider properties and training state, read by all the handlers
+    public RiderProfile getProfile() {
+        return profile;
+    }
+
+    /**
+     * Time source for the telemetry loop and all the handlers. Must be set
+     * before initialize().
+     */
+    public void setClock(Clock clock) {
+        this.clock = clock;
+        scheduler.setClock(clock);
+    }
+    public Clock getClock() {
+        return clock;
+    }
+
+    // telemetry thread is started
+    public boolean isRunning() {
+        return runner != null;
+    }
+
+    // tick schedule with its statistics
+    public TelemetryScheduler getScheduler() {
+        return scheduler;
+    }
+
     // selected data handlers
     public SourceDataHandlerIntf getSelected(SourceDataEnum data) {
         return selectedHandlers.get(data);
     }
 
+    /**
+     * Handler has set new value. If it is the selected source of the value,
+     * telemetry is computed as soon as possible (in event mode only). It is
+     * called for each sensor message, so must be cheap.
+     */
+    public void valueChanged(SourceDataHandlerIntf handler, SourceDataEnum data) {
+        if (eventSources[data.ordinal()] == handler) {
+            scheduler.wake();
+        }
+    }
+
     private class HandlerToReplace implements SourceDataHandlerIntf {
         private final String name;
 
@@ -141,8 +240,20 @@ public enum TelemetryProvider implements MessageCallback
         }
     }
 
+    /**
+     * Selects handler for the data, regardless of the preferences. It is used
+     * by sessions, where each rider has own sensors. Must be called before
+     * initialize().
+     */
+    public void setSource(SourceDataEnum data, String handlerName) {
+        sources.put(data, handlerName);
+    }
+
     private void setSensor(SourceDataEnum data, UserPreferences pref) {
         String name = pref.getString();
+        if (sources.containsKey(data)) {
+            name = sources.get(data);
+        }
         selectedHandlers.put(data, new HandlerToReplace(name));
         for (SourceDataHandlerIntf handler : handlers) {
             if (name.equals(handler.getPrettyName())) {
@@ -150,7 +261,7 @@ public enum TelemetryProvider implements MessageCallback
             }
         }
         if (selectedHandlers.get(data) == null) {
-            selectedHandlers.put(data, new HandlerToReplace(pref.getString()));
+            selectedHandlers.put(data, new HandlerToReplace(name));
         }
     }
 
@@ -175,12 +286,134 @@ public enum TelemetryProvider implements MessageCallback
                 (pref == UserPreferences.SPEED_SOURCE)) {
             setSensor(SourceDataEnum.WHEEL_SPEED, UserPreferences.SPEED_SOURCE);
         }
+        if ((pref == UserPreferences.INSTANCE) ||
+                (pref == UserPreferences.TELEMETRY_RATE)) {
+            scheduler.setRate(UserPreferences.TELEMETRY_RATE.getInt());
+        }
+        if ((pref == UserPreferences.INSTANCE) ||
+                (pref == UserPreferences.TELEMETRY_CATCH_UP)) {
+            scheduler.setCatchUp(UserPreferences.TELEMETRY_CATCH_UP.getBool());
+        }
+        if ((pref == UserPreferences.INSTANCE) ||
+                (pref == UserPreferences.TELEMETRY_EVENTS)) {
+            scheduler.setEventMode(UserPreferences.TELEMETRY_EVENTS.getBool());
+        }
+        if ((pref == UserPreferences.INSTANCE) ||
+                (pref == UserPreferences.TELEMETRY_MIN_SPACING)) {
+            scheduler.setMinSpacing(UserPreferences.TELEMETRY_MIN_SPACING.getInt());
+        }
+        // latency statistics of the bus the provider works on
+        BusStatistics statistics = bus.getStatistics();
+        if ((pref == UserPreferences.INSTANCE) ||
+                (pref == UserPreferences.BUS_STATS)) {
+            statistics.setEnabled(UserPreferences.BUS_STATS.getBool());
+        }
+        if ((pref == UserPreferences.INSTANCE) ||
+                (pref == UserPreferences.BUS_BUDGET)) {
+            statistics.setBudget(UserPreferences.BUS_BUDGET.getInt() * 1000L);
+        }
+        if ((pref == UserPreferences.INSTANCE) ||
+                (pref == UserPreferences.BUS_DUMP)) {
+            statistics.setDump(UserPreferences.getWD() + "/bus-"
+                    + statistics.getName() + ".csv",
+                    UserPreferences.BUS_DUMP.getInt());
+        }
+    }
+
+    private void buildRouting() {
+        routingChanged = false;
+
+        List<SourceDataHandlerIntf> all;
+        synchronized(handlers) {
+            all = new ArrayList<>(handlers);
+        }
+        List<Route> routes = new ArrayList<>();
+        SourceDataHandlerIntf[] events =
+                new SourceDataHandlerIntf[SourceDataEnum.values().length];
+        List<SourceDataHandlerIntf> providers = new ArrayList<>();
+        List<SourceDataHandlerIntf> checkers = new ArrayList<>();
+        for (SourceDataEnum prop : SourceDataEnum.values()) {
+            if (prop == SourceDataEnum.PAUSE) {
+                continue;
+            }
+            Route route = new Route(prop);
+            routes.add(route);
+            providers.clear();
+            checkers.clear();
+
+            SourceDataHandlerIntf selected = null;
+            if (selectedHandlers.containsKey(prop)) {
+                // get data from selected handler
+                selected = getSelected(prop);
+                if ((selected == null) || (!selected.provides(prop))) {
+                    if (selected == null) {
+                        logger.error("Selected " + prop + " already removed");
+                    } else {
+                        logger.error("Selected " + prop + "(" + selected.getPrettyName()
+                                + ") not created yet");
+                    }
+                    route.wrongSelected = true;
+                } else {
+                    events[prop.ordinal()] = selected;
+                }
+            }
+            for (SourceDataHandlerIntf handler : all) {
+                // if telemetryHandler is active and provides property
+                if ((handler == selected) ||
+                        (selected == null) && handler.provides(prop))
+                {
+                    providers.add(handler);
+                }
+                if (handler.checks(prop)) {
+                    checkers.add(handler);
+                }
+            }
+            route.providers = providers.toArray(
+                    new SourceDataHandlerIntf[providers.size()]);
+            route.pauses = new boolean[route.providers.length];
+            for (int i = 0; i < route.providers.length; i++) {
+                route.pauses[i] = route.providers[i].provides(SourceDataEnum.PAUSE);
+            }
+            route.checkers = checkers.toArray(
+                    new SourceDataHandlerIntf[checkers.size()]);
+
+            // check if number of handlers for property has changed
+            if (route.wrongSelected) {
+                continue;
+            }
+            int handlersNum = route.providers.length;
+            if (handlersNum != lastHandlersNum[prop.ordinal()]) {
+                if (lastHandlersNum[prop.ordinal()] < 0) {
+                    if (handlersNum != 1) {
+                        logger.warn("Number of handlers providing " + prop
+                                + " is " + handlersNum);
+                    }
+                } else {
+                    logger.warn("Number of handlers providing " + prop
+                            + " changed " + lastHandlersNum[prop.ordinal()]
+                            + "->" + handlersNum);
+                }
+                lastHandlersNum[prop.ordinal()] = handlersNum;
+            }
+        }
+
+        providers.clear();
+        for (SourceDataHandlerIntf handler : all) {
+            if (handler.checks(SourceDataEnum.PAUSE) &&
+                handler.provides(SourceDataEnum.PAUSE))
+            {
+                providers.add(handler);
+            }
+        }
+        pauseSources = providers.toArray(new SourceDataHandlerIntf[providers.size()]);
+        routing = routes.toArray(new Route[routes.size()]);
+        eventSources = events;
     }
 
     public void setDistanceTime(double distance, long time) {
         this.distance = distance;
         this.runtime = time;
-        MessageBus.INSTANCE.send(Messages.STARTPOS, (Double) distance);
+        bus.send(Messages.STARTPOS, (Double) distance);
     }
 
     private void reportPos() {
@@ -189,7 +422,7 @@ public enum TelemetryProvider implements MessageCallback
             (UserPreferences.EVAL_TIME.getEvalTime() <= 0))
         {
             pause = PauseMsgEnum.TRIAL_EXPIRED;
-        } else if (UserPreferences.INSTANCE.isStarted()) {
+        } else if (profile.isStarted()) {
             pause = PauseMsgEnum.INITIALIZE;
         } else {
             pause = PauseMsgEnum.NOT_STARTED;
@@ -209,7 +442,7 @@ public enum TelemetryProvider implements MessageCallback
         t.setValidity(SourceDataEnum.ROUTE_TIME, TelemetryValidityEnum.NOT_AVAILABLE);
         // in fact.. video is not promoted if not started. Nobody calculates
         // routeTime
-        MessageBus.INSTANCE.send(Messages.TELEMETRY, t);
+        bus.send(Messages.TELEMETRY, snapshots.publish(t));
     }
 
     /* Main loop: get all data, process it and send current telemetry, then sleep some time.
@@ -220,12 +453,12 @@ public enum TelemetryProvider implements MessageCallback
         // initialize the number of handlers to be displayed. By default
         // expected is one handler for the property, DISTANCE and TIME should
         // not have any handlers.
-        int[] lastHandlersNum = new int[SourceDataEnum.values().length];
         for (int i = 0; i < lastHandlersNum.length; i++) {
             lastHandlersNum[i] = -1;
         }
         lastHandlersNum[SourceDataEnum.DISTANCE.ordinal()] = 0;
         lastHandlersNum[SourceDataEnum.TIME.ordinal()] = 0;
+        routingChanged = true;
 
         // Wait all handlers reinitialize to show what is wrong with configuration.
         do {
@@ -233,7 +466,7 @@ public enum TelemetryProvider implements MessageCallback
             reportPos();
 
             try {
-                Thread.sleep(5000);
+                clock.sleep(5000);
             } catch (InterruptedException e) {
                 // if start discarded.. just break telemetry processing
                 Thread.currentThread().interrupt();
@@ -243,16 +476,24 @@ public enum TelemetryProvider implements MessageCallback
         } while (t.getPause() == PauseMsgEnum.TRIAL_EXPIRED);
 
         // start imediatelly, previous "pause" must be ignored.
-        UserPreferences.MANUAL_PAUSE.setBool(false);
+        profile.setPaused(false);
         sessTime = 0;
+        remainder = 0;
+        scheduler.start();
 
         // telemetry filled by sensors and handlers
         boolean speedTraining = t.isAvailable(SourceDataEnum.SPEED);
         while (!Thread.currentThread().isInterrupted()) {
-            long start = System.currentTimeMillis();
+            long start = clock.currentTimeMillis();
             int pause = 0;
 
-            for (SourceDataEnum prop : SourceDataEnum.values()) {
+            // handlers were added/removed/reconfigured
+            if (routingChanged) {
+                buildRouting();
+            }
+
+            for (Route route : routing) {
+                SourceDataEnum prop = route.prop;
                 TelemetryValidityEnum validity = TelemetryValidityEnum.NOT_PRESENT;
                 double value = prop.getDefault();
 
@@ -265,89 +506,73 @@ public enum TelemetryProvider implements MessageCallback
                         validity = TelemetryValidityEnum.OK;
                         value = distance;
                         break;
-                    case PAUSE:
-                        continue;
                 }
 
-                SourceDataHandlerIntf selected = null;
-                if (selectedHandlers.containsKey(prop)) {
-                    // get data from selected handler
-                    selected = getSelected(prop);
-                    // set pause if selected handler was removed or
-                    // is not created yet (and will not be created at all)
-                    if ((selected == null) || (!selected.provides(prop))) {
-                        if (selected == null) {
-                            logger.error("Selected " + prop + " already removed");
-                        } else {
-                            logger.error("Selected " + prop + "(" + selected.getPrettyName()
-                                    + ") not created yet");
-                        }
-                        if (pause < PauseMsgEnum.WRONG_SELECTED.val()) {
-                            pause = PauseMsgEnum.WRONG_SELECTED.val();
-                        }
-                        continue;
+                // set pause if selected handler was removed or is not
+                // created yet (and will not be created at all)
+                if (route.wrongSelected) {
+                    if (pause < PauseMsgEnum.WRONG_SELECTED.val()) {
+                        pause = PauseMsgEnum.WRONG_SELECTED.val();
                     }
+                    continue;
                 }
-                int handlersNum = 0;
-                for (SourceDataHandlerIntf handler :  handlers) {
-                    // if telemetryHandler is active and provides property
-                    if ((handler == selected) ||
-                            (selected == null) && handler.provides(prop))
+
+                for (int i = 0; i < route.providers.length; i++) {
+                    SourceDataHandlerIntf handler = route.providers[i];
+                    // data from sensor is not valid after 5 seconds
+                    if ((handler.getLastMessageTime() < 0) ||
+                        (handler.getModificationTime(prop) >= start - 5000))
                     {
-                        handlersNum++;
-                        // data from sensor is not valid after 5 seconds
-                        if ((handler.getLastMessageTime() < 0) ||
-                            (handler.getModificationTime(prop) >= start - 5000))
-                        {
-                            validity = TelemetryValidityEnum.OK;
-                            value = handler.getValue(prop);
-                        } else {
-                            validity = TelemetryValidityEnum.NOT_AVAILABLE;
-                        }
-                        // if handler is selected it might pause of any reason
-                        if (handler.provides(SourceDataEnum.PAUSE)) {
-                            int p = (int) handler.getValue(SourceDataEnum.PAUSE);
-                            if (pause < p) {
-                                pause = p;
-                            }
-                        }
+                        validity = TelemetryValidityEnum.OK;
+                        value = handler.getValue(prop);
+                    } else {
+                        validity = TelemetryValidityEnum.NOT_AVAILABLE;
                     }
-                    // handler checks property, only telemetries do that!
-                    // in sensors modificationTime is used to check time,
-                    // and telemetryHandler report here value condition.
-                    if (handler.checks(prop)) {
-                        TelemetryValidityEnum target;
-                        if (handler.getModificationTime(prop) <= -100) {
-                            target = TelemetryValidityEnum.NOT_AVAILABLE;
-                        } else if (handler.getModificationTime(prop) >= 100) {
-                            target = TelemetryValidityEnum.WRONG;
-                        } else if (handler.getModificationTime(prop) < 0) {
-                            target = TelemetryValidityEnum.TOO_SMALL;
-                        } else if (handler.getModificationTime(prop) > 0) {
-                            target = TelemetryValidityEnum.TOO_BIG;
-                        } else {
-                            target = TelemetryValidityEnum.OK;
-                        }
-                        switch (validity) {
-                            case NOT_PRESENT:
-                            case NOT_AVAILABLE:
-                                break;
-                            case OK:
-                                validity = target;
-                                break;
-                            case TOO_BIG:
-                            case TOO_SMALL:
-                                if (validity != target) {
-                                    validity = TelemetryValidityEnum.WRONG;
-                                }
-                                break;
-                            case WRONG:
-                                // stays wrong..
-                                break;
+                    // if handler is selected it might pause of any reason
+                    if (route.pauses[i]) {
+                        int p = (int) handler.getValue(SourceDataEnum.PAUSE);
+                        if (pause < p) {
+                            pause = p;
                         }
                     }
                 }
 
+                // handler checks property, only telemetries do that!
+                // in sensors modificationTime is used to check time,
+                // and telemetryHandler report here value condition.
+                for (SourceDataHandlerIntf handler : route.checkers) {
+                    long check = handler.getModificationTime(prop);
+                    TelemetryValidityEnum target;
+                    if (check <= -100) {
+                        target = TelemetryValidityEnum.NOT_AVAILABLE;
+                    } else if (check >= 100) {
+                        target = TelemetryValidityEnum.WRONG;
+                    } else if (check < 0) {
+                        target = TelemetryValidityEnum.TOO_SMALL;
+                    } else if (check > 0) {
+                        target = TelemetryValidityEnum.TOO_BIG;
+                    } else {
+                        target = TelemetryValidityEnum.OK;
+                    }
+                    switch (validity) {
+                        case NOT_PRESENT:
+                        case NOT_AVAILABLE:
+                            break;
+                        case OK:
+                            validity = target;
+                            break;
+                        case TOO_BIG:
+                        case TOO_SMALL:
+                            if (validity != target) {
+                                validity = TelemetryValidityEnum.WRONG;
+                            }
+                            break;
+                        case WRONG:
+                            // stays wrong..
+                            break;
+                    }
+                }
+
                 // special cases.. some values if reported negative, they should
                 // be removed from ODO
                 switch (prop) {
@@ -369,53 +594,36 @@ public enum TelemetryProvider implements MessageCallback
                 // set validity, time/distance might be checked as well ("promoted"
                 // to too_small/too_big)
                 t.setDouble(prop, value, validity);
-
-                // check if number of handlers for property has changed
-                if (handlersNum != lastHandlersNum[prop.ordinal()]) {
-                    if (lastHandlersNum[prop.ordinal()] < 0) {
-                        if ((handlersNum != 1) && (prop != SourceDataEnum.PAUSE)) {
-                            logger.warn("Number of handlers providing " + prop
-                                    + " is " + handlersNum);
-                        }
-                    } else {
-                        logger.warn("Number of handlers providing " + prop
-                                + " changed " + lastHandlersNum[prop.ordinal()]
-                                + "->" + handlersNum);
-                    }
-                    lastHandlersNum[prop.ordinal()] = handlersNum;
-                }
             }
 
             // very special case: pause handler.. It doesn't provide any other
             // data (thus cannot be selectable) but is quite important. General
             // solution: if handler provides and checks pause it can always
             // report a pause reason.
-            for (SourceDataHandlerIntf handler : handlers) {
-                if (handler.checks(SourceDataEnum.PAUSE) &&
-                    handler.provides(SourceDataEnum.PAUSE))
-                {
-                    int p = (int) handler.getValue(SourceDataEnum.PAUSE);
-                    if (pause < p) {
-                        pause = p;
-                    }
+            for (SourceDataHandlerIntf handler : pauseSources) {
+                int p = (int) handler.getValue(SourceDataEnum.PAUSE);
+                if (pause < p) {
+                    pause = p;
                 }
             }
 
             t.setPause(PauseMsgEnum.get(pause));
-            MessageBus.INSTANCE.send(Messages.TELEMETRY, t);
+            bus.send(Messages.TELEMETRY, snapshots.publish(t));
             if (Thread.currentThread().isInterrupted()) {
                 break;
             }
 
-            // sleep some time
+            // wait for next tick (or earlier, when selected sensor reports
+            // new value). Time passed doesn't depend on how long handlers and
+            // callbacks took.
+            long tickTime;
             try {
-                Thread.sleep(250);
+                tickTime = scheduler.waitTick();
             } catch (InterruptedException e) {
                 break;
             }
 
             // advance time and distance if not paused
-            long timePassed = System.currentTimeMillis() - start; // [ms]
             // advance ridden distance and time, only if not paused
             // (this is: no pause message is defined for pause value)
             // Handle normal routes (with distance) and routes with
@@ -427,17 +635,21 @@ public enum TelemetryProvider implements MessageCallback
             // loading same training after window closing (and starting from 0
             // is not welcomed then)
             if (PauseMsgEnum.msg(t) == null) {
+                remainder += tickTime;
+                long timePassed = remainder / 1000000L; // [ms]
+                remainder -= timePassed * 1000000L;
                 if (t.isAvailable(SourceDataEnum.SPEED)) {
-                    distance += (t.getSpeed() / 3.6) * (timePassed / 1000.0) / 1000.0;
+                    distance += (t.getSpeed() / 3.6) * (tickTime / 1.0e9) / 1000.0;
                 } else {
-                    distance += timePassed / 1000.0;
+                    distance += tickTime / 1.0e9;
                 }
                 runtime += timePassed;
                 sessTime += timePassed;
             }
         }
 
-        if (!UserPreferences.INSTANCE.isRegistered()) {
+        // replayed trainings (on virtual clock) don't use evaluation time
+        if ((!UserPreferences.INSTANCE.isRegistered()) && (clock == Clock.SYSTEM)) {
             int timeLeft = UserPreferences.EVAL_TIME.getEvalTime();
             timeLeft -= (sessTime / 1000) / 60;
             sessTime = 0;
@@ -448,9 +660,11 @@ public enum TelemetryProvider implements MessageCallback
             UserPreferences.EVAL_TIME.setEvalTime(timeLeft);
         }
 
+        logger.info(scheduler);
+
         // stopped, show proper message with last values
         t.setPause(PauseMsgEnum.STOPPED);
-        MessageBus.INSTANCE.send(Messages.TELEMETRY, t);
+        bus.send(Messages.TELEMETRY, snapshots.publish(t));
     }
 
     @Override
@@ -459,12 +673,15 @@ public enum TelemetryProvider implements MessageCallback
         switch (m) {
             case CONFIG_CHANGED:
                 configChanged((UserPreferences) o);
+                // selection might be changed. Handlers are called later,
+                // they send HANDLER when their provided values are changed.
+                routingChanged = true;
                 break;
 
             case START:
-                UserPreferences.RUNNING.setBool(true);
+                profile.setStarted(true);
                 // disable pairing if running: but all subsystems are left enabled
-                UserPreferences.PAIRING.setBool(false);
+                profile.setPairing(false);
                 if (runner == null) {
                     runner = new Thread() {
                         @Override
@@ -472,7 +689,7 @@ public enum TelemetryProvider implements MessageCallback
                             threadLoop();
                         }
                     };
-                    runner.setName("TelemetryProvider");
+                    runner.setName(name);
                     runner.start();
                 } else {
                     logger.error("TelemetryProvider already started");
@@ -486,7 +703,7 @@ public enum TelemetryProvider implements MessageCallback
                 } else {
                     logger.error("TelemetryProvider not started");
                 }
-                UserPreferences.RUNNING.setBool(false);
+                profile.setStarted(false);
                 break;
 
             case SUBSYSTEM:
@@ -505,6 +722,7 @@ public enum TelemetryProvider implements MessageCallback
 
             case HANDLER:
                 handler = (SourceDataHandlerIntf) o;
+                routingChanged = true;
                 // replace all fake-handlers with just reported
                 for (SourceDataEnum val : selectedHandlers.keySet()) {
                     SourceDataHandlerIntf selected = selectedHandlers.get(val);
@@ -518,16 +736,18 @@ public enum TelemetryProvider implements MessageCallback
                     }
                 }
                 // check if subsystem already added
-                for (SourceDataHandlerIntf existing : handlers) {
-                    // compare references, not objects!
-                    if (existing == o) {
-                        return;
+                synchronized(handlers) {
+                    for (SourceDataHandlerIntf existing : handlers) {
+                        // compare references, not objects!
+                        if (existing == o) {
+                            return;
+                        }
                     }
+                    // add handler and notify about all available subsystems
+                    handlers.add((SourceDataHandlerIntf) o);
                 }
-                // add handler and notify about all available subsystems
-                handlers.add((SourceDataHandlerIntf) o);
                 if (o instanceof MessageCallback) {
-                    if (MessageBus.INSTANCE.isRegisterd(Messages.SUBSYSTEM, (MessageCallback) o)) {
+                    if (bus.isRegisterd(Messages.SUBSYSTEM, (MessageCallback) o)) {
                         for (SubsystemIntf subsystem: subsystems) {
                             ((MessageCallback) o).callback(Messages.SUBSYSTEM, (Object) subsystem);
                         }
@@ -536,6 +756,7 @@ public enum TelemetryProvider implements MessageCallback
                 break;
             case HANDLER_REMOVED:
                 handler = (SourceDataHandlerIntf) o;
+                routingChanged = true;
                 // remove selected handler
                 for (SourceDataEnum val : selectedHandlers.keySet()) {
                     SourceDataHandlerIntf selected = selectedHandlers.get(val);
@@ -546,11 +767,13 @@ public enum TelemetryProvider implements MessageCallback
                     }
                 }
                 // remove handler from the list
-                handlers.remove(handler);
+                synchronized(handlers) {
+                    handlers.remove(handler);
+                }
                 // and notify handler about subsystem removal, just for fun
                 // (if sensor doesn't unregister from subsystem on removal)
                 if (o instanceof MessageCallback) {
-                    if (MessageBus.INSTANCE.isRegisterd(Messages.SUBSYSTEM_REMOVED, (MessageCallback) o)) {
+                    if (bus.isRegisterd(Messages.SUBSYSTEM_REMOVED, (MessageCallback) o)) {
                         for (SubsystemIntf subsystem: subsystems) {
                             ((MessageCallback) o).callback(Messages.SUBSYSTEM_REMOVED, (Object) subsystem);
                         }
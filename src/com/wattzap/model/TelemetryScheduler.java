@@ -0,0 +1,257 @@
+/*
+ * This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wattzap.model;
+
+/**
+ * Fixed-rate scheduler for telemetry loop. Ticks are driven by absolute
+ * System.nanoTime() deadlines, so time spent in handlers and in message
+ * callbacks doesn't stretch the period.
+ * When tick overruns (next deadline already passed) missed ticks are either
+ * executed back-to-back (catch-up) or skipped. In both cases reported time
+ * between ticks is a multiple of the period, so nothing is lost in distance
+ * and time integration.
+ *
+ * In event mode tick might be requested earlier (when new sensor data arrives)
+ * by wake(). Such tick is executed at once, but not earlier than minimal
+ * spacing after previous tick: bursts of sensor messages are coalesced. Regular
+ * deadlines are not moved by these ticks, so time between all ticks is still
+ * summed up to exact number of periods.
+ *
+ * Time is taken from the Clock, virtual clock makes loop running as fast as
+ * possible.
+ *
+ * Counters (ticks, event ticks, overruns, skipped ticks and lateness of the
+ * ticks) are available for anybody interested.
+ */
+public class TelemetryScheduler {
+    public static final int MIN_RATE = 1;
+    public static final int MAX_RATE = 20;
+
+    // catch-up is never done for longer breaks (eg. system suspend), all these
+    // ticks are skipped
+    private static final long MAX_CATCH_UP = 1000000000L; // [ns]
+
+    private volatile Clock clock = Clock.SYSTEM;
+    private volatile long period; // [ns]
+    private volatile boolean catchUp;
+    private volatile boolean events = false;
+    private volatile long minSpacing = 50000000L; // [ns]
+    // tick was requested by wake(), synchronized
+    private boolean woken = false;
+
+    // scheduled time of last tick and deadline of the next one
+    private long lastTick;
+    private long deadline;
+
+    // statistics, synchronized
+    private long ticks = 0;
+    private long eventTicks = 0;
+    private long overruns = 0;
+    private long skipped = 0;
+    private long jitterSum = 0; // [ns]
+    private long jitterMax = 0; // [ns]
+
+    public TelemetryScheduler(int rate, boolean catchUp) {
+        setRate(rate);
+        setCatchUp(catchUp);
+    }
+
+    public static int checkRate(int rate) {
+        if (rate < MIN_RATE) {
+            return MIN_RATE;
+        }
+        if (rate > MAX_RATE) {
+            return MAX_RATE;
+        }
+        return rate;
+    }
+
+    // must be set before start()
+    public void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    public final void setRate(int rate) {
+        period = 1000000000L / checkRate(rate);
+    }
+    public int getRate() {
+        return (int) (1000000000L / period);
+    }
+    public long getPeriod() {
+        return period;
+    }
+
+    public final void setCatchUp(boolean catchUp) {
+        this.catchUp = catchUp;
+    }
+    public boolean isCatchUp() {
+        return catchUp;
+    }
+
+    // enable/disable ticks requested by wake()
+    public void setEventMode(boolean events) {
+        this.events = events;
+    }
+    public boolean isEventMode() {
+        return events;
+    }
+
+    // minimal time between event tick and previous tick
+    public void setMinSpacing(int spacing) { // [ms]
+        minSpacing = spacing * 1000000L;
+    }
+    public int getMinSpacing() {
+        return (int) (minSpacing / 1000000L);
+    }
+
+    /**
+     * Requests tick as soon as possible (in event mode only). Time between
+     * ticks is never shorter than minimal spacing.
+     */
+    public void wake() {
+        if (events) {
+            synchronized(this) {
+                if (!woken) {
+                    woken = true;
+                    notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts the schedule, first tick is expected "now". Statistics are reset.
+     */
+    public void start() {
+        synchronized(this) {
+            woken = false;
+            ticks = 0;
+            eventTicks = 0;
+            overruns = 0;
+            skipped = 0;
+            jitterSum = 0;
+            jitterMax = 0;
+        }
+        deadline = clock.nanoTime();
+        lastTick = deadline;
+        deadline += period;
+    }
+
+    /**
+     * Waits for the next deadline, or for the tick requested by wake().
+     * @return time elapsed from previous tick [ns]. For regular ticks it is
+     * period (or multiple of period if some ticks were skipped), event tick
+     * returns real time from previous tick.
+     * @throws InterruptedException when thread was interrupted in the meantime
+     */
+    public long waitTick() throws InterruptedException {
+        long now;
+        synchronized(this) {
+            for (;;) {
+                now = clock.nanoTime();
+                long target = deadline;
+                if (woken && (lastTick + minSpacing < target)) {
+                    target = lastTick + minSpacing;
+                }
+                if (target - now <= 0) {
+                    break;
+                }
+                clock.waitUntil(this, target);
+            }
+            woken = false;
+        }
+
+        long late = now - deadline;
+        if (late < 0) {
+            // event tick, before the deadline. Next deadline is not changed.
+            long passed = now - lastTick;
+            lastTick = now;
+            synchronized(this) {
+                ticks++;
+                eventTicks++;
+            }
+            return passed;
+        }
+
+        long missed = 0;
+        if (late >= period) {
+            // it is called when previous tick took more than whole period.
+            // When catching up, deadline is left as is: next waits return
+            // immediatelly until current time is reached.
+            if ((!catchUp) || (late > MAX_CATCH_UP)) {
+                missed = late / period;
+                deadline += missed * period;
+            }
+        }
+        synchronized(this) {
+            ticks++;
+            if (late >= period) {
+                overruns++;
+            }
+            skipped += missed;
+            jitterSum += late;
+            if (jitterMax < late) {
+                jitterMax = late;
+            }
+        }
+
+        long passed = deadline - lastTick;
+        lastTick = deadline;
+        deadline += period;
+        return passed;
+    }
+
+    public synchronized long getTicks() {
+        return ticks;
+    }
+    // number of ticks requested by wake()
+    public synchronized long getEventTicks() {
+        return eventTicks;
+    }
+    // number of ticks started after next deadline
+    public synchronized long getOverruns() {
+        return overruns;
+    }
+    // number of ticks not executed at all (not in catch-up mode)
+    public synchronized long getSkipped() {
+        return skipped;
+    }
+    // average lateness of the (regular) ticks [us]
+    public synchronized long getAverageJitter() {
+        if (ticks == eventTicks) {
+            return 0;
+        }
+        return (jitterSum / (ticks - eventTicks)) / 1000;
+    }
+    // max lateness of the tick [us]
+    public synchronized long getMaxJitter() {
+        return jitterMax / 1000;
+    }
+
+    @Override
+    public String toString() {
+        return "TelemetryScheduler:: rate=" + getRate() + "Hz"
+                + (catchUp ? ", catch-up" : ", skip")
+                + (events ? ", events" : "")
+                + ", ticks=" + getTicks()
+                + ", event ticks=" + getEventTicks()
+                + ", overruns=" + getOverruns()
+                + ", skipped=" + getSkipped()
+                + ", jitter avg=" + getAverageJitter() + "us"
+                + ", max=" + getMaxJitter() + "us";
+    }
+}
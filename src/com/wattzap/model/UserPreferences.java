@@ -18,16 +18,30 @@ package com.wattzap.model;
 import com.wattzap.controller.MessageBus;
 import com.wattzap.controller.Messages;
 import java.awt.Rectangle;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 
+import com.wattzap.model.dto.PowerCurve;
 import com.wattzap.model.dto.WorkoutData;
+import com.wattzap.model.dto.WorkoutFilter;
 import com.wattzap.model.power.Power;
 import com.wattzap.model.power.PowerProfiles;
 import com.wattzap.view.prefs.GenLocationEnum;
 import com.wattzap.view.prefs.TrainingLocationEnum;
 import java.util.ArrayList;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
 
 /**
  * Singleton helper to read/write user preferences to a backing store
@@ -113,6 +127,27 @@ public enum UserPreferences {
     CTF_OFFSET_AUTO_ZERO("ctf_auto_zero", false),
     CTF_ZERO_OFFSET("ctf_zero_offset", 500),
 
+    // telemetry computation rate [Hz] and what to do with overrun ticks:
+    // catch-up (run missed ticks) or skip them
+    TELEMETRY_RATE("telemetry_rate", 4),
+    TELEMETRY_CATCH_UP("telemetry_catch_up", false),
+    TELEMETRY_EVENTS("telemetry_events", false),
+    TELEMETRY_MIN_SPACING("telemetry_min_spacing", 50),
+    // how often telemetry is recorded [Hz], not more than telemetry rate
+    RECORD_RATE("record_rate", 1),
+
+    // latency statistics of message bus callbacks: budget of single callback
+    // [ms] and interval of CSV dump [s], 0 disables them
+    BUS_STATS("bus_stats", false),
+    BUS_BUDGET("bus_budget", 20),
+    BUS_DUMP("bus_dump", 60),
+
+    // journal group commit: number of records and max delay [ms], fsync after
+    // each commit
+    JOURNAL_GROUP("journal_group", 10),
+    JOURNAL_DELAY("journal_delay", 5000),
+    JOURNAL_FSYNC("journal_fsync", false),
+
     // "backward" compability, cannot be get/set, general value for all settings
 	INSTANCE;
 
@@ -129,6 +164,8 @@ public enum UserPreferences {
         MANUAL_PAUSE.keptInDB = false;
     }
 
+	private static final Logger logger = LogManager.getLogger("UserPreferences");
+
     private static String user = System.getProperty("user.name");
 
     // property values
@@ -286,6 +323,48 @@ public enum UserPreferences {
     }
 
 
+    /**
+     * Property initialized before the store was booted (with the value from
+     * the snapshot, or default) is read again. If value is different,
+     * listeners are notified.
+     * @return true if value was changed
+     */
+    private boolean reconcile() {
+        if ((name == null) || (!keptInDB)) {
+            return false;
+        }
+        synchronized(this) {
+            if (!initialized) {
+                return false;
+            }
+            Object old = read();
+            initialized = false;
+            if (old.equals(read())) {
+                return false;
+            }
+            MessageBus.INSTANCE.send(Messages.CONFIG_CHANGED, this);
+            return true;
+        }
+    }
+    // current value of any type, used by rider profiles
+    Object getValue() {
+        assert name != null : toString() + " is not a value";
+        return read();
+    }
+    private Object read() {
+        if (strVal != null) {
+            return getString();
+        }
+        if (doubleVal != null) {
+            return getDouble();
+        }
+        if (intVal != null) {
+            return getInt();
+        }
+        return getBool();
+    }
+
+
     // method to be called prior other operations. In general it is intended to
     // change userName and set some settings in DB when no editor is available
     // (like language settings)
@@ -308,11 +387,11 @@ public enum UserPreferences {
                     throw new IllegalArgumentException("Property " + key + " cannot be set");
                 }
                 if (val.isEmpty()) {
-                    INSTANCE.getDS().deleteProp(user, key);
+                    INSTANCE.set(user, key, null);
                 } else {
-            		String v = INSTANCE.getDS().getProp(user, key);
+            		String v = INSTANCE.get(user, key, null);
                     if (!val.equals(v)) {
-                        INSTANCE.getDS().insertProp(user, key, val);
+                        INSTANCE.set(user, key, val);
                     }
                 }
                 return;
@@ -591,6 +670,8 @@ public enum UserPreferences {
 
     public List<String> getSensors() {
         List<String> sensors = new ArrayList<>();
+        // properties are listed by the database, all must be written
+        getWriter().flush();
         List<String> properties = getDS().getProperties(user);
         for (String prop : properties) {
             if (prop.charAt(0) == '*') {
@@ -660,6 +741,10 @@ public enum UserPreferences {
     public void addWorkout(WorkoutData data) {
 		getDS().saveWorkOut(user, data);
 	}
+	// all workouts are added in single transaction, or none
+	public boolean addWorkouts(List<WorkoutData> list) {
+		return getDS().saveWorkouts(user, list);
+	}
 	public WorkoutData getWorkout(String name) {
 		return getDS().getWorkout(user, name);
 	}
@@ -669,93 +754,276 @@ public enum UserPreferences {
 	public List<WorkoutData> listWorkouts() {
 		return getDS().listWorkouts(user);
 	}
+	public int countWorkouts(WorkoutFilter filter) {
+		return getDS().countWorkouts(user, filter);
+	}
+	public List<WorkoutData> listWorkouts(WorkoutFilter filter, int offset, int limit) {
+		return getDS().listWorkouts(user, filter, offset, limit);
+	}
+	public Map<String, PowerCurve> getPowerCurves(WorkoutFilter filter) {
+		return getDS().getPowerCurves(user, filter);
+	}
+	public boolean updatePowerCurve(String name, PowerCurve curve) {
+		return getDS().updatePowerCurve(user, name, curve);
+	}
+	public Map<String, String> getWorkoutHashes() {
+		return getDS().getWorkoutHashes(user);
+	}
+
+	// Data Access Functions. Store is booted (Derby is started, database is
+	// created or migrated) by the task, either in background or when the
+	// store is needed.
+	private static FutureTask<DataStore> store = null;
+    // properties are written in background, so setters don't wait for the
+    // database (and can be called from telemetry thread)
+    private static PreferenceWriter writer = null;
+    private static final int WRITE_DELAY = 1000; // [ms]
+    // properties stored on last shutdown, used until store is booted in
+    // background
+    private static volatile Properties snapshot = null;
+    private static Thread bootThread = null;
+    private static final String SNAPSHOT = "/prefs-snapshot.properties";
+
+    private static synchronized FutureTask<DataStore> getStore() {
+        if (store == null) {
+            store = new FutureTask<>(new Callable<DataStore>() {
+                @Override
+                public DataStore call() {
+                    String cryptKey = "afghanistanbananastan";
+                    return new DataStore(getWD(), cryptKey);
+                }
+            });
+        }
+        return store;
+    }
 
-	// Data Access Functions
-	private static DataStore ds = null;
-    private DataStore getDS() {
-        if (ds == null) {
-        	String cryptKey = "afghanistanbananastan";
-            ds = new DataStore(getWD(), cryptKey);
+    /**
+     * Boots the store in background. Until it is ready properties are read
+     * from the snapshot (or default values are used), then all these
+     * properties are reconciled with the database.
+     */
+    public static void startStore() {
+        synchronized(UserPreferences.class) {
+            if (store != null) {
+                return;
+            }
+            snapshot = readSnapshot();
+            final FutureTask<DataStore> task = getStore();
+            bootThread = new Thread("DataStoreBoot") {
+                @Override
+                public void run() {
+                    long start = System.nanoTime();
+                    task.run();
+                    long booted = System.nanoTime();
+                    int count = 0;
+                    for (UserPreferences pref : values()) {
+                        if (pref.reconcile()) {
+                            count++;
+                        }
+                    }
+                    snapshot = null;
+                    logger.info("Data store booted in " + (booted - start) / 1000000L
+                            + "ms, reconciled in " + (System.nanoTime() - booted) / 1000000L
+                            + "ms, " + count + " properties changed");
+                }
+            };
+            bootThread.setDaemon(true);
+            bootThread.start();
         }
-        return ds;
+    }
+
+    private static DataStore getDS() {
+        FutureTask<DataStore> task = getStore();
+        long start = System.nanoTime();
+        boolean booted = task.isDone();
+        // store is booted here, if it was not started in background
+        task.run();
+        try {
+            DataStore ds = task.get();
+            if (!booted) {
+                logger.info("Waited " + (System.nanoTime() - start) / 1000000L
+                        + "ms for data store");
+            }
+            return ds;
+        } catch (InterruptedException | ExecutionException e) {
+            throw new IllegalStateException("Data store not available", e);
+        }
+    }
+    private static synchronized PreferenceWriter getWriter() {
+        if (writer == null) {
+            // writer waits for the store, it must be booted if it is not
+            // booted in background
+            if (snapshot == null) {
+                getDS();
+            }
+            writer = new PreferenceWriter(getStore(), WRITE_DELAY);
+            // properties are written even if application is killed
+            final PreferenceWriter w = writer;
+            try {
+                Runtime.getRuntime().addShutdownHook(new Thread("PreferenceFlush") {
+                    @Override
+                    public void run() {
+                        w.flush();
+                    }
+                });
+            } catch (IllegalStateException e) {
+                // JVM is being shut down, writer is flushed by shutDown()
+            }
+        }
+        return writer;
     }
 	public void shutDown() {
-        if (ds != null) {
-    		ds.close();
-            ds = null;
+        // properties must be reconciled before the store is closed
+        Thread boot;
+        synchronized(UserPreferences.class) {
+            boot = bootThread;
+            bootThread = null;
+        }
+        if (boot != null) {
+            try {
+                boot.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized(UserPreferences.class) {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+            if (store != null) {
+                DataStore ds = getDS();
+                writeSnapshot(ds);
+                ds.close();
+                store = null;
+            }
         }
 	}
 
+    private static Properties readSnapshot() {
+        long start = System.nanoTime();
+        Properties props = new Properties();
+        try (InputStream in = new FileInputStream(getWD() + SNAPSHOT)) {
+            props.load(in);
+        } catch (IOException e) {
+            logger.info("No preferences snapshot, " + e.getLocalizedMessage());
+        }
+        logger.info("Preferences snapshot with " + props.size()
+                + " properties read in " + (System.nanoTime() - start) / 1000000L + "ms");
+        return props;
+    }
+    private static void writeSnapshot(DataStore ds) {
+        long start = System.nanoTime();
+        Properties props = new Properties();
+        for (String u : new String[] {"", user}) {
+            for (Map.Entry<String, String> prop : ds.getProps(u).entrySet()) {
+                props.setProperty(u + "/" + prop.getKey(), prop.getValue());
+            }
+        }
+        try (OutputStream out = new FileOutputStream(getWD() + SNAPSHOT)) {
+            props.store(out, "Wattzap preferences, used when database is started");
+        } catch (IOException e) {
+            logger.error("Cannot write preferences snapshot, " + e.getLocalizedMessage());
+        }
+        logger.info("Preferences snapshot with " + props.size()
+                + " properties written in " + (System.nanoTime() - start) / 1000000L + "ms");
+    }
+
+    // value set recently might be not written yet. When store is not booted
+    // yet, value from the snapshot is taken.
+    private String getProp(String user, String key) {
+        PreferenceWriter.Entry entry = getWriter().get(user, key);
+        if (entry != null) {
+            return entry.value;
+        }
+        Properties props = snapshot;
+        if ((props != null) && (!getStore().isDone())) {
+            return props.getProperty(user + "/" + key);
+        }
+        return getDS().getProp(user, key);
+    }
+    private String getPropCrypt(String user, String key) {
+        PreferenceWriter.Entry entry = getWriter().get(user, key);
+        if (entry != null) {
+            return entry.value;
+        }
+        // cannot be decrypted without the store, default value is used
+        if ((snapshot != null) && (!getStore().isDone())) {
+            return null;
+        }
+        return getDS().getPropCrypt(user, key);
+    }
+
 	private double getDouble(String user, String key, double d) {
-		String v = getDS().getProp(user, key);
+		String v = getProp(user, key);
 		if (v != null) {
 			try {
 				d = Double.parseDouble(v);
 			} catch (Exception e) {
                 // silently delete the property: it is not valid
-                ds.deleteProp(user, key);
+                getWriter().put(user, key, null, false);
 			}
 		}
 		return d;
 	}
 
 	private void setDouble(String user, String key, double d) {
-		ds.insertProp(user, key, Double.toString(d));
+		getWriter().put(user, key, Double.toString(d), false);
 	}
 
 	private int getInt(String user, String key, int i) {
-		String v = getDS().getProp(user, key);
+		String v = getProp(user, key);
 		if (v != null) {
 			try {
 				i = Integer.parseInt(v);
 			} catch (Exception e) {
                 // silently delete the property: it is not valid
-                ds.deleteProp(user, key);
+                getWriter().put(user, key, null, false);
 			}
 		}
 		return i;
 	}
 
 	private int getIntCrypt(String user, String key, int i) {
-		String v = getDS().getPropCrypt(user, key);
+		String v = getPropCrypt(user, key);
 		if (v != null) {
 			try {
 				i = Integer.parseInt(v);
 			} catch (Exception e) {
                 // silently delete the property: it is not valid
-                ds.deleteProp(user, key);
+                getWriter().put(user, key, null, false);
 			}
 		}
 		return i;
 	}
 
 	private void setInt(String user, String key, int i) {
-		ds.insertProp(user, key, Integer.toString(i));
+		getWriter().put(user, key, Integer.toString(i), false);
 	}
 
-	private static void setIntCrypt(String user, String key, int i) {
-		ds.insertPropCrypt(user, key, Integer.toString(i));
+	private void setIntCrypt(String user, String key, int i) {
+		getWriter().put(user, key, Integer.toString(i), true);
 	}
 
 	private boolean getBoolean(String user, String key, boolean b) {
-		String v = getDS().getProp(user, key);
+		String v = getProp(user, key);
 		if (v != null) {
 			try {
 				b = Boolean.parseBoolean(v);
 			} catch (Exception e) {
                 // silently delete the property: it is not valid
-                ds.deleteProp(user, key);
+                getWriter().put(user, key, null, false);
 			}
 		}
 		return b;
 	}
 
 	private void setBoolean(String user, String key, boolean b) {
-		ds.insertProp(user, key, Boolean.toString(b));
+		getWriter().put(user, key, Boolean.toString(b), false);
 	}
 
 	private String get(String user, String key, String s) {
-		String v = getDS().getProp(user, key);
+		String v = getProp(user, key);
 		if (v == null) {
 			v = s;
 		}
@@ -763,11 +1031,7 @@ public enum UserPreferences {
 	}
 
 	private void set(String user, String key, String s) {
-        if (s != null) {
-    		ds.insertProp(user, key, s);
-        } else {
-            ds.deleteProp(user, key);
-        }
+		getWriter().put(user, key, s, false);
 	}
 
 	/*
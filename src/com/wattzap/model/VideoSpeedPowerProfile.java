@@ -49,7 +49,7 @@ public class VideoSpeedPowerProfile extends TelemetryHandler {
             (prefs == UserPreferences.WEIGHT) ||
             (prefs == UserPreferences.BIKE_WEIGHT))
         {
-            weight = prefs.getTotalWeight();
+            weight = getProfile().getTotalWeight();
         }
     }
 
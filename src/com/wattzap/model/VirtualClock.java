@@ -0,0 +1,68 @@
+/*
+ * This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package com.wattzap.model;
+
+/**
+ * Clock which doesn't wait at all: time is moved to the deadline of each wait.
+ * Listener is notified (in the waiting thread) after each time change, it is
+ * used to feed data which is due at given time.
+ */
+public class VirtualClock extends Clock {
+    public interface Listener {
+        void timeChanged(long time); // [ms]
+    }
+
+    private final long epoch; // [ms]
+    private volatile long now = 0; // [ns] from epoch
+    private Listener listener = null;
+
+    public VirtualClock(long epoch) {
+        this.epoch = epoch;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return epoch + now / 1000000L;
+    }
+
+    @Override
+    public long nanoTime() {
+        return now;
+    }
+
+    @Override
+    public void sleep(long millis) throws InterruptedException {
+        waitUntil(null, now + millis * 1000000L);
+    }
+
+    @Override
+    public void waitUntil(Object monitor, long deadline) throws InterruptedException {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException();
+        }
+        if (deadline > now) {
+            now = deadline;
+            if (listener != null) {
+                listener.timeChanged(currentTimeMillis());
+            }
+        }
+    }
+}
@@ -36,7 +36,7 @@ public class WheelSpeedChecker extends TelemetryHandler {
     public void configChanged(UserPreferences prefs) {
         if ((prefs == UserPreferences.INSTANCE) ||
                 (prefs == UserPreferences.TURBO_TRAINER)) {
-            power = prefs.getTurboTrainerProfile();
+            power = getProfile().getTurboTrainerProfile();
         }
     }
 
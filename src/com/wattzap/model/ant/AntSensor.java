@@ -16,7 +16,6 @@
  */
 package com.wattzap.model.ant;
 
-import com.wattzap.controller.MessageBus;
 import com.wattzap.controller.Messages;
 import com.wattzap.model.Sensor;
 import com.wattzap.model.SubsystemTypeEnum;
@@ -66,7 +65,7 @@ public abstract class AntSensor extends Sensor
                 new AntSensorIdQuery(this, channel).start();
             } else {
                 // imediatelly send notification about sensor ready
-                MessageBus.INSTANCE.send(Messages.HANDLER, this);
+                getBus().send(Messages.HANDLER, this);
             }
         }
 
@@ -123,7 +122,7 @@ public abstract class AntSensor extends Sensor
             setSensorId((sensorId & 0xffff) | ((sensorId >> 4) & 0xf0000));
             // this call configChanged callback
             UserPreferences.INSTANCE.setSensorId(getPrettyName(), getSensorId());
-            MessageBus.INSTANCE.send(Messages.HANDLER, this);
+            getBus().send(Messages.HANDLER, this);
         }
     }
 
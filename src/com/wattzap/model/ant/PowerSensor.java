@@ -161,7 +161,7 @@ public class PowerSensor extends AntSensor {
         if ((property == UserPreferences.WHEEL_SIZE) ||
             (property == UserPreferences.INSTANCE))
         {
-            wheelSize = property.getWheelsize() / 1000.0;
+            wheelSize = getProfile().getWheelsize() / 1000.0;
         }
         if ((property == UserPreferences.CTF_OFFSET_AUTO_ZERO) ||
             (property == UserPreferences.INSTANCE))
@@ -84,6 +84,6 @@ public class SpeedAndCadenceSensor extends AntSensor {
 
     @Override
     public void configChanged(UserPreferences property) {
-        wheelSize = property.getWheelsize() / 1000.0;
+        wheelSize = getProfile().getWheelsize() / 1000.0;
     }
 }
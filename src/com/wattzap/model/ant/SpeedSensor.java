@@ -73,6 +73,6 @@ public class SpeedSensor extends AntSensor {
 
     @Override
     public void configChanged(UserPreferences property) {
-        wheelSize = property.getWheelsize() / 1000.0;
+        wheelSize = getProfile().getWheelsize() / 1000.0;
     }
 }
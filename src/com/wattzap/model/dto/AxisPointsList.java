@@ -29,6 +29,14 @@ public class AxisPointsList<P extends AxisPointIntf> extends ArrayList<P> {
     private int current = -1;
     private int last = -1;
 
+    public AxisPointsList() {
+    }
+
+    // points of loaded route (shared, read only) with own position
+    public AxisPointsList(AxisPointsList<P> points) {
+        super(points);
+    }
+
     public void addAll(P[] tab) {
         for (P point : tab) {
             add(point);
@@ -0,0 +1,67 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model.dto;
+
+import java.util.Arrays;
+
+/**
+ * Time spent at each integer value (power, cadence, heart rate): one bin per
+ * unit, so any coarser distribution (buckets, training zones) is computed by
+ * merging the bins, without reading telemetry again. Histograms of workouts
+ * are merged by adding the bins. Negative values (not available) are not
+ * counted.
+ */
+public class Histogram {
+	// [ms] for each value
+	private long[] time = new long[0];
+	private long total = 0;
+
+	public void add(int value, long ms) {
+		if (value < 0) {
+			return;
+		}
+		if (value >= time.length) {
+			time = Arrays.copyOf(time, Math.max(value + 1, time.length * 2));
+		}
+		time[value] += ms;
+		total += ms;
+	}
+
+	public void merge(Histogram other) {
+		if (other.time.length > time.length) {
+			time = Arrays.copyOf(time, other.time.length);
+		}
+		for (int i = 0; i < other.time.length; i++) {
+			time[i] += other.time[i];
+		}
+		total += other.total;
+	}
+
+	// values are less than size
+	public int size() {
+		return time.length;
+	}
+
+	// [ms] spent at the value
+	public long getTime(int value) {
+		return (value >= 0 && value < time.length) ? time[value] : 0;
+	}
+
+	// [ms] of all values
+	public long getTotal() {
+		return total;
+	}
+}
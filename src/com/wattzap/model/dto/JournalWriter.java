@@ -0,0 +1,267 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model.dto;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+/**
+ * Writes records to the journal on its own thread, so telemetry thread never
+ * waits for the disk. Records are put into bounded queue, when it is full
+ * they are dropped (and counted). Writer commits records in groups: when
+ * group size is reached or the oldest record waits longer than the delay.
+ * Each commit might be followed by fsync, it is always done on flush() and
+ * close(), also when records were already committed without it.
+ */
+public class JournalWriter implements Runnable {
+	private static final Logger logger = LogManager.getLogger("JournalWriter");
+
+    private final TelemetryJournal journal;
+    private final Telemetry[] queue;
+    private final Thread thread;
+
+    private volatile int groupSize = 10;
+    private volatile long delay = 5000000000L; // [ns]
+    private volatile boolean fsync = false;
+
+    // all synchronized
+    private long head = 0;
+    private long tail = 0;
+    private long firstQueued = 0; // [ns]
+    private boolean flushRequested = false;
+    private boolean closed = false;
+    private long queued = 0;
+    private long written = 0;
+    private long synced = 0; // written records forced to the disk
+    private long failed = 0;
+    private long dropped = 0;
+    private long commits = 0;
+
+    public JournalWriter(TelemetryJournal journal, int capacity) {
+        this.journal = journal;
+        this.queue = new Telemetry[capacity];
+        thread = new Thread(this, "JournalWriter");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void setGroupSize(int groupSize) {
+        this.groupSize = Math.max(1, Math.min(groupSize, queue.length));
+        wake();
+    }
+    public void setDelay(int delay) { // [ms]
+        this.delay = delay * 1000000L;
+        wake();
+    }
+    public void setSync(boolean fsync) {
+        this.fsync = fsync;
+    }
+
+    private synchronized void wake() {
+        notifyAll();
+    }
+
+    /**
+     * Puts the record into the queue, it must not be modified later.
+     * @return false if record was dropped (queue is full or writer closed)
+     */
+    public synchronized boolean offer(Telemetry t) {
+        if (closed) {
+            return false;
+        }
+        if (tail - head >= queue.length) {
+            dropped++;
+            // don't flood the log when disk hangs
+            if ((dropped & (dropped - 1)) == 0) {
+                logger.error("Queue full, " + dropped + " records dropped");
+            }
+            return false;
+        }
+        if (tail == head) {
+            firstQueued = System.nanoTime();
+        }
+        queue[(int) (tail % queue.length)] = t;
+        tail++;
+        queued++;
+        // writer waits for the delay of the first record, or for full group
+        if ((tail - head == 1) || (tail - head >= groupSize)) {
+            notifyAll();
+        }
+        return true;
+    }
+
+    @Override
+    public void run() {
+        List<Telemetry> group = new ArrayList<>();
+        for (;;) {
+            boolean sync;
+            boolean flushing;
+            long toSync;
+            synchronized(this) {
+                for (;;) {
+                    long waiting = tail - head;
+                    if ((waiting != 0) && (flushRequested || closed
+                            || (waiting >= groupSize))) {
+                        break;
+                    }
+                    // records committed without fsync must be synced
+                    if (flushRequested && (synced != written)) {
+                        break;
+                    }
+                    if (closed) {
+                        notifyAll();
+                        return;
+                    }
+                    long timeout = 0;
+                    if (waiting != 0) {
+                        timeout = firstQueued + delay - System.nanoTime();
+                        if (timeout <= 0) {
+                            break;
+                        }
+                    }
+                    try {
+                        if (timeout == 0) {
+                            wait();
+                        } else {
+                            wait(timeout / 1000000L, (int) (timeout % 1000000L));
+                        }
+                    } catch (InterruptedException e) {
+                        closed = true;
+                    }
+                }
+                while (head != tail) {
+                    int i = (int) (head % queue.length);
+                    group.add(queue[i]);
+                    queue[i] = null;
+                    head++;
+                }
+                sync = fsync || flushRequested || closed;
+                // request made during this commit is handled by the next one
+                flushing = flushRequested;
+                toSync = written + group.size();
+            }
+
+            boolean ok = true;
+            try {
+                journal.append(group);
+                if (sync) {
+                    journal.sync();
+                }
+            } catch (IOException e) {
+                ok = false;
+                logger.error("Cannot write " + group.size() + " records, "
+                        + e.getLocalizedMessage());
+            }
+            synchronized(this) {
+                if (ok) {
+                    written += group.size();
+                    if (sync) {
+                        synced = toSync;
+                    }
+                } else {
+                    failed += group.size();
+                }
+                if (!group.isEmpty()) {
+                    commits++;
+                }
+                if (flushing && (head == tail)) {
+                    flushRequested = false;
+                }
+                notifyAll();
+            }
+            group.clear();
+        }
+    }
+
+    /**
+     * Waits until all queued records are written and synced. Writer clears
+     * the request when queue is empty and sync was done (or failed).
+     */
+    public synchronized void flush() {
+        if ((queued == written + failed) && (synced == written)) {
+            return;
+        }
+        flushRequested = true;
+        notifyAll();
+        while (flushRequested && thread.isAlive()) {
+            try {
+                wait(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Flushes all the records, stops the thread and closes the journal (which
+     * forces all written records to the disk).
+     */
+    public void close() {
+        synchronized(this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            logger.error("Cannot close journal, " + e.getLocalizedMessage());
+        }
+    }
+
+    // number of records waiting in the queue
+    public synchronized long getWaiting() {
+        return tail - head;
+    }
+    public synchronized long getQueued() {
+        return queued;
+    }
+    public synchronized long getWritten() {
+        return written;
+    }
+    public synchronized long getFailed() {
+        return failed;
+    }
+    public synchronized long getDropped() {
+        return dropped;
+    }
+    public synchronized long getCommits() {
+        return commits;
+    }
+    public synchronized long getSynced() {
+        return synced;
+    }
+
+    @Override
+    public String toString() {
+        return "JournalWriter:: group=" + groupSize
+                + ", delay=" + (delay / 1000000L) + "ms"
+                + (fsync ? ", fsync" : "")
+                + ", queued=" + getQueued()
+                + ", written=" + getWritten()
+                + ", failed=" + getFailed()
+                + ", dropped=" + getDropped()
+                + ", commits=" + getCommits();
+    }
+}
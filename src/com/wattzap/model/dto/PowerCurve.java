@@ -0,0 +1,158 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model.dto;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.wattzap.utils.MeanMaxPower;
+
+/**
+ * Power-duration (mean maximal power) curve of the workout: power for each
+ * duration from the fixed grid, up to the length of the ride. It is computed
+ * when workout is saved (or imported) and stored with the workout, so curves
+ * of many workouts can be combined without reading the telemetry again.
+ * Encoded as comma separated list of powers, ~400 chars for 6h ride.
+ */
+public class PowerCurve {
+	/** Durations [s] of the curve points, dense for short efforts */
+	public static final int[] DURATIONS = grid(new int[] {
+			1, 1, // 1s..20s
+			20, 5, // ..1min
+			60, 15, // ..5min
+			300, 60, // ..20min
+			1200, 300, // ..1h
+			3600, 900, // ..6h
+			21600 });
+
+	private int[] power;
+
+	private static int[] grid(int[] ranges) {
+		int count = 1;
+		for (int i = 0; i < ranges.length - 1; i += 2) {
+			count += (ranges[i + 2] - ranges[i]) / ranges[i + 1];
+		}
+		int[] grid = new int[count];
+		int n = 0;
+		for (int i = 0; i < ranges.length - 1; i += 2) {
+			for (int d = ranges[i]; d < ranges[i + 2]; d += ranges[i + 1]) {
+				grid[n++] = d;
+			}
+		}
+		grid[n] = ranges[ranges.length - 1];
+		return grid;
+	}
+
+	public PowerCurve() {
+		this(new int[0]);
+	}
+
+	// powers for first durations from the grid
+	public PowerCurve(int[] power) {
+		if (power.length > DURATIONS.length) {
+			throw new IllegalArgumentException("Too many points " + power.length);
+		}
+		this.power = power;
+	}
+
+	/**
+	 * Computes the curve: best average power over contiguous period of each
+	 * duration.
+	 */
+	public static PowerCurve compute(List<Telemetry> data) {
+		return new PowerCurve(new MeanMaxPower(data).getCurve(DURATIONS));
+	}
+
+	// number of durations in the curve
+	public int size() {
+		return power.length;
+	}
+
+	// [s]
+	public int getDuration(int i) {
+		return DURATIONS[i];
+	}
+
+	public int getPower(int i) {
+		return power[i];
+	}
+
+	/**
+	 * @return power for the duration [s], taken from the nearest longer grid
+	 * point. 0 if workout was shorter.
+	 */
+	public int getPowerFor(int seconds) {
+		int i = Arrays.binarySearch(DURATIONS, seconds);
+		if (i < 0) {
+			i = -i - 1;
+		}
+		return (i < power.length) ? power[i] : 0;
+	}
+
+	/**
+	 * Extends the curve with the other one, maximal power is taken for each
+	 * duration ("best of" the workouts).
+	 */
+	public void envelope(PowerCurve other) {
+		if (other.power.length > power.length) {
+			power = Arrays.copyOf(power, other.power.length);
+		}
+		for (int i = 0; i < other.power.length; i++) {
+			if (other.power[i] > power[i]) {
+				power[i] = other.power[i];
+			}
+		}
+	}
+
+	public String encode() {
+		StringBuilder buf = new StringBuilder(power.length * 4);
+		for (int i = 0; i < power.length; i++) {
+			if (i != 0) {
+				buf.append(',');
+			}
+			buf.append(power[i]);
+		}
+		return buf.toString();
+	}
+
+	// null if not stored (or wrong)
+	public static PowerCurve decode(String str) {
+		if (str == null) {
+			return null;
+		}
+		if (str.isEmpty()) {
+			return new PowerCurve();
+		}
+		String[] values = str.split(",");
+		if (values.length > DURATIONS.length) {
+			return null;
+		}
+		int[] power = new int[values.length];
+		try {
+			for (int i = 0; i < values.length; i++) {
+				power[i] = Integer.parseInt(values[i]);
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return new PowerCurve(power);
+	}
+
+	@Override
+	public String toString() {
+		return "PowerCurve [" + encode() + "]";
+	}
+}
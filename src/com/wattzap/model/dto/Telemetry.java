@@ -21,6 +21,10 @@ import java.io.Serializable;
 
 /**
  * Data object containing all the data produced by handlers.
+ * Telemetries sent by TelemetryProvider are snapshots taken from TelemetryPool:
+ * they cannot be modified and are valid (not recycled) for some ticks only.
+ * Each snapshot has sequence number, anybody interested in keeping the data
+ * longer must copy it.
  *
  * @author David George (c) Copyright 2013
  * @date 19 June 2013
@@ -31,6 +35,9 @@ public class Telemetry implements Serializable {
     private final double[] values;
     private final TelemetryValidityEnum[] validity;
     private PauseMsgEnum pause;
+    // snapshot data, set by TelemetryPool only
+    private transient boolean frozen = false;
+    private transient long sequence = 0;
 
     public Telemetry() {
         values = new double[SourceDataEnum.values().length];
@@ -69,19 +76,53 @@ public class Telemetry implements Serializable {
     public Telemetry(Telemetry t) {
         values = new double[t.values.length];
         validity = new TelemetryValidityEnum[t.validity.length];
-        for (int i = 0; i < t.values.length; i++) {
-            values[i] = t.values[i];
-            validity[i] = t.validity[i];
-        }
+        set(t);
+    }
+
+    // copy all the data, without allocation
+    public final void set(Telemetry t) {
+        checkMutable();
+        System.arraycopy(t.values, 0, values, 0, values.length);
+        System.arraycopy(t.validity, 0, validity, 0, validity.length);
         pause = t.pause;
     }
 
+    // snapshots are shared by all receivers
+    private void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException("Snapshot cannot be modified");
+        }
+    }
+
+    // fill snapshot with current data
+    void freeze(Telemetry t, long sequence) {
+        frozen = false;
+        set(t);
+        this.sequence = sequence;
+        frozen = true;
+    }
+    public boolean isFrozen() {
+        return frozen;
+    }
+    // immutable copy of the snapshot, never recycled by the pool
+    public Telemetry detach() {
+        Telemetry copy = new Telemetry(this);
+        copy.sequence = sequence;
+        copy.frozen = frozen;
+        return copy;
+    }
+    // number of the snapshot, 0 if not a snapshot
+    public long getSequence() {
+        return sequence;
+    }
+
     public TelemetryValidityEnum getValidity(SourceDataEnum en) {
         assert en != SourceDataEnum.PAUSE : "Cannot get validity of PAUSE";
         return validity[en.ordinal()];
     }
     public final void setValidity(SourceDataEnum en, TelemetryValidityEnum valid) {
         assert en != SourceDataEnum.PAUSE : "Cannot set validity of PAUSE";
+        checkMutable();
         validity[en.ordinal()] = valid;
     }
     public boolean isAvailable(SourceDataEnum en) {
@@ -100,6 +141,7 @@ public class Telemetry implements Serializable {
     }
     public void setDouble(SourceDataEnum en, double v, TelemetryValidityEnum valid) {
         assert en != SourceDataEnum.PAUSE : "Cannot set PAUSE";
+        checkMutable();
         values[en.ordinal()] = v;
         validity[en.ordinal()] = valid;
     }
@@ -113,6 +155,7 @@ public class Telemetry implements Serializable {
     }
     public void setInt(SourceDataEnum en, int v, TelemetryValidityEnum valid) {
         assert en != SourceDataEnum.PAUSE : "Cannot set PAUSE";
+        checkMutable();
         values[en.ordinal()] = (double) v;
         validity[en.ordinal()] = valid;
     }
@@ -126,6 +169,7 @@ public class Telemetry implements Serializable {
     }
     public void setLong(SourceDataEnum en, long v, TelemetryValidityEnum valid) {
         assert en != SourceDataEnum.PAUSE : "Cannot set PAUSE";
+        checkMutable();
         values[en.ordinal()] = (double) v;
         validity[en.ordinal()] = valid;
     }
@@ -229,6 +273,7 @@ public class Telemetry implements Serializable {
         return pause;
     }
     public void setPause(PauseMsgEnum reason) {
+        checkMutable();
 		pause = reason;
     }
 
@@ -0,0 +1,394 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model.dto;
+
+import com.wattzap.model.PauseMsgEnum;
+import com.wattzap.model.SourceDataEnum;
+import java.io.ByteArrayOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Block of recorded telemetries kept in columns: time, validity of all fields
+ * (3 bits per field in single long), pause and quantized value of each field.
+ * Values are kept as integers: value * scale of the field, scale is chosen to
+ * keep at least two digits more than shown. Column is allocated when field is
+ * present for the first time.
+ *
+ * Block is encoded column by column: first value and then differences to
+ * previous ones (validity is xor-ed), all as zig-zag varints. Most of the
+ * fields change slowly, so most values take single byte. Encoding is used
+ * for sealed chunks of TelemetryStore and by the journal.
+ */
+class TelemetryBlock {
+    static final int VALIDITY_BITS = 3;
+
+    /**
+     * Columns of encoded data: names of the fields and their scales. Blocks
+     * written by other version (with different fields or scales) are mapped
+     * to current columns.
+     */
+    static class Layout {
+        private final SourceDataEnum[] fields;
+        private final double[] scales;
+        // column of the block for the encoded column, -1 if unknown
+        private final int[] map;
+
+        Layout(SourceDataEnum[] fields, double[] scales) {
+            this.fields = fields;
+            this.scales = scales;
+            map = new int[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                map[i] = (fields[i] == null) ? -1 : COLUMN[fields[i].ordinal()];
+            }
+        }
+
+        int size() {
+            return fields.length;
+        }
+        SourceDataEnum getField(int i) {
+            return fields[i];
+        }
+        double getScale(int i) {
+            return scales[i];
+        }
+    }
+
+    // all fields but PAUSE, value of TIME is kept in time column
+    static final SourceDataEnum[] FIELDS;
+    private static final int[] COLUMN = new int[SourceDataEnum.values().length];
+    private static final double[] SCALE;
+    static final Layout CURRENT;
+    static {
+        SourceDataEnum[] all = SourceDataEnum.values();
+        FIELDS = new SourceDataEnum[all.length - 1];
+        SCALE = new double[FIELDS.length];
+        int i = 0;
+        for (SourceDataEnum val : all) {
+            if (val != SourceDataEnum.PAUSE) {
+                COLUMN[val.ordinal()] = i;
+                SCALE[i] = scale(val);
+                FIELDS[i++] = val;
+            } else {
+                COLUMN[val.ordinal()] = -1;
+            }
+        }
+        assert FIELDS.length * VALIDITY_BITS <= 64 : "Validity doesn't fit in long";
+        CURRENT = new Layout(FIELDS, SCALE);
+    }
+    private static final int TIME = COLUMN[SourceDataEnum.TIME.ordinal()];
+    private static final TelemetryValidityEnum[] VALIDITY = TelemetryValidityEnum.values();
+    private static final PauseMsgEnum[] PAUSE = PauseMsgEnum.values();
+
+    // resolution of the stored values
+    private static double scale(SourceDataEnum val) {
+        switch (val) {
+            case TIME:
+            case ROUTE_TIME:
+            case RESISTANCE:
+                return 1.0;
+            case CADENCE:
+            case HEART_RATE:
+            case POWER:
+            case TARGET_POWER:
+            case TARGET_CADENCE:
+            case TARGET_HR:
+                return 10.0;
+            case ALTITUDE:
+            case CTF_TORQUE_FREQUENCY:
+                return 100.0;
+            case SPEED:
+            case WHEEL_SPEED:
+            case ROUTE_SPEED:
+            case SLOPE:
+                return 1000.0;
+            case VIDEO_RATE:
+                return 10000.0;
+            case LATITUDE:
+            case LONGITUDE:
+                return 10000000.0;
+            default:
+                // distances [km] and anything new
+                return 1000000.0;
+        }
+    }
+
+    private final long[] time;
+    private final long[] validity;
+    private final long[][] values;
+    // PauseMsgEnum.ordinal() + 1, 0 if not set
+    private byte[] pause;
+    // number of rows, modified by the writer only
+    private int size = 0;
+
+    TelemetryBlock(int capacity) {
+        time = new long[capacity];
+        validity = new long[capacity];
+        values = new long[FIELDS.length][];
+        pause = null;
+    }
+
+    // columns allocated later are not visible in the copy
+    TelemetryBlock(TelemetryBlock block) {
+        time = block.time;
+        validity = block.validity;
+        values = block.values.clone();
+        pause = block.pause;
+        size = block.size;
+    }
+
+    int capacity() {
+        return time.length;
+    }
+    int size() {
+        return size;
+    }
+
+    private long[] column(int col) {
+        long[] column = values[col];
+        if (column == null) {
+            column = new long[time.length];
+            long def = Math.round(FIELDS[col].getDefault() * SCALE[col]);
+            if (def != 0) {
+                Arrays.fill(column, def);
+            }
+            values[col] = column;
+        }
+        return column;
+    }
+
+    void add(Telemetry t, long tm) {
+        int row = size;
+        long valid = 0;
+        for (int i = 0; i < FIELDS.length; i++) {
+            SourceDataEnum val = FIELDS[i];
+            TelemetryValidityEnum v = t.getValidity(val);
+            valid |= ((long) v.ordinal()) << (i * VALIDITY_BITS);
+            if (i == TIME) {
+                continue;
+            }
+            double value = t.getDouble(val);
+            if ((values[i] == null) && (v == TelemetryValidityEnum.NOT_PRESENT)
+                    && (value == val.getDefault())) {
+                continue;
+            }
+            column(i)[row] = Math.round(value * SCALE[i]);
+        }
+        time[row] = tm;
+        validity[row] = valid;
+        if (t.getPause() != null) {
+            if (pause == null) {
+                pause = new byte[time.length];
+            }
+            pause[row] = (byte) (t.getPause().ordinal() + 1);
+        }
+        size = row + 1;
+    }
+
+    long getTime(int row) {
+        return time[row];
+    }
+
+    TelemetryValidityEnum getValidity(SourceDataEnum val, int row) {
+        int col = COLUMN[val.ordinal()];
+        return VALIDITY[(int) ((validity[row] >>> (col * VALIDITY_BITS)) & 7)];
+    }
+
+    double getDouble(SourceDataEnum val, int row) {
+        int col = COLUMN[val.ordinal()];
+        if (col == TIME) {
+            return time[row];
+        }
+        long[] column = values[col];
+        if (column == null) {
+            return val.getDefault();
+        }
+        return column[row] / SCALE[col];
+    }
+
+    Telemetry get(int row) {
+        Telemetry t = new Telemetry();
+        for (int i = 0; i < FIELDS.length; i++) {
+            t.setDouble(FIELDS[i], getDouble(FIELDS[i], row), getValidity(FIELDS[i], row));
+        }
+        if ((pause != null) && (pause[row] != 0)) {
+            t.setPause(PAUSE[pause[row] - 1]);
+        }
+        return t;
+    }
+
+    static void putVarLong(ByteArrayOutputStream out, long v) {
+        while ((v & ~0x7FL) != 0) {
+            out.write((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.write((int) v);
+    }
+    static long getVarLong(ByteBuffer in) {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            v |= ((long) (b & 0x7F)) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+        throw new BufferUnderflowException();
+    }
+    private static long zigZag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+    private static long unZigZag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    // differences to previous values
+    private static void putDeltas(ByteArrayOutputStream out, long[] column, int size) {
+        long prev = 0;
+        for (int i = 0; i < size; i++) {
+            putVarLong(out, zigZag(column[i] - prev));
+            prev = column[i];
+        }
+    }
+    private static void getDeltas(ByteBuffer in, long[] column, int size) {
+        long prev = 0;
+        for (int i = 0; i < size; i++) {
+            prev += unZigZag(getVarLong(in));
+            if (column != null) {
+                column[i] = prev;
+            }
+        }
+    }
+
+    /**
+     * Encodes all rows with given layout.
+     */
+    void encode(ByteArrayOutputStream out, Layout layout) {
+        putVarLong(out, size);
+        putDeltas(out, time, size);
+
+        // validity bits of the layout columns
+        long prev = 0;
+        for (int i = 0; i < size; i++) {
+            long valid = validity[i];
+            if (layout != CURRENT) {
+                valid = 0;
+                for (int j = 0; j < layout.size(); j++) {
+                    if (layout.map[j] >= 0) {
+                        valid |= ((validity[i] >>> (layout.map[j] * VALIDITY_BITS)) & 7)
+                                << (j * VALIDITY_BITS);
+                    }
+                }
+            }
+            putVarLong(out, valid ^ prev);
+            prev = valid;
+        }
+
+        // pause codes (not ordinals) are stored, 0 if not set
+        if (pause == null) {
+            out.write(0);
+        } else {
+            out.write(1);
+            for (int i = 0; i < size; i++) {
+                if (pause[i] == 0) {
+                    putVarLong(out, 0);
+                } else {
+                    putVarLong(out, zigZag(PAUSE[pause[i] - 1].val()) + 1);
+                }
+            }
+        }
+
+        long[] column = new long[size];
+        for (int j = 0; j < layout.size(); j++) {
+            int col = layout.map[j];
+            if ((col < 0) || (col == TIME) || (values[col] == null)) {
+                out.write(0);
+                continue;
+            }
+            out.write(1);
+            if (layout.scales[j] == SCALE[col]) {
+                putDeltas(out, values[col], size);
+            } else {
+                for (int i = 0; i < size; i++) {
+                    column[i] = Math.round(values[col][i] / SCALE[col] * layout.scales[j]);
+                }
+                putDeltas(out, column, size);
+            }
+        }
+    }
+
+    /**
+     * Decodes block encoded with given layout.
+     * @throws BufferUnderflowException if data is broken
+     */
+    static TelemetryBlock decode(ByteBuffer in, Layout layout) {
+        int size = (int) getVarLong(in);
+        if (size < 0) {
+            throw new BufferUnderflowException();
+        }
+        TelemetryBlock block = new TelemetryBlock(size);
+        block.size = size;
+        getDeltas(in, block.time, size);
+
+        long prev = 0;
+        for (int i = 0; i < size; i++) {
+            long valid = getVarLong(in) ^ prev;
+            prev = valid;
+            if (layout != CURRENT) {
+                long mapped = 0;
+                for (int j = 0; j < layout.size(); j++) {
+                    if (layout.map[j] >= 0) {
+                        mapped |= ((valid >>> (j * VALIDITY_BITS)) & 7)
+                                << (layout.map[j] * VALIDITY_BITS);
+                    }
+                }
+                valid = mapped;
+            }
+            block.validity[i] = valid;
+        }
+
+        if (in.get() != 0) {
+            block.pause = new byte[size];
+            for (int i = 0; i < size; i++) {
+                long code = getVarLong(in);
+                if (code != 0) {
+                    PauseMsgEnum p = PauseMsgEnum.get((int) unZigZag(code - 1));
+                    block.pause[i] = (byte) ((p == null) ? 0 : p.ordinal() + 1);
+                }
+            }
+        }
+
+        for (int j = 0; j < layout.size(); j++) {
+            if (in.get() == 0) {
+                continue;
+            }
+            int col = layout.map[j];
+            if ((col < 0) || (col == TIME)) {
+                getDeltas(in, null, size);
+                continue;
+            }
+            long[] column = block.column(col);
+            getDeltas(in, column, size);
+            if (layout.scales[j] != SCALE[col]) {
+                for (int i = 0; i < size; i++) {
+                    column[i] = Math.round(column[i] / layout.scales[j] * SCALE[col]);
+                }
+            }
+        }
+        return block;
+    }
+}
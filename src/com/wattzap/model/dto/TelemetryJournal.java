@@ -0,0 +1,422 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model.dto;
+
+import com.wattzap.model.SourceDataEnum;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of telemetries.
+ *
+ * Header: magic, version, number of fields, names and scales of the fields
+ * (so journal written by other version can be read, unknown fields are
+ * skipped) and CRC of the header.
+ * Records are written in blocks (each group commit is a block): length of
+ * encoded data, telemetries encoded with delta/varint encoding (see
+ * TelemetryBlock), number of records in the journal, CRC of the data and
+ * the number, and length of the data again. Fixed-size trailer allows to
+ * find the last block from the end of the file.
+ *
+ * When journal is opened for append only the last good block is looked for:
+ * torn tail (incomplete or broken blocks written when application was
+ * killed) is skipped backwards, truncated, and new blocks are written just
+ * after the last good one. Recovered records are read when asked for, with
+ * single bulk read, and blocks are validated in place. Blocks are kept
+ * encoded (few bytes per record) and decoded only when accessed. File is not
+ * memory-mapped: mapping cannot be released explicitly, and mapped file
+ * cannot be truncated nor deleted on Windows until mapping is garbage
+ * collected.
+ */
+public class TelemetryJournal implements Closeable {
+    public static final String EXTENSION = ".wzj";
+
+    private static final int MAGIC = 0x575A4A4C; // "WZJL"
+    private static final short VERSION = 3;
+    // length, records, CRC and length
+    private static final int FRAME = 20;
+    // tail read at once when the last block is looked for
+    private static final int TAIL = 65536;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final TelemetryBlock.Layout layout;
+    private final int headerSize;
+    private final CRC32 crc = new CRC32();
+    // position of the next block
+    private long end;
+    private long records = 0;
+    private TelemetryBlock lastBlock = null;
+
+    // encoded blocks found when journal was opened, read by getRecovered()
+    private long recoveredEnd;
+    private ByteBuffer blockData = null;
+    private long[] blockOffsets = new long[0];
+    private int[] blockRows = new int[0];
+    private int blocks = 0;
+    private int recovered = 0;
+    // bytes truncated when journal was opened
+    private long tornBytes = 0;
+
+    private TelemetryJournal(RandomAccessFile file, TelemetryBlock.Layout layout,
+            int headerSize) {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.layout = layout;
+        this.headerSize = headerSize;
+        this.end = headerSize;
+    }
+
+    /**
+     * Creates new (empty) journal, existing file is overwritten.
+     */
+    public static TelemetryJournal create(String fileName) throws IOException {
+        TelemetryBlock.Layout layout = TelemetryBlock.CURRENT;
+        ByteBuffer header = ByteBuffer.allocate(4096);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putShort((short) layout.size());
+        for (int i = 0; i < layout.size(); i++) {
+            byte[] name = layout.getField(i).name().getBytes(UTF8);
+            header.putShort((short) name.length);
+            header.put(name);
+            header.putDouble(layout.getScale(i));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(header.array(), 0, header.position());
+        header.putInt((int) crc.getValue());
+        header.flip();
+
+        RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+        try {
+            file.setLength(0);
+            TelemetryJournal journal = new TelemetryJournal(file, layout, header.limit());
+            journal.channel.write(header, 0);
+            return journal;
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    // reads and checks the header, file position is set after the header
+    private static TelemetryJournal readHeader(RandomAccessFile file, String fileName)
+            throws IOException {
+        try {
+            if (file.readInt() != MAGIC) {
+                throw new IOException(fileName + " is not a journal");
+            }
+            short version = file.readShort();
+            if (version != VERSION) {
+                throw new IOException(fileName + " unsupported journal version " + version);
+            }
+            int count = file.readShort();
+            if (count <= 0) {
+                throw new IOException(fileName + " wrong journal header");
+            }
+            ByteBuffer header = ByteBuffer.allocate(4096);
+            header.putInt(MAGIC).putShort(version).putShort((short) count);
+            SourceDataEnum[] fields = new SourceDataEnum[count];
+            double[] scales = new double[count];
+            for (int i = 0; i < count; i++) {
+                byte[] name = new byte[file.readUnsignedShort()];
+                file.readFully(name);
+                scales[i] = file.readDouble();
+                header.putShort((short) name.length).put(name).putDouble(scales[i]);
+                try {
+                    fields[i] = SourceDataEnum.valueOf(new String(name, UTF8));
+                } catch (IllegalArgumentException e) {
+                    // field not known (anymore), it is skipped
+                    fields[i] = null;
+                }
+            }
+            CRC32 crc = new CRC32();
+            crc.update(header.array(), 0, header.position());
+            if (file.readInt() != (int) crc.getValue()) {
+                throw new IOException(fileName + " broken journal header");
+            }
+            return new TelemetryJournal(file, new TelemetryBlock.Layout(fields, scales),
+                    (int) file.getFilePointer());
+        } catch (EOFException e) {
+            throw new IOException(fileName + " journal header is incomplete");
+        }
+    }
+
+    /**
+     * Opens existing journal for append. Last good block is found from the
+     * end of the file, torn tail is truncated. Good records are available by
+     * getRecovered(), new blocks are appended just after them.
+     */
+    public static TelemetryJournal open(String fileName) throws IOException {
+        if (!new File(fileName).isFile()) {
+            throw new FileNotFoundException(fileName);
+        }
+        RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+        try {
+            TelemetryJournal journal = readHeader(file, fileName);
+            long length = file.length();
+            journal.seekLast(length);
+            if (journal.end < length) {
+                journal.tornBytes = length - journal.end;
+                journal.channel.truncate(journal.end);
+            }
+            return journal;
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads all good records of the journal, file is not modified.
+     */
+    public static void read(String fileName, List<Telemetry> data) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(fileName, "r")) {
+            TelemetryJournal journal = readHeader(file, fileName);
+            journal.seekLast(file.length());
+            data.addAll(journal.getRecovered());
+        }
+    }
+
+    private ByteBuffer read(long pos, int length) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(length);
+        while (buf.hasRemaining()) {
+            if (channel.read(buf, pos + buf.position()) < 0) {
+                throw new EOFException("Journal truncated while read");
+            }
+        }
+        return buf;
+    }
+
+    // checks block framed in the buffer at pos, data length given
+    private boolean isBlock(ByteBuffer buf, int pos, int size) {
+        if ((size <= 0) || (pos + (long) FRAME + size > buf.limit())
+                || (buf.getInt(pos) != size)
+                || (buf.getInt(pos + FRAME - 4 + size) != size)) {
+            return false;
+        }
+        crc.reset();
+        crc.update(buf.array(), pos + 4, size + 8);
+        return buf.getInt(pos + 12 + size) == (int) crc.getValue();
+    }
+
+    // finds the last good block going backwards from the end of the file,
+    // only torn tail is checked (each position might be end of the block)
+    private void seekLast(long length) throws IOException {
+        long tailPos = Math.max(headerSize, length - TAIL);
+        ByteBuffer tail = read(tailPos, (int) (length - tailPos));
+        for (long pos = length; pos - FRAME > headerSize; pos--) {
+            int size;
+            if (pos - 4 >= tailPos) {
+                size = tail.getInt((int) (pos - 4 - tailPos));
+            } else {
+                size = read(pos - 4, 4).getInt(0);
+            }
+            long start = pos - FRAME - size;
+            if ((size <= 0) || (start < headerSize)) {
+                continue;
+            }
+            ByteBuffer block;
+            int offset;
+            if (start >= tailPos) {
+                block = tail;
+                offset = (int) (start - tailPos);
+            } else {
+                block = read(start, FRAME + size);
+                offset = 0;
+            }
+            if (!isBlock(block, offset, size)) {
+                continue;
+            }
+            ByteBuffer view = block.duplicate();
+            view.position(offset + 4);
+            view.limit(offset + 4 + size);
+            try {
+                lastBlock = TelemetryBlock.decode(view, layout);
+            } catch (BufferUnderflowException e) {
+                continue;
+            }
+            records = block.getLong(offset + 4 + size);
+            end = pos;
+            break;
+        }
+        recoveredEnd = end;
+    }
+
+    // reads journal up to the last good block, blocks are checked until
+    // first broken one
+    private void load() throws IOException {
+        long length = recoveredEnd - headerSize;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Journal too big");
+        }
+        blockData = read(headerSize, (int) length);
+        int pos = 0;
+        while (pos + FRAME < length) {
+            int size = blockData.getInt(pos);
+            if (!isBlock(blockData, pos, size)) {
+                break;
+            }
+            int rows;
+            try {
+                rows = (int) TelemetryBlock.getVarLong(
+                        ByteBuffer.wrap(blockData.array(), pos + 4, size));
+            } catch (BufferUnderflowException e) {
+                break;
+            }
+            if (blocks == blockOffsets.length) {
+                blockOffsets = Arrays.copyOf(blockOffsets, blocks * 2 + 16);
+                blockRows = Arrays.copyOf(blockRows, blocks * 2 + 16);
+            }
+            blockOffsets[blocks] = pos + 4;
+            blockRows[blocks] = recovered;
+            blocks++;
+            recovered += rows;
+            pos += FRAME + size;
+        }
+    }
+
+    private TelemetryBlock decode(int block) {
+        ByteBuffer view = blockData.duplicate();
+        view.position((int) blockOffsets[block]);
+        return TelemetryBlock.decode(view, layout);
+    }
+
+    /**
+     * Records found when journal was opened, they are read with the first
+     * call. Records are decoded when accessed (last decoded block is cached),
+     * list cannot be modified. It doesn't refer to the file, it is valid when
+     * journal is closed (or deleted) as well.
+     */
+    public synchronized List<Telemetry> getRecovered() throws IOException {
+        if (blockData == null) {
+            load();
+        }
+        return new Recovered();
+    }
+
+    private class Recovered extends AbstractList<Telemetry> implements RandomAccess {
+        private volatile Object[] cache = {-1, null};
+
+        @Override
+        public Telemetry get(int index) {
+            if ((index < 0) || (index >= recovered)) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + recovered);
+            }
+            int block = Arrays.binarySearch(blockRows, 0, blocks, index);
+            if (block < 0) {
+                block = -block - 2;
+            }
+            Object[] cached = cache;
+            if ((Integer) cached[0] != block) {
+                cached = new Object[] {block, decode(block)};
+                cache = cached;
+            }
+            return ((TelemetryBlock) cached[1]).get(index - blockRows[block]);
+        }
+
+        @Override
+        public int size() {
+            return recovered;
+        }
+    }
+
+    public synchronized void append(Telemetry t) throws IOException {
+        append(Arrays.asList(t));
+    }
+
+    // group of records is written as single block
+    public synchronized void append(List<Telemetry> list) throws IOException {
+        if (list.isEmpty()) {
+            return;
+        }
+        TelemetryBlock block = new TelemetryBlock(list.size());
+        for (Telemetry t : list) {
+            block.add(t, t.getTime());
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(list.size() * 32 + 16);
+        block.encode(out, layout);
+        byte[] bytes = out.toByteArray();
+
+        ByteBuffer buf = ByteBuffer.allocate(bytes.length + FRAME);
+        buf.putInt(bytes.length);
+        buf.put(bytes);
+        buf.putLong(records + list.size());
+        crc.reset();
+        crc.update(buf.array(), 4, bytes.length + 8);
+        buf.putInt((int) crc.getValue());
+        buf.putInt(bytes.length);
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf, end + buf.position());
+        }
+        end += buf.limit();
+        records += list.size();
+        lastBlock = block;
+    }
+
+    // last record of the journal, null if empty
+    public synchronized Telemetry last() {
+        if (lastBlock == null) {
+            return null;
+        }
+        return lastBlock.get(lastBlock.size() - 1);
+    }
+
+    public synchronized long getRecords() {
+        return records;
+    }
+
+    // size of the journal (without torn tail) [bytes]
+    public synchronized long getSize() {
+        return end;
+    }
+
+    // size of the torn tail truncated when journal was opened [bytes]
+    public long getTornBytes() {
+        return tornBytes;
+    }
+
+    // forces written records to the disk
+    public synchronized void sync() throws IOException {
+        channel.force(false);
+    }
+
+    // written records are forced to the disk before the file is closed
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            channel.force(false);
+        } finally {
+            file.close();
+        }
+    }
+}
@@ -0,0 +1,50 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model.dto;
+
+/**
+ * Ring of telemetry snapshots. Each published snapshot is immutable copy of
+ * the current data with next sequence number. Snapshots are recycled after
+ * all others were used, so no arrays are allocated per tick. Snapshot is
+ * valid as long as size-1 next ones are not published: it is enough for
+ * synchronous receivers, data kept longer must be copied. Asynchronous
+ * receivers (message lanes) get detached copy, they might be late for any
+ * number of ticks.
+ */
+public class TelemetryPool {
+    private final Telemetry[] pool;
+    private int next = 0;
+    private long sequence = 0;
+
+    public TelemetryPool(int size) {
+        pool = new Telemetry[size];
+        for (int i = 0; i < size; i++) {
+            pool[i] = new Telemetry();
+        }
+    }
+
+    public synchronized Telemetry publish(Telemetry t) {
+        Telemetry snapshot = pool[next];
+        next = (next + 1) % pool.length;
+        snapshot.freeze(t, ++sequence);
+        return snapshot;
+    }
+
+    // sequence number of the last published snapshot
+    public synchronized long getSequence() {
+        return sequence;
+    }
+}
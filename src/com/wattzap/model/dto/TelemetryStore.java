@@ -0,0 +1,241 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model.dto;
+
+import com.wattzap.model.SourceDataEnum;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Columnar store of recorded telemetries. Data is kept in chunks of fixed
+ * size: time column, validity bitmap (3 bits per field) and quantized column
+ * per field (see TelemetryBlock). Column is allocated when field is present
+ * for the first time in the chunk, so fields which are never set take no
+ * memory at all. Full chunks are sealed: encoded with delta/varint encoding,
+ * they are decoded when accessed.
+ *
+ * Rows are only appended (by single writer), so readers take snapshots:
+ * read-only lists of rows stored so far, without any copy and without any
+ * locking. Telemetry object is created when row is accessed, columns can be
+ * read directly as well. Telemetries recovered from the journal might be put
+ * in front of the stored rows.
+ */
+public class TelemetryStore {
+    private static final int CHUNK_BITS = 10;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    // filled chunk (block) or sealed one (encoded)
+    private static class Chunk {
+        private final TelemetryBlock block;
+        private final byte[] encoded;
+
+        private Chunk(TelemetryBlock block) {
+            this.block = block;
+            this.encoded = null;
+        }
+
+        private Chunk(byte[] encoded) {
+            this.block = null;
+            this.encoded = encoded;
+        }
+
+        private TelemetryBlock decode() {
+            if (block != null) {
+                return block;
+            }
+            return TelemetryBlock.decode(ByteBuffer.wrap(encoded), TelemetryBlock.CURRENT);
+        }
+
+        private int bytes() {
+            return (encoded != null) ? encoded.length : 0;
+        }
+    }
+
+    // all synchronized, chunks (and array of them) are never modified for
+    // rows below size.
+    private Chunk[] chunks = new Chunk[0];
+    private int size = 0;
+    private List<Telemetry> prefix = Collections.<Telemetry>emptyList();
+    private long sealedBytes = 0;
+
+    /**
+     * Telemetries put in front of the store (eg. recovered from journal). They
+     * must not be modified later.
+     */
+    public synchronized void setPrefix(List<Telemetry> prefix) {
+        this.prefix = prefix;
+    }
+
+    public synchronized void clear() {
+        chunks = new Chunk[0];
+        size = 0;
+        sealedBytes = 0;
+        prefix = Collections.<Telemetry>emptyList();
+    }
+
+    public synchronized int size() {
+        return prefix.size() + size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size() == 0;
+    }
+
+    // size of the sealed (encoded) chunks
+    public synchronized long getSealedBytes() {
+        return sealedBytes;
+    }
+
+    /**
+     * Appends the telemetry with given time.
+     * @return index of the row (including prefix)
+     */
+    public synchronized int add(Telemetry t, long time) {
+        if ((size & (CHUNK_SIZE - 1)) == 0) {
+            // new chunk is needed. Snapshots keep old array.
+            chunks = Arrays.copyOf(chunks, chunks.length + 1);
+            chunks[chunks.length - 1] = new Chunk(new TelemetryBlock(CHUNK_SIZE));
+        }
+        TelemetryBlock block = chunks[chunks.length - 1].block;
+        block.add(t, time);
+        size++;
+        if (block.size() == CHUNK_SIZE) {
+            // chunk is full, it is never modified
+            ByteArrayOutputStream out = new ByteArrayOutputStream(CHUNK_SIZE * 16);
+            block.encode(out, TelemetryBlock.CURRENT);
+            Chunk sealed = new Chunk(out.toByteArray());
+            sealedBytes += sealed.bytes();
+            chunks = chunks.clone();
+            chunks[chunks.length - 1] = sealed;
+        }
+        return prefix.size() + size - 1;
+    }
+
+    public synchronized View snapshot() {
+        Chunk[] copy = chunks;
+        if ((size & (CHUNK_SIZE - 1)) != 0) {
+            // last chunk is still filled
+            copy = chunks.clone();
+            TelemetryBlock last = copy[copy.length - 1].block;
+            copy[copy.length - 1] = new Chunk(new TelemetryBlock(last));
+        }
+        return new View(prefix, copy, size);
+    }
+
+    // telemetry created from the stored row, read directly (without a snapshot)
+    public synchronized Telemetry get(int index) {
+        if ((index < 0) || (index >= prefix.size() + size)) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size "
+                    + (prefix.size() + size));
+        }
+        int row = index - prefix.size();
+        if (row < 0) {
+            return prefix.get(index);
+        }
+        return chunks[row >>> CHUNK_BITS].decode().get(row & (CHUNK_SIZE - 1));
+    }
+
+    /**
+     * Read-only list of telemetries stored when snapshot was taken. It is
+     * not modified when new rows are added or store is cleared.
+     * Last decoded chunk is cached, so sequential access decodes each chunk
+     * once.
+     */
+    public static class View extends AbstractList<Telemetry> implements RandomAccess {
+        private final List<Telemetry> prefix;
+        private final Chunk[] chunks;
+        private final int size;
+        // last decoded chunk
+        private volatile Object[] cache = {-1, null};
+
+        private View(List<Telemetry> prefix, Chunk[] chunks, int size) {
+            this.prefix = prefix;
+            this.chunks = chunks;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return prefix.size() + size;
+        }
+
+        private int check(int index) {
+            if ((index < 0) || (index >= size())) {
+                throw new IndexOutOfBoundsException("Index " + index + ", size " + size());
+            }
+            return index - prefix.size();
+        }
+
+        private TelemetryBlock block(int row) {
+            int i = row >>> CHUNK_BITS;
+            Object[] cached = cache;
+            if ((Integer) cached[0] == i) {
+                return (TelemetryBlock) cached[1];
+            }
+            TelemetryBlock block = chunks[i].decode();
+            cache = new Object[] {i, block};
+            return block;
+        }
+
+        @Override
+        public Telemetry get(int index) {
+            int row = check(index);
+            if (row < 0) {
+                return prefix.get(index);
+            }
+            return block(row).get(row & (CHUNK_SIZE - 1));
+        }
+
+        public long getTime(int index) {
+            int row = check(index);
+            if (row < 0) {
+                return prefix.get(index).getTime();
+            }
+            return block(row).getTime(row & (CHUNK_SIZE - 1));
+        }
+
+        public double getDouble(SourceDataEnum val, int index) {
+            int row = check(index);
+            if (row < 0) {
+                return prefix.get(index).getDouble(val);
+            }
+            return block(row).getDouble(val, row & (CHUNK_SIZE - 1));
+        }
+
+        public TelemetryValidityEnum getValidity(SourceDataEnum val, int index) {
+            int row = check(index);
+            if (row < 0) {
+                return prefix.get(index).getValidity(val);
+            }
+            return block(row).getValidity(val, row & (CHUNK_SIZE - 1));
+        }
+
+        public boolean isAvailable(SourceDataEnum val, int index) {
+            switch (getValidity(val, index)) {
+                case NOT_PRESENT:
+                case NOT_AVAILABLE:
+                    return false;
+                default:
+                    return true;
+            }
+        }
+    }
+}
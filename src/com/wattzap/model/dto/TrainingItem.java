@@ -185,6 +185,10 @@ public class TrainingItem extends AxisPoint {
         }
     }
 	public boolean setHr(String v) {
+        return setHr(v, maxHr);
+	}
+    // percents and zones are relative to given FTHR
+	public boolean setHr(String v, int maxHr) {
         if (hrItem != null) {
             System.err.println("HR item already exist (" + hrItem.getDescr() + "), overwrite with new one!");
         }
@@ -236,6 +240,10 @@ public class TrainingItem extends AxisPoint {
         }
     }
 	public boolean setPower(String v) {
+        return setPower(v, ftp);
+	}
+    // percents and zones are relative to given FTP
+	public boolean setPower(String v, int ftp) {
         if (powerItem != null) {
             System.err.println("Power item already exist (" + powerItem.getDescr() + "), overwrite with new one!");
         }
@@ -258,6 +266,9 @@ public class TrainingItem extends AxisPoint {
         }
     }
 	public boolean setRpe(String v) {
+        return setRpe(v, ftp);
+	}
+	public boolean setRpe(String v, int ftp) {
         if (powerItem != null) {
             System.err.println("Power item already exist (" + powerItem.getDescr() + "), overwrite with new one!");
         }
@@ -54,6 +54,12 @@ public class WorkoutData {
 	private String tcxFile;
 	
 	private String description;
+
+	// power-duration curve, null if not computed
+	private PowerCurve powerCurve;
+
+	// content hash of imported file, null if not imported
+	private String hash;
 	
 	// source type
 	public static final int WATTZAP = 1;
@@ -70,6 +76,22 @@ public class WorkoutData {
 		this.description = description;
 	}
 
+	public PowerCurve getPowerCurve() {
+		return powerCurve;
+	}
+
+	public void setPowerCurve(PowerCurve powerCurve) {
+		this.powerCurve = powerCurve;
+	}
+
+	public String getHash() {
+		return hash;
+	}
+
+	public void setHash(String hash) {
+		this.hash = hash;
+	}
+
 	public int getTwentyMinutePwr() {
 		return twentyMinutePwr;
 	}
@@ -297,12 +319,28 @@ public class WorkoutData {
 		return "CREATE TABLE workouts(username VARCHAR(64), filename varchar(64), fivesecp INTEGER, oneminp INTEGER, fiveminp INTEGER , twentyminp INTEGER, qp INTEGER, totalp INTEGER, maxp INTEGER, avep INTEGER, ftp INTEGER, maxhr INTEGER, avehr INTEGER, minhr INTEGER, fthr INTEGER, maxcad INTEGER, avecad INTEGER, distance DOUBLE, weight DOUBLE, ridetime TIME, ridedate DATE, description varchar(256), source INTEGER  DEFAULT 1, primary key (username, filename))";
 	}
 
+	static public String dateIndex() {
+		return "CREATE INDEX workouts_date ON workouts(username, ridedate, filename)";
+	}
+
+	static public String curveColumn() {
+		return "ALTER TABLE workouts ADD COLUMN mmp VARCHAR(1024)";
+	}
+
+	static public String hashColumn() {
+		return "ALTER TABLE workouts ADD COLUMN hash VARCHAR(64)";
+	}
+
+	static public String updateCurve() {
+		return "UPDATE workouts SET mmp=? WHERE username=? AND filename=?";
+	}
+
 	static public String delete() {
 		return "DELETE FROM workouts WHERE username=? AND filename =?";
 	}
 	
 	static public String insert() {
-		return "INSERT INTO workouts VALUES (?,?,?,?,?, ?,?,?,?,?, ?,?,?,?,?, ?,?,?,?,?, ?,?,?)";
+		return "INSERT INTO workouts VALUES (?,?,?,?,?, ?,?,?,?,?, ?,?,?,?,?, ?,?,?,?,?, ?,?,?,?,?)";
 	}
 	
 	static public String select() {
@@ -0,0 +1,82 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model.dto;
+
+/**
+ * Conditions for workout history queries. Each condition is used only if it
+ * is set: dates (inclusive, [ms]) different than 0, source different than 0,
+ * power greater than 0 and non-empty route.
+ */
+public class WorkoutFilter {
+	private long fromDate = 0;
+	private long toDate = 0;
+	private int source = 0;
+	private int minPower = 0;
+	private String route = null;
+
+	public long getFromDate() {
+		return fromDate;
+	}
+
+	public void setFromDate(long fromDate) {
+		this.fromDate = fromDate;
+	}
+
+	public long getToDate() {
+		return toDate;
+	}
+
+	public void setToDate(long toDate) {
+		this.toDate = toDate;
+	}
+
+	// one of WorkoutData sources
+	public int getSource() {
+		return source;
+	}
+
+	public void setSource(int source) {
+		this.source = source;
+	}
+
+	// minimal quadratic power
+	public int getMinPower() {
+		return minPower;
+	}
+
+	public void setMinPower(int minPower) {
+		this.minPower = minPower;
+	}
+
+	// part of the description (route name), case is ignored
+	public String getRoute() {
+		return route;
+	}
+
+	public void setRoute(String route) {
+		if ((route != null) && route.isEmpty()) {
+			route = null;
+		}
+		this.route = route;
+	}
+
+	@Override
+	public String toString() {
+		return "WorkoutFilter [fromDate=" + fromDate + ", toDate=" + toDate
+				+ ", source=" + source + ", minPower=" + minPower
+				+ ", route=" + route + "]";
+	}
+}
@@ -0,0 +1,256 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model.dto;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+
+import com.wattzap.model.SourceDataEnum;
+
+/**
+ * Loaded workouts with aggregates used by the graphs. Aggregates are computed
+ * for each workout when it is loaded (by many threads), sets are merged then:
+ * workouts are kept in the order, power curves are enveloped, scatter points
+ * (distinct power/cadence and power/heart rate pairs) are joined, histograms
+ * of power, cadence and heart rate are added.
+ */
+public class WorkoutSet {
+	// values with histograms
+	public static final SourceDataEnum[] HISTOGRAMS = { SourceDataEnum.POWER,
+			SourceDataEnum.CADENCE, SourceDataEnum.HEART_RATE };
+	// [W] less power is not pedalling
+	public static final int PEDALLING = 5;
+
+	private final List<String> names = new ArrayList<String>();
+	private final List<ArrayList<Telemetry>> data = new ArrayList<ArrayList<Telemetry>>();
+	private final List<PowerCurve> curves = new ArrayList<PowerCurve>();
+	private final List<String> failed = new ArrayList<String>();
+
+	private final PowerCurve curve = new PowerCurve();
+	private long time = 0; // [ms]
+	private double distance = 0.0;
+	private int samples = 0;
+
+	// sorted distinct pairs, power in the upper half
+	private long[] cadencePoints = new long[0];
+	private long[] heartRatePoints = new long[0];
+
+	// time of each sample is counted for its value
+	private final EnumMap<SourceDataEnum, Histogram> histograms = new EnumMap<SourceDataEnum, Histogram>(
+			SourceDataEnum.class);
+	// only when pedalling
+	private final EnumMap<SourceDataEnum, Histogram> pedalling = new EnumMap<SourceDataEnum, Histogram>(
+			SourceDataEnum.class);
+
+	public WorkoutSet() {
+		for (SourceDataEnum en : HISTOGRAMS) {
+			histograms.put(en, new Histogram());
+			pedalling.put(en, new Histogram());
+		}
+	}
+
+	/**
+	 * Aggregates of the single workout, empty set with failed name if no
+	 * data.
+	 */
+	public static WorkoutSet of(String name, ArrayList<Telemetry> data) {
+		WorkoutSet set = new WorkoutSet();
+		if (data == null || data.isEmpty()) {
+			set.failed.add(name);
+			return set;
+		}
+		PowerCurve curve = PowerCurve.compute(data);
+		set.names.add(name);
+		set.data.add(data);
+		set.curves.add(curve);
+		set.curve.envelope(curve);
+		set.time = data.get(data.size() - 1).getTime() - data.get(0).getTime();
+		set.distance = data.get(data.size() - 1).getDistance();
+		set.samples = data.size();
+
+		long[] cadence = new long[data.size()];
+		long[] heartRate = new long[data.size()];
+		int c = 0;
+		int h = 0;
+		for (Telemetry t : data) {
+			if (t.getPower() > 0) {
+				if (t.getCadence() > 0) {
+					cadence[c++] = point(t.getPower(), t.getCadence());
+				}
+				if (t.getHeartRate() > 0) {
+					heartRate[h++] = point(t.getPower(), t.getHeartRate());
+				}
+			}
+		}
+		set.cadencePoints = distinct(cadence, c);
+		set.heartRatePoints = distinct(heartRate, h);
+
+		Histogram[] all = new Histogram[HISTOGRAMS.length];
+		Histogram[] active = new Histogram[HISTOGRAMS.length];
+		for (int i = 0; i < HISTOGRAMS.length; i++) {
+			all[i] = set.histograms.get(HISTOGRAMS[i]);
+			active[i] = set.pedalling.get(HISTOGRAMS[i]);
+		}
+		for (int j = 1; j < data.size(); j++) {
+			Telemetry t = data.get(j);
+			long dt = t.getTime() - data.get(j - 1).getTime();
+			boolean pedal = t.getPower() >= PEDALLING;
+			for (int i = 0; i < HISTOGRAMS.length; i++) {
+				int value = t.getInt(HISTOGRAMS[i]);
+				all[i].add(value, dt);
+				if (pedal) {
+					active[i].add(value, dt);
+				}
+			}
+		}
+		return set;
+	}
+
+	private static long point(int power, int value) {
+		return ((long) power << 32) | value;
+	}
+
+	private static long[] distinct(long[] points, int n) {
+		Arrays.sort(points, 0, n);
+		int d = 0;
+		for (int i = 0; i < n; i++) {
+			if (d == 0 || points[i] != points[d - 1]) {
+				points[d++] = points[i];
+			}
+		}
+		return Arrays.copyOf(points, d);
+	}
+
+	// union of sorted distinct arrays
+	private static long[] union(long[] a, long[] b) {
+		long[] u = new long[a.length + b.length];
+		int i = 0;
+		int j = 0;
+		int n = 0;
+		while (i < a.length || j < b.length) {
+			long v;
+			if (j == b.length || (i < a.length && a[i] < b[j])) {
+				v = a[i++];
+			} else if (i == a.length || b[j] < a[i]) {
+				v = b[j++];
+			} else {
+				v = a[i++];
+				j++;
+			}
+			u[n++] = v;
+		}
+		return Arrays.copyOf(u, n);
+	}
+
+	/**
+	 * Appends workouts of the other set (set loaded later)
+	 */
+	public WorkoutSet merge(WorkoutSet other) {
+		names.addAll(other.names);
+		data.addAll(other.data);
+		curves.addAll(other.curves);
+		failed.addAll(other.failed);
+		curve.envelope(other.curve);
+		time += other.time;
+		distance += other.distance;
+		samples += other.samples;
+		cadencePoints = union(cadencePoints, other.cadencePoints);
+		heartRatePoints = union(heartRatePoints, other.heartRatePoints);
+		for (SourceDataEnum en : HISTOGRAMS) {
+			histograms.get(en).merge(other.histograms.get(en));
+			pedalling.get(en).merge(other.pedalling.get(en));
+		}
+		return this;
+	}
+
+	// number of loaded workouts
+	public int size() {
+		return data.size();
+	}
+
+	public String getName(int i) {
+		return names.get(i);
+	}
+
+	public PowerCurve getCurve(int i) {
+		return curves.get(i);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public ArrayList<Telemetry>[] getTelemetry() {
+		return data.toArray(new ArrayList[data.size()]);
+	}
+
+	// files without data
+	public List<String> getFailed() {
+		return failed;
+	}
+
+	// envelope of all the curves
+	public PowerCurve getCurve() {
+		return curve;
+	}
+
+	// [ms]
+	public long getTime() {
+		return time;
+	}
+
+	// [km]
+	public double getDistance() {
+		return distance;
+	}
+
+	public int getSamples() {
+		return samples;
+	}
+
+	public int getCadencePoints() {
+		return cadencePoints.length;
+	}
+
+	public int getCadencePower(int i) {
+		return (int) (cadencePoints[i] >>> 32);
+	}
+
+	public int getCadence(int i) {
+		return (int) cadencePoints[i];
+	}
+
+	public int getHeartRatePoints() {
+		return heartRatePoints.length;
+	}
+
+	public int getHeartRatePower(int i) {
+		return (int) (heartRatePoints[i] >>> 32);
+	}
+
+	public int getHeartRate(int i) {
+		return (int) heartRatePoints[i];
+	}
+
+	// null if value has no histogram
+	public Histogram getHistogram(SourceDataEnum en) {
+		return histograms.get(en);
+	}
+
+	// time when power was at least PEDALLING
+	public Histogram getPedallingHistogram(SourceDataEnum en) {
+		return pedalling.get(en);
+	}
+}
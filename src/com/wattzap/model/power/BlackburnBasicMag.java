@@ -35,7 +35,6 @@ package com.wattzap.model.power;
  * 
  */
 public class BlackburnBasicMag extends Power {
-	private final Cubic cubic = new Cubic();
 	
 	public int getPower(double speed, int resistance) {
 		double power = 0.0;
@@ -54,6 +53,7 @@ public class BlackburnBasicMag extends Power {
 	}
 	
 	public double getSpeed(int power, int resistance) {
+		Cubic cubic = new Cubic();
 		double speed = 0;
 		
 		switch (resistance) {
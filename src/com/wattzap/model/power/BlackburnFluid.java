@@ -27,7 +27,6 @@ public class BlackburnFluid extends Power {
 	private static final double b = 0;
 	private static final double c = 14.493;
 	private static final double d = 0;
-	private final Cubic cubic = new Cubic();
 
 	public int getPower(double speed, int resistance) {
 		double power = 0.0;
@@ -38,6 +37,7 @@ public class BlackburnFluid extends Power {
 	}
 
 	public double getSpeed(int power, int resistance) {
+		Cubic cubic = new Cubic();
 		cubic.solve(a, b, c, d - power);
 		return cubic.x1;
 	}
@@ -39,7 +39,6 @@ public class CascadeFluidPro extends Power {
 	private static final double b = 0.2;
 	private static final double c = 8.26;
 	private static final double d = 0;
-	private final Cubic cubic = new Cubic();
 	
 	public int getPower(double speed, int resistance) {
 		double power = (c * speed) + (a * (speed * speed * speed)) - (b * (speed * speed));
@@ -62,6 +61,7 @@ public class CascadeFluidPro extends Power {
 	}
 	
 	public double getSpeed(int power, int resistance) {
+		Cubic cubic = new Cubic();
 		cubic.solve(a, b, c, d - power);
 		return cubic.x1;
 	}
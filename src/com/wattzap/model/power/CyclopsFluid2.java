@@ -35,7 +35,6 @@ public class CyclopsFluid2 extends Power {
 	private static final double b = 0.00529;
 	private static final double c = 5.58;
 	private static final double d = 0;
-	private static final Cubic cubic = new Cubic();
 
 	public int getPower(double speed, int resistance) {
 
@@ -55,6 +54,7 @@ public class CyclopsFluid2 extends Power {
 	}
 
 	public double getSpeed(int power, int resistance) {
+		Cubic cubic = new Cubic();
 		cubic.solve(a, b, c, d - power);
 		return cubic.x1;
 	}
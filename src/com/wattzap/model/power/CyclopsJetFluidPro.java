@@ -41,7 +41,6 @@ public class CyclopsJetFluidPro extends Power {
 	private static final double b = 0.0862;
 	private static final double c = 1.5196;
 	private static final double d = -0.2864;
-	private static final Cubic cubic = new Cubic();
 
 	public int getPower(double speed, int resistance) {
 		double power = (c * speed) + (b * speed * speed)
@@ -51,6 +50,7 @@ public class CyclopsJetFluidPro extends Power {
 	}
 
 	public double getSpeed(int power, int resistance) {
+		Cubic cubic = new Cubic();
 		cubic.solve(a, b, c, d - power);
 		return cubic.x1;
 	}
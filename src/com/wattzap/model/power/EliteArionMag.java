@@ -34,7 +34,6 @@ package com.wattzap.model.power;
  */
 @PowerAnnotation
 public class EliteArionMag extends Power {
-	private final Cubic cubic = new Cubic();
 	
 	public int getPower(double speed, int resistance) {
 		double power = 0.0;
@@ -58,6 +57,7 @@ public class EliteArionMag extends Power {
 	}
 
 	public double getSpeed(int power, int resistance) {
+		Cubic cubic = new Cubic();
 		double speed = 0;
 
 		switch (resistance) {
@@ -32,7 +32,6 @@ package com.wattzap.model.power;
  */
 @PowerAnnotation
 public class EliteChronoHydroMag extends Power {
-	private final Cubic cubic = new Cubic();
 	private final static int neutral = 2;
 
 	public int getPower(double speed, int resistance) {
@@ -69,6 +68,7 @@ public class EliteChronoHydroMag extends Power {
 
 	@Override
 	public double getSpeed(int power, int resistance) {
+		Cubic cubic = new Cubic();
 		double speed = 0;
 
 		switch (resistance) {
@@ -36,7 +36,6 @@ package com.wattzap.model.power;
 
 @PowerAnnotation
 public class EliteChronoMagForceGel extends Power {
-	private final Cubic cubic = new Cubic();
 	private final static int neutral = 2;
 
 	public int getPower(double speed, int resistance) {
@@ -73,6 +72,7 @@ public class EliteChronoMagForceGel extends Power {
 
 	@Override
 	public double getSpeed(int power, int resistance) {
+		Cubic cubic = new Cubic();
 		double speed = 0;
 
 		switch (resistance) {
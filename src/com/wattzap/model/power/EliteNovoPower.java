@@ -50,8 +50,6 @@ package com.wattzap.model.power;
  */
 @PowerAnnotation
 public class EliteNovoPower extends Power {
-	private final Cubic cubic = new Cubic();
-
 	public int getPower(double speed, int resistance) {
 		double power = 0;
 
@@ -109,6 +107,7 @@ public class EliteNovoPower extends Power {
 	}
 
 	public double getSpeed(int power, int resistance) {
+		Cubic cubic = new Cubic();
 		switch (resistance) {
 		case 1:
 			cubic.solve(-0.000192696, 0.068298368, 2.252136752, -1.167832168d
@@ -33,7 +33,6 @@ package com.wattzap.model.power;
 
 @PowerAnnotation
 public class EliteVolareSpeed extends Power {
-	private final Cubic cubic = new Cubic();
 	private final static int levels = 5;
 
 	public int getPower(double speed, int resistance) {
@@ -67,6 +66,7 @@ public class EliteVolareSpeed extends Power {
 	}
 
 	public double getSpeed(int power, int resistance) {
+		Cubic cubic = new Cubic();
 		double speed = 0;
 
 		switch (resistance) {
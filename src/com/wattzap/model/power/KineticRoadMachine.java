@@ -44,7 +44,6 @@ public class KineticRoadMachine extends Power {
 	private static final double b = 0;
 	private static final double c = 3.258988;
 	private static final double d = 0;
-	private final Cubic cubic = new Cubic();
 	
 	public int getPower(double speed, int resistance) {
 		double power = (c * speed) + (a * (speed * speed * speed));
@@ -67,6 +66,7 @@ public class KineticRoadMachine extends Power {
 	}
 	
 	public double getSpeed(int power, int resistance) {
+		Cubic cubic = new Cubic();
 		cubic.solve(a, b, c, d - power);
 		return cubic.x1;
 	}
@@ -15,6 +15,11 @@
 */
 package com.wattzap.model.power;
 
+/**
+ * Power curve of a turbo trainer. Profiles are loaded once and shared by all
+ * the riders (and sessions) using the trainer, so getPower() and getSpeed()
+ * must not keep any state between calls.
+ */
 public abstract class Power {
 	private int neutral = getNeutral();
 	private double posDivider = 1;
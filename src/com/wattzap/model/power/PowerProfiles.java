@@ -18,6 +18,7 @@ package com.wattzap.model.power;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.apache.log4j.LogManager;
@@ -51,8 +52,9 @@ public enum PowerProfiles {
 		}
 	}
 
+	// profiles are shared, list cannot be modified
 	public List<Power> getProfiles() {
-		return profiles;
+		return Collections.unmodifiableList(profiles);
 	}
 
 	public Power getProfile(String description) {
@@ -0,0 +1,303 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.wattzap.model.UserPreferences;
+import com.wattzap.model.dto.Telemetry;
+import com.wattzap.model.dto.WorkoutData;
+import com.wattzap.view.training.TrainingAnalysis;
+
+/**
+ * Imports activity files (tcx, fit, gpx) into the Wattzap database. Files
+ * are hashed, parsed, analyzed and written to the workouts directory by
+ * fork/join pool workers, analyzed workouts are queued to the importing
+ * thread which inserts them in batches. Files are recognized by content
+ * hash (same ride renamed or copied again is not imported twice) and by
+ * workout name (start time), both checked against the database and the
+ * files imported before. Hash and name are claimed only when file was
+ * parsed, and released (with the written file) when workout cannot be
+ * inserted.
+ * Progress can be checked by any thread, files not started before cancel()
+ * are skipped.
+ */
+public class ActivityImporter {
+	private static final Logger logger = LogManager.getLogger("ActivityImporter");
+
+	// workouts inserted in single transaction
+	private static final int BATCH = 50;
+
+	private final List<String> files;
+	private final AtomicInteger done = new AtomicInteger();
+	private final AtomicInteger duplicates = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final List<String> imported = new ArrayList<String>();
+	private volatile boolean cancelled = false;
+	private long elapsed = 0; // [ms]
+
+	// seen by workers, with contents of the database
+	private final Set<String> hashes = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	private final Set<String> names = Collections
+			.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+	// workout is null if file was not imported
+	private final BlockingQueue<WorkoutData> queue = new LinkedBlockingQueue<WorkoutData>();
+	private static final WorkoutData SKIPPED = new WorkoutData();
+
+	public ActivityImporter(List<String> files) {
+		this.files = files;
+	}
+
+	/**
+	 * Hex encoded SHA-1 of the file content
+	 */
+	public static String hash(byte[] content) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		byte[] sum = digest.digest(content);
+		StringBuilder buf = new StringBuilder(sum.length * 2);
+		for (byte b : sum) {
+			buf.append(Character.forDigit((b >> 4) & 0xf, 16));
+			buf.append(Character.forDigit(b & 0xf, 16));
+		}
+		return buf.toString();
+	}
+
+	private class Worker implements Runnable {
+		private final String fileName;
+
+		private Worker(String fileName) {
+			this.fileName = fileName;
+		}
+
+		@Override
+		public void run() {
+			WorkoutData workout = SKIPPED;
+			try {
+				if (!cancelled) {
+					workout = read();
+				}
+			} catch (Exception e) {
+				logger.error(fileName + ":: " + e.getLocalizedMessage());
+				failed.incrementAndGet();
+			} finally {
+				done.incrementAndGet();
+				queue.add(workout);
+			}
+		}
+
+		private WorkoutData read() throws IOException {
+			String hash = hash(Files.readAllBytes(Paths.get(fileName)));
+			List<Telemetry> telemetry = parse(fileName);
+			if (telemetry == null || telemetry.isEmpty()) {
+				logger.warn("Cannot read " + fileName);
+				failed.incrementAndGet();
+				return SKIPPED;
+			}
+			if (!hashes.add(hash)) {
+				logger.info("File already imported " + fileName);
+				duplicates.incrementAndGet();
+				return SKIPPED;
+			}
+			String workoutName = TcxWriter.getWorkoutName(telemetry.get(0)
+					.getTime());
+			if (!names.add(workoutName)) {
+				logger.info("File already in database " + workoutName);
+				duplicates.incrementAndGet();
+				return SKIPPED;
+			}
+
+			boolean saved = false;
+			try {
+				WorkoutData workout = analyze(telemetry);
+				workout.setTcxFile(workoutName);
+				workout.setSource(telemetry.get(0).getResistance());
+				workout.setHash(hash);
+
+				// removed if workout cannot be inserted
+				save(telemetry);
+				saved = true;
+				return workout;
+			} finally {
+				if (!saved) {
+					// file might be partially written, claims are released
+					hashes.remove(hash);
+					names.remove(workoutName);
+					delete(workoutName);
+				}
+			}
+		}
+	}
+
+	List<Telemetry> parse(String fileName) {
+		return ActivityReader.readTelemetry(fileName);
+	}
+
+	WorkoutData analyze(List<Telemetry> telemetry) {
+		WorkoutData workout = TrainingAnalysis.analyze(telemetry);
+		workout.setFtp(UserPreferences.INSTANCE.getMaxPower());
+		return workout;
+	}
+
+	// file is written to the workouts directory, named by the start time
+	void save(List<Telemetry> telemetry) {
+		new TcxWriter().save(telemetry, true);
+	}
+
+	void delete(String workoutName) {
+		File file = new File(UserPreferences.INSTANCE.getUserDataDirectory()
+				+ "/Workouts/" + workoutName);
+		if (file.exists() && !file.delete()) {
+			logger.error("Cannot delete " + file);
+		}
+	}
+
+	// hashes of workouts in the database, by workout name
+	Map<String, String> getStored() {
+		return UserPreferences.INSTANCE.getWorkoutHashes();
+	}
+
+	boolean store(List<WorkoutData> batch) {
+		return UserPreferences.INSTANCE.addWorkouts(batch);
+	}
+
+	/**
+	 * Imports all the files, waits for the workers.
+	 *
+	 * @return names of imported workouts
+	 */
+	public List<String> run() {
+		long start = System.nanoTime();
+		Map<String, String> stored = getStored();
+		names.addAll(stored.keySet());
+		for (String hash : stored.values()) {
+			if (hash != null) {
+				hashes.add(hash);
+			}
+		}
+
+		for (String fileName : files) {
+			WorkoutLoader.getPool().execute(new Worker(fileName));
+		}
+
+		// each worker reports single workout, even if skipped
+		List<WorkoutData> batch = new ArrayList<WorkoutData>();
+		for (int i = 0; i < files.size(); i++) {
+			WorkoutData workout;
+			try {
+				workout = queue.take();
+			} catch (InterruptedException e) {
+				logger.error("Import interrupted");
+				Thread.currentThread().interrupt();
+				break;
+			}
+			if (workout != SKIPPED) {
+				batch.add(workout);
+			}
+			if (batch.size() == BATCH || (i == files.size() - 1)) {
+				insert(batch);
+				batch.clear();
+			}
+		}
+		// batch is not empty only when interrupted
+		insert(batch);
+
+		elapsed = (System.nanoTime() - start) / 1000000L;
+		logger.info("Imported " + imported.size() + " of " + files.size()
+				+ " files, " + duplicates.get() + " duplicates, "
+				+ failed.get() + " failed in " + elapsed + "ms ("
+				+ String.format("%.1f", getRate()) + " files/s)"
+				+ (cancelled ? ", cancelled" : ""));
+		return imported;
+	}
+
+	// whole batch is inserted, or workouts one by one if it fails
+	private void insert(List<WorkoutData> batch) {
+		if (batch.isEmpty()) {
+			return;
+		}
+		if (store(batch)) {
+			for (WorkoutData workout : batch) {
+				imported.add(workout.getTcxFile());
+			}
+			return;
+		}
+		for (WorkoutData workout : batch) {
+			if (store(Collections.singletonList(workout))) {
+				imported.add(workout.getTcxFile());
+			} else {
+				failed.incrementAndGet();
+				// file can be imported again
+				delete(workout.getTcxFile());
+				hashes.remove(workout.getHash());
+				names.remove(workout.getTcxFile());
+			}
+		}
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	// number of files processed so far
+	public int getDone() {
+		return done.get();
+	}
+
+	public int getTotal() {
+		return files.size();
+	}
+
+	public int getDuplicates() {
+		return duplicates.get();
+	}
+
+	public int getFailed() {
+		return failed.get();
+	}
+
+	// [files/s], of the finished import
+	public double getRate() {
+		return (elapsed > 0) ? done.get() * 1000.0 / elapsed : 0.0;
+	}
+}
@@ -18,64 +18,25 @@ package com.wattzap.utils;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.List;
 
-import org.apache.log4j.LogManager;
-import org.apache.log4j.Logger;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.XMLReaderFactory;
 
-import com.wattzap.model.UserPreferences;
 import com.wattzap.model.dto.Telemetry;
 import com.wattzap.model.dto.WorkoutData;
-import com.wattzap.view.training.TrainingAnalysis;
 import java.io.File;
 import org.xml.sax.helpers.DefaultHandler;
 
 /**
- * Imports Training Activities into the Wattzap database
+ * Reads Training Activities (tcx, fit, gpx), files are imported into the
+ * Wattzap database by ActivityImporter
  *
  * @author David George
  * @date 2nd May 2014
  */
 public class ActivityReader  {
-	String workoutDir;
-	List<String> importedFiles = new ArrayList<String>();
-	private Logger logger = LogManager.getLogger("GPSFileVisitor");
-
-
-	public List<String> getImportedFileList() {
-		return importedFiles;
-	}
-
-	public void readActivity(String fileName) {
-        List<Telemetry> telemetry = readTelemetry(fileName);
-        if (telemetry != null) {
-
-            String workoutName = TcxWriter.getWorkoutName(telemetry
-                    .get(0).getTime());
-            WorkoutData workout = UserPreferences.INSTANCE
-                    .getWorkout(workoutName);
-            int dataSource = telemetry.get(0).getResistance();
-
-            if (workout != null) {
-                logger.info("File already in database "
-                        + workout.getTcxFile());
-            } else {
-                workout = TrainingAnalysis.analyze(telemetry);
-                workout.setFtp(UserPreferences.INSTANCE.getMaxPower());
-                workout.setTcxFile(workoutName);
-                workout.setSource(dataSource);
-
-                TcxWriter writer = new TcxWriter();
-                importedFiles.add(writer.save(telemetry, true));
-
-                UserPreferences.INSTANCE.addWorkout(workout);
-            }
-        }
-	}
 
     private static boolean importXml(DefaultHandler handler, String fileName) {
         File file = new File(fileName);
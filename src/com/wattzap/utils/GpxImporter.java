@@ -44,8 +44,9 @@ import com.wattzap.model.power.Power;
 public class GpxImporter extends DefaultHandler {
 	State currentState = State.UNDEFINED;
 	StringBuilder buffer;
-	// GPX files have two data formats
-	private static final SimpleDateFormat msdateFormat = new SimpleDateFormat(
+	// GPX files have two data formats. Formats aren't thread safe, files
+	// are read in parallel
+	private final SimpleDateFormat msdateFormat = new SimpleDateFormat(
 			"yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
 	private final SimpleDateFormat timestampFormatter = new SimpleDateFormat(
 			"yyyy-MM-dd'T'HH:mm:ss'Z'");
@@ -0,0 +1,223 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.wattzap.model.dto.Telemetry;
+
+/**
+ * Mean maximal power: best average power over any contiguous period of given
+ * duration. Telemetry is resampled to 1s energy series (power of the sample
+ * is held since the previous sample), intervals longer than GAP (pauses,
+ * lost data) contribute no energy. Prefix sums of the series give average of
+ * any period in constant time, so each duration costs single pass over the
+ * ride: ~90 durations of the curve grid for 6h ride take few milliseconds.
+ *
+ * Samples can be added while riding. Best powers of tracked durations and
+ * normalized power (30s rolling average) are updated when each second is
+ * completed, in time bounded by number of tracked durations.
+ * Not thread safe
+ */
+public class MeanMaxPower {
+	// [ms] longer interval between samples is a gap in the data
+	public static final long GAP = 5000;
+	// [s] rolling average for normalized power
+	public static final int NP_WINDOW = 30;
+
+	// sums[i] is energy [W*ms] of first i seconds
+	private long[] sums = new long[256];
+	// number of completed seconds
+	private int closed = 0;
+	// energy of the current second
+	private long partial = 0;
+
+	private long start = 0;
+	// [ms] time of last sample, since the first one. -1 if no samples
+	private long last = -1;
+
+	// tracked durations (ascending) and their best energies
+	private final int[] durations;
+	private final long[] best;
+
+	// sum of 4th power of rolling averages
+	private double npSum = 0.0;
+	private int npCount = 0;
+
+	public MeanMaxPower() {
+		this(new int[0]);
+	}
+
+	/**
+	 * @param durations
+	 *            - ascending durations [s] tracked while samples are added
+	 */
+	public MeanMaxPower(int[] durations) {
+		this.durations = durations;
+		best = new long[durations.length];
+	}
+
+	public MeanMaxPower(List<Telemetry> data) {
+		this();
+		if (data != null) {
+			for (Telemetry t : data) {
+				add(t.getTime(), t.getPower());
+			}
+		}
+	}
+
+	/**
+	 * @param power
+	 *            - power [W] for each second
+	 */
+	public MeanMaxPower(int[] durations, int[] power) {
+		this(durations);
+		add(0, 0);
+		for (int i = 0; i < power.length; i++) {
+			add(1000L * (i + 1), power[i]);
+		}
+	}
+
+	/**
+	 * Adds the sample, its power is held since the previous one. Samples not
+	 * later than previous one are ignored.
+	 *
+	 * @param time
+	 *            - [ms]
+	 */
+	public void add(long time, int power) {
+		if (last < 0) {
+			start = time;
+			last = 0;
+			return;
+		}
+		time -= start;
+		if (time <= last) {
+			return;
+		}
+		if (time - last <= GAP) {
+			// split among the seconds
+			long from = last;
+			while (from < time) {
+				long end = Math.min(time, (closed + 1) * 1000L);
+				partial += power * (end - from);
+				from = end;
+				if (from == (closed + 1) * 1000L) {
+					close();
+				}
+			}
+		} else {
+			// no energy in the gap
+			while (closed < time / 1000) {
+				close();
+			}
+		}
+		last = time;
+	}
+
+	private void close() {
+		if (closed + 1 == sums.length) {
+			sums = Arrays.copyOf(sums, sums.length * 2);
+		}
+		sums[closed + 1] = sums[closed] + partial;
+		partial = 0;
+		closed++;
+
+		for (int i = 0; i < durations.length && durations[i] <= closed; i++) {
+			long e = sums[closed] - sums[closed - durations[i]];
+			if (e > best[i]) {
+				best[i] = e;
+			}
+		}
+		if (closed >= NP_WINDOW) {
+			double avg = (sums[closed] - sums[closed - NP_WINDOW])
+					/ (NP_WINDOW * 1000.0);
+			avg *= avg;
+			npSum += avg * avg;
+			npCount++;
+		}
+	}
+
+	// [s], current second is counted as well
+	public int length() {
+		return (int) ((Math.max(last, 0) + 999) / 1000);
+	}
+
+	// energy of first i seconds, current second is the last one
+	private long sum(int i) {
+		return (i <= closed) ? sums[i] : sums[closed] + partial;
+	}
+
+	/**
+	 * @return best average power [W] over the duration [s], 0 if ride is
+	 *         shorter
+	 */
+	public double getMax(int seconds) {
+		int length = length();
+		if (seconds <= 0 || seconds > length) {
+			return 0.0;
+		}
+		long best = 0;
+		for (int i = seconds; i <= closed; i++) {
+			long e = sums[i] - sums[i - seconds];
+			if (e > best) {
+				best = e;
+			}
+		}
+		if (length > closed) {
+			best = Math.max(best, sum(length) - sum(length - seconds));
+		}
+		return best / (seconds * 1000.0);
+	}
+
+	/**
+	 * @param durations
+	 *            - ascending durations [s]
+	 * @return rounded powers for durations not longer than the ride. Tracked
+	 *         durations are not computed again.
+	 */
+	public int[] getCurve(int[] durations) {
+		int length = length();
+		int[] power = new int[durations.length];
+		int n = 0;
+		while (n < durations.length && durations[n] <= length) {
+			int d = durations[n];
+			if (durations == this.durations) {
+				long e = best[n];
+				if (length > closed) {
+					e = Math.max(e, sum(length) - sum(length - d));
+				}
+				power[n] = (int) Math.round(e / (d * 1000.0));
+			} else {
+				power[n] = (int) Math.round(getMax(d));
+			}
+			n++;
+		}
+		return Arrays.copyOf(power, n);
+	}
+
+	/**
+	 * @return normalized power: 4th root of the mean of 4th powers of 30s
+	 *         rolling averages. 0 if ride is shorter.
+	 */
+	public int getNormalizedPower() {
+		if (npCount == 0) {
+			return 0;
+		}
+		return (int) Math.round(Math.sqrt(Math.sqrt(npSum / npCount)));
+	}
+}
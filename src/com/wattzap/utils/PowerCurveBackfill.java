@@ -0,0 +1,117 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.wattzap.model.UserPreferences;
+import com.wattzap.model.dto.PowerCurve;
+import com.wattzap.model.dto.Telemetry;
+import com.wattzap.model.dto.WorkoutFilter;
+
+/**
+ * Computes power curves of workouts stored before curves were kept. It is
+ * done once per application run, in the background: files are read by the
+ * fork/join pool workers (shared with the loader), curves are stored in the
+ * database. Graphs use stored curves only, workouts without curve are shown
+ * when their curve is computed.
+ */
+public class PowerCurveBackfill implements Runnable {
+	private static final Logger logger = LogManager.getLogger("PowerCurveBackfill");
+
+	private static PowerCurveBackfill instance = null;
+
+	private final AtomicInteger computed = new AtomicInteger();
+	private volatile boolean running = true;
+
+	private PowerCurveBackfill() {
+	}
+
+	/**
+	 * Starts the backfill, if not started yet.
+	 */
+	public static synchronized void start() {
+		if (instance != null) {
+			return;
+		}
+		instance = new PowerCurveBackfill();
+		Thread thread = new Thread(instance, "PowerCurveBackfill");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public static synchronized boolean isRunning() {
+		return (instance != null) && instance.running;
+	}
+
+	private class Worker implements Runnable {
+		private final String name;
+
+		private Worker(String name) {
+			this.name = name;
+		}
+
+		@Override
+		public void run() {
+			String path = UserPreferences.INSTANCE.getUserDataDirectory()
+					+ "/Workouts/" + name;
+			try {
+				List<Telemetry> data = ActivityReader.readTelemetry(path);
+				if (data == null || data.isEmpty()) {
+					logger.warn("No data in " + path);
+					return;
+				}
+				UserPreferences.INSTANCE.updatePowerCurve(name,
+						PowerCurve.compute(data));
+				computed.incrementAndGet();
+			} catch (Exception e) {
+				logger.error(path + ":: " + e.getLocalizedMessage());
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		long start = System.nanoTime();
+		List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+		try {
+			for (Map.Entry<String, PowerCurve> entry : UserPreferences.INSTANCE
+					.getPowerCurves(new WorkoutFilter()).entrySet()) {
+				if (entry.getValue() == null) {
+					tasks.add(WorkoutLoader.getPool().submit(
+							new Worker(entry.getKey())));
+				}
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.join();
+			}
+		} finally {
+			running = false;
+		}
+		if (!tasks.isEmpty()) {
+			logger.info("Power curves of " + computed.get() + " of "
+					+ tasks.size() + " workouts computed in "
+					+ ((System.nanoTime() - start) / 1000000L) + "ms");
+		}
+	}
+}
@@ -54,69 +54,73 @@ public class ReflexiveClassLoader {
 		URL packageURL;
 
 		packageName = packageName.replace(".", "/");
-		packageURL = classLoader.getResource(packageName);
+		// package might be split between directories and jars (eg. tests)
+		Enumeration<URL> packageURLs = classLoader.getResources(packageName);
+		while (packageURLs.hasMoreElements()) {
+			packageURL = packageURLs.nextElement();
 
-		if (packageURL.getProtocol().equals("jar")) {
-			logger.debug("Scanning Jar");
-			String jarFileName;
-			JarFile jf;
-			Enumeration<JarEntry> jarEntries;
-			String entryName;
+			if (packageURL.getProtocol().equals("jar")) {
+				logger.debug("Scanning Jar");
+				String jarFileName;
+				JarFile jf;
+				Enumeration<JarEntry> jarEntries;
+				String entryName;
 
-			// build jar file name, then loop through zipped entries
-			jarFileName = URLDecoder.decode(packageURL.getFile(), "UTF-8");
-			jarFileName = jarFileName.substring(5, jarFileName.indexOf("!"));
-			jf = new JarFile(jarFileName);
-			jarEntries = jf.entries();
-			while (jarEntries.hasMoreElements()) {
-				entryName = jarEntries.nextElement().getName();
+				// build jar file name, then loop through zipped entries
+				jarFileName = URLDecoder.decode(packageURL.getFile(), "UTF-8");
+				jarFileName = jarFileName.substring(5, jarFileName.indexOf("!"));
+				jf = new JarFile(jarFileName);
+				jarEntries = jf.entries();
+				while (jarEntries.hasMoreElements()) {
+					entryName = jarEntries.nextElement().getName();
 
-				// only check class names in current package
-				if (entryName.startsWith(packageName)
-						&& entryName.indexOf('/', packageName.length() + 1) == -1
-						&& entryName.lastIndexOf('.') != -1) {
-					entryName = entryName.substring(0,
-							entryName.lastIndexOf('.'));
+					// only check class names in current package
+					if (entryName.startsWith(packageName)
+							&& entryName.indexOf('/', packageName.length() + 1) == -1
+							&& entryName.lastIndexOf('.') != -1) {
+						entryName = entryName.substring(0,
+								entryName.lastIndexOf('.'));
 
-					entryName = entryName.replace("/", ".");
-					Class c = Class.forName(entryName);
+						entryName = entryName.replace("/", ".");
+						Class c = Class.forName(entryName);
 
-					Annotation[] annotations = c.getAnnotations();
-					for (Annotation a : annotations) {
-						if (a.annotationType() == annotationType) {
-							classes.add(c);
-						}
-					}// for
-				}
-			}// while
-			jf.close();
+						Annotation[] annotations = c.getAnnotations();
+						for (Annotation a : annotations) {
+							if (a.annotationType() == annotationType) {
+								classes.add(c);
+							}
+						}// for
+					}
+				}// while
+				jf.close();
 
-			// loop through files in classpath
-		} else {
-			logger.debug("Scanning classpath");
-			URI uri = new URI(packageURL.toString());
-			File folder = new File(uri.getPath());
-			// won't work with path which contains blank (%20)
-			// File folder = new File(packageURL.getFile());
-			File[] contenuti = folder.listFiles();
-			String entryName;
-			for (File actual : contenuti) {
-				entryName = actual.getName();
-				if (entryName.endsWith(".class")) {
-					entryName = packageName
-							+ "."
-							+ entryName
-									.substring(0, entryName.lastIndexOf('.'));
-					entryName = entryName.replace("/", ".");
+				// loop through files in classpath
+			} else {
+				logger.debug("Scanning classpath");
+				URI uri = new URI(packageURL.toString());
+				File folder = new File(uri.getPath());
+				// won't work with path which contains blank (%20)
+				// File folder = new File(packageURL.getFile());
+				File[] contenuti = folder.listFiles();
+				String entryName;
+				for (File actual : contenuti) {
+					entryName = actual.getName();
+					if (entryName.endsWith(".class")) {
+						entryName = packageName
+								+ "."
+								+ entryName
+										.substring(0, entryName.lastIndexOf('.'));
+						entryName = entryName.replace("/", ".");
 
-					Class c = Class.forName(entryName);
-					Annotation[] annotations = c.getAnnotations();
-					for (Annotation a : annotations) {
-						if (a.annotationType() == annotationType) {
-							classes.add(c);
-						}
-					}// for
+						Class c = Class.forName(entryName);
+						Annotation[] annotations = c.getAnnotations();
+						for (Annotation a : annotations) {
+							if (a.annotationType() == annotationType) {
+								classes.add(c);
+							}
+						}// for
 
+					}
 				}
 			}
 		}
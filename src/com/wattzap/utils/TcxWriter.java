@@ -331,7 +331,11 @@ public class TcxWriter /* implements TrackWriter */{
 		date.setTimeInMillis(time);
 		int season = date.get(Calendar.YEAR);
 
-		String workoutName = fileTSFormatter.format(new Date(time));
+		// formatter is shared, names are made by import workers as well
+		String workoutName;
+		synchronized (fileTSFormatter) {
+			workoutName = fileTSFormatter.format(new Date(time));
+		}
 
 		return season + "/" + workoutName + ".tcx";
 	}
@@ -0,0 +1,122 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+
+import com.wattzap.model.dto.Telemetry;
+import com.wattzap.model.dto.WorkoutSet;
+
+/**
+ * Reads workout files (tcx, fit, gpx) in parallel. File list is split in
+ * halves until single files are left, each file is read and aggregated by
+ * fork/join pool worker, sets are merged in the order of the files.
+ * Progress can be checked by any thread, files not started before cancel()
+ * are skipped.
+ */
+public class WorkoutLoader {
+	private static final Logger logger = LogManager.getLogger("WorkoutLoader");
+
+	// shared by all loaders (and importers), threads are created when needed
+	private static ForkJoinPool pool = null;
+
+	private final List<String> files;
+	private final AtomicInteger loaded = new AtomicInteger();
+	private volatile boolean cancelled = false;
+
+	public WorkoutLoader(List<String> files) {
+		this.files = files;
+	}
+
+	static synchronized ForkJoinPool getPool() {
+		if (pool == null) {
+			pool = new ForkJoinPool();
+		}
+		return pool;
+	}
+
+	private class Task extends RecursiveTask<WorkoutSet> {
+		private static final long serialVersionUID = 1L;
+		private final int from;
+		private final int to;
+
+		private Task(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected WorkoutSet compute() {
+			if (to - from > 1) {
+				int mid = (from + to) >>> 1;
+				Task first = new Task(from, mid);
+				first.fork();
+				WorkoutSet second = new Task(mid, to).compute();
+				return first.join().merge(second);
+			}
+			if (from == to || cancelled) {
+				return new WorkoutSet();
+			}
+			String fileName = files.get(from);
+			ArrayList<Telemetry> data = null;
+			try {
+				data = ActivityReader.readTelemetry(fileName);
+			} catch (Exception e) {
+				logger.error(fileName + ":: " + e.getLocalizedMessage());
+			}
+			WorkoutSet set = WorkoutSet.of(fileName, data);
+			loaded.incrementAndGet();
+			return set;
+		}
+	}
+
+	/**
+	 * Loads all the files, waits for the workers.
+	 */
+	public WorkoutSet load() {
+		long start = System.nanoTime();
+		WorkoutSet set = getPool().invoke(new Task(0, files.size()));
+		logger.info("Loaded " + set.size() + " of " + files.size()
+				+ " workouts, " + set.getSamples() + " samples in "
+				+ ((System.nanoTime() - start) / 1000000L) + "ms"
+				+ (cancelled ? ", cancelled" : ""));
+		return set;
+	}
+
+	public void cancel() {
+		cancelled = true;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	// number of files read so far
+	public int getLoaded() {
+		return loaded.get();
+	}
+
+	public int getTotal() {
+		return files.size();
+	}
+}
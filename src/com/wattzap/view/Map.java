@@ -58,9 +58,9 @@ public class Map extends GPXPanel implements MessageCallback {
 		// http://wiki.openstreetmap.org/wiki/JTileDownloader#Screenshots
 		// this.setTileSource(tileSource)
 
-		MessageBus.INSTANCE.register(Messages.TELEMETRY, this);
-		MessageBus.INSTANCE.register(Messages.CLOSE, this);
-		MessageBus.INSTANCE.register(Messages.GPXLOAD, this);
+		MessageBus.INSTANCE.registerAsync(Messages.TELEMETRY, this);
+		MessageBus.INSTANCE.registerAsync(Messages.CLOSE, this);
+		MessageBus.INSTANCE.registerAsync(Messages.GPXLOAD, this);
 	}
 
 	@Override
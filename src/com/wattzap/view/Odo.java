@@ -28,6 +28,7 @@ import net.miginfocom.swing.MigLayout;
 import com.wattzap.controller.MessageBus;
 import com.wattzap.controller.MessageCallback;
 import com.wattzap.controller.Messages;
+import com.wattzap.model.LiveAnalysis;
 import com.wattzap.model.PauseMsgEnum;
 import com.wattzap.model.SourceDataEnum;
 import com.wattzap.model.UserPreferences;
@@ -65,17 +66,27 @@ public class Odo extends JPanel implements MessageCallback {
 
     private class ValueCol {
         private final SourceDataEnum sourceData;
+        private final String name;
         private JLabel label;
         private JLabel text;
         private TelemetryValidityEnum valid;
 
         private ValueCol(SourceDataEnum sourceData) {
-            assert sourceData != null :
-                    "SourceDataEnum not given";
-            assert sourceData.getName() != null :
+            this(sourceData, sourceData.getName());
+        }
+
+        // value not from the telemetry, getValidity() and format() must be
+        // provided
+        private ValueCol(String name) {
+            this(null, name);
+        }
+
+        private ValueCol(SourceDataEnum sourceData, String name) {
+            assert name != null :
                     sourceData + " has no name, cannot be used";
 
             this.sourceData = sourceData;
+            this.name = name;
             this.label = null;
             this.text = null;
             this.valid = TelemetryValidityEnum.NOT_PRESENT;
@@ -92,8 +103,16 @@ public class Odo extends JPanel implements MessageCallback {
             return true;
         }
 
+        public TelemetryValidityEnum getValidity(Telemetry t) {
+            return t.getValidity(sourceData);
+        }
+
+        public String format(Telemetry t) {
+            return sourceData.format(t.getDouble(sourceData), metric);
+        }
+
         public void setValue(Telemetry t) {
-            TelemetryValidityEnum valid = t.getValidity(sourceData);
+            TelemetryValidityEnum valid = getValidity(t);
             if ((valid != TelemetryValidityEnum.NOT_PRESENT) && paused) {
                 valid = TelemetryValidityEnum.NOT_AVAILABLE;
             }
@@ -106,7 +125,7 @@ public class Odo extends JPanel implements MessageCallback {
                         label = new JLabel();
                         label.setFont(font1);
                         label.setForeground(textColor);
-                        label.setText(MsgBundle.getString(sourceData.getName()));
+                        label.setText(MsgBundle.getString(name));
                         text = new JLabel();
                         text.setFont(font);
                     }
@@ -120,7 +139,7 @@ public class Odo extends JPanel implements MessageCallback {
                 this.valid = valid;
             }
             if (text != null) {
-                text.setText(sourceData.format(t.getDouble(sourceData), metric));
+                text.setText(format(t));
             }
         }
 
@@ -136,6 +155,17 @@ public class Odo extends JPanel implements MessageCallback {
     }
 
     private final List<ValueCol> columns = new ArrayList<>();
+    private volatile LiveAnalysis analysis = null;
+
+    // metrics are shown with power, when something was recorded
+    private TelemetryValidityEnum analysisValidity() {
+        LiveAnalysis a = analysis;
+        if ((a == null) || (a.getCount() == 0) || !fieldVisible(SourceDataEnum.POWER)) {
+            return TelemetryValidityEnum.NOT_PRESENT;
+        }
+        return TelemetryValidityEnum.OK;
+    }
+
     private boolean fieldVisible(SourceDataEnum sourceData) {
         for (ValueCol column : columns) {
             if (column.getSourceData() == sourceData) {
@@ -197,6 +227,38 @@ public class Odo extends JPanel implements MessageCallback {
             }
         });
 
+        // ride metrics, updated with recorded telemetry
+        columns.add(new ValueCol("np") {
+            @Override
+            public TelemetryValidityEnum getValidity(Telemetry t) {
+                return analysisValidity();
+            }
+            @Override
+            public String format(Telemetry t) {
+                return "" + analysis.getNormalizedPower();
+            }
+        });
+        columns.add(new ValueCol("if") {
+            @Override
+            public TelemetryValidityEnum getValidity(Telemetry t) {
+                return analysisValidity();
+            }
+            @Override
+            public String format(Telemetry t) {
+                return String.format("%.2f", analysis.getIntensity());
+            }
+        });
+        columns.add(new ValueCol("tss") {
+            @Override
+            public TelemetryValidityEnum getValidity(Telemetry t) {
+                return analysisValidity();
+            }
+            @Override
+            public String format(Telemetry t) {
+                return "" + analysis.getStress();
+            }
+        });
+
         // turbo trainer data
         columns.add(new ValueCol(SourceDataEnum.WHEEL_SPEED) {
             @Override
@@ -230,6 +292,7 @@ public class Odo extends JPanel implements MessageCallback {
 
         MessageBus.INSTANCE.register(Messages.TELEMETRY, this);
         MessageBus.INSTANCE.register(Messages.CONFIG_CHANGED, this);
+        MessageBus.INSTANCE.register(Messages.ANALYSIS, this);
 	}
 
     @Override
@@ -274,6 +337,10 @@ public class Odo extends JPanel implements MessageCallback {
                     repaint();
                 }
                 break;
+            case ANALYSIS:
+                // shown with next telemetry
+                analysis = (LiveAnalysis) o;
+                break;
             case CONFIG_CHANGED:
                 UserPreferences pref = (UserPreferences) o;
                 if ((pref == UserPreferences.METRIC) ||
@@ -85,6 +85,8 @@ public class VideoPlayer extends JFrame
     private long len = -1;
     private long lastTime = 0;
 	private double lastRate = 0.0;
+    // whether VIDEO_RATE was provided when last checked
+    private boolean rateProvided = false;
     private final Rolling routeSpeed = new Rolling(12); // smooth within 3 seconds
     private final Rolling bikeSpeed = new Rolling(12); // smooth within 3 seconds
     private final JLayeredPane lpane;
@@ -175,10 +177,10 @@ public class VideoPlayer extends JFrame
 		mPlayer.setVideoSurface(mediaPlayerFactory.newVideoSurface(canvas));
 
 		/* Messages we are interested in */
-		MessageBus.INSTANCE.register(Messages.TELEMETRY, this);
-		MessageBus.INSTANCE.register(Messages.CLOSE, this);
-		MessageBus.INSTANCE.register(Messages.GPXLOAD, this);
-		MessageBus.INSTANCE.register(Messages.ROUTE_MSG, this);
+		MessageBus.INSTANCE.registerAsync(Messages.TELEMETRY, this);
+		MessageBus.INSTANCE.registerAsync(Messages.CLOSE, this);
+		MessageBus.INSTANCE.registerAsync(Messages.GPXLOAD, this);
+		MessageBus.INSTANCE.registerAsync(Messages.ROUTE_MSG, this);
 
         MessageBus.INSTANCE.send(Messages.HANDLER, this);
         return this;
@@ -301,6 +303,7 @@ public class VideoPlayer extends JFrame
 
         // there is no video loaded
         if (len < 0) {
+            checkProvided();
             return;
         }
 
@@ -392,7 +395,16 @@ public class VideoPlayer extends JFrame
                 mPlayer.setRate((float) 1.0);
             }
         }
+        checkProvided();
 	}
+
+    // notify TelemetryProvider when VIDEO_RATE starts/stops to be provided
+    private void checkProvided() {
+        if (provides(SourceDataEnum.VIDEO_RATE) != rateProvided) {
+            rateProvided = !rateProvided;
+            MessageBus.INSTANCE.send(Messages.HANDLER, this);
+        }
+    }
     private boolean changedRate(double rate, double change) {
         return ((rate < lastRate / (1.0 + change)) ||
                 (rate >= lastRate * (1.0 + change)));
@@ -415,8 +427,15 @@ public class VideoPlayer extends JFrame
 	public void callback(Messages message, Object o) {
 		switch (message) {
 		case TELEMETRY:
-            lastTelemetry = (Telemetry) o;
-            setSpeed(lastTelemetry);
+            // snapshot is recycled, keep a copy for later use
+            synchronized(this) {
+                if (lastTelemetry == null) {
+                    lastTelemetry = new Telemetry((Telemetry) o);
+                } else {
+                    lastTelemetry.set((Telemetry) o);
+                }
+                setSpeed(lastTelemetry);
+            }
 			break;
 
         case GPXLOAD:
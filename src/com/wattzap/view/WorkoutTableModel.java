@@ -0,0 +1,166 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.view;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import javax.swing.table.AbstractTableModel;
+
+import com.wattzap.model.UserPreferences;
+import com.wattzap.model.dto.WorkoutData;
+import com.wattzap.model.dto.WorkoutFilter;
+
+/**
+ * Workouts matching the filter, only pages with rows shown by the table are
+ * fetched from the database (and last few pages are kept). Cells are
+ * formatted when shown. Must be used on EDT.
+ */
+public class WorkoutTableModel extends AbstractTableModel {
+	private static final long serialVersionUID = 1L;
+
+	private static final int PAGE = 100;
+	private static final int CACHED_PAGES = 10;
+
+	private final static String[] columnNames = { "Date", "Time", "Source",
+			"QPower", "Max HR", "Ave HR", "Max Cadence", "Ave Cadence",
+			"5Sec W/kg", "1Min W/kg", "5Min W/kg", "20Min W/kg", "Load",
+			"Stress", "Route" };
+
+	private final DateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
+	private WorkoutFilter filter = new WorkoutFilter();
+	private int rows = 0;
+	private int fetched = 0;
+
+	// last used pages
+	private final Map<Integer, List<WorkoutData>> pages = new LinkedHashMap<Integer, List<WorkoutData>>(
+			CACHED_PAGES, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Integer, List<WorkoutData>> eldest) {
+			return size() > CACHED_PAGES;
+		}
+	};
+
+	public WorkoutTableModel() {
+		timeFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
+		refresh();
+	}
+
+	public WorkoutFilter getFilter() {
+		return filter;
+	}
+
+	public void setFilter(WorkoutFilter filter) {
+		this.filter = filter;
+		refresh();
+	}
+
+	// workouts were added or removed, everything is read again
+	public void refresh() {
+		pages.clear();
+		rows = UserPreferences.INSTANCE.countWorkouts(filter);
+		fireTableDataChanged();
+	}
+
+	// number of rows fetched from the database so far
+	public int getFetched() {
+		return fetched;
+	}
+
+	public WorkoutData getWorkout(int row) {
+		int page = row / PAGE;
+		List<WorkoutData> list = pages.get(page);
+		if (list == null) {
+			list = UserPreferences.INSTANCE.listWorkouts(filter, page * PAGE, PAGE);
+			fetched += list.size();
+			pages.put(page, list);
+		}
+		if (row - page * PAGE >= list.size()) {
+			// workouts removed in the meantime
+			return null;
+		}
+		return list.get(row - page * PAGE);
+	}
+
+	@Override
+	public int getRowCount() {
+		return rows;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return columnNames.length;
+	}
+
+	@Override
+	public String getColumnName(int column) {
+		return columnNames[column];
+	}
+
+	@Override
+	public Object getValueAt(int row, int column) {
+		WorkoutData workout = getWorkout(row);
+		if (workout == null) {
+			return "";
+		}
+		switch (column) {
+		case 0:
+			return workout.getDateAsString();
+		case 1:
+			return timeFormat.format(new Date(workout.getTime()));
+		case 2:
+			return workout.getSourceAsString();
+		case 3:
+			return "" + workout.getQuadraticPower();
+		case 4:
+			return "" + workout.getMaxHR();
+		case 5:
+			return "" + workout.getAveHR();
+		case 6:
+			return "" + workout.getMaxCadence();
+		case 7:
+			return "" + workout.getAveCadence();
+		case 8:
+			return String.format("%.2f", workout.getFiveSecondPwr()
+					/ workout.getWeight());
+		case 9:
+			return String.format("%.2f", workout.getOneMinutePwr()
+					/ workout.getWeight());
+		case 10:
+			return String.format("%.2f", workout.getFiveMinutePwr()
+					/ workout.getWeight());
+		case 11:
+			return String.format("%.2f", workout.getTwentyMinutePwr()
+					/ workout.getWeight());
+		case 12:
+			// round up
+			return String.format("%.2f", workout.getIntensity() * 100);
+		case 13:
+			return "" + workout.getStress();
+		case 14:
+			String descr = workout.getDescription();
+			return (descr == null) ? "" : descr;
+		}
+		return null;
+	}
+}
@@ -24,19 +24,19 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.io.File;
-import java.io.IOException;
 import java.text.DateFormat;
+import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.TimeZone;
-import java.util.TreeMap;
+import java.util.Map;
 
 import javax.swing.ImageIcon;
+import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
@@ -44,10 +44,13 @@ import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTable;
+import javax.swing.JTextField;
 import javax.swing.ListSelectionModel;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
-import javax.swing.table.DefaultTableModel;
 
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
@@ -59,10 +62,16 @@ import com.wattzap.controller.MessageCallback;
 import com.wattzap.controller.Messages;
 import com.wattzap.model.SourceDataEnum;
 import com.wattzap.model.UserPreferences;
+import com.wattzap.model.dto.Histogram;
+import com.wattzap.model.dto.PowerCurve;
 import com.wattzap.model.dto.Telemetry;
 import com.wattzap.model.dto.TrainingItem;
 import com.wattzap.model.dto.WorkoutData;
-import com.wattzap.utils.ActivityReader;
+import com.wattzap.model.dto.WorkoutFilter;
+import com.wattzap.model.dto.WorkoutSet;
+import com.wattzap.utils.ActivityImporter;
+import com.wattzap.utils.PowerCurveBackfill;
+import com.wattzap.utils.WorkoutLoader;
 import com.wattzap.view.graphs.GenericScatterGraph;
 import com.wattzap.view.graphs.DistributionGraph;
 import com.wattzap.view.graphs.MMPGraph;
@@ -78,12 +87,24 @@ import java.awt.Color;
  */
 public class Workouts extends JPanel implements ActionListener, MessageCallback {
 	private static final long serialVersionUID = 1L;
-	private List<WorkoutData> workoutList;
 	private List<Integer> selectedRows;
+	private final WorkoutTableModel model;
 	private final JTable table;
 	private final JFrame frame;
 
+	// filter of the list
+	private final JTextField fromField = new JTextField(8);
+	private final JTextField toField = new JTextField(8);
+	private final JComboBox<String> sourceBox = new JComboBox<String>(new String[] {
+			"Any", "Wattzap", "Power Meter", "GPS", "Fitlog", "FIT" });
+	private final JTextField powerField = new JTextField(4);
+	private final JTextField routeField = new JTextField(12);
+
 	ArrayList<Telemetry> telemetry[] = null;
+	// loaded workouts with aggregates
+	private WorkoutSet loaded = null;
+	private WorkoutLoader loader = null;
+	private ActivityImporter activityImporter = null;
 	private final UserPreferences userPrefs = UserPreferences.INSTANCE;
 
 	private static Logger logger = LogManager.getLogger("Workouts");
@@ -93,6 +114,7 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
 
 	// summary graphs
 	private final static String mmpGraph = "MMP";
+	private final static String bestGraph = "BMMP";
 	private final static String schrGraph = "SCHR";
 	// distribution graphs
 	private final static String pdGraph = "PDG";
@@ -101,20 +123,17 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
 	private final static String tlGraph = "TLDG";
 	private final static String tlhrGraph = "TLHRDG";
 	public final static String importer = "IMP";
-
-	private final static String[] columnNames = { "Date", "Time", "Source",
-			"QPower", "Max HR", "Ave HR", "Max Cadence", "Ave Cadence",
-			"5Sec W/kg", "1Min W/kg", "5Min W/kg", "20Min W/kg", "Load",
-			"Stress", "Route" };
+	private final static String filterCmd = "FLT";
 
 	public Workouts() {
 		super(new GridLayout(1, 0));
 		selectedRows = null;
 
-		DefaultTableModel model = new DefaultTableModel(columnNames, 0);
-		loadData(model);
+		// rows are fetched when shown
+		model = new WorkoutTableModel();
 		table = new JTable(model);
-		model.fireTableDataChanged();
+		// curves of old workouts are computed in the background
+		PowerCurveBackfill.start();
 
 		table.setPreferredScrollableViewportSize(new Dimension(1000, 400));
 		table.setFillsViewportHeight(true);
@@ -155,6 +174,23 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
 		// Add the scroll pane to this panel.
 		add(scrollPane, BorderLayout.CENTER);
 
+		JPanel filterPanel = new JPanel();
+		filterPanel.add(new JLabel("From"));
+		filterPanel.add(fromField);
+		filterPanel.add(new JLabel("To"));
+		filterPanel.add(toField);
+		filterPanel.add(new JLabel("Source"));
+		filterPanel.add(sourceBox);
+		filterPanel.add(new JLabel("Min QPower"));
+		filterPanel.add(powerField);
+		filterPanel.add(new JLabel("Route"));
+		filterPanel.add(routeField);
+		JButton filterButton = new JButton("Filter");
+		filterButton.setActionCommand(filterCmd);
+		filterButton.addActionListener(this);
+		filterPanel.add(filterButton);
+		add(filterPanel, BorderLayout.PAGE_START);
+
 		WorkoutButtonPanel wBP = new WorkoutButtonPanel(this);
 		add(wBP, BorderLayout.PAGE_END);
 		// need button for Load, Delete
@@ -183,6 +219,11 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
 		summaryMenu.add(mmpMenuItem);
 		mmpMenuItem.addActionListener(this);
 
+		JMenuItem bestMenuItem = new JMenuItem(MsgBundle.getString("bestmmp"));
+		bestMenuItem.setActionCommand(bestGraph);
+		summaryMenu.add(bestMenuItem);
+		bestMenuItem.addActionListener(this);
+
 		JMenuItem schrMenuItem = new JMenuItem(MsgBundle.getString("schr"));
 		schrMenuItem.setActionCommand(schrGraph);
 		summaryMenu.add(schrMenuItem);
@@ -257,11 +298,21 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
     public void callback(Messages m, Object o) {
         // refresh the list, new workout was added
         if (m == Messages.WORKOUT_DATA) {
-            DefaultTableModel tableModel = (DefaultTableModel) table.getModel();
-            loadData(tableModel);
+            SwingUtilities.invokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    refresh();
+                }
+            });
         }
     }
 
+    private void refresh() {
+        table.clearSelection();
+        selectedRows = null;
+        model.refresh();
+    }
+
 
     public void setVisible(boolean flag) {
 		if (!frame.isVisible()) {
@@ -271,49 +322,49 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
 		frame.toFront();
 	}
 
-	private void loadData(DefaultTableModel tableModel) {
-		workoutList = UserPreferences.INSTANCE.listWorkouts();
-
-		DateFormat timeFormat = new SimpleDateFormat("HH:mm:ss");
-		timeFormat.setTimeZone(TimeZone.getTimeZone("GMT"));
-
-        tableModel.setRowCount(0);
-        String[] data = new String[columnNames.length];
-		for (WorkoutData workout : workoutList) {
-            data[0] = workout.getDateAsString();
-            data[1] = timeFormat.format(new Date(workout.getTime()));
-            data[2] = workout.getSourceAsString();
-            data[3] = "" + workout.getQuadraticPower();
-            data[4] = "" + workout.getMaxHR();
-            data[5] = "" + workout.getAveHR();
-            data[6] = "" + workout.getMaxCadence();
-            data[7] = "" + workout.getAveCadence();
-
-            data[8] = String.format("%.2f", workout.getFiveSecondPwr()
-                    / workout.getWeight());
-            data[9] = String.format("%.2f",
-                    workout.getOneMinutePwr() / workout.getWeight());
-            data[10] = String.format("%.2f", workout.getFiveMinutePwr()
-                    / workout.getWeight());
-            data[11] = String.format("%.2f", workout.getTwentyMinutePwr()
-                    / workout.getWeight());
-
-            // round up
-            data[12] = String.format("%.2f", workout.getIntensity() * 100);
-            data[13] = "" + workout.getStress();
-            data[14] = workout.getDescription();
-            if (data[14] == null) {
-                data[14] = "";
-            }
-            tableModel.addRow(data);
-        }
-    }
+	// date in yyyy-MM-dd format, 0 if not given (or not valid)
+	private static long parseDate(JTextField field) {
+		String text = field.getText().trim();
+		if (text.isEmpty()) {
+			return 0;
+		}
+		DateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+		try {
+			return dateFormat.parse(text).getTime();
+		} catch (ParseException e) {
+			logger.warn("Wrong date " + text + ", expected yyyy-MM-dd");
+			return 0;
+		}
+	}
+
+	private void filter() {
+		WorkoutFilter filter = new WorkoutFilter();
+		filter.setFromDate(parseDate(fromField));
+		filter.setToDate(parseDate(toField));
+		filter.setSource(sourceBox.getSelectedIndex());
+		try {
+			String power = powerField.getText().trim();
+			if (!power.isEmpty()) {
+				filter.setMinPower(Integer.parseInt(power));
+			}
+		} catch (NumberFormatException e) {
+			logger.warn("Wrong power " + powerField.getText());
+		}
+		filter.setRoute(routeField.getText().trim());
+
+		table.clearSelection();
+		selectedRows = null;
+		model.setFilter(filter);
+		logger.debug(filter + ", " + model.getRowCount() + " workouts");
+	}
 
     private ShadeGraph graph = null;
 	public void actionPerformed(ActionEvent e) {
 		String command = e.getActionCommand();
 
-		if (scGraph.equals(command)) {
+		if (filterCmd.equals(command)) {
+			filter();
+		} else if (scGraph.equals(command)) {
 			CSScatterPlot();
 		} else if (hrWattsGraph.equals(command)) {
             if (graph == null) {
@@ -329,31 +380,37 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
 			HRWattsScatterPlot();
 		} else if (mmpGraph.equals(command)) {
 			mmpGraph();
+		} else if (bestGraph.equals(command)) {
+			bestGraph();
 		} else if (schrGraph.equals(command)) {
 			SCHRGraph();
 		} else if (pdGraph.equals(command)) {
 			DistributionGraph(new DistributionAccessor() {
-				public int getKey(Telemetry t) {
-					return getKey(t.getPower());
+				public Histogram getHistogram(WorkoutSet set) {
+					return set.getHistogram(SourceDataEnum.POWER);
 				}
 			}, 15, MsgBundle.getString("pdGr"),
 					MsgBundle.getString("poWtt"));
 
 		} else if (cdGraph.equals(command)) {
 			DistributionGraph(new DistributionAccessor() {
-				public int getKey(Telemetry t) {
-					return getKey(t.getCadence());
+				public Histogram getHistogram(WorkoutSet set) {
+					return set.getHistogram(SourceDataEnum.CADENCE);
 				}
 			}, 5, MsgBundle.getString("cDgr"),
 					MsgBundle.getString("cDrpm"));
 		} else if (hrdGraph.equals(command)) {
 			DistributionGraph(new DistributionAccessor() {
-				public int getKey(Telemetry t) {
-					if (t.getHeartRate() < 30) {
+				public Histogram getHistogram(WorkoutSet set) {
+					return set.getHistogram(SourceDataEnum.HEART_RATE);
+				}
+
+				public int getKey(int v) {
+					if (v < 30) {
 						return -1; // ignore these values
 					}
 
-					return getKey(t.getHeartRate());
+					return super.getKey(v);
 				}
 			}, 10, MsgBundle.getString("hrDgr"),
 					MsgBundle.getString("hrBpm"));
@@ -361,11 +418,15 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
 		} else if (tlGraph.equals(command)) {
 			// Training Zone Graph
 			DistributionGraph(new DistributionAccessor() {
-				public int getKey(Telemetry t) {
-					if (!keepZeroes && t.getPower() < 5) {
+				public Histogram getHistogram(WorkoutSet set) {
+					return set.getHistogram(SourceDataEnum.POWER);
+				}
+
+				public int getKey(int v) {
+					if (!keepZeroes && v < WorkoutSet.PEDALLING) {
 						return -1;
 					}
-					return TrainingItem.getTrainingLevel(t.getPower());
+					return TrainingItem.getTrainingLevel(v);
 				}
 
 				public String getValueLabel(int v) {
@@ -375,11 +436,15 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
 		} else if (tlhrGraph.equals(command)) {
 			// Training Zone Graph
 			DistributionGraph(new DistributionAccessor() {
-				public int getKey(Telemetry t) {
-					if (!keepZeroes && t.getPower() < 5) {
-						return -1;
+				public Histogram getHistogram(WorkoutSet set) {
+					if (!keepZeroes) {
+						return set.getPedallingHistogram(SourceDataEnum.HEART_RATE);
 					}
-					return TrainingItem.getHRTrainingLevel(t.getHeartRate());
+					return set.getHistogram(SourceDataEnum.HEART_RATE);
+				}
+
+				public int getKey(int v) {
+					return TrainingItem.getHRTrainingLevel(v);
 				}
 
 				public String getValueLabel(int v) {
@@ -398,119 +463,263 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
 				return;
 			}
 
-			String workoutDir = UserPreferences.INSTANCE.getUserDataDirectory()
-					+ "/Imports/";
-
-			ActivityReader ar = new ActivityReader();
-
-			File dir = new File(workoutDir);
-            File[] files = dir.listFiles();
-            if (files != null) {
-                for (File entry : files) {
-                    if (entry.isFile()) {
-                        try {
-                            ar.readActivity(entry.getCanonicalPath());
-                        } catch (IOException e1) {
-                            // TODO Auto-generated catch block
-                            e1.printStackTrace();
-                        }
-                    }
-                }
-            }
+			importActivities();
+		}
+	}
 
-			StringBuilder importedFiles = new StringBuilder();
-			if (ar.getImportedFileList().isEmpty()) {
-				importedFiles.append("No files to import");
-			} else {
-				importedFiles.append("Imported:\n\n");
-				for (String file : ar.getImportedFileList()) {
-					importedFiles.append(file);
-					importedFiles.append("\n");
-				}// for
-
-				DefaultTableModel tableModel = (DefaultTableModel) table
-						.getModel();
-
-				loadData(tableModel);
-				// table = new JTable(model);
-				tableModel.fireTableDataChanged();
+	/**
+	 * Files from Imports directory are imported in parallel, by another
+	 * thread. Progress is shown by the monitor, import can be cancelled
+	 * there (workouts imported so far are kept).
+	 */
+	private void importActivities() {
+		if (activityImporter != null) {
+			logger.warn("Workouts are being imported");
+			return;
+		}
+		File dir = new File(UserPreferences.INSTANCE.getUserDataDirectory()
+				+ "/Imports/");
+		List<String> files = new ArrayList<String>();
+		File[] entries = dir.listFiles();
+		if (entries != null) {
+			for (File entry : entries) {
+				if (entry.isFile()) {
+					files.add(entry.getAbsolutePath());
+				}
 			}
-			JOptionPane.showMessageDialog(this, importedFiles.toString(),
+		}
+		if (files.isEmpty()) {
+			JOptionPane.showMessageDialog(this, "No files to import",
 					"Import", JOptionPane.INFORMATION_MESSAGE);
+			return;
 		}
+
+		activityImporter = new ActivityImporter(files);
+		final ProgressMonitor monitor = new ProgressMonitor(frame,
+				"Importing workouts", null, 0, files.size());
+		monitor.setMillisToDecideToPopup(100);
+		final Timer timer = new Timer(100, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (monitor.isCanceled()) {
+					activityImporter.cancel();
+				}
+				monitor.setProgress(activityImporter.getDone());
+				monitor.setNote(activityImporter.getDone() + " of "
+						+ activityImporter.getTotal());
+			}
+		});
+		timer.start();
+
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				final List<String> imported = activityImporter.run();
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						timer.stop();
+						monitor.close();
+
+						StringBuilder importedFiles = new StringBuilder();
+						if (imported.isEmpty()) {
+							importedFiles.append("No files imported\n");
+						} else {
+							importedFiles.append("Imported:\n\n");
+							for (String file : imported) {
+								importedFiles.append(file);
+								importedFiles.append("\n");
+							}// for
+							refresh();
+						}
+						importedFiles.append(String.format(
+								"\n%d of %d files, %d duplicates, %d failed, %.1f files/s",
+								imported.size(), activityImporter.getTotal(),
+								activityImporter.getDuplicates(),
+								activityImporter.getFailed(),
+								activityImporter.getRate()));
+						activityImporter = null;
+						JOptionPane.showMessageDialog(Workouts.this,
+								importedFiles.toString(), "Import",
+								JOptionPane.INFORMATION_MESSAGE);
+					}
+				});
+			}
+		}, "ActivityImporter");
+		thread.setDaemon(true);
+		thread.start();
 	}
 
+	/**
+	 * Selected workouts are read and aggregated in parallel, by another
+	 * thread. Progress is shown by the monitor, loading can be cancelled
+	 * there (then previous workouts are kept).
+	 */
 	void load() {
 		if (selectedRows == null || selectedRows.isEmpty()) {
 			return;
 		}
+		if (loader != null) {
+			logger.warn("Workouts are being loaded");
+			return;
+		}
 
 		String workoutDir = UserPreferences.INSTANCE.getUserDataDirectory()
 				+ "/Workouts/";
 
-		telemetry = new ArrayList[selectedRows.size()];
-
-		int count = 0;
+		final List<WorkoutData> workouts = new ArrayList<WorkoutData>();
+		List<String> files = new ArrayList<String>();
 		for (int i : selectedRows) {
-			WorkoutData data = workoutList.get(i);
-			String fileName = data.getTcxFile();
-			try {
-				telemetry[count] = ActivityReader.readTelemetry(workoutDir
-						+ fileName);
-			} catch (Exception e1) {
-				// TODO Auto-generated catch block
-				e1.printStackTrace();
+			WorkoutData data = model.getWorkout(i);
+			if (data != null) {
+				workouts.add(data);
+				files.add(workoutDir + data.getTcxFile());
 			}
-			count++;
+		}// for
+
+		loader = new WorkoutLoader(files);
+		final ProgressMonitor monitor = new ProgressMonitor(frame,
+				"Loading workouts", null, 0, files.size());
+		monitor.setMillisToDecideToPopup(100);
+		final Timer timer = new Timer(100, new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				if (monitor.isCanceled()) {
+					loader.cancel();
+				}
+				monitor.setProgress(loader.getLoaded());
+				monitor.setNote(loader.getLoaded() + " of " + loader.getTotal());
+			}
+		});
+		timer.start();
+
+		Thread thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				final WorkoutSet set = loader.load();
+				if (!loader.isCancelled()) {
+					storeCurves(workouts, set);
+				}
+				SwingUtilities.invokeLater(new Runnable() {
+					@Override
+					public void run() {
+						timer.stop();
+						monitor.close();
+						if (!loader.isCancelled()) {
+							loaded = set;
+							telemetry = set.getTelemetry();
+						}
+						loader = null;
+						if (!set.getFailed().isEmpty()) {
+							JOptionPane.showMessageDialog(Workouts.this,
+									"Cannot read " + set.getFailed(), "Load",
+									JOptionPane.WARNING_MESSAGE);
+						}
+					}
+				});
+			}
+		}, "WorkoutLoader");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	// curves computed when loaded are stored for workouts without them
+	private void storeCurves(List<WorkoutData> workouts, WorkoutSet set) {
+		String workoutDir = UserPreferences.INSTANCE.getUserDataDirectory()
+				+ "/Workouts/";
+		int i = 0;
+		for (WorkoutData data : workouts) {
+			if (i == set.size()) {
+				break;
+			}
+			if (!set.getName(i).equals(workoutDir + data.getTcxFile())) {
+				// not loaded
+				continue;
+			}
+			if (data.getPowerCurve() == null) {
+				data.setPowerCurve(set.getCurve(i));
+				userPrefs.updatePowerCurve(data.getTcxFile(), set.getCurve(i));
+			}
+			i++;
 		}// for
 	}
 
+	// workouts without stored curve are skipped, curves are computed by
+	// the backfill
+	private void missingCurves(int missing) {
+		if (missing != 0) {
+			logger.info(missing + " workouts without power curve"
+					+ (PowerCurveBackfill.isRunning() ? ", being computed" : ""));
+		}
+	}
+
+	// envelope of the selected workouts
 	public void mmpGraph() {
-		if (telemetry == null) {
+		if (selectedRows == null || selectedRows.isEmpty()) {
 			JOptionPane.showMessageDialog(this, "No Data",
-					"No data to display, load a workout first",
+					"No data to display, select a workout(s) first",
 					JOptionPane.WARNING_MESSAGE);
 			return;
 		}
 
-		TreeMap<Integer, Long> powerValues = new TreeMap<Integer, Long>();
-		for (int i = 0; i < telemetry.length; i++) {
-			Telemetry first = null;
-			for (Telemetry t : telemetry[i]) {
-
-				if (first == null) {
-					// first time through
-					first = t;
-				} else {
-					int power = t.getPower();
-					if (power > 50) {
-						if (powerValues.containsKey(power)) {
-							long time = powerValues.get(power);
-							powerValues.put(power,
-									time + (t.getTime() - first.getTime()));
-						} else {
-							powerValues.put(power,
-									t.getTime() - first.getTime());
-						}
-
-						first = t;
-					}
+		PowerCurve curve = new PowerCurve();
+		Map<String, PowerCurve> stored = null;
+		int missing = 0;
+		for (int i : selectedRows) {
+			WorkoutData data = model.getWorkout(i);
+			if (data == null) {
+				continue;
+			}
+			PowerCurve c = data.getPowerCurve();
+			if (c == null) {
+				// row might be fetched before the curve was computed
+				if (stored == null) {
+					stored = userPrefs.getPowerCurves(model.getFilter());
 				}
-			}// for
+				c = stored.get(data.getTcxFile());
+			}
+			if (c != null) {
+				data.setPowerCurve(c);
+				curve.envelope(c);
+			} else {
+				missing++;
+			}
 		}// for
+		missingCurves(missing);
+		showCurve(curve, "Mean Maximal Power");
+	}
 
-		long total = 0;
-		XYSeries series = new XYSeries("Mean Maximal Power");
-		for (Entry<Integer, Long> entry : powerValues.descendingMap()
-				.entrySet()) {
-			Integer pwr = entry.getKey();
-			total += entry.getValue();
-			series.addOrUpdate(total / 1000, (double) pwr);
+	// best ever curve, of all workouts matching the filter
+	public void bestGraph() {
+		PowerCurve curve = new PowerCurve();
+		int missing = 0;
+		for (PowerCurve c : userPrefs.getPowerCurves(model.getFilter())
+				.values()) {
+			if (c != null) {
+				curve.envelope(c);
+			} else {
+				missing++;
+			}
+		}// for
+		missingCurves(missing);
+		showCurve(curve, MsgBundle.getString("bestmmp"));
+	}
+
+	private void showCurve(PowerCurve curve, String title) {
+		if (curve.size() == 0) {
+			JOptionPane.showMessageDialog(this, "No Data",
+					"No power data to display", JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+
+		XYSeries series = new XYSeries(title);
+		for (int i = 0; i < curve.size(); i++) {
+			series.add(curve.getDuration(i), curve.getPower(i));
 		}// for
 
 		MMPGraph mmp = new MMPGraph(series);
 
-		JFrame frame = new JFrame("Mean Maximal Power");
+		JFrame frame = new JFrame(title);
 		ImageIcon img = new ImageIcon("icons/turbo.jpg");
 		frame.setIconImage(img.getImage());
 		frame.setDefaultCloseOperation(JFrame.DISPOSE_ON_CLOSE);
@@ -536,15 +745,10 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
 			return;
 		}
 
+		// distinct points of all workouts
 		XYSeries series = new XYSeries("Cadence Power Scatter Plot");
-
-		for (int i = 0; i < telemetry.length; i++) {
-			for (Telemetry t : telemetry[i]) {
-
-				if (t.getCadence() > 0 && t.getPower() > 0) {
-					series.addOrUpdate(t.getPower(), t.getCadence());
-				}
-			}// for
+		for (int i = 0; i < loaded.getCadencePoints(); i++) {
+			series.add(loaded.getCadencePower(i), loaded.getCadence(i));
 		}// for
 
 		GenericScatterGraph mmp = new GenericScatterGraph(series, "Power",
@@ -573,14 +777,8 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
 		}
 
 		XYSeries series = new XYSeries("Heart Rate / Watts Scatter Plot");
-
-		for (int i = 0; i < telemetry.length; i++) {
-			for (Telemetry t : telemetry[i]) {
-
-				if (t.getHeartRate() > 0 && t.getPower() > 0) {
-					series.addOrUpdate(t.getPower(), t.getHeartRate());
-				}
-			}// for
+		for (int i = 0; i < loaded.getHeartRatePoints(); i++) {
+			series.add(loaded.getHeartRatePower(i), loaded.getHeartRate(i));
 		}// for
 
 		GenericScatterGraph mmp = new GenericScatterGraph(series, "Power",
@@ -609,7 +807,7 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
 			return;
 		}
 
-		DistributionGraph dgGraph = new DistributionGraph(telemetry, da, label,
+		DistributionGraph dgGraph = new DistributionGraph(loaded, da, label,
 				scale);
 		dgGraph.updateValues(scale, true);
 
@@ -664,11 +862,11 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
 		StringBuilder output = new StringBuilder();
 		output.append(MsgBundle.getString("delMsg") + "\n\n");
 
-		int[] rows = new int[selectedRows.size()];
+		String[] fileNames = new String[selectedRows.size()];
 		Iterator<Integer> row = selectedRows.iterator();
 		for (int i = 0; i < selectedRows.size(); i++) {
-			rows[i] = row.next().intValue();
-			WorkoutData data = workoutList.get(rows[i]);
+			WorkoutData data = model.getWorkout(row.next().intValue());
+			fileNames[i] = data.getTcxFile();
 			output.append(data.getTcxFile() + "\n");
 		}// for
 
@@ -677,17 +875,13 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
 				"Workout Delete", JOptionPane.YES_NO_OPTION);
 
 		if (deleteData == 0) {
-			deleteSelectedRows(rows);
+			deleteWorkouts(fileNames);
 
 		}
 	}
 
-	private void deleteSelectedRows(int[] rows) {
-		DefaultTableModel dm = (DefaultTableModel) table.getModel();
-		for (int i = rows.length - 1; i >= 0; i--) {
-			dm.removeRow(rows[i]);
-
-			String fileName = workoutList.get(rows[i]).getTcxFile();
+	private void deleteWorkouts(String[] fileNames) {
+		for (String fileName : fileNames) {
 			userPrefs.deleteWorkout(fileName);
 
 			String path = UserPreferences.INSTANCE.getUserDataDirectory()
@@ -698,9 +892,7 @@ public class Workouts extends JPanel implements ActionListener, MessageCallback
 				// log an error
 				logger.error("deleted " + path);
 			}
-			workoutList.remove(rows[i]);
-
 		}// for
-		selectedRows = null;
+		refresh();
 	}
 }
\ No newline at end of file
@@ -18,9 +18,6 @@ package com.wattzap.view.graphs;
 import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.GradientPaint;
-import java.util.ArrayList;
-import java.util.Map.Entry;
-import java.util.TreeMap;
 
 import javax.swing.JPanel;
 
@@ -38,7 +35,8 @@ import org.jfree.chart.renderer.category.BarRenderer;
 import org.jfree.data.category.DefaultCategoryDataset;
 
 import com.wattzap.controller.DistributionAccessor;
-import com.wattzap.model.dto.Telemetry;
+import com.wattzap.model.dto.Histogram;
+import com.wattzap.model.dto.WorkoutSet;
 
 /* 
  * Power Distribution Chart
@@ -50,15 +48,15 @@ public class DistributionGraph extends JPanel {
 	private ChartPanel chartPanel = null;
 
 	CategoryPlot plot;
-	private final ArrayList<Telemetry> telemetry[];
+	private final WorkoutSet workouts;
 	private final DistributionAccessor da;
 	private static Logger logger = LogManager.getLogger("Distribution Graph");
 
-	public DistributionGraph(ArrayList<Telemetry> telemetry[],
-			DistributionAccessor da, String domainLabel, int scale) {
+	public DistributionGraph(WorkoutSet workouts, DistributionAccessor da,
+			String domainLabel, int scale) {
 		super();
 
-		this.telemetry = telemetry;
+		this.workouts = workouts;
 		this.da = da;
 
 		// create the chart...
@@ -117,38 +115,30 @@ public class DistributionGraph extends JPanel {
 		da.setBucketSize(scale);
 		da.setKeepZeroes(keepZeroes);
 
+		// histogram bins are merged into keys, accessor is called per bin
+		Histogram histogram = da.getHistogram(workouts);
+		int[] keys = new int[histogram.size()];
+		int maxKey = -1;
+		for (int v = 0; v < keys.length; v++) {
+			keys[v] = da.getKey(v);
+			if (keys[v] > maxKey) {
+				maxKey = keys[v];
+			}
+		}// for
+
 		long totalTime = 0;
-		TreeMap<Integer, Long> data = new TreeMap<Integer, Long>();
-		for (int i = 0; i < telemetry.length; i++) {
-			Telemetry last = null;
-			for (Telemetry t : telemetry[i]) {
-
-				if (last == null) {
-					// first time through
-					last = t;
-				} else {
-					int key = da.getKey(t);
-					if (key != -1) {
-						if (data.containsKey(key)) {
-							// add time to current key
-							long time = data.get(key);
-							data.put(key, time + (t.getTime() - last.getTime()));
-						} else {
-							data.put(key, t.getTime() - last.getTime());
-						}
-						totalTime += t.getTime() - last.getTime();
-
-					}
-					last = t;
-				}
-			}// for
+		long[] data = new long[maxKey + 1];
+		for (int v = 0; v < keys.length; v++) {
+			if (keys[v] != -1) {
+				data[keys[v]] += histogram.getTime(v);
+				totalTime += histogram.getTime(v);
+			}
 		}// for
 
 		DefaultCategoryDataset dataset = new DefaultCategoryDataset();
 
-		for (Entry<Integer, Long> entry : data.entrySet()) {
-			int key = entry.getKey();
-			double p = ((double) entry.getValue() * 100 / totalTime);
+		for (int key = 0; key < data.length; key++) {
+			double p = ((double) data[key] * 100 / totalTime);
 			if (p > 0.5) {
 				dataset.addValue(p, "", da.getValueLabel(key));
 			}
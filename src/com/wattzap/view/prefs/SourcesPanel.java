@@ -17,6 +17,7 @@ package com.wattzap.view.prefs;
 
 import com.wattzap.model.Constants;
 import com.wattzap.model.SourceDataEnum;
+import com.wattzap.model.TelemetryScheduler;
 import com.wattzap.model.UserPreferences;
 import javax.swing.JPanel;
 
@@ -52,5 +53,34 @@ public class SourcesPanel extends ConfigPanel {
         add(new ConfigFieldSourceSelector(this, UserPreferences.TARGET_POWER_SOURCE,
                 "target_power_source", SourceDataEnum.TARGET_POWER));
         add(new ConfigFieldInt(this, UserPreferences.ROBOT_POWER, "robot_power", "W"));
+
+        // how often telemetry is computed
+        add(new ConfigFieldInt(this, UserPreferences.TELEMETRY_RATE, "telemetry_rate", "Hz") {
+            @Override
+            public boolean isValid(int val) {
+                return TelemetryScheduler.checkRate(val) == val;
+            }
+        });
+        add(new ConfigFieldCheck(this, UserPreferences.TELEMETRY_CATCH_UP, "telemetry_catch_up"));
+        // how often telemetry is recorded
+        add(new ConfigFieldInt(this, UserPreferences.RECORD_RATE, "record_rate", "Hz") {
+            @Override
+            public boolean isValid(int val) {
+                return TelemetryScheduler.checkRate(val) == val;
+            }
+        });
+        // tick when selected sensor reports new value
+        add(new ConfigFieldCheck(this, UserPreferences.TELEMETRY_EVENTS, "telemetry_events"));
+        add(new ConfigFieldInt(this, UserPreferences.TELEMETRY_MIN_SPACING, "telemetry_min_spacing", "ms") {
+            @Override
+            public boolean isValid(int val) {
+                return (val >= 10) && (val <= 1000);
+            }
+        });
+
+        // latency of message bus callbacks
+        add(new ConfigFieldCheck(this, UserPreferences.BUS_STATS, "bus_stats"));
+        add(new ConfigFieldInt(this, UserPreferences.BUS_BUDGET, "bus_budget", "ms"));
+        add(new ConfigFieldInt(this, UserPreferences.BUS_DUMP, "bus_dump", "s"));
 	}
 }
@@ -38,5 +38,9 @@ public class UserPanel extends ConfigPanel {
         add(new ConfigFieldCheck(this, UserPreferences.LOAD_LAST, "load_last"));
         add(new ConfigFieldCheck(this, UserPreferences.AUTO_START, "autostart"));
         add(new ConfigFieldCheck(this, UserPreferences.AUTO_SAVE, "autosave"));
+        // journal writes
+        add(new ConfigFieldInt(this, UserPreferences.JOURNAL_GROUP, "journal_group"));
+        add(new ConfigFieldInt(this, UserPreferences.JOURNAL_DELAY, "journal_delay", "ms"));
+        add(new ConfigFieldCheck(this, UserPreferences.JOURNAL_FSYNC, "journal_fsync"));
 	}
 }
\ No newline at end of file
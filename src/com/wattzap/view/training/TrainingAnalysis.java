@@ -21,9 +21,7 @@ import java.awt.Dimension;
 import java.awt.Font;
 import java.text.DecimalFormat;
 import java.text.SimpleDateFormat;
-import java.util.Map;
 import java.util.TimeZone;
-import java.util.TreeMap;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
@@ -34,6 +32,7 @@ import net.miginfocom.swing.MigLayout;
 import org.apache.log4j.LogManager;
 import org.apache.log4j.Logger;
 
+import com.wattzap.model.LiveAnalysis;
 import com.wattzap.model.UserPreferences;
 import com.wattzap.model.dto.Telemetry;
 import com.wattzap.model.dto.WorkoutData;
@@ -334,128 +333,15 @@ public class TrainingAnalysis extends JFrame {
 	}
 
 	public static WorkoutData analyze(List<Telemetry> data) {
-		WorkoutData workoutData = new WorkoutData();
-
 		if (data == null || data.size() == 0) {
 			logger.info("No training data to analyze");
 			return null;
 		}
-		Telemetry firstPoint = data.get(0);
-		Telemetry lastPoint = data.get(data.size() - 1);
-		long len = (lastPoint.getTime() - firstPoint.getTime());
-		workoutData.setTime(len);
-		workoutData.setDate(firstPoint.getTime());
-		workoutData.setDistance(lastPoint.getDistance());
-
-		int maxCad = 0;
-		long aveCad = 0;
-		int maxHR = 0;
-		long aveHR = 0;
-		int minHR = 220;
-		int ftHR = 0;
-		double tPower = 0;
-
-		// five second power
-		Telemetry last = null;
-
-		int maxPwr = 0;
-		double qPwr = 0;
-
-		ftHR = 0;
-		TreeMap<Integer, Long> pow = new TreeMap<Integer, Long>();
-		Telemetry first = null;
+		// same metrics are computed while riding
+		LiveAnalysis analysis = new LiveAnalysis();
 		for (Telemetry t : data) {
-			if (first == null) {
-				// first time through
-				first = t;
-			} else {
-				if (pow.containsKey(t.getPower())) {
-					long time = pow.get(t.getPower());
-					pow.put(t.getPower(), time
-							+ (t.getTime() - first.getTime()));
-				} else {
-					pow.put(t.getPower(), t.getTime() - first.getTime());
-				}
-
-				first = t;
-			}
-
-			if (maxPwr < t.getPower()) {
-				maxPwr = t.getPower();
-			}
-
-			qPwr += t.getPower() * t.getPower();
-			if (t.getHeartRate() > maxHR) {
-				maxHR = t.getHeartRate();
-			}
-			if (t.getCadence() > maxCad) {
-				maxCad = t.getCadence();
-			}
-			if (t.getHeartRate() != -1 && t.getHeartRate() < minHR) {
-				minHR = t.getHeartRate();
-			}
-			if (last != null) {
-				/*
-				 * if data is recovered we need to take into account the time
-				 * gap, so we check to see if T > T' by more than 2 seconds and
-				 * then we adjust last time
-				 */
-				tPower += t.getPower() * (t.getTime() - last.getTime());
-				if (t.getHeartRate() > 0) {
-					aveHR += t.getHeartRate() * (t.getTime() - last.getTime());
-				}
-				aveCad += t.getCadence() * (t.getTime() - last.getTime());
-			}
-			last = t;
-		}// for
-
-		int fiveSecPwr = 0;
-		int oneMinPwr = 0;
-		int fiveMinPwr = 0;
-		int twentyMinPwr = 0;
-		long tot = 0;
-		for (Map.Entry<Integer, Long> entry : pow.descendingMap().entrySet()) {
-			int key = entry.getKey();
-			long value = entry.getValue();
-			tot += value;
-			if (tot >= 5000 && fiveSecPwr == 0) {
-				fiveSecPwr = key;
-			}
-			if (tot >= 60000 && oneMinPwr == 0) {
-				oneMinPwr = key;
-			}
-			if (tot >= 300000 && fiveMinPwr == 0) {
-				fiveMinPwr = key;
-			}
-			if (tot >= 1200000 && twentyMinPwr == 0) {
-				twentyMinPwr = key;
-			}
-		}// for
-		workoutData.setFiveSecondPwr(fiveSecPwr);
-		workoutData.setFiveMinutePwr(fiveMinPwr);
-		workoutData.setOneMinutePwr(oneMinPwr);
-		workoutData.setTwentyMinutePwr(twentyMinPwr);
-
-		workoutData.setFtHR(ftHR);
-		qPwr /= data.size();
-		qPwr = Math.sqrt(qPwr);
-		workoutData.setQuadraticPower((int) qPwr);
-
-		workoutData.setWeight(UserPreferences.INSTANCE.getWeight());
-
-		workoutData.setMaxHR(maxHR);
-		workoutData.setMinHR(minHR);
-		workoutData.setMaxCadence(maxCad);
-		if (len > 0) {
-			workoutData.setAveCadence((int) (aveCad / len));
-			workoutData.setAveHR((int) (aveHR / len));
-
-			workoutData.setAvePower((int) (tPower / len));
+			analysis.add(t);
 		}
-		workoutData.setMaxPower(maxPwr);
-		workoutData.setTotalPower((int) (tPower / (3600000)));
-
-		return workoutData;
-
+		return analysis.getWorkoutData();
 	}
 }
@@ -0,0 +1,147 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.wattzap.Riders.Rider;
+import com.wattzap.controller.MessageCallback;
+import com.wattzap.controller.Messages;
+import com.wattzap.model.PauseMsgEnum;
+import com.wattzap.model.UserPreferences;
+import com.wattzap.model.dto.Telemetry;
+
+public class RidersTest {
+	private static final int SAMPLES = 300;
+
+	@BeforeClass
+	public static void startStore() throws IOException {
+		// preferences of the test only
+		System.setProperty("user.home",
+				Files.createTempDirectory("riders").toString());
+		System.setProperty("java.awt.headless", "true");
+		UserPreferences.startStore();
+		// power is replayed, it is not computed from the route
+		UserPreferences.setDBValue("target_power_source", "no_target_power");
+	}
+
+	@AfterClass
+	public static void shutDown() {
+		UserPreferences.INSTANCE.shutDown();
+	}
+
+	private static List<Telemetry> ride(int power) {
+		List<Telemetry> data = new ArrayList<Telemetry>();
+		for (int i = 0; i < SAMPLES; i++) {
+			Telemetry t = new Telemetry();
+			t.setTime(1400000000000L + 1000L * i);
+			t.setPower(power);
+			t.setCadence(90);
+			t.setSpeed(30.0);
+			data.add(t);
+		}
+		return data;
+	}
+
+	// telemetries of the rider, application state is checked with each one
+	private static class Recorder implements MessageCallback {
+		private final List<PauseMsgEnum> pauses = Collections
+				.synchronizedList(new ArrayList<PauseMsgEnum>());
+		private final AtomicBoolean shared;
+
+		private Recorder(AtomicBoolean shared) {
+			this.shared = shared;
+		}
+
+		@Override
+		public void callback(Messages m, Object o) {
+			pauses.add(((Telemetry) o).getPause());
+			if (UserPreferences.RUNNING.getBool()
+					|| UserPreferences.MANUAL_PAUSE.getBool()) {
+				shared.set(true);
+			}
+		}
+	}
+
+	@Test(timeout = 60000)
+	public void twoRiders() throws Exception {
+		double weight = UserPreferences.WEIGHT.getDouble();
+		final Rider a = new Rider("a", ride(200));
+		final Rider b = new Rider("b", ride(250));
+		a.getProfile().setValue("weight", "60");
+		b.getProfile().setValue("weight", "95");
+		Assert.assertEquals(60.0, a.getProfile().getWeight(), 0.001);
+		Assert.assertEquals(95.0, b.getProfile().getWeight(), 0.001);
+		Assert.assertEquals(weight, UserPreferences.WEIGHT.getDouble(), 0.001);
+
+		Assert.assertNull(a.initialize(null));
+		Assert.assertNull(b.initialize(null));
+
+		// rider a pauses and then stops, b rides to the end of the data
+		AtomicBoolean shared = new AtomicBoolean(false);
+		final Recorder recA = new Recorder(shared) {
+			@Override
+			public void callback(Messages m, Object o) {
+				super.callback(m, o);
+				if (super.pauses.size() == 60) {
+					a.getProfile().setPaused(true);
+				} else if (super.pauses.size() == 100) {
+					a.getSession().stop();
+				}
+			}
+		};
+		Recorder recB = new Recorder(shared);
+		a.getSession().getBus().register(Messages.TELEMETRY, recA);
+		b.getSession().getBus().register(Messages.TELEMETRY, recB);
+
+		a.start();
+		b.start();
+		a.await();
+		b.await();
+		a.getSession().getBus().unregister(Messages.TELEMETRY, recA);
+		b.getSession().getBus().unregister(Messages.TELEMETRY, recB);
+
+		Assert.assertTrue(recA.pauses.contains(PauseMsgEnum.PAUSED));
+		Assert.assertFalse(recB.pauses.contains(PauseMsgEnum.PAUSED));
+		Assert.assertTrue(a.getReplayed() < SAMPLES);
+		Assert.assertEquals(SAMPLES, b.getReplayed());
+		Assert.assertTrue(recB.pauses.size() > recA.pauses.size());
+		Assert.assertFalse(a.getProfile().isStarted());
+		Assert.assertFalse(b.getProfile().isStarted());
+		Assert.assertFalse(b.getProfile().isPaused());
+
+		// training state and rider properties are not written to preferences
+		Assert.assertFalse(shared.get());
+		Assert.assertFalse(UserPreferences.RUNNING.getBool());
+		Assert.assertFalse(UserPreferences.MANUAL_PAUSE.getBool());
+		Assert.assertEquals(weight, UserPreferences.WEIGHT.getDouble(), 0.001);
+		Assert.assertEquals(60.0, a.getAnalysis().getWorkoutData().getWeight(), 0.001);
+		Assert.assertEquals(95.0, b.getAnalysis().getWorkoutData().getWeight(), 0.001);
+
+		a.close();
+		b.close();
+	}
+}
@@ -0,0 +1,51 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.controller;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CallbackStatisticsTest {
+	@Test
+	public void buckets() {
+		long[] values = {0, 1, 7, 8, 15, 16, 17, 1000, 123456789L, Long.MAX_VALUE};
+		for (long value : values) {
+			int bucket = CallbackStatistics.bucket(value);
+			Assert.assertTrue(CallbackStatistics.lowest(bucket) <= value);
+			if (value != Long.MAX_VALUE) {
+				Assert.assertTrue(CallbackStatistics.lowest(bucket + 1) > value);
+			}
+		}
+		Assert.assertEquals(CallbackStatistics.bucket(7) + 1, CallbackStatistics.bucket(8));
+	}
+
+	@Test
+	public void percentiles() {
+		CallbackStatistics stats = new CallbackStatistics(Messages.TELEMETRY, "test");
+		for (int i = 1; i <= 1000; i++) {
+			Assert.assertEquals(i == 1000, stats.record(i * 1000L, 999500L));
+		}
+		Assert.assertEquals(1000, stats.getCount());
+		Assert.assertEquals(1, stats.getOverBudget());
+		Assert.assertEquals(500500L, stats.getMean());
+		Assert.assertEquals(1000000L, stats.getMax());
+		// bucket width is 1/8 of the magnitude
+		long p50 = stats.getPercentile(50.0);
+		Assert.assertTrue(p50 >= 500000L && p50 < 500000L * 9 / 8);
+		long p99 = stats.getPercentile(99.0);
+		Assert.assertTrue(p99 >= 990000L && p99 <= 1000000L);
+	}
+}
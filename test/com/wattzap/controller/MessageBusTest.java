@@ -0,0 +1,175 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.wattzap.model.dto.Telemetry;
+import com.wattzap.model.dto.TelemetryPool;
+
+public class MessageBusTest {
+	private final List<Object> received = new ArrayList<Object>();
+	private final CountDownLatch blocked = new CountDownLatch(1);
+	private final CountDownLatch done = new CountDownLatch(1);
+
+	private final MessageCallback callback = new MessageCallback() {
+		@Override
+		public void callback(Messages m, Object o) {
+			if (m == Messages.START) {
+				try {
+					blocked.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			synchronized (received) {
+				received.add(m == Messages.TELEMETRY ? o : m);
+			}
+			if (m == Messages.STOP) {
+				done.countDown();
+			}
+		}
+	};
+
+	@After
+	public void tearDown() {
+		MessageBus.INSTANCE.unregister(callback);
+	}
+
+	@Test
+	public void syncDelivery() {
+		MessageBus.INSTANCE.register(Messages.STOP, callback);
+		Assert.assertTrue(MessageBus.INSTANCE.isRegisterd(Messages.STOP, callback));
+		MessageBus.INSTANCE.send(Messages.STOP, null);
+		Assert.assertEquals(1, received.size());
+
+		MessageBus.INSTANCE.unregister(Messages.STOP, callback);
+		Assert.assertFalse(MessageBus.INSTANCE.isRegisterd(Messages.STOP, callback));
+		MessageBus.INSTANCE.send(Messages.STOP, null);
+		Assert.assertEquals(1, received.size());
+	}
+
+	@Test
+	public void asyncCoalesced() throws InterruptedException {
+		MessageBus.INSTANCE.registerAsync(Messages.START, callback);
+		MessageBus.INSTANCE.registerAsync(Messages.TELEMETRY, callback);
+		MessageBus.INSTANCE.registerAsync(Messages.STOP, callback);
+		Assert.assertTrue(MessageBus.INSTANCE.isRegisterd(Messages.TELEMETRY, callback));
+
+		// lane is blocked in START, telemetries must be coalesced
+		MessageBus.INSTANCE.send(Messages.START, null);
+		for (int i = 0; i < 10; i++) {
+			MessageBus.INSTANCE.send(Messages.TELEMETRY, i);
+		}
+		MessageBus.INSTANCE.send(Messages.STOP, null);
+		blocked.countDown();
+
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		synchronized (received) {
+			Assert.assertEquals(Messages.START, received.get(0));
+			Assert.assertEquals(Messages.STOP, received.get(received.size() - 1));
+			Assert.assertEquals(9, received.get(received.size() - 2));
+			Assert.assertTrue(received.size() < 12);
+		}
+	}
+
+	@Test
+	public void asyncOrdered() throws InterruptedException {
+		MessageBus.INSTANCE.registerAsync(Messages.START, callback);
+		MessageBus.INSTANCE.registerAsync(Messages.TELEMETRY, callback);
+		MessageBus.INSTANCE.registerAsync(Messages.STOP, callback);
+
+		// telemetry sent after STOP cannot replace the one sent before
+		MessageBus.INSTANCE.send(Messages.START, null);
+		MessageBus.INSTANCE.send(Messages.TELEMETRY, 1);
+		MessageBus.INSTANCE.send(Messages.STOP, null);
+		MessageBus.INSTANCE.send(Messages.TELEMETRY, 2);
+		MessageBus.INSTANCE.send(Messages.TELEMETRY, 3);
+		blocked.countDown();
+
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		for (int i = 0; i < 50 && size() < 4; i++) {
+			Thread.sleep(100);
+		}
+		synchronized (received) {
+			Assert.assertEquals(4, received.size());
+			Assert.assertEquals(Messages.START, received.get(0));
+			Assert.assertEquals(1, received.get(1));
+			Assert.assertEquals(Messages.STOP, received.get(2));
+			Assert.assertEquals(3, received.get(3));
+		}
+	}
+
+	@Test
+	public void asyncSnapshot() throws InterruptedException {
+		MessageBus.INSTANCE.registerAsync(Messages.START, callback);
+		MessageBus.INSTANCE.registerAsync(Messages.TELEMETRY, callback);
+		MessageBus.INSTANCE.registerAsync(Messages.STOP, callback);
+
+		TelemetryPool pool = new TelemetryPool(2);
+		Telemetry t = new Telemetry();
+		t.setPower(100);
+		MessageBus.INSTANCE.send(Messages.START, null);
+		MessageBus.INSTANCE.send(Messages.TELEMETRY, pool.publish(t));
+		MessageBus.INSTANCE.send(Messages.STOP, null);
+		// snapshot is recycled while lane is blocked
+		t.setPower(200);
+		for (int i = 0; i < 10; i++) {
+			pool.publish(t);
+		}
+		blocked.countDown();
+
+		Assert.assertTrue(done.await(5, TimeUnit.SECONDS));
+		synchronized (received) {
+			Telemetry snapshot = (Telemetry) received.get(1);
+			Assert.assertEquals(100, snapshot.getPower());
+			Assert.assertEquals(1, snapshot.getSequence());
+			Assert.assertTrue(snapshot.isFrozen());
+		}
+	}
+
+	@Test(timeout = 5000)
+	public void asyncError() {
+		MessageCallback failing = new MessageCallback() {
+			@Override
+			public void callback(Messages m, Object o) {
+				throw new AssertionError("lane test");
+			}
+		};
+		MessageBus.INSTANCE.registerAsync(Messages.STOP, failing);
+		try {
+			// lane is closed by the error, sender cannot wait on full queue
+			for (int i = 0; i < 1000; i++) {
+				MessageBus.INSTANCE.send(Messages.STOP, null);
+			}
+		} finally {
+			MessageBus.INSTANCE.unregister(failing);
+		}
+	}
+
+	private int size() {
+		synchronized (received) {
+			return received.size();
+		}
+	}
+}
@@ -0,0 +1,169 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Throughput of property access: statements prepared for each call with
+ * count-then-insert/update (as it was done before), cached statements and
+ * batch of properties in single transaction. Results are printed only.
+ */
+public class DataStoreBenchmarkTest {
+	private static final int KEYS = 50;
+	private static final int ROUNDS = 10;
+	private final String user = "bench-test";
+	private DataStore ds;
+
+	@Before
+	public void setup() {
+		ds = new DataStore(".", "afghanistanbananastan");
+		cleanUp();
+	}
+
+	@After
+	public void tearDown() {
+		cleanUp();
+		ds.close();
+	}
+
+	private void cleanUp() {
+		for (int k = 0; k < KEYS; k++) {
+			ds.deleteProp(user, "k" + k);
+		}
+	}
+
+	private static void report(String name, int ops, long nanos) {
+		System.out.println("DataStore " + name + ": " + ops + " ops in "
+				+ (nanos / 1000000L) + "ms, "
+				+ (long) (ops * 1.0e9 / Math.max(nanos, 1)) + " ops/s");
+	}
+
+	// previous implementation of insertProp
+	private void insertUncached(String k, String v) throws SQLException {
+		PreparedStatement count = ds.conn.prepareStatement(
+				" SELECT COUNT(*) FROM props WHERE username = ? and k = ?");
+		count.setString(1, user);
+		count.setString(2, k);
+		ResultSet rs = count.executeQuery();
+		rs.next();
+		int rows = rs.getInt(1);
+		rs.close();
+		count.close();
+
+		PreparedStatement ps;
+		if (rows == 0) {
+			ps = ds.conn.prepareStatement("INSERT INTO props (v, username, k) values(  ?, ?, ?)");
+		} else {
+			ps = ds.conn.prepareStatement("UPDATE props SET v=? WHERE username=? and k=?");
+		}
+		ps.setString(1, v);
+		ps.setString(2, user);
+		ps.setString(3, k);
+		ps.executeUpdate();
+		ps.close();
+		ds.conn.commit();
+	}
+
+	// previous implementation of getProp
+	private String getUncached(String k) throws SQLException {
+		PreparedStatement s = ds.conn.prepareStatement(
+				"SELECT v FROM props WHERE username = ? and k = ?");
+		s.setString(1, user);
+		s.setString(2, k);
+		ResultSet rs = s.executeQuery();
+		String v = null;
+		if (rs.next()) {
+			v = rs.getString(1);
+		}
+		rs.close();
+		s.close();
+		return v;
+	}
+
+	@Test
+	public void insert() throws SQLException {
+		// warm up Derby (classes, plans, pages)
+		for (int k = 0; k < KEYS; k++) {
+			insertUncached("k" + k, "w");
+			ds.insertProp(user, "k" + k, "w");
+		}
+
+		long start = System.nanoTime();
+		for (int r = 0; r < ROUNDS; r++) {
+			for (int k = 0; k < KEYS; k++) {
+				insertUncached("k" + k, "u" + r);
+			}
+		}
+		report("insert uncached", KEYS * ROUNDS, System.nanoTime() - start);
+		Assert.assertEquals("u" + (ROUNDS - 1), ds.getProp(user, "k0"));
+
+		start = System.nanoTime();
+		for (int r = 0; r < ROUNDS; r++) {
+			for (int k = 0; k < KEYS; k++) {
+				ds.insertProp(user, "k" + k, "c" + r);
+			}
+		}
+		report("insert cached", KEYS * ROUNDS, System.nanoTime() - start);
+		Assert.assertEquals("c" + (ROUNDS - 1), ds.getProp(user, "k0"));
+
+		String[] users = new String[KEYS];
+		String[] keys = new String[KEYS];
+		String[] values = new String[KEYS];
+		start = System.nanoTime();
+		for (int r = 0; r < ROUNDS; r++) {
+			for (int k = 0; k < KEYS; k++) {
+				users[k] = user;
+				keys[k] = "k" + k;
+				values[k] = "b" + r;
+			}
+			Assert.assertTrue(ds.storeProps(users, keys, values));
+		}
+		report("insert batch", KEYS * ROUNDS, System.nanoTime() - start);
+		Assert.assertEquals("b" + (ROUNDS - 1), ds.getProp(user, "k" + (KEYS - 1)));
+	}
+
+	@Test
+	public void get() throws SQLException {
+		for (int k = 0; k < KEYS; k++) {
+			ds.insertProp(user, "k" + k, "v" + k);
+			getUncached("k" + k);
+		}
+
+		long start = System.nanoTime();
+		for (int r = 0; r < ROUNDS * 4; r++) {
+			for (int k = 0; k < KEYS; k++) {
+				Assert.assertEquals("v" + k, getUncached("k" + k));
+			}
+		}
+		report("get uncached", KEYS * ROUNDS * 4, System.nanoTime() - start);
+
+		start = System.nanoTime();
+		for (int r = 0; r < ROUNDS * 4; r++) {
+			for (int k = 0; k < KEYS; k++) {
+				Assert.assertEquals("v" + k, ds.getProp(user, "k" + k));
+			}
+		}
+		report("get cached", KEYS * ROUNDS * 4, System.nanoTime() - start);
+	}
+}
@@ -0,0 +1,58 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.wattzap.model.dto.Telemetry;
+
+public class LiveAnalysisTest {
+	private static Telemetry telemetry(int i, int power) {
+		Telemetry t = new Telemetry();
+		t.setTime(1400000000000L + 1000L * i);
+		t.setPower(power);
+		return t;
+	}
+
+	@Test
+	public void incremental() {
+		LiveAnalysis analysis = new LiveAnalysis();
+		Assert.assertEquals(0, analysis.getNormalizedPower());
+
+		for (int i = 0; i <= 600; i++) {
+			analysis.add(telemetry(i, 200));
+			if (i == 20) {
+				// not enough for rolling average
+				Assert.assertEquals(0, analysis.getNormalizedPower());
+			}
+		}
+		Assert.assertEquals(601, analysis.getCount());
+		Assert.assertEquals(600000L, analysis.getTime());
+		Assert.assertEquals(200, analysis.getNormalizedPower());
+
+		// 1min blocks of 100W and 300W
+		for (int i = 601; i <= 3600; i++) {
+			analysis.add(telemetry(i, ((i / 60) % 2 == 0) ? 100 : 300));
+		}
+		int np = analysis.getNormalizedPower();
+		Assert.assertTrue(np > 220 && np < 260);
+
+		analysis.clear();
+		Assert.assertEquals(0, analysis.getCount());
+		Assert.assertEquals(0, analysis.getNormalizedPower());
+	}
+}
@@ -0,0 +1,139 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PreferenceWriterTest {
+	private final String user = "writer-test";
+	private DataStore ds;
+
+	@Before
+	public void setup() {
+		ds = new DataStore(".", "afghanistanbananastan");
+		ds.deleteProp(user, "a");
+		ds.deleteProp(user, "b");
+	}
+
+	@After
+	public void tearDown() {
+		ds.close();
+	}
+
+	@Test
+	public void coalesce() {
+		PreferenceWriter writer = new PreferenceWriter(ds, 60000);
+		for (int i = 0; i < 10; i++) {
+			writer.put(user, "a", Integer.toString(i), false);
+		}
+		writer.put(user, "b", "x", false);
+		// value is visible before it is written
+		Assert.assertEquals("9", writer.get(user, "a").value);
+		Assert.assertNull(ds.getProp(user, "a"));
+
+		writer.flush();
+		Assert.assertEquals("9", ds.getProp(user, "a"));
+		Assert.assertEquals("x", ds.getProp(user, "b"));
+		Assert.assertNull(writer.get(user, "a"));
+		Assert.assertEquals(11, writer.getQueued());
+		Assert.assertEquals(9, writer.getCoalesced());
+		Assert.assertEquals(2, writer.getWritten());
+		Assert.assertEquals(1, writer.getCommits());
+
+		// update and delete in the same batch
+		writer.put(user, "a", "10", false);
+		writer.put(user, "b", null, false);
+		writer.close();
+		Assert.assertEquals("10", ds.getProp(user, "a"));
+		Assert.assertNull(ds.getProp(user, "b"));
+		Assert.assertEquals(0, writer.getFailed());
+	}
+
+	@Test
+	public void delay() throws InterruptedException {
+		PreferenceWriter writer = new PreferenceWriter(ds, 50);
+		writer.put(user, "a", "1", false);
+		for (int i = 0; (i < 100) && (writer.getWritten() == 0); i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(1, writer.getWritten());
+		Assert.assertEquals("1", ds.getProp(user, "a"));
+		writer.close();
+	}
+
+	@Test
+	public void retry() throws InterruptedException {
+		ds.close();
+		final PreferenceWriter[] writer = new PreferenceWriter[1];
+		ds = new DataStore(".", "afghanistanbananastan") {
+			private boolean fail = true;
+
+			@Override
+			public synchronized boolean storeProps(String[] users,
+					String[] keys, String[] values) {
+				if (fail) {
+					// newer value set while the write fails
+					fail = false;
+					writer[0].put(user, "a", "2", false);
+					return false;
+				}
+				return super.storeProps(users, keys, values);
+			}
+		};
+		writer[0] = new PreferenceWriter(ds, 50);
+		writer[0].put(user, "a", "1", false);
+		writer[0].put(user, "b", "x", false);
+		writer[0].flush();
+		Assert.assertEquals(2, writer[0].getFailed());
+		Assert.assertEquals("2", writer[0].get(user, "a").value);
+		Assert.assertEquals("x", writer[0].get(user, "b").value);
+
+		for (int i = 0; (i < 100) && (writer[0].getWritten() == 0); i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(2, writer[0].getWritten());
+		Assert.assertEquals("2", ds.getProp(user, "a"));
+		Assert.assertEquals("x", ds.getProp(user, "b"));
+		writer[0].close();
+	}
+
+	@Test(timeout = 5000)
+	public void storeUnavailable() {
+		FutureTask<DataStore> store = new FutureTask<DataStore>(
+				new Callable<DataStore>() {
+			@Override
+			public DataStore call() {
+				throw new IllegalStateException("boot failed");
+			}
+		});
+		store.run();
+		PreferenceWriter writer = new PreferenceWriter(store, 60000);
+		writer.put(user, "a", "1", false);
+		writer.put(user, "b", "x", false);
+		// waiting properties are dropped, flush and close don't wait
+		writer.flush();
+		writer.close();
+		Assert.assertEquals(0, writer.getWaiting());
+		Assert.assertEquals(2, writer.getFailed());
+		Assert.assertNull(writer.get(user, "a"));
+	}
+}
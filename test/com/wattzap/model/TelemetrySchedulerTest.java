@@ -0,0 +1,57 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TelemetrySchedulerTest {
+	private final VirtualClock clock = new VirtualClock(1000000L);
+
+	@Test
+	public void regularTicks() throws InterruptedException {
+		TelemetryScheduler scheduler = new TelemetryScheduler(4, false);
+		scheduler.setClock(clock);
+		scheduler.start();
+		long total = 0;
+		for (int i = 0; i < 40; i++) {
+			long passed = scheduler.waitTick();
+			Assert.assertEquals(250000000L, passed);
+			total += passed;
+		}
+		Assert.assertEquals(total, clock.nanoTime());
+		Assert.assertEquals(1010000L, clock.currentTimeMillis());
+		Assert.assertEquals(40, scheduler.getTicks());
+		Assert.assertEquals(0, scheduler.getOverruns());
+	}
+
+	@Test
+	public void eventTicks() throws InterruptedException {
+		TelemetryScheduler scheduler = new TelemetryScheduler(1, false);
+		scheduler.setClock(clock);
+		scheduler.setEventMode(true);
+		scheduler.setMinSpacing(100);
+		scheduler.start();
+
+		// event tick not earlier than min spacing, deadline is not moved
+		scheduler.wake();
+		Assert.assertEquals(100000000L, scheduler.waitTick());
+		Assert.assertEquals(900000000L, scheduler.waitTick());
+		Assert.assertEquals(1000000000L, clock.nanoTime());
+		Assert.assertEquals(2, scheduler.getTicks());
+		Assert.assertEquals(1, scheduler.getEventTicks());
+	}
+}
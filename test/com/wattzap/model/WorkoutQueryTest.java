@@ -0,0 +1,142 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wattzap.model.dto.PowerCurve;
+import com.wattzap.model.dto.WorkoutData;
+import com.wattzap.model.dto.WorkoutFilter;
+
+public class WorkoutQueryTest {
+	private static final long DAY = 24L * 3600L * 1000L;
+	private static final long FIRST = 1400000000000L;
+	private static final int COUNT = 250;
+
+	private final String user = "query-test";
+	private DataStore ds;
+
+	@Before
+	public void setup() {
+		ds = new DataStore(".", "afghanistanbananastan");
+		cleanUp();
+		// one workout per day, power 100..349, every 5th from GPS
+		List<WorkoutData> list = new ArrayList<>();
+		for (int i = 0; i < COUNT; i++) {
+			WorkoutData data = new WorkoutData();
+			data.setTcxFile("query" + i + ".tcx");
+			data.setDate(FIRST + i * DAY);
+			data.setQuadraticPower(100 + i);
+			data.setSource((i % 5 == 0) ? WorkoutData.GPS : WorkoutData.WATTZAP);
+			data.setDescription((i % 2 == 0) ? "Alpe d'Huez" : "Stelvio");
+			if (i % 10 != 0) {
+				data.setPowerCurve(new PowerCurve(new int[] {500 + i, 300, 200}));
+			}
+			if (i % 3 == 0) {
+				data.setHash("hash" + i);
+			}
+			list.add(data);
+		}
+		Assert.assertTrue(ds.saveWorkouts(user, list));
+	}
+
+	@After
+	public void tearDown() {
+		cleanUp();
+		ds.close();
+	}
+
+	private void cleanUp() {
+		for (WorkoutData data : ds.listWorkouts(user)) {
+			ds.deleteWorkout(user, data.getTcxFile());
+		}
+	}
+
+	@Test
+	public void pages() {
+		WorkoutFilter filter = new WorkoutFilter();
+		Assert.assertEquals(COUNT, ds.countWorkouts(user, filter));
+
+		List<WorkoutData> page = ds.listWorkouts(user, filter, 200, 100);
+		Assert.assertEquals(50, page.size());
+		Assert.assertEquals("query200.tcx", page.get(0).getTcxFile());
+		Assert.assertEquals("query249.tcx", page.get(49).getTcxFile());
+
+		page = ds.listWorkouts(user, filter, 0, 10);
+		Assert.assertEquals(10, page.size());
+		Assert.assertEquals("query0.tcx", page.get(0).getTcxFile());
+	}
+
+	@Test
+	public void filter() {
+		WorkoutFilter filter = new WorkoutFilter();
+		filter.setFromDate(FIRST + 10 * DAY);
+		filter.setToDate(FIRST + 19 * DAY);
+		Assert.assertEquals(10, ds.countWorkouts(user, filter));
+
+		filter.setSource(WorkoutData.GPS);
+		Assert.assertEquals(2, ds.countWorkouts(user, filter));
+		List<WorkoutData> list = ds.listWorkouts(user, filter, 0, 100);
+		Assert.assertEquals("query10.tcx", list.get(0).getTcxFile());
+		Assert.assertEquals("query15.tcx", list.get(1).getTcxFile());
+
+		filter = new WorkoutFilter();
+		filter.setMinPower(300);
+		filter.setRoute("stel");
+		Assert.assertEquals(25, ds.countWorkouts(user, filter));
+		list = ds.listWorkouts(user, filter, 0, 100);
+		Assert.assertEquals(25, list.size());
+		for (WorkoutData data : list) {
+			Assert.assertTrue(data.getQuadraticPower() >= 300);
+			Assert.assertEquals("Stelvio", data.getDescription());
+		}
+	}
+
+	@Test
+	public void curves() {
+		WorkoutFilter filter = new WorkoutFilter();
+		filter.setFromDate(FIRST + 10 * DAY);
+		filter.setToDate(FIRST + 19 * DAY);
+		Map<String, PowerCurve> curves = ds.getPowerCurves(user, filter);
+		Assert.assertEquals(10, curves.size());
+		Assert.assertNull(curves.get("query10.tcx"));
+		Assert.assertEquals(519, curves.get("query19.tcx").getPower(0));
+
+		Assert.assertTrue(ds.updatePowerCurve(user, "query10.tcx",
+				new PowerCurve(new int[] {600})));
+		PowerCurve curve = ds.getWorkout(user, "query10.tcx").getPowerCurve();
+		Assert.assertEquals(1, curve.size());
+		Assert.assertEquals(600, curve.getPower(0));
+		Assert.assertEquals(3, ds.getWorkout(user, "query11.tcx").getPowerCurve().size());
+	}
+
+	@Test
+	public void hashes() {
+		Map<String, String> hashes = ds.getWorkoutHashes(user);
+		Assert.assertEquals(COUNT, hashes.size());
+		Assert.assertEquals("hash3", hashes.get("query3.tcx"));
+		Assert.assertTrue(hashes.containsKey("query4.tcx"));
+		Assert.assertNull(hashes.get("query4.tcx"));
+		Assert.assertEquals("hash6", ds.getWorkout(user, "query6.tcx").getHash());
+	}
+}
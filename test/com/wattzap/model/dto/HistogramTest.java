@@ -0,0 +1,42 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model.dto;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HistogramTest {
+	@Test
+	public void merge() {
+		Histogram first = new Histogram();
+		first.add(3, 1000);
+		first.add(3, 500);
+		first.add(-1, 1000); // not available
+		Assert.assertEquals(4, first.size());
+		Assert.assertEquals(1500L, first.getTotal());
+
+		Histogram second = new Histogram();
+		second.add(1000, 200);
+		second.add(3, 100);
+		first.merge(second);
+		Assert.assertEquals(1001, first.size());
+		Assert.assertEquals(1600L, first.getTime(3));
+		Assert.assertEquals(200L, first.getTime(1000));
+		Assert.assertEquals(0L, first.getTime(2000));
+		Assert.assertEquals(0L, first.getTime(-1));
+		Assert.assertEquals(1800L, first.getTotal());
+	}
+}
@@ -0,0 +1,94 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model.dto;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JournalWriterTest {
+	private final File file = new File(System.getProperty("java.io.tmpdir"),
+			"writer-test" + TelemetryJournal.EXTENSION);
+
+	@After
+	public void cleanUp() {
+		file.delete();
+	}
+
+	@Test
+	public void groupCommit() throws IOException {
+		JournalWriter writer = new JournalWriter(
+				TelemetryJournal.create(file.getPath()), 64);
+		writer.setGroupSize(10);
+		writer.setDelay(60000);
+		for (int i = 0; i < 25; i++) {
+			Telemetry t = new Telemetry();
+			t.setTime(i);
+			Assert.assertTrue(writer.offer(t));
+		}
+		writer.flush();
+		Assert.assertEquals(25, writer.getWritten());
+		Assert.assertEquals(0, writer.getWaiting());
+		writer.close();
+		Assert.assertFalse(writer.offer(new Telemetry()));
+		Assert.assertEquals(0, writer.getDropped());
+
+		List<Telemetry> data = new ArrayList<>();
+		TelemetryJournal.read(file.getPath(), data);
+		Assert.assertEquals(25, data.size());
+		for (int i = 0; i < data.size(); i++) {
+			Assert.assertEquals(i, data.get(i).getTime());
+		}
+	}
+
+	@Test
+	public void delay() throws IOException, InterruptedException {
+		JournalWriter writer = new JournalWriter(
+				TelemetryJournal.create(file.getPath()), 64);
+		writer.setGroupSize(10);
+		writer.setDelay(50);
+		writer.offer(new Telemetry());
+		for (int i = 0; (i < 100) && (writer.getWritten() == 0); i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(1, writer.getWritten());
+		Assert.assertEquals(1, writer.getCommits());
+		writer.close();
+	}
+
+	@Test
+	public void flushSyncsCommitted() throws IOException, InterruptedException {
+		JournalWriter writer = new JournalWriter(
+				TelemetryJournal.create(file.getPath()), 64);
+		writer.setGroupSize(1);
+		for (int i = 0; i < 5; i++) {
+			writer.offer(new Telemetry());
+		}
+		for (int i = 0; (i < 100) && (writer.getWritten() != 5); i++) {
+			Thread.sleep(10);
+		}
+		Assert.assertEquals(5, writer.getWritten());
+		Assert.assertEquals(0, writer.getSynced());
+		// nothing is queued, but committed records are not synced yet
+		writer.flush();
+		Assert.assertEquals(5, writer.getSynced());
+		writer.close();
+	}
+}
@@ -0,0 +1,80 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PowerCurveTest {
+	// 10 minutes at 200W, 30s at 400W in the middle
+	private static List<Telemetry> ride() {
+		List<Telemetry> data = new ArrayList<>();
+		for (int i = 0; i <= 600; i++) {
+			Telemetry t = new Telemetry();
+			t.setTime(1000L * i);
+			t.setPower((i > 300 && i <= 330) ? 400 : 200);
+			data.add(t);
+		}
+		return data;
+	}
+
+	@Test
+	public void grid() {
+		Assert.assertEquals(1, PowerCurve.DURATIONS[0]);
+		Assert.assertEquals(21600, PowerCurve.DURATIONS[PowerCurve.DURATIONS.length - 1]);
+		for (int i = 1; i < PowerCurve.DURATIONS.length; i++) {
+			Assert.assertTrue(PowerCurve.DURATIONS[i] > PowerCurve.DURATIONS[i - 1]);
+		}
+	}
+
+	@Test
+	public void compute() {
+		PowerCurve curve = PowerCurve.compute(ride());
+		Assert.assertEquals(400, curve.getPowerFor(5));
+		Assert.assertEquals(400, curve.getPowerFor(30));
+		// best contiguous average, not time spent above the power
+		Assert.assertEquals(300, curve.getPowerFor(60));
+		Assert.assertEquals(210, curve.getPowerFor(600));
+		// longer than the ride
+		Assert.assertEquals(0, curve.getPowerFor(1200));
+		Assert.assertEquals(600, curve.getDuration(curve.size() - 1));
+	}
+
+	@Test
+	public void encode() {
+		PowerCurve curve = PowerCurve.compute(ride());
+		PowerCurve decoded = PowerCurve.decode(curve.encode());
+		Assert.assertEquals(curve.size(), decoded.size());
+		for (int i = 0; i < curve.size(); i++) {
+			Assert.assertEquals(curve.getPower(i), decoded.getPower(i));
+		}
+		Assert.assertEquals(0, PowerCurve.decode("").size());
+		Assert.assertNull(PowerCurve.decode(null));
+		Assert.assertNull(PowerCurve.decode("100,x"));
+	}
+
+	@Test
+	public void envelope() {
+		PowerCurve curve = new PowerCurve(new int[] {500, 300});
+		curve.envelope(new PowerCurve(new int[] {400, 350, 250}));
+		Assert.assertEquals(3, curve.size());
+		Assert.assertEquals(500, curve.getPower(0));
+		Assert.assertEquals(350, curve.getPower(1));
+		Assert.assertEquals(250, curve.getPower(2));
+	}
+}
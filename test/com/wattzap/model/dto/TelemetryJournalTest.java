@@ -0,0 +1,165 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model.dto;
+
+import com.wattzap.model.PauseMsgEnum;
+import com.wattzap.model.SourceDataEnum;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TelemetryJournalTest {
+	private final File file = new File(System.getProperty("java.io.tmpdir"),
+			"journal-test" + TelemetryJournal.EXTENSION);
+
+	@After
+	public void cleanUp() {
+		file.delete();
+	}
+
+	private static Telemetry telemetry(int i) {
+		Telemetry t = new Telemetry();
+		t.setTime(1000L * i);
+		t.setDistance(0.01 * i);
+		t.setPower(100 + i);
+		t.setDouble(SourceDataEnum.SLOPE, 1.5, TelemetryValidityEnum.TOO_BIG);
+		t.setPause(PauseMsgEnum.RUNNING);
+		return t;
+	}
+
+	private static void check(int i, Telemetry t) {
+		Assert.assertEquals(1000L * i, t.getTime());
+		// distance is stored with 1mm resolution
+		Assert.assertEquals(0.01 * i, t.getDistance(), 1e-9);
+		Assert.assertEquals(100 + i, t.getPower());
+		Assert.assertEquals(TelemetryValidityEnum.TOO_BIG, t.getValidity(SourceDataEnum.SLOPE));
+		Assert.assertEquals(TelemetryValidityEnum.NOT_PRESENT, t.getValidity(SourceDataEnum.CADENCE));
+		Assert.assertEquals(PauseMsgEnum.RUNNING, t.getPause());
+	}
+
+	@Test
+	public void writeAndRead() throws IOException {
+		TelemetryJournal journal = TelemetryJournal.create(file.getPath());
+		// single records and group of them
+		for (int i = 0; i < 10; i++) {
+			journal.append(telemetry(i));
+		}
+		List<Telemetry> group = new ArrayList<>();
+		for (int i = 10; i < 100; i++) {
+			group.add(telemetry(i));
+		}
+		journal.append(group);
+		Assert.assertEquals(100, journal.getRecords());
+		check(99, journal.last());
+		journal.close();
+
+		List<Telemetry> data = new ArrayList<>();
+		TelemetryJournal.read(file.getPath(), data);
+		Assert.assertEquals(100, data.size());
+		for (int i = 0; i < data.size(); i++) {
+			check(i, data.get(i));
+		}
+	}
+
+	@Test
+	public void tornTail() throws IOException {
+		TelemetryJournal journal = TelemetryJournal.create(file.getPath());
+		long[] ends = new long[10];
+		for (int i = 0; i < 10; i++) {
+			journal.append(telemetry(i));
+			ends[i] = journal.getSize();
+		}
+		journal.close();
+		Assert.assertEquals(ends[9], file.length());
+
+		// half of the last block is lost, last but one is broken
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.setLength((ends[8] + ends[9]) / 2);
+			raf.seek((ends[7] + ends[8]) / 2);
+			raf.write(raf.read() ^ 0xFF);
+		}
+
+		journal = TelemetryJournal.open(file.getPath());
+		List<Telemetry> data = journal.getRecovered();
+		Assert.assertEquals(8, data.size());
+		check(3, data.get(3));
+		Assert.assertEquals(8, journal.getRecords());
+		Assert.assertTrue(journal.getTornBytes() > 0);
+		Assert.assertEquals(ends[7], file.length());
+		check(7, journal.last());
+
+		// new records are appended after the last good one
+		journal.append(telemetry(8));
+		journal.close();
+		data = new ArrayList<>();
+		TelemetryJournal.read(file.getPath(), data);
+		Assert.assertEquals(9, data.size());
+		check(8, data.get(8));
+	}
+
+	@Test
+	public void lastBlock() throws IOException {
+		TelemetryJournal journal = TelemetryJournal.create(file.getPath());
+		for (int b = 0; b < 10; b++) {
+			List<Telemetry> group = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				group.add(telemetry(b * 100 + i));
+			}
+			journal.append(group);
+		}
+		journal.close();
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.seek(raf.length());
+			raf.writeUTF("garbage");
+		}
+
+		// last record and their number are known without reading the journal
+		journal = TelemetryJournal.open(file.getPath());
+		Assert.assertEquals(1000, journal.getRecords());
+		Assert.assertEquals(9, journal.getTornBytes());
+		check(999, journal.last());
+		journal.close();
+	}
+
+	@Test
+	public void recoveredAfterDelete() throws IOException {
+		TelemetryJournal journal = TelemetryJournal.create(file.getPath());
+		for (int i = 0; i < 5; i++) {
+			journal.append(telemetry(i));
+		}
+		journal.close();
+
+		journal = TelemetryJournal.open(file.getPath());
+		List<Telemetry> data = journal.getRecovered();
+		journal.close();
+		Assert.assertTrue(file.delete());
+		Assert.assertEquals(5, data.size());
+		check(4, data.get(4));
+	}
+
+	@Test(expected = IOException.class)
+	public void notJournal() throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+			raf.writeUTF("not a journal at all");
+		}
+		TelemetryJournal.open(file.getPath());
+	}
+}
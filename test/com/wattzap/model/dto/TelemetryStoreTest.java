@@ -0,0 +1,110 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model.dto;
+
+import com.wattzap.model.PauseMsgEnum;
+import com.wattzap.model.SourceDataEnum;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TelemetryStoreTest {
+	private static Telemetry telemetry(int i) {
+		Telemetry t = new Telemetry();
+		t.setTime(i);
+		t.setPower(100 + i);
+		if (i >= 1500) {
+			// column allocated in the middle of the chunk
+			t.setLatitude(45.0 + i);
+			t.setPause(PauseMsgEnum.RUNNING);
+		}
+		t.setDouble(SourceDataEnum.SLOPE, 0.5 * i, TelemetryValidityEnum.WRONG);
+		return t;
+	}
+
+	private static void check(int i, long time, Telemetry t) {
+		Assert.assertEquals(time, t.getTime());
+		Assert.assertEquals(100 + i, t.getPower());
+		Assert.assertEquals(0.5 * i, t.getGradient(), 0.0);
+		Assert.assertEquals(TelemetryValidityEnum.WRONG, t.getValidity(SourceDataEnum.SLOPE));
+		if (i >= 1500) {
+			Assert.assertEquals(45.0 + i, t.getLatitude(), 0.0);
+			Assert.assertTrue(t.isAvailable(SourceDataEnum.LATITUDE));
+			Assert.assertEquals(PauseMsgEnum.RUNNING, t.getPause());
+		} else {
+			Assert.assertEquals(SourceDataEnum.LATITUDE.getDefault(), t.getLatitude(), 0.0);
+			Assert.assertFalse(t.isAvailable(SourceDataEnum.LATITUDE));
+			Assert.assertNull(t.getPause());
+		}
+		Assert.assertFalse(t.isAvailable(SourceDataEnum.CADENCE));
+	}
+
+	@Test
+	public void addAndRead() {
+		TelemetryStore store = new TelemetryStore();
+		for (int i = 0; i < 1400; i++) {
+			Assert.assertEquals(i, store.add(telemetry(i), 1000L * i));
+			// row just added, in filled or sealed chunk
+			check(i, 1000L * i, store.get(i));
+		}
+		check(5, 5000L, store.get(5));
+		TelemetryStore.View old = store.snapshot();
+		for (int i = 1400; i < 3000; i++) {
+			store.add(telemetry(i), 1000L * i);
+		}
+		TelemetryStore.View view = store.snapshot();
+		Assert.assertEquals(3000, view.size());
+		for (int i = 0; i < view.size(); i++) {
+			check(i, 1000L * i, view.get(i));
+			Assert.assertEquals(1000L * i, view.getTime(i));
+			Assert.assertEquals(100 + i, view.getDouble(SourceDataEnum.POWER, i), 0.0);
+		}
+
+		// snapshot is not changed by next rows and clear
+		store.clear();
+		Assert.assertTrue(store.isEmpty());
+		Assert.assertEquals(1400, old.size());
+		for (int i = 0; i < old.size(); i++) {
+			check(i, 1000L * i, old.get(i));
+		}
+		Assert.assertEquals(3000, view.size());
+	}
+
+	@Test
+	public void prefix() {
+		List<Telemetry> recovered = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			recovered.add(telemetry(i));
+		}
+		TelemetryStore store = new TelemetryStore();
+		store.setPrefix(recovered);
+		Assert.assertEquals(10, store.add(telemetry(10), 10));
+		TelemetryStore.View view = store.snapshot();
+		Assert.assertEquals(11, view.size());
+		for (int i = 0; i < view.size(); i++) {
+			check(i, i, view.get(i));
+		}
+		check(3, 3, store.get(3));
+		check(10, 10, store.get(10));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void readOnly() {
+		TelemetryStore store = new TelemetryStore();
+		store.snapshot().add(new Telemetry());
+	}
+}
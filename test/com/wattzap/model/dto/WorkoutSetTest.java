@@ -0,0 +1,97 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.model.dto;
+
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.wattzap.model.SourceDataEnum;
+
+public class WorkoutSetTest {
+	private static ArrayList<Telemetry> ride(int power, int cadence) {
+		ArrayList<Telemetry> data = new ArrayList<>();
+		for (int i = 0; i <= 60; i++) {
+			Telemetry t = new Telemetry();
+			t.setTime(1000L * i);
+			t.setPower(power + (i % 2));
+			t.setCadence(cadence);
+			t.setDistance(0.01 * i);
+			data.add(t);
+		}
+		return data;
+	}
+
+	@Test
+	public void merge() {
+		WorkoutSet first = WorkoutSet.of("a", ride(200, 90));
+		Assert.assertEquals(1, first.size());
+		// 200W and 201W at 90rpm
+		Assert.assertEquals(2, first.getCadencePoints());
+		Assert.assertEquals(0, first.getHeartRatePoints());
+
+		WorkoutSet set = new WorkoutSet().merge(first)
+				.merge(WorkoutSet.of("b", null))
+				.merge(WorkoutSet.of("c", ride(200, 80)))
+				.merge(WorkoutSet.of("d", ride(300, 90)));
+		Assert.assertEquals(3, set.size());
+		Assert.assertEquals("a", set.getName(0));
+		Assert.assertEquals("c", set.getName(1));
+		Assert.assertEquals("d", set.getName(2));
+		Assert.assertEquals(1, set.getFailed().size());
+		Assert.assertEquals("b", set.getFailed().get(0));
+		Assert.assertEquals(3, set.getTelemetry().length);
+		Assert.assertEquals(180000L, set.getTime());
+		Assert.assertEquals(1.8, set.getDistance(), 1e-9);
+		Assert.assertEquals(183, set.getSamples());
+
+		// distinct points, sorted by power
+		Assert.assertEquals(6, set.getCadencePoints());
+		Assert.assertEquals(200, set.getCadencePower(0));
+		Assert.assertEquals(80, set.getCadence(0));
+		Assert.assertEquals(200, set.getCadencePower(1));
+		Assert.assertEquals(90, set.getCadence(1));
+		Assert.assertEquals(301, set.getCadencePower(5));
+
+		Assert.assertEquals(301, set.getCurve().getPowerFor(1));
+		Assert.assertEquals(201, set.getCurve(0).getPowerFor(1));
+	}
+
+	@Test
+	public void histograms() {
+		WorkoutSet set = WorkoutSet.of("a", ride(200, 90))
+				.merge(WorkoutSet.of("b", ride(0, 80)));
+		Histogram power = set.getHistogram(SourceDataEnum.POWER);
+		// first sample of the ride is not counted
+		Assert.assertEquals(120000L, power.getTotal());
+		Assert.assertEquals(30000L, power.getTime(0));
+		Assert.assertEquals(30000L, power.getTime(1));
+		Assert.assertEquals(30000L, power.getTime(200));
+		Assert.assertEquals(30000L, power.getTime(201));
+		Assert.assertEquals(202, power.size());
+
+		Histogram cadence = set.getHistogram(SourceDataEnum.CADENCE);
+		Assert.assertEquals(60000L, cadence.getTime(80));
+		Assert.assertEquals(60000L, cadence.getTime(90));
+		// second ride is below pedalling power
+		cadence = set.getPedallingHistogram(SourceDataEnum.CADENCE);
+		Assert.assertEquals(60000L, cadence.getTotal());
+		Assert.assertEquals(0L, cadence.getTime(80));
+
+		Assert.assertNull(set.getHistogram(SourceDataEnum.SPEED));
+	}
+}
@@ -0,0 +1,187 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.utils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.wattzap.model.dto.Telemetry;
+import com.wattzap.model.dto.WorkoutData;
+
+public class ActivityImporterTest {
+	private final File dir = new File(System.getProperty("java.io.tmpdir"),
+			"importer-test");
+	// start time of the ride in each file, file without it cannot be read
+	private final Map<String, Long> rides = new HashMap<String, Long>();
+	private final List<String> files = new ArrayList<String>();
+
+	private final List<String> saved = Collections
+			.synchronizedList(new ArrayList<String>());
+	private final List<String> deleted = new ArrayList<String>();
+	private final List<Integer> batches = new ArrayList<Integer>();
+
+	@After
+	public void cleanUp() {
+		for (String file : files) {
+			new File(file).delete();
+		}
+		dir.delete();
+	}
+
+	private void file(String name, String content, Long start)
+			throws IOException {
+		dir.mkdirs();
+		File file = new File(dir, name);
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.US_ASCII));
+		files.add(file.getPath());
+		rides.put(file.getPath(), start);
+	}
+
+	private class Importer extends ActivityImporter {
+		private final Map<String, String> stored;
+		private final String rejected;
+
+		private Importer(Map<String, String> stored, String rejected) {
+			super(files);
+			this.stored = stored;
+			this.rejected = rejected;
+		}
+
+		@Override
+		List<Telemetry> parse(String fileName) {
+			Long start = rides.get(fileName);
+			if (start == null) {
+				return null;
+			}
+			Telemetry t = new Telemetry();
+			t.setTime(start);
+			return Arrays.asList(t);
+		}
+
+		@Override
+		WorkoutData analyze(List<Telemetry> telemetry) {
+			return new WorkoutData();
+		}
+
+		@Override
+		void save(List<Telemetry> telemetry) {
+			saved.add(TcxWriter.getWorkoutName(telemetry.get(0).getTime()));
+		}
+
+		@Override
+		void delete(String workoutName) {
+			deleted.add(workoutName);
+		}
+
+		@Override
+		Map<String, String> getStored() {
+			return stored;
+		}
+
+		@Override
+		boolean store(List<WorkoutData> batch) {
+			batches.add(batch.size());
+			for (WorkoutData workout : batch) {
+				if (workout.getTcxFile().equals(rejected)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	@Test
+	public void dedupe() throws IOException {
+		long hour = 3600000L;
+		long start = 1400000000000L;
+		// same content, and same start time with another content
+		file("a.tcx", "ride 1", start);
+		file("b.tcx", "ride 1", start);
+		file("c.tcx", "ride 1 again", start);
+		file("d.tcx", "broken", null);
+		file("e.tcx", "ride 3", start + hour);
+		file("f.tcx", "ride 4", start + 2 * hour);
+		// already in the database, by content and by start time
+		file("g.tcx", "ride 5", start + 3 * hour);
+		file("h.tcx", "ride 6", start + 4 * hour);
+
+		Map<String, String> stored = new HashMap<String, String>();
+		stored.put("old.tcx", ActivityImporter.hash("ride 5"
+				.getBytes(StandardCharsets.US_ASCII)));
+		stored.put(TcxWriter.getWorkoutName(start + 4 * hour), null);
+		String rejected = TcxWriter.getWorkoutName(start + 2 * hour);
+
+		ActivityImporter importer = new Importer(stored, rejected);
+		List<String> imported = importer.run();
+		Assert.assertEquals(new HashSet<String>(Arrays.asList(
+				TcxWriter.getWorkoutName(start),
+				TcxWriter.getWorkoutName(start + hour))),
+				new HashSet<String>(imported));
+		Assert.assertEquals(8, importer.getDone());
+		Assert.assertEquals(4, importer.getDuplicates());
+		// broken file and rejected workout
+		Assert.assertEquals(2, importer.getFailed());
+
+		// batch failed, workouts were inserted one by one
+		Assert.assertEquals(Arrays.asList(3, 1, 1, 1), batches);
+		// file of rejected workout is removed
+		Assert.assertEquals(3, saved.size());
+		Assert.assertTrue(saved.contains(rejected));
+		Assert.assertEquals(Arrays.asList(rejected), deleted);
+	}
+	@Test
+	public void failedSave() throws IOException {
+		long start = 1400000000000L;
+		file("a.tcx", "ride 1", start);
+		final String name = TcxWriter.getWorkoutName(start);
+
+		ActivityImporter importer = new Importer(
+				new HashMap<String, String>(), null) {
+			@Override
+			void save(List<Telemetry> telemetry) {
+				super.save(telemetry);
+				throw new IllegalStateException("disk full");
+			}
+		};
+		Assert.assertTrue(importer.run().isEmpty());
+		Assert.assertEquals(1, importer.getFailed());
+		// partially written file is removed
+		Assert.assertEquals(Arrays.asList(name), saved);
+		Assert.assertEquals(Arrays.asList(name), deleted);
+		Assert.assertTrue(batches.isEmpty());
+	}
+
+	@Test
+	public void hash() {
+		Assert.assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d",
+				ActivityImporter.hash("abc".getBytes(StandardCharsets.US_ASCII)));
+		Assert.assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709",
+				ActivityImporter.hash(new byte[0]));
+	}
+}
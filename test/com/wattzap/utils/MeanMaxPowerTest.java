@@ -0,0 +1,152 @@
+/* This file is part of Wattzap Community Edition.
+ *
+ * Wattzap Community Edtion is free software: you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * Wattzap Community Edition is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Wattzap.  If not, see <http://www.gnu.org/licenses/>.
+*/
+package com.wattzap.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.wattzap.model.dto.PowerCurve;
+import com.wattzap.model.dto.Telemetry;
+
+public class MeanMaxPowerTest {
+	private static Telemetry telemetry(long time, int power) {
+		Telemetry t = new Telemetry();
+		t.setTime(time);
+		t.setPower(power);
+		return t;
+	}
+
+	// brute force
+	private static double max(int[] power, int seconds) {
+		double best = 0;
+		for (int i = 0; i + seconds <= power.length; i++) {
+			double sum = 0;
+			for (int j = i; j < i + seconds; j++) {
+				sum += power[j];
+			}
+			best = Math.max(best, sum / seconds);
+		}
+		return best;
+	}
+
+	@Test
+	public void contiguous() {
+		// two 10s sprints apart: 20s at 500W in total, but not in one go
+		int[] power = new int[120];
+		for (int i = 0; i < power.length; i++) {
+			power[i] = ((i >= 10 && i < 20) || (i >= 60 && i < 70)) ? 500 : 100;
+		}
+		MeanMaxPower mmp = new MeanMaxPower(new int[0], power);
+		Assert.assertEquals(120, mmp.length());
+		Assert.assertEquals(500.0, mmp.getMax(10), 0.0);
+		Assert.assertEquals(300.0, mmp.getMax(20), 0.0);
+		Assert.assertEquals(0.0, mmp.getMax(121), 0.0);
+
+		Random random = new Random(1);
+		for (int i = 0; i < power.length; i++) {
+			power[i] = random.nextInt(600);
+		}
+		mmp = new MeanMaxPower(new int[0], power);
+		for (int d = 1; d <= power.length; d++) {
+			Assert.assertEquals(max(power, d), mmp.getMax(d), 1e-9);
+		}
+	}
+
+	@Test
+	public void resample() {
+		// 2Hz samples, power held since previous one
+		List<Telemetry> data = new ArrayList<>();
+		for (int i = 0; i <= 120; i++) {
+			data.add(telemetry(500L * i, (i > 20 && i <= 40) ? 400 : 200));
+		}
+		MeanMaxPower mmp = new MeanMaxPower(data);
+		Assert.assertEquals(60, mmp.length());
+		Assert.assertEquals(400.0, mmp.getMax(10), 0.0);
+		Assert.assertEquals(300.0, mmp.getMax(20), 0.0);
+	}
+
+	@Test
+	public void gap() {
+		List<Telemetry> data = new ArrayList<>();
+		for (int i = 0; i <= 30; i++) {
+			data.add(telemetry(1000L * i, 300));
+		}
+		// data lost for a minute, power isn't held over the gap
+		for (int i = 90; i <= 120; i++) {
+			data.add(telemetry(1000L * i, 300));
+		}
+		MeanMaxPower mmp = new MeanMaxPower(data);
+		Assert.assertEquals(120, mmp.length());
+		Assert.assertEquals(300.0, mmp.getMax(30), 0.0);
+		Assert.assertEquals(150.0, mmp.getMax(120), 0.0);
+	}
+
+	@Test
+	public void sixHours() {
+		Random random = new Random(2);
+		int[] power = new int[6 * 3600];
+		for (int i = 0; i < power.length; i++) {
+			power[i] = 150 + random.nextInt(200);
+		}
+		MeanMaxPower mmp = new MeanMaxPower(new int[0], power);
+		int[] curve = mmp.getCurve(PowerCurve.DURATIONS);
+
+		Assert.assertEquals(PowerCurve.DURATIONS.length, curve.length);
+		Assert.assertEquals(max(power, 60), mmp.getMax(60), 1e-9);
+		Assert.assertEquals(max(power, 1200), mmp.getMax(1200), 1e-9);
+
+		// tracked while added
+		MeanMaxPower live = new MeanMaxPower(PowerCurve.DURATIONS, power);
+		Assert.assertArrayEquals(curve, live.getCurve(PowerCurve.DURATIONS));
+	}
+
+	@Test
+	public void tracked() {
+		// curve is updated when each second is completed, current (partial)
+		// second (500W for half of the second) is counted as well
+		MeanMaxPower mmp = new MeanMaxPower(new int[] {1, 5, 60});
+		for (int i = 0; i <= 20; i++) {
+			mmp.add(1000L * i, 100 + 10 * i);
+		}
+		mmp.add(20500, 1000);
+		Assert.assertEquals(21, mmp.length());
+		int[] curve = mmp.getCurve(new int[] {1, 5, 60});
+		Assert.assertEquals(2, curve.length);
+		Assert.assertEquals(500, curve[0]);
+		Assert.assertEquals((int) Math.round(mmp.getMax(5)), curve[1]);
+	}
+
+	@Test
+	public void normalized() {
+		int[] power = new int[600];
+		Assert.assertEquals(0, new MeanMaxPower(new int[0], new int[29]).getNormalizedPower());
+		for (int i = 0; i < power.length; i++) {
+			power[i] = 200;
+		}
+		Assert.assertEquals(200, new MeanMaxPower(new int[0], power).getNormalizedPower());
+
+		// 1min blocks of 100W and 300W: average is 200W, NP is higher
+		for (int i = 0; i < power.length; i++) {
+			power[i] = ((i / 60) % 2 == 0) ? 100 : 300;
+		}
+		int np = new MeanMaxPower(new int[0], power).getNormalizedPower();
+		Assert.assertTrue(np > 230 && np < 260);
+	}
+}